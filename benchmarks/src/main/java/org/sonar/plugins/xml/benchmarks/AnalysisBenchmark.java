@@ -0,0 +1,92 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.plugins.xml.LineCounter;
+import org.sonar.plugins.xml.XmlHighlighting;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+
+/**
+ * Throughput of the parsing, of the computation of the metrics and of the highlighting, on all the files of a corpus:
+ * one operation processes every file of the corpus once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalysisBenchmark {
+
+  @Param({"POM", "SPRING", "ANDROID", "WEB_CONFIG"})
+  public Corpus corpus;
+
+  private final SensorContext context = DiscardingContext.sensorContext();
+  private final FileLinesContextFactory fileLinesContextFactory = DiscardingContext.fileLinesContextFactory();
+  private List<InputFile> inputFiles;
+  private List<XmlFile> xmlFiles;
+
+  @Setup
+  public void setup() throws IOException {
+    inputFiles = corpus.inputFiles();
+    xmlFiles = new ArrayList<>(inputFiles.size());
+    for (InputFile inputFile : inputFiles) {
+      xmlFiles.add(XmlFile.create(inputFile));
+    }
+  }
+
+  @Benchmark
+  public void parse(Blackhole blackhole) throws IOException {
+    for (InputFile inputFile : inputFiles) {
+      blackhole.consume(XmlFile.create(inputFile));
+    }
+  }
+
+  @Benchmark
+  public void countLines() {
+    for (XmlFile xmlFile : xmlFiles) {
+      LineCounter.analyse(context, fileLinesContextFactory, xmlFile);
+    }
+  }
+
+  @Benchmark
+  public void highlight() {
+    for (XmlFile xmlFile : xmlFiles) {
+      XmlHighlighting.highlight(context, xmlFile);
+    }
+  }
+
+}
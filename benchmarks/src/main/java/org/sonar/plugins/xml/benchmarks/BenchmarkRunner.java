@@ -0,0 +1,50 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.sonar.plugins.xml.checks.CheckList;
+
+/**
+ * Entry point of the benchmarks jar. It accepts the options of JMH, and runs the benchmarks with the GC profiler,
+ * which reports the allocation rate, and {@link CheckBenchmark} for every check unless some are given with
+ * {@code -p check=...}.
+ */
+public final class BenchmarkRunner {
+
+  private BenchmarkRunner() {
+    // utility class, forbidden constructor
+  }
+
+  public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    OptionsBuilder options = new OptionsBuilder();
+    options.parent(commandLine);
+    options.addProfiler(GCProfiler.class);
+    if (!commandLine.getParameter(CheckBenchmark.CHECK_PARAM).hasValue()) {
+      String[] checks = CheckList.getCheckClasses().stream().map(Class::getSimpleName).toArray(String[]::new);
+      options.param(CheckBenchmark.CHECK_PARAM, checks);
+    }
+    new Runner(options.build()).run();
+  }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.check.Rule;
+import org.sonar.plugins.xml.Xml;
+import org.sonar.plugins.xml.checks.CheckList;
+import org.sonar.plugins.xml.checks.XPathCheck;
+import org.sonar.plugins.xml.checks.maven.DisallowedDependenciesCheck;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
+
+/**
+ * Throughput of a single check on all the files of a corpus: one operation scans every file of the corpus once.
+ * <p>
+ * The check is designated by its simple class name. {@link BenchmarkRunner} runs the benchmark for every check of
+ * {@link CheckList#getCheckClasses()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckBenchmark {
+
+  static final String CHECK_PARAM = "check";
+
+  /**
+   * Parameters given to the rules which do nothing, or fail, without them.
+   */
+  static final String XPATH_CHECK_EXPRESSION = "//*[@id]";
+  static final String DISALLOWED_DEPENDENCY_NAME = "*:junit";
+
+  @Param({"POM", "SPRING", "ANDROID", "WEB_CONFIG"})
+  public Corpus corpus;
+
+  @Param({"TabCharacterCheck"})
+  public String check;
+
+  private final SensorContext context = DiscardingContext.sensorContext();
+  private SonarXmlCheck instance;
+  private RuleKey ruleKey;
+  private List<XmlFile> xmlFiles;
+
+  @Setup
+  public void setup() throws ReflectiveOperationException, IOException {
+    Class<?> checkClass = checkClass(check);
+    instance = (SonarXmlCheck) checkClass.getConstructor().newInstance();
+    if (instance instanceof XPathCheck xPathCheck) {
+      xPathCheck.setExpression(XPATH_CHECK_EXPRESSION);
+    } else if (instance instanceof DisallowedDependenciesCheck disallowedDependenciesCheck) {
+      disallowedDependenciesCheck.dependencyName = DISALLOWED_DEPENDENCY_NAME;
+    }
+    ruleKey = RuleKey.of(Xml.REPOSITORY_KEY, checkClass.getAnnotation(Rule.class).key());
+    xmlFiles = new ArrayList<>();
+    for (InputFile inputFile : corpus.inputFiles()) {
+      xmlFiles.add(XmlFile.create(inputFile));
+    }
+  }
+
+  @Benchmark
+  public void scan() {
+    for (XmlFile xmlFile : xmlFiles) {
+      instance.scanFile(context, ruleKey, xmlFile);
+    }
+  }
+
+  private static Class<?> checkClass(String simpleName) {
+    return CheckList.getCheckClasses().stream()
+      .filter(checkClass -> checkClass.getSimpleName().equals(simpleName))
+      .findFirst()
+      .orElseThrow(() -> new IllegalArgumentException("Unknown check: " + simpleName));
+  }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.benchmarks;
+
+import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.plugins.xml.Xml;
+import org.sonar.plugins.xml.checks.CommentedOutCodeCheck;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+
+/**
+ * Throughput of {@link CommentedOutCodeCheck} on a generated file containing the given number of commented-out blocks,
+ * each of them being parsed by the check, alternating with comments which only start like code.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommentedOutCodeBenchmark {
+
+  @Param({"1000", "10000"})
+  public int blocks;
+
+  private final SensorContext context = DiscardingContext.sensorContext();
+  private final CommentedOutCodeCheck check = new CommentedOutCodeCheck();
+  private final RuleKey ruleKey = RuleKey.of(Xml.REPOSITORY_KEY, CommentedOutCodeCheck.RULE_KEY);
+  private XmlFile xmlFile;
+
+  @Setup
+  public void setup() throws IOException {
+    StringBuilder content = new StringBuilder("<?xml version=\"1.0\"?>\n<project>\n");
+    for (int i = 0; i < blocks; i++) {
+      content.append("  <!-- <dependency>\n         <artifactId>artifact-").append(i).append("</artifactId>\n       </dependency> -->\n")
+        .append("  <!-- <b>not</b> the code of the block ").append(i).append(" -->\n")
+        .append("  <module>module-").append(i).append("</module>\n");
+    }
+    content.append("</project>\n");
+    InputFile inputFile = TestInputFileBuilder.create("benchmarks", "commented-out-code.xml")
+      .initMetadata(content.toString())
+      .setContents(content.toString())
+      .setType(InputFile.Type.MAIN)
+      .setLanguage(Xml.KEY)
+      .setCharset(StandardCharsets.UTF_8)
+      .build();
+    xmlFile = XmlFile.create(inputFile);
+  }
+
+  @Benchmark
+  public void scan() {
+    check.scanFile(context, ruleKey, xmlFile);
+  }
+
+}
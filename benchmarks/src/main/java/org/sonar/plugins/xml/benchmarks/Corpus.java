@@ -0,0 +1,127 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.benchmarks;
+
+import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiPredicate;
+import java.util.stream.Stream;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.plugins.xml.Xml;
+import org.sonarsource.analyzer.commons.xml.ParseException;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+
+/**
+ * Representative sets of well-formed files, taken from the sources analyzed by the ruling tests.
+ * <p>
+ * The sources are looked up in the directory set by the {@value #SOURCES_PROPERTY} system property,
+ * {@value #DEFAULT_SOURCES} by default, which fits benchmarks run from the root of the repository.
+ */
+public enum Corpus {
+
+  POM((path, content) -> "pom.xml".equals(fileName(path))),
+  SPRING((path, content) -> content.contains("http://www.springframework.org/schema/beans")),
+  ANDROID((path, content) -> "androidmanifest.xml".equals(fileName(path))),
+  WEB_CONFIG((path, content) -> fileName(path).matches("web(\\..+)?\\.config"));
+
+  public static final String SOURCES_PROPERTY = "sonar.xml.benchmarks.sources";
+  public static final String DEFAULT_SOURCES = "its/sources/projects";
+
+  private final BiPredicate<Path, String> filter;
+
+  Corpus(BiPredicate<Path, String> filter) {
+    this.filter = filter;
+  }
+
+  /**
+   * @return the files of this corpus, with their content and metadata loaded
+   */
+  public List<InputFile> inputFiles() {
+    Path sources = Path.of(System.getProperty(SOURCES_PROPERTY, DEFAULT_SOURCES)).toAbsolutePath().normalize();
+    if (!Files.isDirectory(sources)) {
+      throw new IllegalStateException("Sources of the benchmarks not found in " + sources + ", set them with -D" + SOURCES_PROPERTY);
+    }
+    List<InputFile> inputFiles = new ArrayList<>();
+    try (Stream<Path> paths = Files.walk(sources)) {
+      for (Path path : paths.filter(Files::isRegularFile).sorted().toList()) {
+        String content = readUtf8(path);
+        if (content != null && filter.test(path, content)) {
+          InputFile inputFile = inputFile(sources, path, content);
+          if (isWellFormed(inputFile)) {
+            inputFiles.add(inputFile);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (inputFiles.isEmpty()) {
+      throw new IllegalStateException("No file of the " + this + " corpus in " + sources);
+    }
+    return inputFiles;
+  }
+
+  /**
+   * @return the content of the file, null if it is not a UTF-8 file
+   */
+  @CheckForNull
+  private static String readUtf8(Path path) {
+    try {
+      return Files.readString(path, StandardCharsets.UTF_8);
+    } catch (MalformedInputException e) {
+      return null;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static InputFile inputFile(Path sources, Path path, String content) {
+    return TestInputFileBuilder.create("benchmarks", sources.relativize(path).toString())
+      .setModuleBaseDir(sources)
+      .initMetadata(content)
+      .setContents(content)
+      .setType(InputFile.Type.MAIN)
+      .setLanguage(Xml.KEY)
+      .setCharset(StandardCharsets.UTF_8)
+      .build();
+  }
+
+  private static boolean isWellFormed(InputFile inputFile) {
+    try {
+      XmlFile.create(inputFile);
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (ParseException e) {
+      return false;
+    }
+  }
+
+  private static String fileName(Path path) {
+    return path.getFileName().toString().toLowerCase(Locale.ROOT);
+  }
+
+}
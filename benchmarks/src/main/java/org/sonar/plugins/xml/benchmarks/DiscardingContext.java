@@ -0,0 +1,81 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.benchmarks;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Optional;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+
+/**
+ * Sensor context discarding everything saved by the analyzer, so that the benchmarks only measure the analyzer
+ * and do not accumulate results from an invocation to the other.
+ * <p>
+ * Every method returning an interface returns a discarding instance of it, so that fluent calls such as
+ * {@code context.newIssue().forRule(ruleKey).at(location).save()} are supported. Configuration values are all absent.
+ */
+public final class DiscardingContext {
+
+  private static final ClassValue<Object> SINKS = new ClassValue<>() {
+    @Override
+    protected Object computeValue(Class<?> type) {
+      return Proxy.newProxyInstance(DiscardingContext.class.getClassLoader(), new Class<?>[] {type}, DiscardingContext::discard);
+    }
+  };
+
+  private DiscardingContext() {
+    // utility class, forbidden constructor
+  }
+
+  public static SensorContext sensorContext() {
+    return sink(SensorContext.class);
+  }
+
+  public static FileLinesContextFactory fileLinesContextFactory() {
+    return sink(FileLinesContextFactory.class);
+  }
+
+  private static <T> T sink(Class<T> type) {
+    return type.cast(SINKS.get(type));
+  }
+
+  private static Object discard(Object proxy, Method method, Object[] args) {
+    Class<?> returnType = method.getReturnType();
+    if ("equals".equals(method.getName()) && args != null && args.length == 1) {
+      return proxy == args[0];
+    } else if ("hashCode".equals(method.getName()) && args == null) {
+      return System.identityHashCode(proxy);
+    } else if ("toString".equals(method.getName()) && args == null) {
+      return "Discarding " + proxy.getClass().getInterfaces()[0].getSimpleName();
+    } else if (returnType.isInterface()) {
+      return SINKS.get(returnType);
+    } else if (returnType == Optional.class) {
+      return Optional.empty();
+    } else if (returnType == boolean.class) {
+      return false;
+    } else if (returnType == int.class) {
+      return 0;
+    } else if (returnType == long.class) {
+      return 0L;
+    } else if (returnType == double.class) {
+      return 0D;
+    }
+    return null;
+  }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.benchmarks;
+
+import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.plugins.xml.Xml;
+import org.sonar.plugins.xml.checks.IndentationCheck;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+
+/**
+ * Throughput of {@link IndentationCheck} on a generated document made of branches nesting elements up to the given depth,
+ * one tag per line. The depth of the documents is limited to 1000 by the parser. The tags are not indented, and neither is
+ * the expected indentation, so that all the elements are checked while the size of the document stays linear in its depth.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndentationBenchmark {
+
+  private static final int BRANCHES = 10;
+
+  @Param({"100", "1000"})
+  public int depth;
+
+  private final SensorContext context = DiscardingContext.sensorContext();
+  private final IndentationCheck check = new IndentationCheck();
+  private final RuleKey ruleKey = RuleKey.of(Xml.REPOSITORY_KEY, "S1120");
+  private XmlFile xmlFile;
+
+  @Setup
+  public void setup() throws IOException {
+    check.setIndentSize(0);
+    StringBuilder content = new StringBuilder("<?xml version=\"1.0\"?>\n<branches>\n");
+    for (int branch = 0; branch < BRANCHES; branch++) {
+      // the root and the leaf are two of the levels
+      for (int level = 2; level < depth; level++) {
+        content.append("<element level=\"").append(level).append("\">\n");
+      }
+      content.append("<leaf/>\n");
+      for (int level = 2; level < depth; level++) {
+        content.append("</element>\n");
+      }
+    }
+    content.append("</branches>\n");
+    InputFile inputFile = TestInputFileBuilder.create("benchmarks", "deep.xml")
+      .initMetadata(content.toString())
+      .setContents(content.toString())
+      .setType(InputFile.Type.MAIN)
+      .setLanguage(Xml.KEY)
+      .setCharset(StandardCharsets.UTF_8)
+      .build();
+    xmlFile = XmlFile.create(inputFile);
+  }
+
+  @Benchmark
+  public void scan() {
+    check.scanFile(context, ruleKey, xmlFile);
+  }
+
+}
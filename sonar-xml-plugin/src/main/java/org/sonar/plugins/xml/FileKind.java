@@ -0,0 +1,75 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml;
+
+import java.util.Arrays;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.plugins.xml.checks.AppliesTo;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.w3c.dom.Element;
+
+/**
+ * Characteristics of a file deciding which checks are applicable to it, computed once per file.
+ */
+public final class FileKind {
+
+  private final String fileName;
+  @Nullable
+  private final String rootElement;
+  @Nullable
+  private final String namespace;
+
+  private FileKind(String fileName, @Nullable String rootElement, @Nullable String namespace) {
+    this.fileName = fileName;
+    this.rootElement = rootElement;
+    this.namespace = namespace;
+  }
+
+  public static FileKind of(XmlFile xmlFile) {
+    Element root = xmlFile.getDocument().getDocumentElement();
+    if (root == null) {
+      return new FileKind(xmlFile.getInputFile().filename(), null, null);
+    }
+    return new FileKind(xmlFile.getInputFile().filename(), root.getLocalName(), root.getNamespaceURI());
+  }
+
+  /**
+   * @param appliesTo applicability declared by a check, null when the check applies to all the files
+   */
+  public boolean matches(@Nullable AppliesTo appliesTo) {
+    if (appliesTo == null) {
+      return true;
+    }
+    return matches(appliesTo.fileNames(), fileName, true)
+      && matches(appliesTo.rootElements(), rootElement, false)
+      && matches(appliesTo.namespaces(), namespace, false);
+  }
+
+  private static boolean matches(String[] expectedValues, @Nullable String value, boolean ignoreCase) {
+    if (expectedValues.length == 0) {
+      return true;
+    }
+    return value != null && Arrays.stream(expectedValues).anyMatch(ignoreCase ? value::equalsIgnoreCase : value::equals);
+  }
+
+  @CheckForNull
+  public static AppliesTo applicabilityOf(Object check) {
+    return check.getClass().getAnnotation(AppliesTo.class);
+  }
+
+}
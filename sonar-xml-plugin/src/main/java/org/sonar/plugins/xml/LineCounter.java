@@ -17,6 +17,7 @@
 package org.sonar.plugins.xml;
 
 import java.io.Serializable;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Set;
 import org.slf4j.Logger;
@@ -27,19 +28,35 @@ import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.FileLinesContext;
 import org.sonar.api.measures.FileLinesContextFactory;
 import org.sonar.api.measures.Metric;
+import org.sonar.plugins.xml.streaming.StartTag;
+import org.sonar.plugins.xml.streaming.TokenVisitor;
+import org.sonar.plugins.xml.tree.LineIndex;
+import org.sonar.plugins.xml.visitors.DomTraversal;
+import org.sonar.plugins.xml.visitors.DomVisitor;
+import org.sonarsource.analyzer.commons.xml.PrologElement;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
 import org.sonarsource.analyzer.commons.xml.XmlTextRange;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
 import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
+import org.w3c.dom.Text;
 
-import static org.sonar.plugins.xml.Utils.splitLines;
-
-public final class LineCounter {
+public final class LineCounter implements DomVisitor {
 
   private static final Logger LOG = LoggerFactory.getLogger(LineCounter.class);
 
-  private LineCounter() {
+  private final SensorContext context;
+  private final FileLinesContextFactory fileLinesContextFactory;
+  private final XmlFile xmlFile;
+  private final Set<Integer> linesOfCode = new HashSet<>();
+  private final Set<Integer> commentLines = new HashSet<>();
+
+  private LineCounter(SensorContext context, FileLinesContextFactory fileLinesContextFactory, XmlFile xmlFile) {
+    this.context = context;
+    this.fileLinesContextFactory = fileLinesContextFactory;
+    this.xmlFile = xmlFile;
   }
 
   private static <T extends Serializable> void saveMeasure(SensorContext context, InputFile inputFile, Metric<T> metric, T value) {
@@ -50,62 +67,80 @@ public final class LineCounter {
       .save();
   }
 
+  /**
+   * Computes the metrics of the file, within the DOM traversal shared by the sensor if there is one.
+   */
   public static void analyse(SensorContext context, FileLinesContextFactory fileLinesContextFactory, XmlFile xmlFile) {
     LOG.debug("Count lines in {}", xmlFile.getInputFile().uri());
+    DomTraversal.visit(xmlFile, new LineCounter(context, fileLinesContextFactory, xmlFile));
+  }
+
+  /**
+   * Creates the visitor computing the metrics of a file analyzed in streaming mode.
+   */
+  public static TokenVisitor tokenVisitor(SensorContext context, FileLinesContextFactory fileLinesContextFactory, InputFile inputFile) {
+    LOG.debug("Count lines in {}", inputFile.uri());
+    return new StreamedLineCounter(context, fileLinesContextFactory, inputFile);
+  }
+
+  @Override
+  public Set<NodeKind> nodeKinds() {
+    return EnumSet.of(NodeKind.ELEMENT, NodeKind.COMMENT, NodeKind.TEXT, NodeKind.CDATA, NodeKind.DOCUMENT_TYPE);
+  }
+
+  @Override
+  public void enterElement(Element element) {
+    // this will count attribute lines as well tag itself
+    addLinesRange(linesOfCode, XmlFile.startLocation(element));
+    addLinesRange(linesOfCode, XmlFile.endLocation(element));
+  }
+
+  @Override
+  public void visitComment(Comment comment) {
+    addNotEmptyLines(commentLines, comment.getTextContent(), XmlFile.nodeLocation(comment));
+  }
 
-    Set<Integer> linesOfCode = new HashSet<>();
-    Set<Integer> commentLines = new HashSet<>();
+  @Override
+  public void visitText(Text text) {
+    addNotEmptyLines(linesOfCode, text.getTextContent(), XmlFile.nodeLocation(text));
+  }
 
-    Document document = xmlFile.getDocument();
-    visitNode(document, linesOfCode, commentLines);
+  @Override
+  public void visitCdata(CDATASection cdata) {
+    addNotEmptyLines(linesOfCode, cdata.getTextContent(), XmlFile.nodeLocation(cdata));
+  }
+
+  @Override
+  public void visitDocumentType(DocumentType documentType) {
+    addLinesRange(linesOfCode, XmlFile.nodeLocation(documentType));
+  }
 
-    xmlFile.getPrologElement().ifPresent(prologElement ->
-      addLinesRange(
-        linesOfCode,
-        prologElement.getPrologStartLocation().getStartLine(),
-        prologElement.getPrologEndLocation().getEndLine()));
+  @Override
+  public void endDocument(Document document) {
+    xmlFile.getPrologElement().ifPresent(prologElement -> addPrologLines(linesOfCode, prologElement));
+    saveMeasures(context, fileLinesContextFactory, xmlFile.getInputFile(), linesOfCode, commentLines);
+  }
 
-    FileLinesContext fileLinesContext = fileLinesContextFactory.createFor(xmlFile.getInputFile());
+  private static void saveMeasures(SensorContext context, FileLinesContextFactory fileLinesContextFactory, InputFile inputFile,
+    Set<Integer> linesOfCode, Set<Integer> commentLines) {
+    FileLinesContext fileLinesContext = fileLinesContextFactory.createFor(inputFile);
     linesOfCode.forEach(lineOfCode -> fileLinesContext.setIntValue(CoreMetrics.NCLOC_DATA_KEY, lineOfCode, 1));
     fileLinesContext.save();
 
-    saveMeasure(context, xmlFile.getInputFile(), CoreMetrics.COMMENT_LINES, commentLines.size());
-    saveMeasure(context, xmlFile.getInputFile(), CoreMetrics.NCLOC, linesOfCode.size());
-
-  }
-
-  private static void visitNode(Node node, Set<Integer> linesOfCode, Set<Integer> commentLines) {
-    XmlTextRange range = XmlFile.nodeLocation(node);
-
-    switch (node.getNodeType()) {
-      case Node.ELEMENT_NODE:
-        // this will count attribute lines as well tag itself
-        addLinesRange(linesOfCode, XmlFile.startLocation((Element) node));
-        addLinesRange(linesOfCode, XmlFile.endLocation((Element) node));
-        break;
-      case Node.COMMENT_NODE:
-        addNotEmptyLines(commentLines, node.getTextContent(), range);
-        break;
-      case Node.TEXT_NODE, Node.CDATA_SECTION_NODE:
-        addNotEmptyLines(linesOfCode, node.getTextContent(), range);
-        break;
-      case Node.DOCUMENT_TYPE_NODE:
-        addLinesRange(linesOfCode, range);
-        break;
-      default:
-        break;
-    }
+    saveMeasure(context, inputFile, CoreMetrics.COMMENT_LINES, commentLines.size());
+    saveMeasure(context, inputFile, CoreMetrics.NCLOC, linesOfCode.size());
+  }
 
-    XmlFile.children(node).forEach(child -> visitNode(child, linesOfCode, commentLines));
+  private static void addPrologLines(Set<Integer> set, PrologElement prologElement) {
+    addLinesRange(set, prologElement.getPrologStartLocation().getStartLine(), prologElement.getPrologEndLocation().getEndLine());
   }
 
   private static void addNotEmptyLines(Set<Integer> set, String text, XmlTextRange fullTextRange) {
-    int lineNumber = fullTextRange.getStartLine();
-    for (String line : splitLines(text)) {
-      if (!line.trim().isEmpty()) {
-        set.add(lineNumber);
+    LineIndex lines = LineIndex.of(text);
+    for (int line = 1; line <= lines.lineCount(); line++) {
+      if (!lines.isBlank(line)) {
+        set.add(fullTextRange.getStartLine() + line - 1);
       }
-      lineNumber++;
     }
   }
 
@@ -119,4 +154,70 @@ public final class LineCounter {
     addLinesRange(set, range.getStartLine(), range.getEndLine());
   }
 
+  /**
+   * Same metrics as computed on the tree, from the tokens of the file.
+   */
+  private static final class StreamedLineCounter implements TokenVisitor {
+
+    private final SensorContext context;
+    private final FileLinesContextFactory fileLinesContextFactory;
+    private final InputFile inputFile;
+    private final Set<Integer> linesOfCode = new HashSet<>();
+    private final Set<Integer> commentLines = new HashSet<>();
+
+    private StreamedLineCounter(SensorContext context, FileLinesContextFactory fileLinesContextFactory, InputFile inputFile) {
+      this.context = context;
+      this.fileLinesContextFactory = fileLinesContextFactory;
+      this.inputFile = inputFile;
+    }
+
+    @Override
+    public void visitProlog(PrologElement prolog) {
+      addPrologLines(linesOfCode, prolog);
+    }
+
+    @Override
+    public void visitStartTag(StartTag startTag) {
+      addLinesRange(linesOfCode, startTag.location());
+    }
+
+    @Override
+    public void visitEndTag(XmlTextRange location) {
+      addLinesRange(linesOfCode, location);
+    }
+
+    @Override
+    public void visitCharacters(XmlTextRange location, CharSequence characters) {
+      // segments never span several lines
+      if (!isBlank(characters)) {
+        linesOfCode.add(location.getStartLine());
+      }
+    }
+
+    // same definition of blank as String.trim()
+    private static boolean isBlank(CharSequence characters) {
+      for (int i = 0; i < characters.length(); i++) {
+        if (characters.charAt(i) > ' ') {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public void visitComment(XmlTextRange location, String content) {
+      addNotEmptyLines(commentLines, content, location);
+    }
+
+    @Override
+    public void visitDocumentType(XmlTextRange location) {
+      addLinesRange(linesOfCode, location);
+    }
+
+    @Override
+    public void endDocument() {
+      saveMeasures(context, fileLinesContextFactory, inputFile, linesOfCode, commentLines);
+    }
+  }
+
 }
@@ -0,0 +1,218 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml;
+
+import java.io.IOException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.plugins.xml.telemetry.ThreadAllocation;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+
+/**
+ * Reads and parses files on a background thread, ahead of the thread executing the rules.
+ * <p>
+ * At most {@code capacity} parsed files are kept waiting, and their cumulated content is capped to
+ * {@code maxBufferedChars} characters. A single file larger than this cap is still handed over, alone.
+ * Files larger than {@code streamingThreshold} bytes are not parsed, to be analyzed in streaming mode.
+ */
+public final class ParsePipeline implements AutoCloseable {
+
+  private final Iterator<InputFile> inputFiles;
+  private final int capacity;
+  private final long maxBufferedChars;
+  private final long streamingThreshold;
+  private final Deque<ParsedFile> queue = new ArrayDeque<>();
+  private final Thread producer;
+
+  private long bufferedChars = 0;
+  private boolean producerDone = false;
+  private boolean closed = false;
+
+  public ParsePipeline(List<InputFile> inputFiles, int capacity, long maxBufferedChars, long streamingThreshold) {
+    this.inputFiles = inputFiles.iterator();
+    this.capacity = capacity;
+    this.maxBufferedChars = maxBufferedChars;
+    this.streamingThreshold = streamingThreshold;
+    this.producer = new Thread(this::produce, "xml-analysis-prefetch");
+    this.producer.setDaemon(true);
+  }
+
+  public ParsePipeline start() {
+    producer.start();
+    return this;
+  }
+
+  /**
+   * @return the next parsed file, in the order of the input files, or null when all the files have been consumed
+   */
+  @CheckForNull
+  public synchronized ParsedFile next() throws InterruptedException {
+    while (queue.isEmpty() && !producerDone && !closed) {
+      wait();
+    }
+    ParsedFile parsedFile = queue.poll();
+    if (parsedFile != null) {
+      bufferedChars -= parsedFile.size();
+      notifyAll();
+    }
+    return parsedFile;
+  }
+
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+      queue.clear();
+      notifyAll();
+    }
+    producer.interrupt();
+  }
+
+  private void produce() {
+    try {
+      while (inputFiles.hasNext() && !isClosed()) {
+        put(ParsedFile.parse(inputFiles.next(), streamingThreshold));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      synchronized (this) {
+        producerDone = true;
+        notifyAll();
+      }
+    }
+  }
+
+  private synchronized void put(ParsedFile parsedFile) throws InterruptedException {
+    while (!closed && !queue.isEmpty() && (queue.size() >= capacity || bufferedChars + parsedFile.size() > maxBufferedChars)) {
+      wait();
+    }
+    if (!closed) {
+      queue.add(parsedFile);
+      bufferedChars += parsedFile.size();
+      notifyAll();
+    }
+  }
+
+  private synchronized boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Result of the parsing of an input file: either the parsed file, or the exception raised while parsing it,
+   * unless the file is too large to be parsed and has to be analyzed in streaming mode.
+   */
+  public static final class ParsedFile {
+
+    private final InputFile inputFile;
+    @Nullable
+    private final XmlFile xmlFile;
+    @Nullable
+    private final Exception failure;
+    private final long parsingNanos;
+    private final long parsingAllocatedBytes;
+    private final boolean streamed;
+
+    private ParsedFile(InputFile inputFile, @Nullable XmlFile xmlFile, @Nullable Exception failure, long parsingNanos, long parsingAllocatedBytes,
+      boolean streamed) {
+      this.inputFile = inputFile;
+      this.xmlFile = xmlFile;
+      this.failure = failure;
+      this.parsingNanos = parsingNanos;
+      this.parsingAllocatedBytes = parsingAllocatedBytes;
+      this.streamed = streamed;
+    }
+
+    /**
+     * Parses the file, unless it is larger than the given threshold, in bytes. The size of the file is not looked up when
+     * the threshold is {@link Long#MAX_VALUE}, streaming being disabled.
+     */
+    public static ParsedFile parse(InputFile inputFile, long streamingThreshold) {
+      if (streamingThreshold != Long.MAX_VALUE && fileSize(inputFile) > streamingThreshold) {
+        return new ParsedFile(inputFile, null, null, 0L, 0L, true);
+      }
+      long startNanos = System.nanoTime();
+      long startAllocatedBytes = ThreadAllocation.allocatedBytes();
+      XmlFile xmlFile = null;
+      Exception failure = null;
+      try {
+        xmlFile = XmlFile.create(inputFile);
+      } catch (Exception e) {
+        failure = e;
+      }
+      long parsingNanos = System.nanoTime() - startNanos;
+      return new ParsedFile(inputFile, xmlFile, failure, parsingNanos, ThreadAllocation.allocatedBytes() - startAllocatedBytes, false);
+    }
+
+    /**
+     * @return the size of the file on disk, or -1 if it can not be determined, as for a file which is not on disk
+     */
+    private static long fileSize(InputFile inputFile) {
+      try {
+        return Files.size(Path.of(inputFile.uri()));
+      } catch (IOException | IllegalArgumentException | FileSystemNotFoundException e) {
+        return -1L;
+      }
+    }
+
+    public InputFile inputFile() {
+      return inputFile;
+    }
+
+    /**
+     * @return true if the file has not been parsed, being too large, and has to be analyzed in streaming mode
+     */
+    public boolean isStreamed() {
+      return streamed;
+    }
+
+    /**
+     * @return the parsed file, null if {@link #isStreamed()}
+     * @throws Exception the exception raised while parsing the file
+     */
+    public XmlFile xmlFile() throws Exception {
+      if (failure != null) {
+        throw failure;
+      }
+      return xmlFile;
+    }
+
+    public long parsingNanos() {
+      return parsingNanos;
+    }
+
+    /**
+     * @return memory allocated by the thread which parsed the file, 0 when not measured
+     */
+    public long parsingAllocatedBytes() {
+      return parsingAllocatedBytes;
+    }
+
+    private long size() {
+      return xmlFile == null ? 0 : xmlFile.getContents().length();
+    }
+  }
+
+}
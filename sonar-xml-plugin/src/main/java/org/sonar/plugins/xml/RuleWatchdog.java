@@ -0,0 +1,233 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+
+/**
+ * Runs the rules of a file on a dedicated thread, abandoning the file when they exceed their time budget.
+ * <p>
+ * Rules such as user-defined XPath expressions can not be interrupted: when the budget is exceeded, the thread is left
+ * running and replaced for the next files. The caller gives up on the whole file, so that its tree is never read by two
+ * threads at once, and the instances of the rules must not be used anymore.
+ * <p>
+ * What the rules save through the context they are given is kept aside, and only saved, on the calling thread, once they
+ * complete: nothing is saved on a file abandoned because of the budget, be it before or after the budget is exceeded.
+ */
+public final class RuleWatchdog implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RuleWatchdog.class);
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  private final long budgetMillis;
+  private ExecutorService executor;
+
+  /**
+   * @param budgetMillis time allowed to the rules on a file, 0 or less to run them on the calling thread without any limit
+   */
+  public RuleWatchdog(long budgetMillis) {
+    this.budgetMillis = budgetMillis;
+  }
+
+  public boolean isEnabled() {
+    return budgetMillis > 0;
+  }
+
+  public long budgetMillis() {
+    return budgetMillis;
+  }
+
+  /**
+   * Runs the given task, waiting for it at most the time budget when enabled. The results it saved are saved once it
+   * completes, or fails, within the budget.
+   *
+   * @return false if the task exceeded the time budget and has been abandoned
+   */
+  public boolean run(SensorContext context, FileLinesContextFactory fileLinesContextFactory,
+    BiConsumer<SensorContext, FileLinesContextFactory> task) throws InterruptedException {
+    if (!isEnabled()) {
+      task.accept(context, fileLinesContextFactory);
+      return true;
+    }
+    if (executor == null) {
+      executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "xml-rule-watchdog-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    PendingSaves pendingSaves = new PendingSaves();
+    SensorContext guardedContext = guard(context, SensorContext.class, pendingSaves);
+    FileLinesContextFactory guardedFactory = guard(fileLinesContextFactory, FileLinesContextFactory.class, pendingSaves);
+    Future<?> future = executor.submit(() -> task.accept(guardedContext, guardedFactory));
+    try {
+      future.get(budgetMillis, TimeUnit.MILLISECONDS);
+      pendingSaves.flush();
+      return true;
+    } catch (TimeoutException e) {
+      pendingSaves.abandon();
+      future.cancel(true);
+      // the thread may never terminate: the next files are analyzed on a new one
+      executor.shutdownNow();
+      executor = null;
+      return false;
+    } catch (InterruptedException e) {
+      pendingSaves.abandon();
+      future.cancel(true);
+      throw e;
+    } catch (ExecutionException e) {
+      // as when running on the calling thread, what has been saved before the failure is kept
+      pendingSaves.flush();
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      } else if (e.getCause() instanceof Error error) {
+        throw error;
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  private static <T> T guard(Object target, Class<T> type, PendingSaves pendingSaves) {
+    GuardingHandler handler = new GuardingHandler(target, pendingSaves);
+    T proxy = type.cast(Proxy.newProxyInstance(RuleWatchdog.class.getClassLoader(), new Class<?>[] {type}, handler));
+    handler.proxy = proxy;
+    return proxy;
+  }
+
+  private static boolean hasSaveMethod(Class<?> type) {
+    try {
+      type.getMethod("save");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * {@code save()} calls of the task, made on its thread and run on the calling thread once the task completes.
+   */
+  private static final class PendingSaves {
+
+    private final List<Runnable> saves = new ArrayList<>();
+    private boolean abandoned = false;
+
+    private synchronized void add(Runnable save) {
+      if (!abandoned) {
+        saves.add(save);
+      }
+    }
+
+    private synchronized void abandon() {
+      abandoned = true;
+      saves.clear();
+    }
+
+    private void flush() {
+      List<Runnable> toSave;
+      synchronized (this) {
+        toSave = new ArrayList<>(saves);
+        saves.clear();
+      }
+      for (Runnable save : toSave) {
+        try {
+          save.run();
+        } catch (RuntimeException e) {
+          LOG.warn("Unable to save a result of the rules, which is ignored", e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Defers the {@code save()} calls of the builders returned by the context until the task completes.
+   */
+  private static final class GuardingHandler implements InvocationHandler {
+
+    private final Object target;
+    private final PendingSaves pendingSaves;
+    private Object proxy;
+
+    private GuardingHandler(Object target, PendingSaves pendingSaves) {
+      this.target = target;
+      this.pendingSaves = pendingSaves;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if ("save".equals(method.getName()) && method.getParameterCount() == 0) {
+        pendingSaves.add(() -> save(method));
+        return null;
+      }
+      Object result;
+      try {
+        result = method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+      if (result == target) {
+        // fluent builder methods return the builder itself: keep the caller on the guarded view
+        return this.proxy;
+      }
+      Class<?> returnType = method.getReturnType();
+      if (result != null && returnType.isInterface() && hasSaveMethod(returnType)) {
+        return guard(result, returnType, pendingSaves);
+      }
+      return result;
+    }
+
+    private void save(Method method) {
+      try {
+        method.invoke(target);
+      } catch (InvocationTargetException e) {
+        if (e.getCause() instanceof RuntimeException runtimeException) {
+          throw runtimeException;
+        } else if (e.getCause() instanceof Error error) {
+          throw error;
+        }
+        throw new IllegalStateException(e.getCause());
+      } catch (IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+
+/**
+ * Wraps a {@link SensorContext} so that it can be shared by several analysis workers.
+ * <p>
+ * Builders returned by the context (issues, measures, highlighting, analysis errors...) stay confined to the
+ * worker which created them, only their {@code save()} calls are serialized on a common lock.
+ */
+public final class SynchronizedSensorContext {
+
+  private SynchronizedSensorContext() {
+  }
+
+  public static SensorContext wrap(SensorContext context, Object lock) {
+    return wrap(context, SensorContext.class, lock);
+  }
+
+  public static FileLinesContextFactory wrap(FileLinesContextFactory fileLinesContextFactory, Object lock) {
+    return wrap(fileLinesContextFactory, FileLinesContextFactory.class, lock);
+  }
+
+  private static <T> T wrap(Object target, Class<T> type, Object lock) {
+    SynchronizingHandler handler = new SynchronizingHandler(target, lock);
+    T proxy = type.cast(Proxy.newProxyInstance(SynchronizedSensorContext.class.getClassLoader(), new Class<?>[] {type}, handler));
+    handler.proxy = proxy;
+    return proxy;
+  }
+
+  private static boolean hasSaveMethod(Class<?> type) {
+    try {
+      type.getMethod("save");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  private static final class SynchronizingHandler implements InvocationHandler {
+
+    private final Object target;
+    private final Object lock;
+    private Object proxy;
+
+    private SynchronizingHandler(Object target, Object lock) {
+      this.target = target;
+      this.lock = lock;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      Object result;
+      if ("save".equals(method.getName())) {
+        synchronized (lock) {
+          result = invokeTarget(method, args);
+        }
+      } else {
+        result = invokeTarget(method, args);
+      }
+      if (result == target) {
+        // fluent builder methods return the builder itself: keep the caller on the synchronized view
+        return this.proxy;
+      }
+      Class<?> returnType = method.getReturnType();
+      if (result != null && returnType.isInterface() && hasSaveMethod(returnType)) {
+        return wrap(result, returnType, lock);
+      }
+      return result;
+    }
+
+    private Object invokeTarget(Method method, Object[] args) throws Throwable {
+      try {
+        return method.invoke(target, args);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+  }
+
+}
@@ -16,115 +16,132 @@
  */
 package org.sonar.plugins.xml;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.EnumSet;
+import java.util.Set;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.highlighting.NewHighlighting;
 import org.sonar.api.batch.sensor.highlighting.TypeOfText;
+import org.sonar.plugins.xml.streaming.StartTag;
+import org.sonar.plugins.xml.streaming.TokenVisitor;
+import org.sonar.plugins.xml.tree.ElementLocations;
+import org.sonar.plugins.xml.tree.Positions;
+import org.sonar.plugins.xml.visitors.DomTraversal;
+import org.sonar.plugins.xml.visitors.DomVisitor;
 import org.sonarsource.analyzer.commons.xml.PrologElement;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
 import org.sonarsource.analyzer.commons.xml.XmlTextRange;
-import org.w3c.dom.Attr;
 import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
 import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import static org.sonar.plugins.xml.Utils.isSelfClosing;
 
-public class XmlHighlighting {
+public class XmlHighlighting implements DomVisitor {
 
   private final XmlFile xmlFile;
-  private NewHighlighting highlighting;
+  private final NewHighlighting highlighting;
+  private ElementLocations locations;
 
-  private XmlHighlighting(XmlFile xmlFile) {
+  private XmlHighlighting(SensorContext context, XmlFile xmlFile) {
     this.xmlFile = xmlFile;
+    this.highlighting = context.newHighlighting().onFile(xmlFile.getInputFile());
   }
 
+  /**
+   * Highlights the file, within the DOM traversal shared by the sensor if there is one.
+   */
   public static void highlight(SensorContext context, XmlFile xmlFile) {
-    new XmlHighlighting(xmlFile).highlight(context);
+    DomTraversal.visit(xmlFile, new XmlHighlighting(context, xmlFile));
   }
 
-  private void highlight(SensorContext context) {
-    highlighting = context.newHighlighting().onFile(xmlFile.getInputFile());
-    xmlFile.getPrologElement().ifPresent(this::highlightProlog);
-    children(xmlFile.getDocument()).forEach(this::highlightNode);
+  /**
+   * Creates the visitor highlighting a file analyzed in streaming mode.
+   */
+  public static TokenVisitor tokenVisitor(SensorContext context, InputFile inputFile) {
+    return new StreamedHighlighting(context.newHighlighting().onFile(inputFile));
+  }
+
+  @Override
+  public Set<NodeKind> nodeKinds() {
+    return EnumSet.of(NodeKind.ELEMENT, NodeKind.CDATA, NodeKind.COMMENT, NodeKind.DOCUMENT_TYPE);
+  }
+
+  @Override
+  public void startDocument(Document document) {
+    locations = ElementLocations.of(document);
+    xmlFile.getPrologElement().ifPresent(prologElement -> highlightProlog(highlighting, prologElement));
+  }
+
+  @Override
+  public void endDocument(Document document) {
     highlighting.save();
   }
 
-  private void highlightNode(Node node) {
-    switch (node.getNodeType()) {
-      case Node.ELEMENT_NODE:
-        highlightElementNode(node);
-        break;
-      case Node.CDATA_SECTION_NODE:
-        addHighlighting(XmlFile.startLocation((CDATASection) node), TypeOfText.KEYWORD);
-        addHighlighting(XmlFile.endLocation((CDATASection) node), TypeOfText.KEYWORD);
-        break;
-      case Node.COMMENT_NODE, Node.DOCUMENT_TYPE_NODE:
-        addHighlighting(XmlFile.nodeLocation(node), TypeOfText.STRUCTURED_COMMENT);
-        break;
-      default:
-        break;
-    }
+  @Override
+  public void visitCdata(CDATASection cdata) {
+    addHighlighting(XmlFile.startLocation(cdata), TypeOfText.KEYWORD);
+    addHighlighting(XmlFile.endLocation(cdata), TypeOfText.KEYWORD);
+  }
+
+  @Override
+  public void visitComment(Comment comment) {
+    addHighlighting(XmlFile.nodeLocation(comment), TypeOfText.STRUCTURED_COMMENT);
+  }
+
+  @Override
+  public void visitDocumentType(DocumentType documentType) {
+    addHighlighting(XmlFile.nodeLocation(documentType), TypeOfText.STRUCTURED_COMMENT);
   }
 
-  private void highlightElementNode(Node node) {
-    XmlTextRange nameLocation = XmlFile.nameLocation((Element) node);
-    XmlTextRange startLocation = XmlFile.startLocation((Element) node);
-    XmlTextRange endLocation = XmlFile.endLocation((Element) node);
+  @Override
+  public void enterElement(Element element) {
+    int id = locations.id(element);
+    long nameEnd = locations.nameEnd(id);
 
     // <foo
-    addHighlighting(new XmlTextRange(startLocation, nameLocation), TypeOfText.KEYWORD);
-
-    NamedNodeMap attributes = node.getAttributes();
-    XmlTextRange lastLocation = nameLocation;
-    for (int i = 0; i < attributes.getLength(); i++) {
-      Attr attribute = (Attr) attributes.item(i);
-      addHighlighting(XmlFile.attributeNameLocation(attribute), TypeOfText.CONSTANT);
-      XmlTextRange valueLocation = XmlFile.attributeValueLocation(attribute);
-      addHighlighting(valueLocation, TypeOfText.STRING);
-      lastLocation = valueLocation;
+    addHighlighting(locations.start(id), nameEnd, TypeOfText.KEYWORD);
+
+    long lastEnd = nameEnd;
+    for (int attribute = locations.firstAttribute(id); attribute < locations.attributesEnd(id); attribute++) {
+      addHighlighting(locations.attributeNameStart(attribute), locations.attributeNameEnd(attribute), TypeOfText.CONSTANT);
+      lastEnd = locations.attributeValueEnd(attribute);
+      addHighlighting(locations.attributeValueStart(attribute), lastEnd, TypeOfText.STRING);
     }
 
     // self-closing element <foo ... />
-    if (isSelfClosing((Element) node)) {
-      XmlTextRange textRange = new XmlTextRange(lastLocation.getEndLine(), lastLocation.getEndColumn(), endLocation.getEndLine(), endLocation.getEndColumn());
+    if (locations.isSelfClosing(id)) {
       // '/>'
-      addHighlighting(textRange, TypeOfText.KEYWORD);
+      addHighlighting(lastEnd, locations.end(id), TypeOfText.KEYWORD);
     } else {
       // simple element <foo> </foo>
-      XmlTextRange textRange = new XmlTextRange(lastLocation.getEndLine(), lastLocation.getEndColumn(), startLocation.getEndLine(), startLocation.getEndColumn());
       // '>'
-      addHighlighting(textRange, TypeOfText.KEYWORD);
-      children(node).forEach(this::highlightNode);
+      addHighlighting(lastEnd, locations.startTagEnd(id), TypeOfText.KEYWORD);
       // '</foo>'
-      addHighlighting(endLocation, TypeOfText.KEYWORD);
-    }
-  }
-
-  private static List<Node> children(Node node) {
-    NodeList childNodes = node.getChildNodes();
-    List<Node> result = new ArrayList<>();
-    for (int i = 0; i < childNodes.getLength(); i++) {
-      result.add(childNodes.item(i));
+      addHighlighting(locations.endTagStart(id), locations.end(id), TypeOfText.KEYWORD);
     }
-
-    return result;
   }
 
-  private void highlightProlog(PrologElement prologElement) {
-    addHighlighting(prologElement.getPrologStartLocation(), TypeOfText.KEYWORD);
+  private static void highlightProlog(NewHighlighting highlighting, PrologElement prologElement) {
+    addHighlighting(highlighting, prologElement.getPrologStartLocation(), TypeOfText.KEYWORD);
 
     prologElement.getAttributes().forEach(prologAttribute -> {
-      addHighlighting(prologAttribute.getNameLocation(), TypeOfText.CONSTANT);
-      addHighlighting(prologAttribute.getValueLocation(), TypeOfText.STRING);
+      addHighlighting(highlighting, prologAttribute.getNameLocation(), TypeOfText.CONSTANT);
+      addHighlighting(highlighting, prologAttribute.getValueLocation(), TypeOfText.STRING);
     });
 
-    addHighlighting(prologElement.getPrologEndLocation(), TypeOfText.KEYWORD);
+    addHighlighting(highlighting, prologElement.getPrologEndLocation(), TypeOfText.KEYWORD);
+  }
+
+  private void addHighlighting(long start, long end, TypeOfText typeOfText) {
+    highlighting.highlight(Positions.line(start), Positions.column(start), Positions.line(end), Positions.column(end), typeOfText);
   }
 
   private void addHighlighting(XmlTextRange textRange, TypeOfText typeOfText) {
+    addHighlighting(highlighting, textRange, typeOfText);
+  }
+
+  private static void addHighlighting(NewHighlighting highlighting, XmlTextRange textRange, TypeOfText typeOfText) {
     highlighting.highlight(
       textRange.getStartLine(),
       textRange.getStartColumn(),
@@ -132,4 +149,66 @@ public class XmlHighlighting {
       textRange.getEndColumn(),
       typeOfText);
   }
+
+  /**
+   * Same highlighting as computed on the tree, from the tokens of the file.
+   */
+  private static final class StreamedHighlighting implements TokenVisitor {
+
+    private final NewHighlighting highlighting;
+
+    private StreamedHighlighting(NewHighlighting highlighting) {
+      this.highlighting = highlighting;
+    }
+
+    @Override
+    public void visitProlog(PrologElement prolog) {
+      highlightProlog(highlighting, prolog);
+    }
+
+    @Override
+    public void visitStartTag(StartTag startTag) {
+      XmlTextRange location = startTag.location();
+      XmlTextRange lastLocation = startTag.nameLocation();
+
+      // <foo
+      addHighlighting(highlighting, new XmlTextRange(location, lastLocation), TypeOfText.KEYWORD);
+      for (StartTag.Attribute attribute : startTag.attributes()) {
+        addHighlighting(highlighting, attribute.nameLocation(), TypeOfText.CONSTANT);
+        addHighlighting(highlighting, attribute.valueLocation(), TypeOfText.STRING);
+        lastLocation = attribute.valueLocation();
+      }
+      // '>' or '/>'
+      XmlTextRange textRange = new XmlTextRange(lastLocation.getEndLine(), lastLocation.getEndColumn(),
+        location.getEndLine(), location.getEndColumn());
+      addHighlighting(highlighting, textRange, TypeOfText.KEYWORD);
+    }
+
+    @Override
+    public void visitEndTag(XmlTextRange location) {
+      // '</foo>'
+      addHighlighting(highlighting, location, TypeOfText.KEYWORD);
+    }
+
+    @Override
+    public void visitCdata(XmlTextRange startLocation, XmlTextRange endLocation) {
+      addHighlighting(highlighting, startLocation, TypeOfText.KEYWORD);
+      addHighlighting(highlighting, endLocation, TypeOfText.KEYWORD);
+    }
+
+    @Override
+    public void visitComment(XmlTextRange location, String content) {
+      addHighlighting(highlighting, location, TypeOfText.STRUCTURED_COMMENT);
+    }
+
+    @Override
+    public void visitDocumentType(XmlTextRange location) {
+      addHighlighting(highlighting, location, TypeOfText.STRUCTURED_COMMENT);
+    }
+
+    @Override
+    public void endDocument() {
+      highlighting.save();
+    }
+  }
 }
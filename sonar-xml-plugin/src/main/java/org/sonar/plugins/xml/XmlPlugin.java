@@ -17,12 +17,18 @@
 package org.sonar.plugins.xml;
 
 import org.sonar.api.Plugin;
+import org.sonar.api.PropertyType;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.config.PropertyDefinition.ConfigScope;
 
 public final class XmlPlugin implements Plugin {
 
   public static final String FILE_SUFFIXES_KEY = "sonar.xml.file.suffixes";
+  public static final String ANALYSIS_THREADS_KEY = "sonar.xml.analysis.threads";
+  public static final String ANALYSIS_PREFETCH_KEY = "sonar.xml.analysis.prefetch";
+  public static final String PERFORMANCE_MEASURE_KEY = "sonar.xml.performance.measure";
+  public static final String RULE_TIMEOUT_KEY = "sonar.xml.analysis.ruleTimeout";
+  public static final String STREAMING_THRESHOLD_KEY = "sonar.xml.streaming.threshold";
 
   @Override
   public void define(Context context) {
@@ -35,6 +41,50 @@ public final class XmlPlugin implements Plugin {
         .category("XML")
         .onConfigScopes(ConfigScope.PROJECT)
         .build(),
+      PropertyDefinition.builder(XmlPlugin.ANALYSIS_THREADS_KEY)
+        .name("Analysis threads")
+        .description("Number of threads used to analyze XML files in parallel.")
+        .defaultValue("1")
+        .type(PropertyType.INTEGER)
+        .category("XML")
+        .onConfigScopes(ConfigScope.PROJECT)
+        .build(),
+      PropertyDefinition.builder(XmlPlugin.ANALYSIS_PREFETCH_KEY)
+        .name("Prefetched files")
+        .description("Number of files read and parsed in the background, ahead of the rules execution, when the analysis uses a single thread. "
+          + "0 disables prefetching.")
+        .defaultValue("0")
+        .type(PropertyType.INTEGER)
+        .category("XML")
+        .onConfigScopes(ConfigScope.PROJECT)
+        .build(),
+      PropertyDefinition.builder(XmlPlugin.PERFORMANCE_MEASURE_KEY)
+        .name("Performance measures")
+        .description("Measure the time spent, and the memory allocated, by each phase of the analysis and each rule. "
+          + "The measures are summarized in the logs and reported in the \"xml-performance-report.json\" file of the scanner working directory.")
+        .defaultValue("false")
+        .type(PropertyType.BOOLEAN)
+        .category("XML")
+        .onConfigScopes(ConfigScope.PROJECT)
+        .build(),
+      PropertyDefinition.builder(XmlPlugin.RULE_TIMEOUT_KEY)
+        .name("Rule timeout")
+        .description("Time, in milliseconds, allowed to the rules to analyze a file. When they exceed it, the analysis of this file "
+          + "is aborted and reported as an analysis error, and the analysis goes on with the next files. 0 disables the timeout.")
+        .defaultValue("0")
+        .type(PropertyType.INTEGER)
+        .category("XML")
+        .onConfigScopes(ConfigScope.PROJECT)
+        .build(),
+      PropertyDefinition.builder(XmlPlugin.STREAMING_THRESHOLD_KEY)
+        .name("Streaming threshold")
+        .description("Size, in kilobytes, above which a file is analyzed while being read instead of being loaded as a tree. "
+          + "Only the metrics, the highlighting and the rules not requiring the whole tree of the file are then computed. 0 disables streaming.")
+        .defaultValue("0")
+        .type(PropertyType.INTEGER)
+        .category("XML")
+        .onConfigScopes(ConfigScope.PROJECT)
+        .build(),
       Xml.class,
       XmlRulesDefinition.class,
       XmlSonarWayProfile.class,
@@ -16,12 +16,31 @@
  */
 package org.sonar.plugins.xml;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.SonarProduct;
@@ -39,12 +58,29 @@ import org.sonar.api.batch.sensor.issue.NewIssueLocation;
 import org.sonar.api.measures.FileLinesContextFactory;
 import org.sonar.api.rule.RuleKey;
 import org.sonar.api.utils.Version;
+import org.sonar.plugins.xml.ParsePipeline.ParsedFile;
+import org.sonar.plugins.xml.cache.AnalysisCache;
+import org.sonar.plugins.xml.cache.AnalysisRecorder;
+import org.sonar.plugins.xml.cache.FileAnalysis;
+import org.sonar.plugins.xml.checks.AppliesTo;
 import org.sonar.plugins.xml.checks.CheckList;
 import org.sonar.plugins.xml.checks.ParsingErrorCheck;
+import org.sonar.plugins.xml.checks.StreamingCheck;
+import org.sonar.plugins.xml.lexical.LexicalScanner;
+import org.sonar.plugins.xml.lexical.LexicalVisitor;
+import org.sonar.plugins.xml.streaming.TokenVisitor;
+import org.sonar.plugins.xml.streaming.XmlTokenizer;
+import org.sonar.plugins.xml.telemetry.AnalysisTelemetry;
+import org.sonar.plugins.xml.telemetry.AnalysisTelemetry.Phase;
+import org.sonar.plugins.xml.telemetry.Sample;
+import org.sonar.plugins.xml.tree.DocumentViews;
+import org.sonar.plugins.xml.visitors.DomTraversal;
+import org.sonar.plugins.xml.visitors.DomVisitor;
 import org.sonarsource.analyzer.commons.ProgressReport;
 import org.sonarsource.analyzer.commons.appsec.TestFileClassifier;
 import org.sonarsource.analyzer.commons.xml.ParseException;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.sonarsource.analyzer.commons.xml.XmlTextRange;
 import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
 
 public class XmlSensor implements Sensor {
@@ -56,17 +92,36 @@ public class XmlSensor implements Sensor {
   // Rules skipped on test files, where hard-coded credentials are typically placeholders.
   private static final Set<String> RULES_SKIPPED_ON_TEST_FILES = Set.of("S2068");
 
+  // Cap on the content of the files parsed ahead of the rules execution, the DOM of a file being several times larger
+  private static final long MAX_PREFETCHED_CHARS = 10_000_000L;
+
+  private static final long DEFAULT_STREAMING_THRESHOLD_KB = 0L;
+
+  private static final long DEFAULT_RULE_TIMEOUT_MILLIS = 0L;
+
+  private final CheckFactory checkFactory;
   private final Checks<Object> checks;
   private final boolean parsingErrorCheckEnabled;
   private final FileSystem fileSystem;
   private final FilePredicate mainFilesPredicate;
   private final SonarRuntime sonarRuntime;
   private final FileLinesContextFactory fileLinesContextFactory;
+  // check invocations, and those skipped because the check is not applicable to the kind of the file
+  private final AtomicLong checkInvocations = new AtomicLong();
+  private final AtomicLong skippedCheckInvocations = new AtomicLong();
+  // files whose namespace-unaware queries have been answered without parsing them a second time
+  private final AtomicLong avoidedDoubleParses = new AtomicLong();
+  private AnalysisTelemetry telemetry = AnalysisTelemetry.create(false);
+  private AnalysisCache cache;
+  // size in bytes above which files are analyzed in streaming mode
+  private long streamingThreshold = Long.MAX_VALUE;
+  private long ruleTimeoutMillis = 0L;
 
   public XmlSensor(SonarRuntime sonarRuntime, FileSystem fileSystem, CheckFactory checkFactory, FileLinesContextFactory fileLinesContextFactory) {
     this.sonarRuntime = sonarRuntime;
     this.fileLinesContextFactory = fileLinesContextFactory;
-    this.checks = checkFactory.create(Xml.REPOSITORY_KEY).addAnnotatedChecks(CheckList.getCheckClasses());
+    this.checkFactory = checkFactory;
+    this.checks = createChecks(checkFactory);
     this.parsingErrorCheckEnabled = this.checks.of(PARSING_ERROR_RULE_KEY) != null;
     this.fileSystem = fileSystem;
     this.mainFilesPredicate = fileSystem.predicates()
@@ -85,23 +140,42 @@ public class XmlSensor implements Sensor {
       return;
     }
 
+    checkInvocations.set(0);
+    skippedCheckInvocations.set(0);
+    avoidedDoubleParses.set(0);
+    telemetry = AnalysisTelemetry.create(context.config().getBoolean(XmlPlugin.PERFORMANCE_MEASURE_KEY).orElse(false));
+    cache = AnalysisCache.create(context, checks);
+    streamingThreshold = streamingThreshold(context);
+    ruleTimeoutMillis = context.config().getLong(XmlPlugin.RULE_TIMEOUT_KEY).orElse(DEFAULT_RULE_TIMEOUT_MILLIS);
     boolean isSonarLintContext = context.runtime().getProduct() == SonarProduct.SONARLINT;
 
     // No globs: XML has no filename test convention, so the generic test-directory fallback is used.
     TestFileClassifier testFiles = TestFileClassifier.of(context.config());
 
+    int prefetchedFiles = prefetchedFiles(context);
+
     ProgressReport progressReport = new ProgressReport("Report about progress of XML Analyzer", TimeUnit.SECONDS.toMillis(10));
     progressReport.start(inputFiles.stream().map(InputFile::toString).toList());
 
     boolean cancelled = false;
     try {
-      for (InputFile inputFile : inputFiles) {
-        if (context.isCancelled()) {
-          cancelled = true;
-          break;
+      List<InputFile> filesToAnalyze = replayUnchangedFiles(context, inputFiles, testFiles, progressReport);
+      int threads = Math.min(analysisThreads(context), filesToAnalyze.size());
+      if (context.isCancelled()) {
+        cancelled = true;
+      } else if (threads > 1) {
+        cancelled = scanFilesInParallel(context, filesToAnalyze, threads, isSonarLintContext, testFiles, progressReport);
+      } else if (prefetchedFiles > 0) {
+        try (FileScanner scanner = new FileScanner(context, fileLinesContextFactory, checks, isSonarLintContext, testFiles);
+          ParsePipeline pipeline = new ParsePipeline(filesToAnalyze, prefetchedFiles, MAX_PREFETCHED_CHARS, streamingThreshold).start()) {
+          cancelled = scanFiles(context, pipeline::next, scanner, progressReport, new AtomicBoolean());
+        }
+      } else {
+        Iterator<InputFile> iterator = filesToAnalyze.iterator();
+        try (FileScanner scanner = new FileScanner(context, fileLinesContextFactory, checks, isSonarLintContext, testFiles)) {
+          FileSource files = () -> iterator.hasNext() ? ParsedFile.parse(iterator.next(), streamingThreshold) : null;
+          cancelled = scanFiles(context, files, scanner, progressReport, new AtomicBoolean());
         }
-        scanFile(context, inputFile, isSonarLintContext, testFiles.looksLikeTestFile(inputFile));
-        progressReport.nextFile();
       }
     } finally {
       if (!cancelled) {
@@ -109,52 +183,430 @@ public class XmlSensor implements Sensor {
       } else {
         progressReport.cancel();
       }
+      cache.logStatistics();
+      LOG.debug("{} out of {} check invocations skipped, the checks not being applicable to the kind of the files",
+        skippedCheckInvocations.get(), checkInvocations.get());
+      LOG.debug("{} double parses avoided, the namespace-unaware queries of the rules being answered by the namespace-aware document",
+        avoidedDoubleParses.get());
+      if (telemetry.isEnabled()) {
+        telemetry.logSummary();
+        telemetry.writeReport(fileSystem.workDir().toPath());
+      }
     }
   }
 
-  private void scanFile(SensorContext context, InputFile inputFile, boolean isSonarLintContext, boolean isTestFile) {
-    try {
-      XmlFile xmlFile = XmlFile.create(inputFile);
-      if (!isSonarLintContext) {
-        LineCounter.analyse(context, fileLinesContextFactory, xmlFile);
-        XmlHighlighting.highlight(context, xmlFile);
+  /**
+   * Replays the results of the files whose analysis is still valid in the cache, without parsing them.
+   *
+   * @return the files to analyze
+   */
+  private List<InputFile> replayUnchangedFiles(SensorContext context, List<InputFile> inputFiles, TestFileClassifier testFiles,
+    ProgressReport progressReport) {
+    if (!cache.isEnabled()) {
+      return inputFiles;
+    }
+    List<InputFile> filesToAnalyze = new ArrayList<>();
+    for (InputFile inputFile : inputFiles) {
+      if (context.isCancelled()) {
+        break;
       }
-      runChecks(context, xmlFile, isTestFile);
-    } catch (Exception e) {
-      if (e instanceof ParseException && Xml.isConfigFile(inputFile)) {
-        // it's not mandatory for a "*.config" file to have an XML format.
-        return;
+      if (cache.replay(inputFile, testFiles.looksLikeTestFile(inputFile), context, fileLinesContextFactory)) {
+        progressReport.nextFile();
+      } else {
+        filesToAnalyze.add(inputFile);
       }
-      processParseException(e, context, inputFile);
     }
+    return filesToAnalyze;
   }
 
-  private void runChecks(SensorContext context, XmlFile newXmlFile, boolean isTestFile) {
-    checks.all().stream()
-      .map(SonarXmlCheck.class::cast)
-      .forEach(check -> {
-        // checks.ruleKey(check) is never null because "check" is part of "checks.all()"
-        RuleKey ruleKey = checks.ruleKey(check);
-        if (isTestFile && RULES_SKIPPED_ON_TEST_FILES.contains(ruleKey.rule())) {
-          return;
+  private static int analysisThreads(SensorContext context) {
+    int threads = context.config().getInt(XmlPlugin.ANALYSIS_THREADS_KEY).orElse(1);
+    if (threads < 1) {
+      LOG.warn("Invalid value {} for property \"{}\", the analysis will use a single thread.", threads, XmlPlugin.ANALYSIS_THREADS_KEY);
+      return 1;
+    }
+    return threads;
+  }
+
+  private static long streamingThreshold(SensorContext context) {
+    long kilobytes = context.config().getLong(XmlPlugin.STREAMING_THRESHOLD_KEY).orElse(DEFAULT_STREAMING_THRESHOLD_KB);
+    return kilobytes > 0 ? (kilobytes * 1024) : Long.MAX_VALUE;
+  }
+
+  private static int prefetchedFiles(SensorContext context) {
+    return Math.max(0, context.config().getInt(XmlPlugin.ANALYSIS_PREFETCH_KEY).orElse(0));
+  }
+
+  /**
+   * Scans the files provided by {@code files} until there is none left or the analysis is cancelled.
+   * When analyzing in parallel, the source and the cancellation flag are shared by all the workers.
+   *
+   * @return true if the analysis has been cancelled
+   */
+  private static boolean scanFiles(SensorContext context, FileSource files, FileScanner scanner, ProgressReport progressReport, AtomicBoolean cancelled) {
+    try {
+      while (!cancelled.get()) {
+        if (context.isCancelled()) {
+          cancelled.set(true);
+          break;
         }
-        runCheck(context, check, ruleKey, newXmlFile);
-      });
+        ParsedFile parsedFile = files.next();
+        if (parsedFile == null) {
+          break;
+        }
+        scanner.scanFile(parsedFile);
+        progressReport.nextFile();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      cancelled.set(true);
+    }
+    return cancelled.get();
+  }
+
+  private boolean scanFilesInParallel(SensorContext context, List<InputFile> inputFiles, int threads, boolean isSonarLintContext,
+    TestFileClassifier testFiles, ProgressReport progressReport) {
+    LOG.info("Analyzing {} files using {} threads", inputFiles.size(), threads);
+    if (prefetchedFiles(context) > 0) {
+      LOG.debug("Prefetching is disabled, files are parsed by the analysis workers");
+    }
+
+    Object lock = new Object();
+    SensorContext sharedContext = SynchronizedSensorContext.wrap(context, lock);
+    FileLinesContextFactory sharedFileLinesContextFactory = SynchronizedSensorContext.wrap(fileLinesContextFactory, lock);
+    Queue<InputFile> pendingFiles = new ConcurrentLinkedQueue<>(inputFiles);
+    AtomicBoolean cancelled = new AtomicBoolean();
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new WorkerThreadFactory());
+    try {
+      List<Future<Boolean>> workers = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        workers.add(executor.submit(() -> {
+          // checks keep state between files: each worker needs its own instances
+          try (FileScanner scanner = new FileScanner(sharedContext, sharedFileLinesContextFactory, createChecks(checkFactory), isSonarLintContext,
+            testFiles)) {
+            return scanFiles(context, () -> {
+              InputFile inputFile = pendingFiles.poll();
+              return inputFile == null ? null : ParsedFile.parse(inputFile, streamingThreshold);
+            }, scanner, progressReport, cancelled);
+          }
+        }));
+      }
+      for (Future<Boolean> worker : workers) {
+        worker.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      cancelled.set(true);
+    } catch (ExecutionException e) {
+      cancelled.set(true);
+      throw new IllegalStateException("Unexpected failure of an XML analysis worker", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return cancelled.get();
   }
 
+  private static Checks<Object> createChecks(CheckFactory checkFactory) {
+    return checkFactory.create(Xml.REPOSITORY_KEY).addAnnotatedChecks(CheckList.getCheckClasses());
+  }
+
+  /**
+   * @return false if the check failed
+   */
   // Visible for testing
-  void runCheck(SensorContext context, SonarXmlCheck check, RuleKey ruleKey, XmlFile newXmlFile) {
+  boolean runCheck(SensorContext context, SonarXmlCheck check, RuleKey ruleKey, XmlFile newXmlFile) {
     try {
       check.scanFile(context, ruleKey, newXmlFile);
+      return true;
     } catch (Exception e) {
       logFailingRule(ruleKey, newXmlFile.getInputFile().uri(), e);
+      return false;
+    }
+  }
+
+  private static void onVisitorFailure(Object visitor, RuntimeException e, InputFile inputFile) {
+    if (visitor instanceof SonarXmlCheck check) {
+      logFailingRule(check.ruleKey(), inputFile.uri(), e);
+    } else {
+      throw e;
     }
   }
 
+  private static void saveIssue(SensorContext context, InputFile inputFile, RuleKey ruleKey, XmlTextRange location, String message) {
+    NewIssue issue = context.newIssue();
+    NewIssueLocation issueLocation = issue.newLocation()
+      .on(inputFile)
+      .at(inputFile.newRange(location.getStartLine(), location.getStartColumn(), location.getEndLine(), location.getEndColumn()))
+      .message(message);
+    issue
+      .forRule(ruleKey)
+      .at(issueLocation)
+      .save();
+  }
+
   private static void logFailingRule(RuleKey rule, URI fileLocation, Exception e) {
     LOG.error("Unable to execute rule {} on {}", rule, fileLocation, e);
   }
 
+  /**
+   * Scans files with its own set of check instances. There is one scanner per analysis worker.
+   */
+  private final class FileScanner implements AutoCloseable {
+
+    private final SensorContext context;
+    private final FileLinesContextFactory fileLinesContextFactory;
+    private Checks<Object> checks;
+    private final boolean isSonarLintContext;
+    private final TestFileClassifier testFiles;
+    private final Map<Object, AppliesTo> applicabilities = new HashMap<>();
+    private final RuleWatchdog watchdog = new RuleWatchdog(ruleTimeoutMillis);
+    // check, or visitor, running on the thread of the watchdog: named when the file exceeds its time budget
+    private final AtomicReference<Object> running = new AtomicReference<>();
+    // set when a check has been abandoned while still running: new instances are needed for the next files
+    private boolean checksAbandoned = false;
+
+    private FileScanner(SensorContext context, FileLinesContextFactory fileLinesContextFactory, Checks<Object> checks, boolean isSonarLintContext,
+      TestFileClassifier testFiles) {
+      this.context = context;
+      this.fileLinesContextFactory = fileLinesContextFactory;
+      this.checks = checks;
+      this.isSonarLintContext = isSonarLintContext;
+      this.testFiles = testFiles;
+      checks.all().forEach(check -> applicabilities.put(check, FileKind.applicabilityOf(check)));
+    }
+
+    @Override
+    public void close() {
+      watchdog.close();
+    }
+
+    private void scanFile(ParsedFile parsedFile) {
+      InputFile inputFile = parsedFile.inputFile();
+      Sample fileSample = telemetry.start();
+      boolean isTestFile = testFiles.looksLikeTestFile(inputFile);
+      // results are recorded to be replayed by the next analysis if the file does not change
+      FileAnalysis analysis = new FileAnalysis();
+      SensorContext fileContext = cache.isEnabled() ? AnalysisRecorder.record(context, inputFile, analysis) : context;
+      FileLinesContextFactory fileLinesFactory = cache.isEnabled()
+        ? AnalysisRecorder.record(fileLinesContextFactory, inputFile, analysis)
+        : fileLinesContextFactory;
+      try {
+        if (parsedFile.isStreamed()) {
+          scanStreamedFile(inputFile, fileContext, fileLinesFactory, isTestFile, analysis);
+        } else {
+          scanXmlFileWithinBudget(parsedFile.xmlFile(), fileContext, fileLinesFactory, isTestFile, analysis);
+        }
+        cache.store(inputFile, isTestFile, analysis);
+      } catch (Exception e) {
+        if (e instanceof ParseException && Xml.isConfigFile(inputFile)) {
+          // it's not mandatory for a "*.config" file to have an XML format.
+          return;
+        }
+        processParseException(e, context, inputFile);
+      } finally {
+        telemetry.record(Phase.PARSING, parsedFile.parsingNanos(), parsedFile.parsingAllocatedBytes());
+        telemetry.recordFile(inputFile.toString(), parsedFile.parsingNanos() + fileSample.elapsedNanos(),
+          parsedFile.parsingAllocatedBytes() + fileSample.allocatedBytes());
+        if (checksAbandoned) {
+          renewChecks();
+        }
+      }
+    }
+
+    private void renewChecks() {
+      checks = createChecks(checkFactory);
+      applicabilities.clear();
+      checks.all().forEach(check -> applicabilities.put(check, FileKind.applicabilityOf(check)));
+      checksAbandoned = false;
+    }
+
+    /**
+     * Runs the rules on the file under the watchdog, when enabled. Metrics, highlighting and rules then all run on the
+     * watchdog thread: if they exceed their budget, the file is given up so that its tree is not read by the next rules.
+     */
+    private void scanXmlFileWithinBudget(XmlFile xmlFile, SensorContext fileContext, FileLinesContextFactory fileLinesFactory, boolean isTestFile,
+      FileAnalysis analysis) {
+      boolean completed;
+      running.set(null);
+      try {
+        completed = watchdog.run(fileContext, fileLinesFactory,
+          (guardedContext, guardedFactory) -> scanXmlFile(xmlFile, guardedContext, guardedFactory, isTestFile, analysis));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        completed = false;
+      }
+      if (!completed) {
+        analysis.markNotCacheable();
+        checksAbandoned = true;
+        if (!Thread.currentThread().isInterrupted()) {
+          RuleKey ruleKey = running.get() instanceof SonarXmlCheck check ? checks.ruleKey(check) : null;
+          reportTimeout(fileContext, xmlFile.getInputFile(), watchdog.budgetMillis(), ruleKey);
+        }
+      }
+    }
+
+    private void scanXmlFile(XmlFile xmlFile, SensorContext fileContext, FileLinesContextFactory fileLinesFactory, boolean isTestFile,
+      FileAnalysis analysis) {
+      InputFile inputFile = xmlFile.getInputFile();
+      // metrics, highlighting and tree-walking rules are all computed during a single traversal of the tree
+      DomTraversal traversal = new DomTraversal(xmlFile, (visitor, e) -> {
+        analysis.markNotCacheable();
+        onVisitorFailure(visitor, e, inputFile);
+      });
+      if (telemetry.isEnabled()) {
+        traversal.measured();
+      }
+      if (watchdog.isEnabled()) {
+        traversal.tracked(running);
+      }
+      // rules only needing the characters of the file share a single scan of its content
+      LexicalScanner lexicalScanner = new LexicalScanner((visitor, e) -> {
+        analysis.markNotCacheable();
+        onVisitorFailure(visitor, e, inputFile);
+      });
+      traversal.shareDuring(() -> lexicalScanner.shareDuring(xmlFile, () -> {
+        if (!isSonarLintContext) {
+          Sample sample = telemetry.start();
+          LineCounter.analyse(fileContext, fileLinesFactory, xmlFile);
+          telemetry.record(Phase.METRICS, sample);
+          sample = telemetry.start();
+          XmlHighlighting.highlight(fileContext, xmlFile);
+          telemetry.record(Phase.HIGHLIGHTING, sample);
+        }
+        runChecks(fileContext, xmlFile, isTestFile, analysis);
+      }));
+      running.set(null);
+      Sample sample = telemetry.start();
+      lexicalScanner.scan(xmlFile.getContents());
+      telemetry.record(Phase.RULES, sample);
+      traversal.run();
+      traversal.forEachMeasure(this::recordVisitorMeasure);
+      if (DocumentViews.isDoubleParseAvoided(xmlFile)) {
+        avoidedDoubleParses.incrementAndGet();
+      }
+    }
+
+    /**
+     * Analyzes a file too large to be loaded as a tree while reading it once, its tokens being visited as it is parsed.
+     * Rules which are not {@link StreamingCheck}s are skipped. The issues of the rules are only saved once the whole file
+     * has been read, as nothing is reported on a file which turns out not to be well-formed.
+     */
+    private void scanStreamedFile(InputFile inputFile, SensorContext fileContext, FileLinesContextFactory fileLinesFactory, boolean isTestFile,
+      FileAnalysis analysis) throws IOException {
+      List<Runnable> issues = new ArrayList<>();
+      List<TokenVisitor> visitors = new ArrayList<>();
+      LexicalScanner lexicalScanner = new LexicalScanner((visitor, e) -> {
+        analysis.markNotCacheable();
+        onVisitorFailure(visitor, e, inputFile);
+      });
+      if (!isSonarLintContext) {
+        visitors.add(LineCounter.tokenVisitor(fileContext, fileLinesFactory, inputFile));
+        visitors.add(XmlHighlighting.tokenVisitor(fileContext, inputFile));
+      }
+      List<String> skippedRules = new ArrayList<>();
+      for (Object check : checks.all()) {
+        RuleKey ruleKey = checks.ruleKey(check);
+        if (isTestFile && RULES_SKIPPED_ON_TEST_FILES.contains(ruleKey.rule())) {
+          continue;
+        }
+        if (check instanceof StreamingCheck streamingCheck) {
+          streamingCheck.startStreaming(inputFile,
+            (location, message) -> issues.add(() -> saveIssue(fileContext, inputFile, ruleKey, location, message)));
+          visitors.add(streamingCheck);
+          if (streamingCheck instanceof LexicalVisitor lexicalVisitor) {
+            lexicalScanner.subscribe(lexicalVisitor);
+          }
+        } else {
+          skippedRules.add(ruleKey.rule());
+        }
+      }
+      LOG.info("File {} is analyzed in streaming mode, being larger than the threshold set by \"{}\": {} rules are skipped",
+        inputFile, XmlPlugin.STREAMING_THRESHOLD_KEY, skippedRules.size());
+      LOG.debug("Rules skipped on {}: {}", inputFile, skippedRules);
+
+      // the file is parsed while its tokens are visited
+      Sample sample = telemetry.start();
+      try (Reader reader = lexicalScanner.scanning(new InputStreamReader(inputFile.inputStream(), inputFile.charset()))) {
+        new XmlTokenizer(reader, visitors, (visitor, e) -> {
+          analysis.markNotCacheable();
+          if (visitor instanceof SonarXmlCheck check) {
+            logFailingRule(checks.ruleKey(check), inputFile.uri(), e);
+          } else {
+            throw e;
+          }
+        }).tokenize();
+      }
+      lexicalScanner.end();
+      telemetry.record(Phase.PARSING, sample);
+      issues.forEach(Runnable::run);
+    }
+
+    private void recordVisitorMeasure(DomVisitor visitor, long nanos, long allocatedBytes) {
+      if (visitor instanceof LineCounter) {
+        telemetry.record(Phase.METRICS, nanos, allocatedBytes);
+      } else if (visitor instanceof XmlHighlighting) {
+        telemetry.record(Phase.HIGHLIGHTING, nanos, allocatedBytes);
+      } else if (visitor instanceof SonarXmlCheck check) {
+        telemetry.recordRule(check.ruleKey().toString(), nanos, allocatedBytes);
+      }
+    }
+
+    private void runChecks(SensorContext fileContext, XmlFile newXmlFile, boolean isTestFile, FileAnalysis analysis) {
+      FileKind fileKind = FileKind.of(newXmlFile);
+      checks.all().stream()
+        .map(SonarXmlCheck.class::cast)
+        .forEach(check -> {
+          // checks.ruleKey(check) is never null because "check" is part of "checks.all()"
+          RuleKey ruleKey = checks.ruleKey(check);
+          if (isTestFile && RULES_SKIPPED_ON_TEST_FILES.contains(ruleKey.rule())) {
+            return;
+          }
+          checkInvocations.incrementAndGet();
+          if (!fileKind.matches(applicabilities.get(check))) {
+            skippedCheckInvocations.incrementAndGet();
+            return;
+          }
+          running.setRelease(check);
+          Sample sample = telemetry.start();
+          if (!runCheck(fileContext, check, ruleKey, newXmlFile)) {
+            analysis.markNotCacheable();
+          }
+          telemetry.recordRule(ruleKey.toString(), sample.elapsedNanos(), sample.allocatedBytes());
+        });
+    }
+  }
+
+  private static void reportTimeout(SensorContext context, InputFile inputFile, long budgetMillis, @Nullable RuleKey ruleKey) {
+    String running = ruleKey == null ? "" : String.format(" while running rule %s", ruleKey);
+    String message = String.format("Rules exceeded their time budget of %d ms on this file, whose analysis has been aborted%s",
+      budgetMillis, running);
+    LOG.warn("Rules exceeded their time budget of {} ms on {}, whose analysis has been aborted{}, the analysis goes on",
+      budgetMillis, inputFile.uri(), running);
+    context.newAnalysisError()
+      .onFile(inputFile)
+      .message(message)
+      .save();
+  }
+
+  @FunctionalInterface
+  private interface FileSource {
+    @CheckForNull
+    ParsedFile next() throws InterruptedException;
+  }
+
+  private static final class WorkerThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "xml-analysis-worker-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName();
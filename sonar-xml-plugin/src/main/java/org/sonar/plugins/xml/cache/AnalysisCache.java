@@ -0,0 +1,225 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.rule.Checks;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.cache.ReadCache;
+import org.sonar.api.batch.sensor.cache.WriteCache;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.check.RuleProperty;
+import org.sonar.plugins.xml.XmlPlugin;
+
+/**
+ * Results of the analysis of the files, kept from one analysis to the next one in the sensor cache.
+ * <p>
+ * The results of a file are replayed instead of analyzing it again when neither its content nor the analysis settings
+ * changed: active rules and their parameters, settings read by the rules, version of the plugin, and whether the file is a
+ * test file. The cache is disabled when the version of the plugin is unknown, the results of other rules could be replayed
+ * otherwise.
+ */
+public final class AnalysisCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AnalysisCache.class);
+
+  private static final String KEY_PREFIX = "xml:analysis:";
+
+  // Generated at build time, see the filtered resources of the pom
+  private static final String PLUGIN_PROPERTIES = "/org/sonar/plugins/xml/xml-plugin.properties";
+
+  // Settings changing the results of some rules, or the rules run on some files
+  private static final List<String> RULE_SETTINGS = List.of("sonar.android.minsdkversion.min", XmlPlugin.STREAMING_THRESHOLD_KEY);
+
+  private final SensorContext context;
+  private final boolean enabled;
+  private final String settingsFingerprint;
+  private final AtomicInteger hits = new AtomicInteger();
+  private final AtomicInteger misses = new AtomicInteger();
+
+  private AnalysisCache(SensorContext context, boolean enabled, String settingsFingerprint) {
+    this.context = context;
+    this.enabled = enabled;
+    this.settingsFingerprint = settingsFingerprint;
+  }
+
+  public static AnalysisCache create(SensorContext context, Checks<Object> checks) {
+    return create(context, checks, pluginVersion());
+  }
+
+  static AnalysisCache create(SensorContext context, Checks<Object> checks, @Nullable String pluginVersion) {
+    if (!context.isCacheEnabled()) {
+      return new AnalysisCache(context, false, "");
+    }
+    if (pluginVersion == null) {
+      LOG.debug("XML analysis cache disabled, the version of the plugin being unknown");
+      return new AnalysisCache(context, false, "");
+    }
+    StringBuilder settings = new StringBuilder();
+    settings.append(pluginVersion).append('\n');
+    checks.all().stream()
+      .map(check -> checks.ruleKey(check) + ruleParameters(check))
+      .sorted()
+      .forEach(rule -> settings.append(rule).append('\n'));
+    RULE_SETTINGS.forEach(key -> settings.append(key).append('=').append(context.config().get(key).orElse("")).append('\n'));
+    return new AnalysisCache(context, true, sha256(settings.toString()));
+  }
+
+  /**
+   * @return the version of the plugin, or null when it is unknown, as when the resources have not been filtered by the build
+   */
+  @CheckForNull
+  static String pluginVersion() {
+    try (InputStream input = AnalysisCache.class.getResourceAsStream(PLUGIN_PROPERTIES)) {
+      if (input == null) {
+        return null;
+      }
+      Properties properties = new Properties();
+      properties.load(input);
+      String version = properties.getProperty("version");
+      return version == null || version.isBlank() || version.startsWith("${") ? null : version;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Replays the results of the previous analysis of the file, when it is still valid.
+   *
+   * @return false when the file has to be analyzed
+   */
+  public boolean replay(InputFile inputFile, boolean isTestFile, SensorContext sensorContext, FileLinesContextFactory fileLinesContextFactory) {
+    if (!enabled) {
+      return false;
+    }
+    String key = cacheKey(inputFile);
+    FileAnalysis analysis = read(context.previousCache(), key, fingerprint(inputFile, isTestFile));
+    if (analysis == null) {
+      misses.incrementAndGet();
+      return false;
+    }
+    analysis.replay(sensorContext, fileLinesContextFactory, inputFile);
+    synchronized (this) {
+      context.nextCache().copyFromPrevious(key);
+    }
+    hits.incrementAndGet();
+    return true;
+  }
+
+  public void store(InputFile inputFile, boolean isTestFile, FileAnalysis analysis) {
+    if (!enabled || !analysis.isCacheable()) {
+      return;
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeUTF(fingerprint(inputFile, isTestFile));
+      out.write(analysis.serialize());
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to serialize the analysis of " + inputFile, e);
+    }
+    WriteCache nextCache = context.nextCache();
+    synchronized (this) {
+      nextCache.write(cacheKey(inputFile), bytes.toByteArray());
+    }
+  }
+
+  public void logStatistics() {
+    if (enabled) {
+      LOG.info("XML analysis cache: {} hits, {} misses", hits.get(), misses.get());
+    }
+  }
+
+  @CheckForNull
+  private static FileAnalysis read(ReadCache previousCache, String key, String fingerprint) {
+    if (!previousCache.contains(key)) {
+      return null;
+    }
+    try (InputStream input = previousCache.read(key)) {
+      DataInputStream in = new DataInputStream(input);
+      if (!fingerprint.equals(in.readUTF())) {
+        return null;
+      }
+      return FileAnalysis.deserialize(in);
+    } catch (IOException | RuntimeException e) {
+      LOG.debug("Unable to read the cached analysis of {}", key, e);
+      return null;
+    }
+  }
+
+  private static String cacheKey(InputFile inputFile) {
+    return KEY_PREFIX + inputFile.key();
+  }
+
+  private String fingerprint(InputFile inputFile, boolean isTestFile) {
+    return settingsFingerprint + ":" + inputFile.md5Hash() + ":" + isTestFile;
+  }
+
+  private static String ruleParameters(Object check) {
+    List<String> parameters = new ArrayList<>();
+    for (Class<?> type = check.getClass(); type != Object.class; type = type.getSuperclass()) {
+      for (Field field : type.getDeclaredFields()) {
+        RuleProperty property = field.getAnnotation(RuleProperty.class);
+        if (property != null) {
+          String key = property.key().isEmpty() ? field.getName() : property.key();
+          parameters.add(key + "=" + fieldValue(check, field));
+        }
+      }
+    }
+    parameters.sort(null);
+    return parameters.toString();
+  }
+
+  private static Object fieldValue(Object check, Field field) {
+    try {
+      return field.trySetAccessible() ? field.get(check) : null;
+    } catch (IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  private static String sha256(String value) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
@@ -0,0 +1,408 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.cache;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputComponent;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.measure.Metric;
+import org.sonar.api.batch.rule.Severity;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.highlighting.NewHighlighting;
+import org.sonar.api.batch.sensor.highlighting.TypeOfText;
+import org.sonar.api.batch.sensor.issue.NewIssue;
+import org.sonar.api.batch.sensor.issue.NewIssueLocation;
+import org.sonar.api.batch.sensor.issue.NewMessageFormatting;
+import org.sonar.api.batch.sensor.issue.fix.NewQuickFix;
+import org.sonar.api.batch.sensor.measure.NewMeasure;
+import org.sonar.api.issue.impact.SoftwareQuality;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.plugins.xml.cache.FileAnalysis.Highlight;
+import org.sonar.plugins.xml.cache.FileAnalysis.Issue;
+import org.sonar.plugins.xml.cache.FileAnalysis.Location;
+import org.sonar.plugins.xml.cache.FileAnalysis.Range;
+
+/**
+ * Wraps the {@link SensorContext} used to analyze a file, to record in a {@link FileAnalysis} the results saved on the file.
+ * <p>
+ * All the calls are forwarded to the wrapped context. Calls which cannot be recorded, such as quick fixes or analysis errors,
+ * make the analysis not cacheable.
+ * <p>
+ * Only the context itself is a dynamic proxy, so that it forwards the methods of any version of the API: it is called once per
+ * issue, measure or highlighting. The objects it creates are wrapped by the explicit recording classes below.
+ */
+public final class AnalysisRecorder {
+
+  private AnalysisRecorder() {
+  }
+
+  public static SensorContext record(SensorContext context, InputFile inputFile, FileAnalysis analysis) {
+    return (SensorContext) Proxy.newProxyInstance(AnalysisRecorder.class.getClassLoader(), new Class<?>[] {SensorContext.class},
+      (proxy, method, args) -> {
+        Object result = invoke(context, method, args);
+        String name = method.getName();
+        return switch (name) {
+          case "newIssue" -> new RecordingIssue((NewIssue) result, inputFile, analysis);
+          case "newMeasure" -> new RecordingMeasure<>((NewMeasure<?>) result, inputFile, analysis);
+          case "newHighlighting" -> new RecordingHighlighting((NewHighlighting) result, inputFile, analysis);
+          default -> {
+            if (name.startsWith("new") || "addContextProperty".equals(name) || "markForPublishing".equals(name)) {
+              analysis.markNotCacheable();
+            }
+            yield result;
+          }
+        };
+      });
+  }
+
+  public static FileLinesContextFactory record(FileLinesContextFactory fileLinesContextFactory, InputFile inputFile, FileAnalysis analysis) {
+    return file -> {
+      FileLinesContext fileLinesContext = fileLinesContextFactory.createFor(file);
+      if (file != inputFile) {
+        analysis.markNotCacheable();
+        return fileLinesContext;
+      }
+      return new RecordingFileLinesContext(fileLinesContext, analysis);
+    };
+  }
+
+  private static Object invoke(Object target, Method method, @Nullable Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static final class RecordingIssue implements NewIssue {
+
+    private final NewIssue target;
+    private final InputFile inputFile;
+    private final FileAnalysis analysis;
+    private final Issue issue = new Issue();
+
+    private RecordingIssue(NewIssue target, InputFile inputFile, FileAnalysis analysis) {
+      this.target = target;
+      this.inputFile = inputFile;
+      this.analysis = analysis;
+    }
+
+    @Override
+    public NewIssue forRule(RuleKey ruleKey) {
+      target.forRule(ruleKey);
+      issue.ruleKey = ruleKey;
+      return this;
+    }
+
+    @Override
+    public NewIssue gap(@Nullable Double gap) {
+      target.gap(gap);
+      issue.gap = gap;
+      return this;
+    }
+
+    @Override
+    public NewIssue overrideSeverity(@Nullable Severity severity) {
+      target.overrideSeverity(severity);
+      analysis.markNotCacheable();
+      return this;
+    }
+
+    @Override
+    public NewIssue overrideImpact(SoftwareQuality softwareQuality, org.sonar.api.issue.impact.Severity severity) {
+      target.overrideImpact(softwareQuality, severity);
+      analysis.markNotCacheable();
+      return this;
+    }
+
+    @Override
+    public NewIssue at(NewIssueLocation primaryLocation) {
+      target.at(unwrap(primaryLocation));
+      issue.primaryLocation = recorded(primaryLocation);
+      return this;
+    }
+
+    @Override
+    public NewIssue addLocation(NewIssueLocation secondaryLocation) {
+      target.addLocation(unwrap(secondaryLocation));
+      issue.secondaryLocations.add(recorded(secondaryLocation));
+      return this;
+    }
+
+    @Override
+    public NewIssue setQuickFixAvailable(boolean quickFixAvailable) {
+      target.setQuickFixAvailable(quickFixAvailable);
+      analysis.markNotCacheable();
+      return this;
+    }
+
+    @Override
+    public NewIssue addFlow(Iterable<NewIssueLocation> flowLocations) {
+      List<NewIssueLocation> locations = new ArrayList<>();
+      List<Location> recordedFlow = new ArrayList<>();
+      for (NewIssueLocation location : flowLocations) {
+        locations.add(unwrap(location));
+        recordedFlow.add(recorded(location));
+      }
+      target.addFlow(locations);
+      issue.flows.add(recordedFlow);
+      return this;
+    }
+
+    @Override
+    public NewIssue addFlow(Iterable<NewIssueLocation> flowLocations, FlowType flowType, @Nullable String flowDescription) {
+      List<NewIssueLocation> locations = new ArrayList<>();
+      flowLocations.forEach(location -> locations.add(unwrap(location)));
+      target.addFlow(locations, flowType, flowDescription);
+      analysis.markNotCacheable();
+      return this;
+    }
+
+    @Override
+    public NewIssueLocation newLocation() {
+      return new RecordingLocation(target.newLocation(), inputFile, analysis);
+    }
+
+    @Override
+    public NewQuickFix newQuickFix() {
+      analysis.markNotCacheable();
+      return target.newQuickFix();
+    }
+
+    @Override
+    public NewIssue addQuickFix(NewQuickFix newQuickFix) {
+      target.addQuickFix(newQuickFix);
+      analysis.markNotCacheable();
+      return this;
+    }
+
+    @Override
+    public void save() {
+      target.save();
+      analysis.addIssue(issue);
+    }
+
+    @Override
+    public NewIssue setRuleDescriptionContextKey(@Nullable String ruleDescriptionContextKey) {
+      target.setRuleDescriptionContextKey(ruleDescriptionContextKey);
+      analysis.markNotCacheable();
+      return this;
+    }
+
+    @Override
+    public NewIssue setCodeVariants(@Nullable Iterable<String> codeVariants) {
+      target.setCodeVariants(codeVariants);
+      analysis.markNotCacheable();
+      return this;
+    }
+
+    private static NewIssueLocation unwrap(NewIssueLocation location) {
+      return location instanceof RecordingLocation recording ? recording.target : location;
+    }
+
+    private Location recorded(NewIssueLocation location) {
+      if (location instanceof RecordingLocation recording) {
+        return recording.location;
+      }
+      analysis.markNotCacheable();
+      return new Location();
+    }
+  }
+
+  private static final class RecordingLocation implements NewIssueLocation {
+
+    private final NewIssueLocation target;
+    private final InputFile inputFile;
+    private final FileAnalysis analysis;
+    private final Location location = new Location();
+
+    private RecordingLocation(NewIssueLocation target, InputFile inputFile, FileAnalysis analysis) {
+      this.target = target;
+      this.inputFile = inputFile;
+      this.analysis = analysis;
+    }
+
+    @Override
+    public NewIssueLocation on(InputComponent component) {
+      target.on(component);
+      if (component != inputFile) {
+        analysis.markNotCacheable();
+      }
+      return this;
+    }
+
+    @Override
+    public NewIssueLocation at(TextRange range) {
+      target.at(range);
+      location.range = Range.of(range);
+      return this;
+    }
+
+    @Override
+    public NewIssueLocation message(String message) {
+      target.message(message);
+      location.message = message;
+      return this;
+    }
+
+    @Override
+    public NewIssueLocation message(String message, List<NewMessageFormatting> newMessageFormatting) {
+      target.message(message, newMessageFormatting);
+      analysis.markNotCacheable();
+      return this;
+    }
+
+    @Override
+    public NewMessageFormatting newMessageFormatting() {
+      analysis.markNotCacheable();
+      return target.newMessageFormatting();
+    }
+  }
+
+  private static final class RecordingMeasure<G extends Serializable> implements NewMeasure<G> {
+
+    private final NewMeasure<G> target;
+    private final InputFile inputFile;
+    private final FileAnalysis analysis;
+    private String metricKey;
+    private G value;
+
+    private RecordingMeasure(NewMeasure<G> target, InputFile inputFile, FileAnalysis analysis) {
+      this.target = target;
+      this.inputFile = inputFile;
+      this.analysis = analysis;
+    }
+
+    @Override
+    public NewMeasure<G> on(InputComponent component) {
+      target.on(component);
+      if (component != inputFile) {
+        analysis.markNotCacheable();
+      }
+      return this;
+    }
+
+    @Override
+    public NewMeasure<G> forMetric(Metric<G> metric) {
+      target.forMetric(metric);
+      metricKey = metric.key();
+      return this;
+    }
+
+    @Override
+    public NewMeasure<G> withValue(G value) {
+      target.withValue(value);
+      this.value = value;
+      return this;
+    }
+
+    @Override
+    public void save() {
+      target.save();
+      if (metricKey != null && value != null) {
+        analysis.addMeasure(metricKey, value);
+      } else {
+        analysis.markNotCacheable();
+      }
+    }
+  }
+
+  private static final class RecordingHighlighting implements NewHighlighting {
+
+    private final NewHighlighting target;
+    private final InputFile inputFile;
+    private final FileAnalysis analysis;
+    private final List<Highlight> highlights = new ArrayList<>();
+
+    private RecordingHighlighting(NewHighlighting target, InputFile inputFile, FileAnalysis analysis) {
+      this.target = target;
+      this.inputFile = inputFile;
+      this.analysis = analysis;
+    }
+
+    @Override
+    public NewHighlighting onFile(InputFile file) {
+      target.onFile(file);
+      if (file != inputFile) {
+        analysis.markNotCacheable();
+      }
+      return this;
+    }
+
+    @Override
+    public NewHighlighting highlight(TextRange range, TypeOfText typeOfText) {
+      target.highlight(range, typeOfText);
+      highlights.add(new Highlight(Range.of(range), typeOfText));
+      return this;
+    }
+
+    @Override
+    public NewHighlighting highlight(int startLine, int startLineOffset, int endLine, int endLineOffset, TypeOfText typeOfText) {
+      target.highlight(startLine, startLineOffset, endLine, endLineOffset, typeOfText);
+      highlights.add(new Highlight(new Range(startLine, startLineOffset, endLine, endLineOffset), typeOfText));
+      return this;
+    }
+
+    @Override
+    public void save() {
+      target.save();
+      analysis.addHighlighting(highlights);
+    }
+  }
+
+  private static final class RecordingFileLinesContext implements FileLinesContext {
+
+    private final FileLinesContext target;
+    private final FileAnalysis analysis;
+    private final Map<String, Map<Integer, Integer>> values = new LinkedHashMap<>();
+
+    private RecordingFileLinesContext(FileLinesContext target, FileAnalysis analysis) {
+      this.target = target;
+      this.analysis = analysis;
+    }
+
+    @Override
+    public void setIntValue(String metricKey, int line, int value) {
+      target.setIntValue(metricKey, line, value);
+      values.computeIfAbsent(metricKey, key -> new LinkedHashMap<>()).put(line, value);
+    }
+
+    @Override
+    public void setStringValue(String metricKey, int line, String value) {
+      target.setStringValue(metricKey, line, value);
+      analysis.markNotCacheable();
+    }
+
+    @Override
+    public void save() {
+      target.save();
+      analysis.addLineMeasures(values);
+    }
+  }
+
+}
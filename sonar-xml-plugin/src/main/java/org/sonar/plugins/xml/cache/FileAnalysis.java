@@ -0,0 +1,394 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.measure.Metric;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.highlighting.NewHighlighting;
+import org.sonar.api.batch.sensor.highlighting.TypeOfText;
+import org.sonar.api.batch.sensor.issue.NewIssue;
+import org.sonar.api.batch.sensor.issue.NewIssueLocation;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.rule.RuleKey;
+
+/**
+ * Results saved by the analysis of a file: issues, measures, metrics per line and highlighting.
+ * <p>
+ * The results are recorded by {@link AnalysisRecorder} while the file is analyzed, and can be replayed on a later analysis,
+ * as long as the file and the analysis settings did not change. Results which cannot be replayed make the analysis not
+ * cacheable.
+ */
+public final class FileAnalysis {
+
+  private static final int FORMAT_VERSION = 1;
+
+  // Measures saved by the sensor on the files, the only ones which can be replayed
+  private static final Map<String, Metric<Integer>> CACHEABLE_METRICS = Map.of(
+    CoreMetrics.NCLOC_KEY, CoreMetrics.NCLOC,
+    CoreMetrics.COMMENT_LINES_KEY, CoreMetrics.COMMENT_LINES);
+
+  private boolean cacheable = true;
+  private final List<Issue> issues = new ArrayList<>();
+  private final Map<String, Integer> measures = new LinkedHashMap<>();
+  private final Map<String, Map<Integer, Integer>> lineMeasures = new LinkedHashMap<>();
+  private boolean lineMeasuresSaved = false;
+  @Nullable
+  private List<Highlight> highlights = null;
+
+  public boolean isCacheable() {
+    return cacheable;
+  }
+
+  public void markNotCacheable() {
+    cacheable = false;
+  }
+
+  void addIssue(Issue issue) {
+    issues.add(issue);
+  }
+
+  void addMeasure(String metricKey, Serializable value) {
+    if (CACHEABLE_METRICS.containsKey(metricKey) && value instanceof Integer intValue) {
+      measures.put(metricKey, intValue);
+    } else {
+      markNotCacheable();
+    }
+  }
+
+  void addLineMeasures(Map<String, Map<Integer, Integer>> values) {
+    values.forEach((metricKey, valuesByLine) -> lineMeasures.computeIfAbsent(metricKey, key -> new LinkedHashMap<>()).putAll(valuesByLine));
+    lineMeasuresSaved = true;
+  }
+
+  void addHighlighting(List<Highlight> fileHighlights) {
+    if (highlights == null) {
+      highlights = new ArrayList<>();
+    }
+    highlights.addAll(fileHighlights);
+  }
+
+  /**
+   * Saves the results on the given file, as they were saved when recorded.
+   */
+  public void replay(SensorContext context, FileLinesContextFactory fileLinesContextFactory, InputFile inputFile) {
+    for (Issue issue : issues) {
+      issue.replay(context, inputFile);
+    }
+    measures.forEach((metricKey, value) -> saveMeasure(context, inputFile, metricKey, value));
+    if (lineMeasuresSaved) {
+      FileLinesContext fileLinesContext = fileLinesContextFactory.createFor(inputFile);
+      lineMeasures.forEach((metricKey, valuesByLine) -> valuesByLine.forEach((line, value) -> fileLinesContext.setIntValue(metricKey, line, value)));
+      fileLinesContext.save();
+    }
+    if (highlights != null) {
+      NewHighlighting highlighting = context.newHighlighting().onFile(inputFile);
+      highlights.forEach(highlight -> highlight.replay(highlighting));
+      highlighting.save();
+    }
+  }
+
+  private static void saveMeasure(SensorContext context, InputFile inputFile, String metricKey, Integer value) {
+    context.<Integer>newMeasure()
+      .forMetric(CACHEABLE_METRICS.get(metricKey))
+      .withValue(value)
+      .on(inputFile)
+      .save();
+  }
+
+  public byte[] serialize() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(FORMAT_VERSION);
+      out.writeInt(issues.size());
+      for (Issue issue : issues) {
+        issue.write(out);
+      }
+      writeIntMap(out, measures);
+      out.writeBoolean(lineMeasuresSaved);
+      out.writeInt(lineMeasures.size());
+      for (Map.Entry<String, Map<Integer, Integer>> entry : lineMeasures.entrySet()) {
+        out.writeUTF(entry.getKey());
+        out.writeInt(entry.getValue().size());
+        for (Map.Entry<Integer, Integer> lineValue : entry.getValue().entrySet()) {
+          out.writeInt(lineValue.getKey());
+          out.writeInt(lineValue.getValue());
+        }
+      }
+      out.writeInt(highlights == null ? -1 : highlights.size());
+      if (highlights != null) {
+        for (Highlight highlight : highlights) {
+          highlight.write(out);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to serialize the analysis of an XML file", e);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @return the deserialized analysis, or null if it was serialized in another format or with measures which cannot be replayed
+   */
+  @CheckForNull
+  public static FileAnalysis deserialize(InputStream input) throws IOException {
+    DataInputStream in = new DataInputStream(input);
+    if (in.readInt() != FORMAT_VERSION) {
+      return null;
+    }
+    FileAnalysis analysis = new FileAnalysis();
+    int issueCount = in.readInt();
+    for (int i = 0; i < issueCount; i++) {
+      analysis.issues.add(Issue.read(in));
+    }
+    analysis.measures.putAll(readIntMap(in));
+    if (!CACHEABLE_METRICS.keySet().containsAll(analysis.measures.keySet())) {
+      return null;
+    }
+    analysis.lineMeasuresSaved = in.readBoolean();
+    int lineMetricCount = in.readInt();
+    for (int i = 0; i < lineMetricCount; i++) {
+      String metricKey = in.readUTF();
+      Map<Integer, Integer> valuesByLine = new LinkedHashMap<>();
+      int lineCount = in.readInt();
+      for (int j = 0; j < lineCount; j++) {
+        valuesByLine.put(in.readInt(), in.readInt());
+      }
+      analysis.lineMeasures.put(metricKey, valuesByLine);
+    }
+    int highlightCount = in.readInt();
+    if (highlightCount >= 0) {
+      analysis.highlights = new ArrayList<>();
+      for (int i = 0; i < highlightCount; i++) {
+        analysis.highlights.add(Highlight.read(in));
+      }
+    }
+    return analysis;
+  }
+
+  private static void writeIntMap(DataOutputStream out, Map<String, Integer> map) throws IOException {
+    out.writeInt(map.size());
+    for (Map.Entry<String, Integer> entry : map.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeInt(entry.getValue());
+    }
+  }
+
+  private static Map<String, Integer> readIntMap(DataInputStream in) throws IOException {
+    Map<String, Integer> map = new LinkedHashMap<>();
+    int size = in.readInt();
+    for (int i = 0; i < size; i++) {
+      map.put(in.readUTF(), in.readInt());
+    }
+    return map;
+  }
+
+  private static void writeOptionalString(DataOutputStream out, @Nullable String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  @CheckForNull
+  private static String readOptionalString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  static final class Range {
+    private final int startLine;
+    private final int startLineOffset;
+    private final int endLine;
+    private final int endLineOffset;
+
+    Range(int startLine, int startLineOffset, int endLine, int endLineOffset) {
+      this.startLine = startLine;
+      this.startLineOffset = startLineOffset;
+      this.endLine = endLine;
+      this.endLineOffset = endLineOffset;
+    }
+
+    static Range of(TextRange textRange) {
+      return new Range(textRange.start().line(), textRange.start().lineOffset(), textRange.end().line(), textRange.end().lineOffset());
+    }
+
+    private TextRange toTextRange(InputFile inputFile) {
+      return inputFile.newRange(startLine, startLineOffset, endLine, endLineOffset);
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      out.writeInt(startLine);
+      out.writeInt(startLineOffset);
+      out.writeInt(endLine);
+      out.writeInt(endLineOffset);
+    }
+
+    private static Range read(DataInputStream in) throws IOException {
+      return new Range(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+    }
+  }
+
+  static final class Location {
+    @Nullable
+    Range range;
+    @Nullable
+    String message;
+
+    private NewIssueLocation toNewLocation(NewIssue newIssue, InputFile inputFile) {
+      NewIssueLocation location = newIssue.newLocation().on(inputFile);
+      if (range != null) {
+        location.at(range.toTextRange(inputFile));
+      }
+      if (message != null) {
+        location.message(message);
+      }
+      return location;
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      out.writeBoolean(range != null);
+      if (range != null) {
+        range.write(out);
+      }
+      writeOptionalString(out, message);
+    }
+
+    private static Location read(DataInputStream in) throws IOException {
+      Location location = new Location();
+      if (in.readBoolean()) {
+        location.range = Range.read(in);
+      }
+      location.message = readOptionalString(in);
+      return location;
+    }
+  }
+
+  static final class Issue {
+    @Nullable
+    RuleKey ruleKey;
+    @Nullable
+    Double gap;
+    @Nullable
+    Location primaryLocation;
+    final List<Location> secondaryLocations = new ArrayList<>();
+    final List<List<Location>> flows = new ArrayList<>();
+
+    private void replay(SensorContext context, InputFile inputFile) {
+      NewIssue newIssue = context.newIssue();
+      if (ruleKey != null) {
+        newIssue.forRule(ruleKey);
+      }
+      if (gap != null) {
+        newIssue.gap(gap);
+      }
+      if (primaryLocation != null) {
+        newIssue.at(primaryLocation.toNewLocation(newIssue, inputFile));
+      }
+      secondaryLocations.forEach(location -> newIssue.addLocation(location.toNewLocation(newIssue, inputFile)));
+      flows.forEach(flow -> newIssue.addFlow(flow.stream().map(location -> location.toNewLocation(newIssue, inputFile)).toList()));
+      newIssue.save();
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      writeOptionalString(out, ruleKey == null ? null : ruleKey.toString());
+      out.writeBoolean(gap != null);
+      if (gap != null) {
+        out.writeDouble(gap);
+      }
+      out.writeBoolean(primaryLocation != null);
+      if (primaryLocation != null) {
+        primaryLocation.write(out);
+      }
+      writeLocations(out, secondaryLocations);
+      out.writeInt(flows.size());
+      for (List<Location> flow : flows) {
+        writeLocations(out, flow);
+      }
+    }
+
+    private static Issue read(DataInputStream in) throws IOException {
+      Issue issue = new Issue();
+      String ruleKey = readOptionalString(in);
+      issue.ruleKey = ruleKey == null ? null : RuleKey.parse(ruleKey);
+      issue.gap = in.readBoolean() ? in.readDouble() : null;
+      if (in.readBoolean()) {
+        issue.primaryLocation = Location.read(in);
+      }
+      issue.secondaryLocations.addAll(readLocations(in));
+      int flowCount = in.readInt();
+      for (int i = 0; i < flowCount; i++) {
+        issue.flows.add(readLocations(in));
+      }
+      return issue;
+    }
+
+    private static void writeLocations(DataOutputStream out, List<Location> locations) throws IOException {
+      out.writeInt(locations.size());
+      for (Location location : locations) {
+        location.write(out);
+      }
+    }
+
+    private static List<Location> readLocations(DataInputStream in) throws IOException {
+      int count = in.readInt();
+      List<Location> locations = new ArrayList<>(count);
+      for (int i = 0; i < count; i++) {
+        locations.add(Location.read(in));
+      }
+      return locations;
+    }
+  }
+
+  static final class Highlight {
+    private final Range range;
+    private final TypeOfText type;
+
+    Highlight(Range range, TypeOfText type) {
+      this.range = range;
+      this.type = type;
+    }
+
+    private void replay(NewHighlighting highlighting) {
+      highlighting.highlight(range.startLine, range.startLineOffset, range.endLine, range.endLineOffset, type);
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      range.write(out);
+      out.writeUTF(type.name());
+    }
+
+    private static Highlight read(DataInputStream in) throws IOException {
+      return new Highlight(Range.read(in), TypeOfText.valueOf(in.readUTF()));
+    }
+  }
+
+}
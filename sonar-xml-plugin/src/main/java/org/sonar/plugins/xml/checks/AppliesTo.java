@@ -0,0 +1,45 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.checks;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the kind of files a check can raise issues on, so that the sensor does not invoke it on other files.
+ * <p>
+ * A file is applicable when it matches each of the non-empty criteria: one of the {@link #fileNames()} (case-insensitive),
+ * one of the {@link #rootElements()} (local name of the root element, ignoring its prefix) and one of the {@link #namespaces()}
+ * (namespace URI of the root element). Checks without this annotation are invoked on all the files.
+ * <p>
+ * This is only an optimization: checks still have to ignore the files they are not interested in.
+ */
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface AppliesTo {
+
+  String[] fileNames() default {};
+
+  String[] rootElements() default {};
+
+  String[] namespaces() default {};
+
+}
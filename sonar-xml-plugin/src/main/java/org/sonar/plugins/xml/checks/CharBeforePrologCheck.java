@@ -17,24 +17,46 @@
 package org.sonar.plugins.xml.checks;
 
 import java.util.Collections;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.check.Rule;
+import org.sonar.plugins.xml.streaming.IssueReporter;
+import org.sonarsource.analyzer.commons.xml.PrologElement;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
 import org.sonarsource.analyzer.commons.xml.XmlTextRange;
 import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
 
 @Rule(key = CharBeforePrologCheck.RULE_KEY)
-public class CharBeforePrologCheck extends SonarXmlCheck {
+public class CharBeforePrologCheck extends SonarXmlCheck implements StreamingCheck {
 
   public static final String RULE_KEY = "S1778";
+  private static final String MESSAGE = "Remove all characters located before \"<?xml\".";
+
+  private IssueReporter streamingIssueReporter;
 
   @Override
   public void scanFile(XmlFile file) {
     file.getPrologElement().ifPresent(prologElement -> {
-      XmlTextRange prologStartLocation = prologElement.getPrologStartLocation();
-      if (prologStartLocation.getStartLine() != 1 || prologStartLocation.getStartColumn() != 0) {
-        reportIssue(prologStartLocation, "Remove all characters located before \"<?xml\".", Collections.emptyList());
+      if (hasCharBefore(prologElement)) {
+        reportIssue(prologElement.getPrologStartLocation(), MESSAGE, Collections.emptyList());
       }
     });
   }
 
+  @Override
+  public void startStreaming(InputFile inputFile, IssueReporter issueReporter) {
+    this.streamingIssueReporter = issueReporter;
+  }
+
+  @Override
+  public void visitProlog(PrologElement prolog) {
+    if (hasCharBefore(prolog)) {
+      streamingIssueReporter.reportIssue(prolog.getPrologStartLocation(), MESSAGE);
+    }
+  }
+
+  private static boolean hasCharBefore(PrologElement prologElement) {
+    XmlTextRange prologStartLocation = prologElement.getPrologStartLocation();
+    return prologStartLocation.getStartLine() != 1 || prologStartLocation.getStartColumn() != 0;
+  }
+
 }
@@ -16,16 +16,23 @@
  */
 package org.sonar.plugins.xml.checks;
 
+import java.util.EnumSet;
 import java.util.Locale;
-import javax.xml.xpath.XPathExpression;
+import java.util.Set;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.plugins.xml.streaming.IssueReporter;
+import org.sonar.plugins.xml.visitors.DomTraversal;
+import org.sonar.plugins.xml.visitors.DomVisitor;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
+import org.sonarsource.analyzer.commons.xml.XmlTextRange;
+import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
+import org.w3c.dom.Comment;
 
-public abstract class CommentContainsPatternChecker extends SimpleXPathBasedCheck {
+public abstract class CommentContainsPatternChecker extends SonarXmlCheck implements DomVisitor, StreamingCheck {
 
   private final String pattern;
   private final String message;
-  private final XPathExpression xPathExpression = getXPathExpression("//comment()");
+  private IssueReporter streamingIssueReporter;
 
   protected CommentContainsPatternChecker(String pattern, String message) {
     this.pattern = pattern.toLowerCase(Locale.ENGLISH);
@@ -34,7 +41,12 @@ public abstract class CommentContainsPatternChecker extends SimpleXPathBasedChec
 
   @Override
   public final void scanFile(XmlFile file) {
-    checkIfCommentContainsPattern(file);
+    DomTraversal.visit(file, this);
+  }
+
+  @Override
+  public Set<NodeKind> nodeKinds() {
+    return EnumSet.of(NodeKind.COMMENT);
   }
 
   private static boolean isLetterAround(String line, String pattern) {
@@ -47,12 +59,27 @@ public abstract class CommentContainsPatternChecker extends SimpleXPathBasedChec
     return pre || post;
   }
 
-  private void checkIfCommentContainsPattern(XmlFile file) {
-    evaluateAsList(xPathExpression, file.getDocument()).forEach(node -> {
-      String comment = node.getNodeValue().toLowerCase(Locale.ENGLISH);
-      if (comment.contains(pattern) && !isLetterAround(comment, pattern)) {
-        reportIssue(node, message);
-      }
-    });
+  private boolean containsPattern(String commentContent) {
+    String comment = commentContent.toLowerCase(Locale.ENGLISH);
+    return comment.contains(pattern) && !isLetterAround(comment, pattern);
+  }
+
+  @Override
+  public final void visitComment(Comment node) {
+    if (containsPattern(node.getNodeValue())) {
+      reportIssue(node, message);
+    }
+  }
+
+  @Override
+  public final void startStreaming(InputFile inputFile, IssueReporter issueReporter) {
+    this.streamingIssueReporter = issueReporter;
+  }
+
+  @Override
+  public final void visitComment(XmlTextRange location, String content) {
+    if (containsPattern(content)) {
+      streamingIssueReporter.reportIssue(location, message);
+    }
   }
 }
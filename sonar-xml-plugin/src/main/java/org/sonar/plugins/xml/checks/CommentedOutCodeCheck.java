@@ -21,33 +21,71 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
-import javax.xml.xpath.XPathExpression;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.check.Rule;
-import org.sonarsource.analyzer.commons.xml.SafeDomParserFactory;
+import org.sonar.plugins.xml.streaming.IssueReporter;
+import org.sonar.plugins.xml.streaming.StartTag;
+import org.sonar.plugins.xml.visitors.DomTraversal;
+import org.sonar.plugins.xml.visitors.DomVisitor;
+import org.sonarsource.analyzer.commons.xml.PrologElement;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
 import org.sonarsource.analyzer.commons.xml.XmlTextRange;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
+import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
+import org.w3c.dom.Comment;
+import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
 @Rule(key = CommentedOutCodeCheck.RULE_KEY)
-public class CommentedOutCodeCheck extends SimpleXPathBasedCheck {
+public class CommentedOutCodeCheck extends SonarXmlCheck implements DomVisitor, StreamingCheck {
 
   public static final String RULE_KEY = "S125";
+  private static final String MESSAGE = "Remove this commented out code.";
 
-  private final XPathExpression commentsExpression = getXPathExpression("//comment()");
+  private final List<Node> comments = new ArrayList<>();
 
   private final Set<Node> visitedNodes = new HashSet<>();
 
+  // in streaming mode, the comments following each other since the last token which is not a comment or blank characters
+  private final List<XmlTextRange> streamedCommentLocations = new ArrayList<>();
+  private final List<String> streamedComments = new ArrayList<>();
+  private IssueReporter streamingIssueReporter;
+  private Charset streamingCharset;
+
   @Override
   public void scanFile(XmlFile file) {
-    Charset charset = file.getInputFile().charset();
+    DomTraversal.visit(file, this);
+  }
+
+  @Override
+  public Set<NodeKind> nodeKinds() {
+    return EnumSet.of(NodeKind.COMMENT);
+  }
+
+  @Override
+  public void startDocument(Document document) {
+    // a previous file may have been interrupted by a failure
+    comments.clear();
+    visitedNodes.clear();
+  }
+
+  @Override
+  public void visitComment(Comment comment) {
+    if (comment.getTextContent().trim().startsWith("<")) {
+      comments.add(comment);
+    }
+  }
+
+  @Override
+  public void endDocument(Document document) {
+    Charset charset = inputFile().charset();
 
-    for (Node comment : getComments(file)) {
+    for (Node comment : comments) {
       if (visitedNodes.contains(comment)) {
         // already reported in previous issue
         continue;
@@ -57,27 +95,113 @@ public class CommentedOutCodeCheck extends SimpleXPathBasedCheck {
       visitedNodes.addAll(siblingComments);
     }
     // clear for next XML file
+    comments.clear();
     visitedNodes.clear();
   }
 
   private void checkCommentBlock(List<Node> comments, Charset charset) {
-    int numberComments = comments.size();
+    List<String> contents = comments.stream().map(Node::getTextContent).toList();
+    XmlTextRange commentedOutCode = commentedOutCode(comments.stream().map(XmlFile::nodeLocation).toList(), contents, charset);
+    if (commentedOutCode != null) {
+      reportIssue(commentedOutCode, MESSAGE, Collections.emptyList());
+    }
+  }
+
+  /**
+   * @return the location of the commented out code found in the given consecutive comments, if any
+   */
+  @CheckForNull
+  private static XmlTextRange commentedOutCode(List<XmlTextRange> locations, List<String> contents, Charset charset) {
+    int numberComments = contents.size();
+    String text = String.join("\n", contents);
+    int[] starts = new int[numberComments];
+    for (int i = 1; i < numberComments; i++) {
+      starts[i] = starts[i - 1] + contents.get(i - 1).length() + 1;
+    }
+    // only the suffixes whose tags balance are parsed
+    boolean[] candidates = TagBalanceScanner.candidates(text, starts);
     for (int i = 0; i < numberComments; i++) {
       // considering all the combinations, starting from the biggest list possible and reducing from the top then
-      List<Node> commentsGroup = comments.subList(i, numberComments);
-      if (isParseableXml(commentsGroup, charset)) {
-        XmlTextRange start = XmlFile.nodeLocation(commentsGroup.get(0));
-        XmlTextRange end = XmlFile.nodeLocation(commentsGroup.get(commentsGroup.size() - 1));
-        reportIssue(new XmlTextRange(start, end), "Remove this commented out code.", Collections.emptyList());
-        break;
+      if (candidates[i] && isParseableXml(text.substring(starts[i]), charset)) {
+        return new XmlTextRange(locations.get(i), locations.get(numberComments - 1));
       }
     }
+    return null;
+  }
+
+  @Override
+  public void startStreaming(InputFile inputFile, IssueReporter issueReporter) {
+    this.streamingIssueReporter = issueReporter;
+    this.streamingCharset = inputFile.charset();
+    streamedCommentLocations.clear();
+    streamedComments.clear();
   }
 
-  private List<Node> getComments(XmlFile file) {
-    return evaluateAsList(commentsExpression, file.getDocument()).stream()
-      .filter(comment -> comment.getTextContent().trim().startsWith("<"))
-      .toList();
+  @Override
+  public void visitComment(XmlTextRange location, String content) {
+    streamedCommentLocations.add(location);
+    streamedComments.add(content);
+  }
+
+  @Override
+  public void visitCharacters(XmlTextRange location, CharSequence characters) {
+    if (!streamedComments.isEmpty() && !characters.toString().trim().isEmpty()) {
+      checkStreamedComments();
+    }
+  }
+
+  @Override
+  public void visitProlog(PrologElement prolog) {
+    checkStreamedComments();
+  }
+
+  @Override
+  public void visitStartTag(StartTag startTag) {
+    checkStreamedComments();
+  }
+
+  @Override
+  public void visitEndTag(XmlTextRange location) {
+    checkStreamedComments();
+  }
+
+  @Override
+  public void visitCdata(XmlTextRange startLocation, XmlTextRange endLocation) {
+    checkStreamedComments();
+  }
+
+  @Override
+  public void visitDocumentType(XmlTextRange location) {
+    checkStreamedComments();
+  }
+
+  @Override
+  public void visitProcessingInstruction(XmlTextRange location) {
+    checkStreamedComments();
+  }
+
+  @Override
+  public void endDocument() {
+    checkStreamedComments();
+  }
+
+  /**
+   * Same as the comment siblings checked on the tree: the block starts at the first comment looking like code.
+   */
+  private void checkStreamedComments() {
+    for (int i = 0; i < streamedComments.size(); i++) {
+      if (streamedComments.get(i).trim().startsWith("<")) {
+        int size = streamedComments.size();
+        XmlTextRange commentedOutCode = commentedOutCode(streamedCommentLocations.subList(i, size), streamedComments.subList(i, size),
+          streamingCharset);
+        if (commentedOutCode != null) {
+          streamingIssueReporter.reportIssue(commentedOutCode, MESSAGE);
+        }
+        break;
+      }
+    }
+    streamedCommentLocations.clear();
+    streamedComments.clear();
   }
 
   private static List<Node> getNextCommentSiblings(Node comment) {
@@ -100,13 +224,10 @@ public class CommentedOutCodeCheck extends SimpleXPathBasedCheck {
     return current.getTextContent().trim().isEmpty();
   }
 
-  private static boolean isParseableXml(List<Node> siblingComments, Charset charset) {
-    String commentsAsSingleString = siblingComments.stream()
-      .map(Node::getTextContent)
-      .collect(Collectors.joining("\n"));
-
+  // Visible for testing
+  static boolean isParseableXml(String commentsAsSingleString, Charset charset) {
     try (ByteArrayInputStream stream = new ByteArrayInputStream(commentsAsSingleString.getBytes(charset))) {
-      SafeDomParserFactory.createDocumentBuilder(false).parse(stream);
+      WellFormednessParser.parse(stream);
     } catch (IOException | SAXException e) {
       if ("The markup in the document following the root element must be well-formed.".equals(e.getMessage())) {
         return retryParseWrappedWithRootElement(commentsAsSingleString, charset);
@@ -123,7 +244,7 @@ public class CommentedOutCodeCheck extends SimpleXPathBasedCheck {
     commentsAsStringBuilder.append(commentsAsSingleString);
     commentsAsStringBuilder.append("</root>");
     try (ByteArrayInputStream stream = new ByteArrayInputStream(commentsAsStringBuilder.toString().getBytes(charset))) {
-      SafeDomParserFactory.createDocumentBuilder(false).parse(stream);
+      WellFormednessParser.parse(stream);
     } catch (IOException | SAXException e) {
       // swallow exception, we are just trying to parse to see if it could be some XML code
       return false;
@@ -16,24 +16,34 @@
  */
 package org.sonar.plugins.xml.checks;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 import javax.annotation.Nullable;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 import org.sonar.plugins.xml.Xml;
+import org.sonar.plugins.xml.tree.ElementLocations;
+import org.sonar.plugins.xml.tree.LineIndex;
+import org.sonar.plugins.xml.visitors.DomTraversal;
+import org.sonar.plugins.xml.visitors.DomVisitor;
 import org.sonarsource.analyzer.commons.annotations.DeprecatedRuleKey;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
 import org.sonarsource.analyzer.commons.xml.XmlTextRange;
 import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.Text;
 
-import static org.sonar.plugins.xml.Utils.isSelfClosing;
+import static org.sonar.plugins.xml.tree.Positions.column;
+import static org.sonar.plugins.xml.tree.Positions.line;
 
 @Rule(key = "S1120")
 @DeprecatedRuleKey(ruleKey = "IndentCheck", repositoryKey = Xml.REPOSITORY_KEY)
-public class IndentationCheck extends SonarXmlCheck {
+public class IndentationCheck extends SonarXmlCheck implements DomVisitor {
 
   private static final String MESSAGE = "Make this line start after %d spaces to indent the code consistently.";
 
@@ -51,9 +61,36 @@ public class IndentationCheck extends SonarXmlCheck {
     type = "INTEGER")
   private int tabSize = 2;
 
+  /**
+   * For each element being visited, and the document at index 0: whether an issue has been reported on the current line
+   * of its children, in which case the following children on the same line are not validated.
+   */
+  private final BitSet issueOnLine = new BitSet();
+  /**
+   * For each element being visited, and the document at index 0: whether its children are encapsulated in a tag which is
+   * inside lines of text.
+   */
+  private final BitSet withinTextLines = new BitSet();
+  // for each element being visited: the indentation of its start tag, -1 if its indentation is not checked
+  private int[] startIndents = new int[16];
+  private int depth;
+  // depth inside a subtree which is not validated, 0 outside of such subtree
+  private int skippedDepth;
+  private ElementLocations locations;
+  private LineIndex lines;
+  // for each line: the number of its leading spaces and tabulations, -1 if not computed yet, and their width
+  private int[] indentLengths;
+  private int[] indentWidths;
+
   @Override
   public void scanFile(XmlFile file) {
-    validateIndent(file.getDocument());
+    lines = LineIndex.of(file);
+    DomTraversal.visit(file, this);
+  }
+
+  @Override
+  public Set<NodeKind> nodeKinds() {
+    return EnumSet.of(NodeKind.ELEMENT, NodeKind.TEXT);
   }
 
   public void setIndentSize(int indentSize) {
@@ -64,48 +101,68 @@ public class IndentationCheck extends SonarXmlCheck {
     this.tabSize = tabSize;
   }
 
-  private boolean validateIndent(Node node) {
-    if (node.getNodeType() == Node.ELEMENT_NODE && checkIndentation((Element) node)) {
-      return true;
-    }
-
-    boolean issueOnLine = false;
+  @Override
+  public void startDocument(Document document) {
+    issueOnLine.clear();
+    withinTextLines.clear();
+    depth = 0;
+    skippedDepth = 0;
+    locations = ElementLocations.of(document);
+    indentLengths = new int[lines.lineCount() + 1];
+    Arrays.fill(indentLengths, -1);
+    indentWidths = new int[lines.lineCount() + 1];
+  }
 
-    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
-      switch (child.getNodeType()) {
-        case Node.ELEMENT_NODE:
-          if (!issueOnLine) {
-            issueOnLine = validateIndent(child);
-          }
-          break;
-        case Node.TEXT_NODE:
-          if (child.getTextContent().contains("\n")) {
-            issueOnLine = false;
-          }
-          break;
-        case Node.COMMENT_NODE:
-        default:
-          break;
-      }
+  @Override
+  public void enterElement(Element element) {
+    if (skippedDepth > 0) {
+      skippedDepth++;
+    } else if (issueOnLine.get(depth) || checkIndentation(element)) {
+      // if reporting on start node, don't report on rest of the block, nor on the following elements of the line
+      issueOnLine.set(depth);
+      skippedDepth = 1;
+    } else {
+      withinTextLines.set(depth + 1, element.getChildNodes().getLength() == 1
+        && (isNonEmptyTextNode(element.getPreviousSibling()) || withinTextLines.get(depth)));
+      depth++;
+      issueOnLine.clear(depth);
     }
+  }
 
-    // Check indentation of closing tag
-    if (node.getNodeType() == Node.ELEMENT_NODE) {
-      checkClosingTag((Element) node);
+  @Override
+  public void visitText(Text text) {
+    if (skippedDepth == 0 && text.getTextContent().contains("\n")) {
+      issueOnLine.clear(depth);
     }
+  }
 
-    return false;
+  @Override
+  public void leaveElement(Element element) {
+    if (skippedDepth > 0) {
+      skippedDepth--;
+    } else {
+      // Check indentation of closing tag
+      checkClosingTag(element);
+      depth--;
+    }
   }
 
   private boolean checkIndentation(Element element) {
-    if (!needToCheckIndentation(element)) {
+    if (depth == startIndents.length) {
+      startIndents = Arrays.copyOf(startIndents, depth * 2);
+    }
+    if (!needToCheckIndentation(element, withinTextLines.get(depth))) {
+      startIndents[depth] = -1;
       return false;
     }
 
-    int expectedIndent = depth(element) * indentSize;
-    if (expectedIndent != startIndent(element.getPreviousSibling())) {
-      reportIssue(XmlFile.startLocation(element), expectedIndent);
-      // if reporting on start node, don't report on rest of the block
+    int id = locations.id(element);
+    // the document element is not preceded by text, the white spaces before it are not part of the document
+    int startIndent = depth == 0 ? startIndent(element.getPreviousSibling()) : startIndent(locations.start(id), element.getPreviousSibling());
+    startIndents[depth] = startIndent;
+    int expectedIndent = depth * indentSize;
+    if (expectedIndent != startIndent) {
+      reportIssue(locations.startLocation(id), expectedIndent);
       return true;
     }
     return false;
@@ -115,15 +172,42 @@ public class IndentationCheck extends SonarXmlCheck {
     reportIssue(textRange, String.format(MESSAGE, expectedIndent), Collections.emptyList());
   }
 
-  private static int depth(Node node) {
-    int depth = 0;
-    for (Node parent = node.getParentNode(); parent.getParentNode() != null; parent = parent.getParentNode()) {
-      depth++;
+  /**
+   * @param position start of a tag
+   * @param previousSibling node preceding the tag, whose text ends with the indentation when the tag starts a line
+   */
+  private int startIndent(long position, @Nullable Node previousSibling) {
+    int line = line(position);
+    if (indentLength(line) == column(position)) {
+      return indentWidths[line];
     }
-    return depth;
+    return startIndent(previousSibling);
   }
 
-  private int startIndent(Node node) {
+  private int indentLength(int line) {
+    if (indentLengths[line] == -1) {
+      int start = lines.lineStart(line);
+      int end = lines.lineEnd(line);
+      String text = lines.text();
+      int width = 0;
+      int i = start;
+      for (; i < end; i++) {
+        char c = text.charAt(i);
+        if (c == '\t') {
+          width += tabSize;
+        } else if (c == ' ') {
+          width++;
+        } else {
+          break;
+        }
+      }
+      indentLengths[line] = i - start;
+      indentWidths[line] = width;
+    }
+    return indentLengths[line];
+  }
+
+  private int startIndent(@Nullable Node node) {
     int indent = 0;
     for (Node sibling = node; sibling != null; sibling = sibling.getPreviousSibling()) {
       short nodeType = sibling.getNodeType();
@@ -157,17 +241,17 @@ public class IndentationCheck extends SonarXmlCheck {
   }
 
   private void checkClosingTag(Element element) {
-    if (isSelfClosing(element)) {
+    int id = locations.id(element);
+    if (locations.isSelfClosing(id)) {
       return;
     }
-    XmlTextRange startLocation = XmlFile.startLocation(element);
-    XmlTextRange endLocation = XmlFile.endLocation(element);
-    if (startLocation.getEndLine() != endLocation.getStartLine()) {
-      if (!needToCheckIndentation(element)) {
+    if (line(locations.startTagEnd(id)) != line(locations.endTagStart(id))) {
+      // the element being left is at depth - 1
+      int startIndent = startIndents[depth - 1];
+      if (startIndent == -1) {
         return;
       }
-      int startIndent = startIndent(element.getPreviousSibling());
-      int endIndent = startIndent(element.getLastChild());
+      int endIndent = startIndent(locations.endTagStart(id), element.getLastChild());
 
       if (startIndent == endIndent) {
         return;
@@ -199,12 +283,15 @@ public class IndentationCheck extends SonarXmlCheck {
           .trim().isBlank();
 
       if (!isTextContinuingOnClosingTagLine) {
-        reportIssue(endLocation, startIndent);
+        reportIssue(locations.endLocation(id), startIndent);
       }
     }
   }
 
-  private static boolean needToCheckIndentation(Element element) {
+  /**
+   * @param withinTextLines whether the element is encapsulated in a tag which is inside lines of text
+   */
+  private static boolean needToCheckIndentation(Element element, boolean withinTextLines) {
     // When tag is inside lines of text we do not check indentation
 
     if (element.getChildNodes().getLength() > 1) {
@@ -222,13 +309,7 @@ public class IndentationCheck extends SonarXmlCheck {
     }
 
     // Current tag can be encapsulated in another tag which is inside lines of text
-    for (Node parent = element.getParentNode(); parent != null && parent.getChildNodes().getLength() == 1; parent = parent.getParentNode()) {
-      short parentType = parent.getNodeType();
-      if (parentType == Node.ELEMENT_NODE && isNonEmptyTextNode(parent.getPreviousSibling())) {
-        return false;
-      }
-    }
-    return true;
+    return !withinTextLines;
   }
 
   private static boolean isNonEmptyTextNode(@Nullable Node node) {
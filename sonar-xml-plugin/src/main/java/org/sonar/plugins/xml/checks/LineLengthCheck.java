@@ -17,10 +17,12 @@
 package org.sonar.plugins.xml.checks;
 
 import java.util.Collections;
-import java.util.regex.Pattern;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
-import org.sonar.plugins.xml.Utils;
+import org.sonar.plugins.xml.lexical.LexicalScanner;
+import org.sonar.plugins.xml.lexical.LexicalVisitor;
+import org.sonar.plugins.xml.streaming.IssueReporter;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
 import org.sonarsource.analyzer.commons.xml.XmlTextRange;
 import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
@@ -29,7 +31,7 @@ import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
  * RSPEC-103
  */
 @Rule(key = LineLengthCheck.RULE_KEY)
-public class LineLengthCheck extends SonarXmlCheck {
+public class LineLengthCheck extends SonarXmlCheck implements StreamingCheck, LexicalVisitor {
 
   public static final String RULE_KEY = "S103";
   private static final int DEFAULT_LENGTH = 120;
@@ -41,7 +43,7 @@ public class LineLengthCheck extends SonarXmlCheck {
     type = "INTEGER")
   private int maximumLineLength = DEFAULT_LENGTH;
 
-  private static final Pattern RTRIM = Pattern.compile("\\s+$");
+  private IssueReporter issueReporter;
 
   public void setMaximumLineLength(int maximumLineLength) {
     this.maximumLineLength = maximumLineLength;
@@ -49,21 +51,20 @@ public class LineLengthCheck extends SonarXmlCheck {
 
   @Override
   public void scanFile(XmlFile file) {
-    int lineNumber = 1;
-    for (String line : Utils.splitLines(file.getContents())) {
-      String trimLine = trimEndOfLine(line);
-      int length = trimLine.length();
-      if (length > maximumLineLength) {
-        XmlTextRange textRange = new XmlTextRange(lineNumber, 0, lineNumber, trimLine.length());
-        reportIssue(textRange,
-          String.format("Split this %d characters long line (which is greater than %d authorized).", length, maximumLineLength),
-          Collections.emptyList());
-      }
-      lineNumber++;
-    }
+    issueReporter = (location, message) -> reportIssue(location, message, Collections.emptyList());
+    LexicalScanner.visit(file, this);
+  }
+
+  @Override
+  public void startStreaming(InputFile inputFile, IssueReporter issueReporter) {
+    this.issueReporter = issueReporter;
   }
 
-  private static String trimEndOfLine(String line) {
-    return RTRIM.matcher(line).replaceAll("");
+  @Override
+  public void visitLine(int line, int length, int trimmedLength) {
+    if (trimmedLength > maximumLineLength) {
+      issueReporter.reportIssue(new XmlTextRange(line, 0, line, trimmedLength),
+        String.format("Split this %d characters long line (which is greater than %d authorized).", trimmedLength, maximumLineLength));
+    }
   }
 }
@@ -17,121 +17,118 @@
 package org.sonar.plugins.xml.checks;
 
 import java.util.Collections;
-import java.util.List;
-import java.util.Optional;
+import java.util.EnumSet;
+import java.util.Set;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.check.Rule;
 import org.sonar.plugins.xml.Xml;
+import org.sonar.plugins.xml.tree.ElementLocations;
+import org.sonar.plugins.xml.visitors.DomTraversal;
+import org.sonar.plugins.xml.visitors.DomVisitor;
 import org.sonarsource.analyzer.commons.annotations.DeprecatedRuleKey;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.XmlTextRange;
 import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+import static org.sonar.plugins.xml.tree.Positions.line;
+
 @Rule(key = "S2321")
 @DeprecatedRuleKey(ruleKey = "NewlineCheck", repositoryKey = Xml.REPOSITORY_KEY)
-public class NewlineCheck extends SonarXmlCheck {
+public class NewlineCheck extends SonarXmlCheck implements DomVisitor {
 
   private static final String MESSAGE_START = "Put this element on a separate line.";
   private static final String MESSAGE_END = "Add a newline after this tag.";
 
+  private ElementLocations locations;
+
   @Override
   public void scanFile(XmlFile file) {
-    visitNode(file.getDocument());
+    DomTraversal.visit(file, this);
   }
 
-  private void visitNode(Node node) {
-    List<Node> children = XmlFile.children(node);
-
-    if (node.getNodeType() == Node.ELEMENT_NODE) {
-      Element currentElement = (Element) node;
-      checkChildrenLine(children, currentElement);
-      checkNextSiblingLine(currentElement);
-    }
-
-    children.forEach(this::visitNode);
+  @Override
+  public Set<NodeKind> nodeKinds() {
+    return EnumSet.of(NodeKind.ELEMENT);
   }
 
-  private void checkChildrenLine(List<Node> children, Element currentElement) {
-    getOutermostChildElements(children).ifPresent(outermostChildElements -> {
-      XmlTextRange start = XmlFile.startLocation(currentElement);
-      XmlTextRange end = XmlFile.endLocation(currentElement);
-
-      XmlTextRange firstChildElementStart = XmlFile.startLocation(outermostChildElements.first);
-      XmlTextRange lastChildElementEnd = XmlFile.endLocation(outermostChildElements.last);
-
-      boolean firstChildBadlyFormatted = firstChildElementStart.getStartLine() == start.getEndLine();
-      boolean lastChildBadlyFormatted = lastChildElementEnd.getEndLine() == end.getStartLine();
-
-      boolean singleChildElement = outermostChildElements.last.equals(outermostChildElements.first);
-      boolean singleLineChildElement = firstChildElementStart.getStartLine() == lastChildElementEnd.getEndLine();
-      if (singleChildElement && singleLineChildElement && firstChildBadlyFormatted && lastChildBadlyFormatted) {
-        // report once on the entire child element
-        reportIssue(outermostChildElements.first, MESSAGE_START);
-      } else {
-        if (firstChildBadlyFormatted) {
-          reportIssue(firstChildElementStart, MESSAGE_START, Collections.emptyList());
-        }
-
-        if (lastChildBadlyFormatted) {
-          reportIssue(lastChildElementEnd, MESSAGE_END, Collections.emptyList());
-        }
-      }
-    });
+  @Override
+  public void startDocument(Document document) {
+    locations = ElementLocations.of(document);
   }
 
-  private void checkNextSiblingLine(Element node) {
-    XmlTextRange end = XmlFile.endLocation(node);
-    Element nextSiblingElement = getNextSiblingElement(node);
-    if (nextSiblingElement != null) {
-      XmlTextRange nextSiblingElementStart = XmlFile.startLocation(nextSiblingElement);
-      if (nextSiblingElementStart.getStartLine() == end.getEndLine()) {
-        reportIssue(nextSiblingElementStart, MESSAGE_START, Collections.emptyList());
-      }
-    }
+  @Override
+  public void enterElement(Element element) {
+    int id = locations.id(element);
+    checkChildrenLine(element, id);
+    checkNextSiblingLine(element, id);
   }
 
-  @Nullable
-  private static Element getNextSiblingElement(Node node) {
-    Node nextSibling = node.getNextSibling();
-    if (nextSibling == null) {
-      return null;
-    }
-    if (nextSibling.getNodeType() == Node.ELEMENT_NODE) {
-      return (Element) nextSibling;
+  private void checkChildrenLine(Element currentElement, int id) {
+    Element firstChildElement = nextElement(currentElement.getFirstChild());
+    if (firstChildElement == null) {
+      return;
     }
+    Element lastChildElement = previousElement(currentElement.getLastChild());
+    int firstChild = locations.id(firstChildElement);
+    int lastChild = firstChildElement == lastChildElement ? firstChild : locations.id(lastChildElement);
+
+    int firstChildStartLine = line(locations.start(firstChild));
+    int lastChildEndLine = line(locations.end(lastChild));
+
+    boolean firstChildBadlyFormatted = firstChildStartLine == line(locations.startTagEnd(id));
+    boolean lastChildBadlyFormatted = lastChildEndLine == line(locations.endTagStart(id));
+
+    boolean singleChildElement = firstChild == lastChild;
+    boolean singleLineChildElement = firstChildStartLine == lastChildEndLine;
+    if (singleChildElement && singleLineChildElement && firstChildBadlyFormatted && lastChildBadlyFormatted) {
+      // report once on the entire child element
+      reportIssue(firstChildElement, MESSAGE_START);
+    } else {
+      if (firstChildBadlyFormatted) {
+        reportIssue(locations.startLocation(firstChild), MESSAGE_START, Collections.emptyList());
+      }
 
-    return getNextSiblingElement(nextSibling);
+      if (lastChildBadlyFormatted) {
+        reportIssue(locations.endLocation(lastChild), MESSAGE_END, Collections.emptyList());
+      }
+    }
   }
 
-  private static Optional<OutermostChildElements> getOutermostChildElements(List<Node> children) {
-    Element firstChildElement = null;
-    Element lastChildElement = null;
-
-    for (Node child : children) {
-      if (child.getNodeType() == Node.ELEMENT_NODE) {
-        if (firstChildElement == null) {
-          firstChildElement = (Element) child;
-        }
-        lastChildElement = (Element) child;
+  private void checkNextSiblingLine(Element element, int id) {
+    Element nextSiblingElement = nextElement(element.getNextSibling());
+    if (nextSiblingElement != null) {
+      int nextSibling = locations.id(nextSiblingElement);
+      if (line(locations.start(nextSibling)) == line(locations.end(id))) {
+        reportIssue(locations.startLocation(nextSibling), MESSAGE_START, Collections.emptyList());
       }
     }
+  }
 
-    if (firstChildElement != null) {
-      return Optional.of(new OutermostChildElements(firstChildElement, lastChildElement));
+  /**
+   * @return the given node if it is an element, else its first following sibling which is an element
+   */
+  @CheckForNull
+  private static Element nextElement(@Nullable Node node) {
+    Node current = node;
+    while (current != null && current.getNodeType() != Node.ELEMENT_NODE) {
+      current = current.getNextSibling();
     }
-    return Optional.empty();
+    return (Element) current;
   }
 
-  private static class OutermostChildElements {
-    Element first = null;
-    Element last = null;
-
-    OutermostChildElements(Element first, Element last) {
-      this.first = first;
-      this.last = last;
+  /**
+   * @return the given node if it is an element, else its first preceding sibling which is an element
+   */
+  @CheckForNull
+  private static Element previousElement(@Nullable Node node) {
+    Node current = node;
+    while (current != null && current.getNodeType() != Node.ELEMENT_NODE) {
+      current = current.getPreviousSibling();
     }
+    return (Element) current;
   }
 
 }
@@ -0,0 +1,34 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.checks;
+
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.plugins.xml.streaming.IssueReporter;
+import org.sonar.plugins.xml.streaming.TokenVisitor;
+
+/**
+ * Check also able to analyze the files too large to be loaded as a tree, from their tokens, while they are read.
+ * Checks not implementing this interface are skipped on such files.
+ */
+public interface StreamingCheck extends TokenVisitor {
+
+  /**
+   * Called before the tokens of a file are visited.
+   */
+  void startStreaming(InputFile inputFile, IssueReporter issueReporter);
+
+}
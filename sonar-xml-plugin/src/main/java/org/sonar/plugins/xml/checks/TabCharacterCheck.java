@@ -18,11 +18,13 @@ package org.sonar.plugins.xml.checks;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.check.Rule;
-import org.sonar.plugins.xml.Utils;
 import org.sonar.plugins.xml.Xml;
+import org.sonar.plugins.xml.lexical.LexicalScanner;
+import org.sonar.plugins.xml.lexical.LexicalVisitor;
+import org.sonar.plugins.xml.streaming.IssueReporter;
 import org.sonarsource.analyzer.commons.annotations.DeprecatedRuleKey;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
 import org.sonarsource.analyzer.commons.xml.XmlTextRange;
@@ -33,36 +35,55 @@ import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
  */
 @Rule(key = TabCharacterCheck.RULE_KEY)
 @DeprecatedRuleKey(ruleKey = "IllegalTabCheck", repositoryKey = Xml.REPOSITORY_KEY)
-public class TabCharacterCheck extends SonarXmlCheck {
+public class TabCharacterCheck extends SonarXmlCheck implements StreamingCheck, LexicalVisitor {
 
   public static final String RULE_KEY = "S105";
-  private static final Pattern TABS_REGEX = Pattern.compile("\t++");
   private static final int MAX_REPORTED_LOCATION = 21;
+  private static final String MESSAGE = "Replace all tab characters in this file by sequences of white-spaces.";
+
+  private final List<XmlTextRange> firstTabLocations = new ArrayList<>();
+  private int extraTabsCount = 0;
+  // secondary locations are not reported in streaming mode
+  @Nullable
+  private IssueReporter streamingIssueReporter = null;
 
   @Override
   public void scanFile(XmlFile file) {
-    String content = file.getContents();
-    if (content.indexOf('\t') == -1) {
+    firstTabLocations.clear();
+    extraTabsCount = 0;
+    streamingIssueReporter = null;
+    LexicalScanner.visit(file, this);
+  }
+
+  @Override
+  public void startStreaming(InputFile inputFile, IssueReporter issueReporter) {
+    firstTabLocations.clear();
+    extraTabsCount = 0;
+    streamingIssueReporter = issueReporter;
+  }
+
+  @Override
+  public void visitTabs(int line, int startColumn, int endColumn) {
+    if (firstTabLocations.size() < MAX_REPORTED_LOCATION) {
+      firstTabLocations.add(new XmlTextRange(line, startColumn, line, endColumn));
+    } else {
+      extraTabsCount += endColumn - startColumn;
+    }
+  }
+
+  @Override
+  public void endFile() {
+    if (firstTabLocations.isEmpty()) {
       return;
     }
-    String[] lines = Utils.splitLines(content);
-    List<XmlTextRange> firstTabLocations = new ArrayList<>();
-    int extraTabsCount = 0;
-    for (int lineNumber = 1; lineNumber <= lines.length; lineNumber++) {
-      String line = lines[lineNumber - 1];
-      Matcher tabsMatcher = TABS_REGEX.matcher(line);
-      while (tabsMatcher.find()) {
-        if (firstTabLocations.size() < MAX_REPORTED_LOCATION) {
-          firstTabLocations.add(new XmlTextRange(lineNumber, tabsMatcher.start(), lineNumber, tabsMatcher.end()));
-        } else {
-          extraTabsCount += tabsMatcher.end() - tabsMatcher.start();
-        }
-      }
+    if (streamingIssueReporter != null) {
+      streamingIssueReporter.reportIssue(firstTabLocations.get(0), MESSAGE);
+    } else {
+      reportIssueWithSecondaries();
     }
-    reportIssue(firstTabLocations, extraTabsCount);
   }
 
-  private void reportIssue(List<XmlTextRange> firstTabLocations, int extraTabsCount) {
+  private void reportIssueWithSecondaries() {
     XmlTextRange primaryLocation = firstTabLocations.get(0);
     List<Secondary> secondaries = new ArrayList<>();
     for (int i = 1; i < firstTabLocations.size(); i++) {
@@ -71,7 +92,7 @@ public class TabCharacterCheck extends SonarXmlCheck {
       secondaries.add(new Secondary(range, "tab character(s)" +
         (limitReached && extraTabsCount > 0 ? (" (and " + extraTabsCount + " more in this file)") : "")));
     }
-    reportIssue(primaryLocation, "Replace all tab characters in this file by sequences of white-spaces.", secondaries);
+    reportIssue(primaryLocation, MESSAGE, secondaries);
   }
 
 }
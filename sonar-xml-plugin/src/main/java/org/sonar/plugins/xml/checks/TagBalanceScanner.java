@@ -0,0 +1,217 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.checks;
+
+import java.util.Arrays;
+
+/**
+ * Lightweight scan of the tags of a block of consecutive comments, finding in a single pass which of the suffixes of
+ * the block can not be well-formed XML, so that only the other ones are parsed.
+ * <p>
+ * A suffix can not be well-formed when it does not start with markup, or when its start and end tags do not balance.
+ * The scan is conservative: a suffix starting within some markup is only rejected when it does not start with
+ * markup, and all the suffixes are kept when the block contains markup this scan does not model, as a document type.
+ */
+final class TagBalanceScanner {
+
+  private final String text;
+  // start tags and end tags, in the order of the text
+  private int tokenCount = 0;
+  private int[] tokenStarts = new int[16];
+  private int[] nameStarts = new int[16];
+  private int[] nameEnds = new int[16];
+  private boolean[] endTags = new boolean[16];
+  // markup other than text, from markupStarts[i] to markupEnds[i] excluded
+  private int markupCount = 0;
+  private int[] markupStarts = new int[16];
+  private int[] markupEnds = new int[16];
+
+  private TagBalanceScanner(String text) {
+    this.text = text;
+  }
+
+  /**
+   * @param text the comments of the block, joined
+   * @param suffixStarts offsets in the text of the comments, in increasing order
+   * @return for each comment, false if the text starting at this comment can not be well-formed XML
+   */
+  static boolean[] candidates(String text, int[] suffixStarts) {
+    boolean[] candidates = new boolean[suffixStarts.length];
+    TagBalanceScanner scanner = new TagBalanceScanner(text);
+    if (!scanner.scan()) {
+      Arrays.fill(candidates, true);
+      return candidates;
+    }
+    int[] openEndTags = new int[scanner.tokenCount];
+    int openEndTagCount = 0;
+    boolean unbalanced = false;
+    int token = scanner.tokenCount - 1;
+    int markup = scanner.markupCount - 1;
+    for (int i = suffixStarts.length - 1; i >= 0; i--) {
+      int start = suffixStarts[i];
+      // tags are matched backward: an end tag waits for its start tag
+      for (; token >= 0 && scanner.tokenStarts[token] >= start && !unbalanced; token--) {
+        if (scanner.endTags[token]) {
+          openEndTags[openEndTagCount] = token;
+          openEndTagCount++;
+        } else if (openEndTagCount > 0 && scanner.sameName(token, openEndTags[openEndTagCount - 1])) {
+          openEndTagCount--;
+        } else {
+          unbalanced = true;
+        }
+      }
+      while (markup >= 0 && scanner.markupStarts[markup] >= start) {
+        markup--;
+      }
+      boolean withinMarkup = markup >= 0 && scanner.markupEnds[markup] > start;
+      candidates[i] = scanner.startsWithMarkup(start) && (withinMarkup || (!unbalanced && openEndTagCount == 0));
+    }
+    return candidates;
+  }
+
+  /**
+   * @return false if the text contains markup which is not modeled
+   */
+  private boolean scan() {
+    int i = 0;
+    while (i < text.length()) {
+      if (text.charAt(i) != '<') {
+        i++;
+        continue;
+      }
+      int end;
+      if (text.startsWith("<!--", i)) {
+        end = endOf("-->", i + 4);
+      } else if (text.startsWith("<![CDATA[", i)) {
+        end = endOf("]]>", i + 9);
+      } else if (text.startsWith("<!", i)) {
+        return false;
+      } else if (text.startsWith("<?", i)) {
+        end = endOf("?>", i + 2);
+      } else if (text.startsWith("</", i)) {
+        end = endOf(">", i + 2);
+        if (end != -1) {
+          addTag(i, i + 2, nameEnd(i + 2), true);
+        }
+      } else {
+        int nameEnd = nameEnd(i + 1);
+        if (nameEnd == i + 1) {
+          // not a tag, the parser fails on it
+          i++;
+          continue;
+        }
+        end = startTagEnd(nameEnd);
+        if (end != -1 && text.charAt(end - 2) != '/') {
+          addTag(i, i + 1, nameEnd, false);
+        }
+      }
+      if (end == -1) {
+        return false;
+      }
+      addMarkup(i, end);
+      i = end;
+    }
+    return true;
+  }
+
+  /**
+   * @return the offset following the given delimiter, -1 if not found
+   */
+  private int endOf(String delimiter, int from) {
+    int index = text.indexOf(delimiter, from);
+    return index == -1 ? -1 : (index + delimiter.length());
+  }
+
+  private int nameEnd(int from) {
+    int i = from;
+    while (i < text.length() && !isWhitespace(text.charAt(i)) && "/>\"'<".indexOf(text.charAt(i)) == -1) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * @return the offset following the {@code >} ending the start tag, skipping the quoted attribute values,
+   * -1 if the tag is not terminated or contains another tag
+   */
+  private int startTagEnd(int from) {
+    int i = from;
+    while (i < text.length()) {
+      char c = text.charAt(i);
+      if (c == '>') {
+        return i + 1;
+      } else if (c == '<') {
+        return -1;
+      } else if (c == '"' || c == '\'') {
+        i = text.indexOf(c, i + 1);
+        if (i == -1) {
+          return -1;
+        }
+      }
+      i++;
+    }
+    return -1;
+  }
+
+  private boolean startsWithMarkup(int from) {
+    int i = from;
+    // a byte order mark is skipped by the parser at the start of the content
+    if (i < text.length() && text.charAt(i) == '\uFEFF') {
+      i++;
+    }
+    while (i < text.length() && isWhitespace(text.charAt(i))) {
+      i++;
+    }
+    return i < text.length() && text.charAt(i) == '<';
+  }
+
+  private boolean sameName(int token, int otherToken) {
+    int length = nameEnds[token] - nameStarts[token];
+    return length == nameEnds[otherToken] - nameStarts[otherToken]
+      && text.regionMatches(nameStarts[token], text, nameStarts[otherToken], length);
+  }
+
+  private void addTag(int start, int nameStart, int nameEnd, boolean endTag) {
+    if (tokenCount == tokenStarts.length) {
+      int capacity = tokenCount * 2;
+      tokenStarts = Arrays.copyOf(tokenStarts, capacity);
+      nameStarts = Arrays.copyOf(nameStarts, capacity);
+      nameEnds = Arrays.copyOf(nameEnds, capacity);
+      endTags = Arrays.copyOf(endTags, capacity);
+    }
+    tokenStarts[tokenCount] = start;
+    nameStarts[tokenCount] = nameStart;
+    nameEnds[tokenCount] = nameEnd;
+    endTags[tokenCount] = endTag;
+    tokenCount++;
+  }
+
+  private void addMarkup(int start, int end) {
+    if (markupCount == markupStarts.length) {
+      markupStarts = Arrays.copyOf(markupStarts, markupCount * 2);
+      markupEnds = Arrays.copyOf(markupEnds, markupCount * 2);
+    }
+    markupStarts[markupCount] = start;
+    markupEnds[markupCount] = end;
+    markupCount++;
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+  }
+
+}
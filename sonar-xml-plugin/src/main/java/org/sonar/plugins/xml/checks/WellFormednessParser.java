@@ -0,0 +1,74 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.checks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import org.apache.xerces.jaxp.SAXParserFactoryImpl;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Checks that a content is well-formed XML, as the namespace-unaware parser of
+ * {@link org.sonarsource.analyzer.commons.xml.SafeDomParserFactory} would, without building its tree.
+ * <p>
+ * The parser is configured with the same safety features, created once per thread and reused from one content to the other.
+ */
+final class WellFormednessParser {
+
+  private static final ThreadLocal<XMLReader> READER = ThreadLocal.withInitial(WellFormednessParser::createReader);
+
+  private WellFormednessParser() {
+    // utility class, forbidden constructor
+  }
+
+  /**
+   * @throws SAXException the error raised by the first violation of the well-formedness constraints
+   */
+  static void parse(InputStream stream) throws IOException, SAXException {
+    READER.get().parse(new InputSource(stream));
+  }
+
+  private static XMLReader createReader() {
+    ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+    Thread.currentThread().setContextClassLoader(WellFormednessParser.class.getClassLoader());
+    try {
+      SAXParserFactory factory = new SAXParserFactoryImpl();
+      factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+      factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+      factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+      factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+      factory.setValidating(false);
+      factory.setNamespaceAware(false);
+      factory.setXIncludeAware(false);
+      XMLReader reader = factory.newSAXParser().getXMLReader();
+      // fatal errors are thrown, without being logged to the standard error
+      reader.setErrorHandler(new DefaultHandler());
+      return reader;
+    } catch (ParserConfigurationException | SAXException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      Thread.currentThread().setContextClassLoader(contextClassLoader);
+    }
+  }
+
+}
@@ -16,9 +16,17 @@
  */
 package org.sonar.plugins.xml.checks;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import javax.xml.namespace.NamespaceContext;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
@@ -30,18 +38,27 @@ import org.slf4j.LoggerFactory;
 import org.sonar.api.utils.WildcardPattern;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
+import org.sonar.plugins.xml.checks.xpath.NavigatedXPathExpression;
+import org.sonar.plugins.xml.checks.xpath.XPathNavigator;
+import org.sonar.plugins.xml.tree.DocumentViews;
+import org.sonar.plugins.xml.visitors.DomTraversal;
+import org.sonar.plugins.xml.visitors.DomVisitor;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
 import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 /**
  * RSPEC-140.
+ * <p>
+ * Expressions supported by {@link XPathNavigator} are evaluated while the document is traversed, along with the
+ * other rules, instead of being interpreted by JAXP on the whole document.
  */
 @Rule(key = XPathCheck.RULE_KEY)
-public class XPathCheck extends SonarXmlCheck {
+public class XPathCheck extends SonarXmlCheck implements DomVisitor {
 
   private static final Logger LOG = LoggerFactory.getLogger(XPathCheck.class);
 
@@ -60,7 +77,31 @@ public class XPathCheck extends SonarXmlCheck {
   private String message;
 
   @CheckForNull
-  private Boolean requiresNamespace = null;
+  private XPath xpath = null;
+
+  @CheckForNull
+  private WildcardPattern compiledFilePattern = null;
+
+  /**
+   * Prefixes are resolved when compiling the expression: it is compiled once for each binding of its prefixes met
+   * in the analyzed documents, and only once when it has none.
+   */
+  private final Map<Map<String, String>, XPathExpression> compiledExpressions = new HashMap<>();
+
+  @CheckForNull
+  private Set<String> expressionPrefixes = null;
+
+  /**
+   * What is known from the expression alone, before compiling it against the namespaces of a document.
+   */
+  private boolean expressionAnalyzed = false;
+
+  private boolean requiresNamespace = false;
+
+  @CheckForNull
+  private XPathNavigator navigator = null;
+
+  private final List<Node> matchingNodes = new ArrayList<>();
 
   @Override
   public void scanFile(XmlFile file) {
@@ -68,9 +109,14 @@ public class XPathCheck extends SonarXmlCheck {
       return;
     }
 
-    XPathExpression xPathExpression = getXPathExpression(file);
+    if (getNavigator() != null) {
+      DomTraversal.visit(file, this);
+      return;
+    }
+
+    XPathExpression xPathExpression = getXPathExpression(file.getDocument());
 
-    Document document = requiresNamespace() ? file.getNamespaceAwareDocument() : file.getNamespaceUnawareDocument();
+    Document document = requiresNamespace() ? file.getNamespaceAwareDocument() : DocumentViews.namespaceUnawareDocument(file);
     try {
       NodeList nodes = (NodeList) xPathExpression.evaluate(document, XPathConstants.NODESET);
       for (int i = 0; i < nodes.getLength(); i++) {
@@ -92,28 +138,97 @@ public class XPathCheck extends SonarXmlCheck {
     }
   }
 
-  private boolean requiresNamespace() {
-    if (requiresNamespace == null) {
-      requiresNamespace = false;
-      // '::' can be used for various xpath operator
-      for(String subExpr: expression.split("::")) {
-        // presence of ':' identifying a namespace requirement
-        if (subExpr.contains(":")
-        // explicit requirement of namespaces
-        || subExpr.contains("namespace-uri")) {
-          requiresNamespace = true;
+  @Override
+  public Set<NodeKind> nodeKinds() {
+    return EnumSet.of(NodeKind.ELEMENT);
+  }
+
+  @Override
+  public boolean namespaceAware() {
+    return requiresNamespace();
+  }
+
+  @Override
+  public boolean namespaceUnawareView() {
+    return true;
+  }
+
+  @CheckForNull
+  @Override
+  public Set<String> elementNames() {
+    XPathNavigator currentNavigator = getNavigator();
+    String name = currentNavigator == null ? null : currentNavigator.lastElementName();
+    return name == null ? null : Set.of(name);
+  }
+
+  @Override
+  public void startDocument(Document document) {
+    matchingNodes.clear();
+  }
+
+  @Override
+  public void enterElement(Element element) {
+    matchingNodes.addAll(Objects.requireNonNull(getNavigator()).selectOn(element));
+  }
+
+  @Override
+  public void endDocument(Document document) {
+    if (NavigatedXPathExpression.verifying()) {
+      try {
+        if (requiresNamespace()) {
+          NodeList expected = (NodeList) getXPathExpression(document).evaluate(document, XPathConstants.NODESET);
+          NavigatedXPathExpression.verify(expression, matchingNodes, expected);
+        } else {
+          // the namespace-aware document has been visited in place of the namespace-unaware one
+          Node counterpart = DocumentViews.counterpart(document);
+          NodeList expected = (NodeList) getXPathExpression(document).evaluate(counterpart, XPathConstants.NODESET);
+          NavigatedXPathExpression.verify(expression, matchingNodes.stream().map(DocumentViews::counterpart).toList(), expected);
         }
+      } catch (XPathExpressionException e) {
+        throw new IllegalStateException(e);
       }
     }
+    matchingNodes.forEach(node -> reportIssue(node, getMessage()));
+    matchingNodes.clear();
+  }
+
+  private boolean requiresNamespace() {
+    analyzeExpression();
     return requiresNamespace;
   }
 
+  private void analyzeExpression() {
+    if (expressionAnalyzed) {
+      return;
+    }
+    requiresNamespace = false;
+    // '::' can be used for various xpath operator
+    for (String subExpr : expression.split("::")) {
+      // presence of ':' identifying a namespace requirement
+      if (subExpr.contains(":")
+      // explicit requirement of namespaces
+      || subExpr.contains("namespace-uri")) {
+        requiresNamespace = true;
+      }
+    }
+    navigator = XPathNavigator.compile(expression);
+    if (navigator != null && !requiresNamespace) {
+      navigator = navigator.namespaceUnaware();
+    }
+    expressionAnalyzed = true;
+  }
+
   public void setExpression(String expression) {
     this.expression = expression;
+    this.expressionAnalyzed = false;
+    this.navigator = null;
+    this.compiledExpressions.clear();
+    this.expressionPrefixes = null;
   }
 
   public void setFilePattern(String filePattern) {
     this.filePattern = filePattern;
+    this.compiledFilePattern = null;
   }
 
   public void setMessage(String message) {
@@ -127,34 +242,79 @@ public class XPathCheck extends SonarXmlCheck {
     return "Change this XML node to not match: " + expression;
   }
 
-  private XPathExpression getXPathExpression(XmlFile file) {
+  @CheckForNull
+  private XPathNavigator getNavigator() {
+    analyzeExpression();
+    return navigator;
+  }
+
+  private XPathExpression getXPathExpression(Document document) {
+    NamespaceScope scope = NamespaceScope.of(document);
+    if (expressionPrefixes == null) {
+      return compile(scope);
+    }
+    Map<String, String> bindings = new HashMap<>();
+    for (String prefix : expressionPrefixes) {
+      bindings.put(prefix, scope.namespaceFor(prefix));
+    }
+    XPathExpression xPathExpression = compiledExpressions.get(bindings);
+    return xPathExpression != null ? xPathExpression : compile(scope);
+  }
+
+  private XPathExpression compile(NamespaceScope scope) {
+    if (xpath == null) {
+      xpath = XPathFactory.newInstance().newXPath();
+    }
+    DocumentNamespaceContext namespaceContext = new DocumentNamespaceContext(scope);
+    xpath.setNamespaceContext(namespaceContext);
     XPathExpression xPathExpression;
-    XPath xpath = XPathFactory.newInstance().newXPath();
-    PrefixResolver resolver = new PrefixResolver(file.getDocument().getDocumentElement());
-    xpath.setNamespaceContext(new DocumentNamespaceContext(resolver));
     try {
       xPathExpression = xpath.compile(expression);
     } catch (XPathExpressionException e) {
       throw new IllegalStateException("Failed to compile XPath expression based on user-provided parameter [" + expression + "]", e);
+    } finally {
+      namespaceContext.detach();
     }
+    expressionPrefixes = namespaceContext.bindings.keySet();
+    compiledExpressions.put(namespaceContext.bindings, xPathExpression);
     return xPathExpression;
   }
 
   private boolean isFileIncluded(XmlFile file) {
-    return filePattern == null || WildcardPattern.create(filePattern).match(file.getInputFile().absolutePath());
+    if (filePattern == null) {
+      return true;
+    }
+    if (compiledFilePattern == null) {
+      compiledFilePattern = WildcardPattern.create(filePattern);
+    }
+    return compiledFilePattern.match(file.getInputFile().absolutePath());
   }
 
+  /**
+   * Resolves the prefixes from the namespaces of a document while the expression is compiled, recording the resolved
+   * bindings. Once detached from the document, it only knows about these bindings.
+   */
   private static final class DocumentNamespaceContext implements NamespaceContext {
 
-    private final PrefixResolver resolver;
+    private final Map<String, String> bindings = new HashMap<>();
+    @Nullable
+    private NamespaceScope scope;
+
+    private DocumentNamespaceContext(NamespaceScope scope) {
+      this.scope = scope;
+    }
 
-    private DocumentNamespaceContext(PrefixResolver resolver) {
-      this.resolver = resolver;
+    private void detach() {
+      scope = null;
     }
 
+    @CheckForNull
     @Override
     public String getNamespaceURI(String prefix) {
-      return resolver.getNamespaceForPrefix(prefix);
+      if (scope != null && !bindings.containsKey(prefix)) {
+        bindings.put(prefix, scope.namespaceFor(prefix));
+      }
+      return bindings.get(prefix);
     }
 
     @Override
@@ -171,51 +331,44 @@ public class XPathCheck extends SonarXmlCheck {
   }
 
   /**
-   * An internal re-implementation of the PrefixResolver from the xalan-j library.
+   * Prefixes bound in the scope of the root element of a document, as resolved by the PrefixResolver of the xalan-j
+   * library from this element. Built in one pass over the root element, and shared by all the rules through the document.
    */
-  private static class PrefixResolver {
-    Node mContext;
+  private static final class NamespaceScope {
 
-    public PrefixResolver(Node xpathExpressionContext) {
-      mContext = xpathExpressionContext;
-    }
+    private static final String USER_DATA_KEY = NamespaceScope.class.getName();
 
-    public String getNamespaceForPrefix(String prefix) {
-      return getNamespaceForPrefix(prefix, mContext);
-    }
+    private final Map<String, String> namespaceByPrefix = new HashMap<>();
 
-    @CheckForNull
-    public String getNamespaceForPrefix(String prefix, Node namespaceContext) {
-      if ("xml".equals(prefix)) {
-        return "http://www.w3.org/XML/1998/namespace";
+    private NamespaceScope(Element root) {
+      namespaceByPrefix.put("xml", "http://www.w3.org/XML/1998/namespace");
+      String rootName = root.getNodeName();
+      int colon = rootName.indexOf(':');
+      if (colon >= 0) {
+        namespaceByPrefix.putIfAbsent(rootName.substring(0, colon), root.getNamespaceURI());
       }
-
-      for (Node current = namespaceContext; current != null; current = current.getParentNode()) {
-        if (current.getNodeName().indexOf(prefix + ":") == 0) {
-          return current.getNamespaceURI();
-        }
-        NamedNodeMap attributes = current.getAttributes();
-        for (int i = 0; i < attributes.getLength(); i++) {
-          Node attr = attributes.item(i);
-          if (prefix.equals(extractPrefixFromAttribute(attr))) {
-            return attr.getNodeValue();
-          }
+      NamedNodeMap attributes = root.getAttributes();
+      for (int i = 0; i < attributes.getLength(); i++) {
+        Node attribute = attributes.item(i);
+        String attributeName = attribute.getNodeName();
+        if (attributeName.startsWith("xmlns:")) {
+          namespaceByPrefix.putIfAbsent(attributeName.substring("xmlns:".length()), attribute.getNodeValue());
         }
       }
-      /*
-      Because of current test setup, we cannot create an XML file where a prefix's namespace is looked up but not found.
-      For this reason, the next line is not covered by our unit tests.
-       */
-      return null;
     }
 
-    @CheckForNull
-    private static String extractPrefixFromAttribute(Node attr) {
-      String attrName = attr.getNodeName();
-      if (attrName.startsWith("xmlns:")) {
-        return attrName.substring(attrName.indexOf(':') + 1);
+    private static NamespaceScope of(Document document) {
+      NamespaceScope scope = (NamespaceScope) document.getUserData(USER_DATA_KEY);
+      if (scope == null) {
+        scope = new NamespaceScope(document.getDocumentElement());
+        document.setUserData(USER_DATA_KEY, scope, null);
       }
-      return null;
+      return scope;
+    }
+
+    @CheckForNull
+    private String namespaceFor(String prefix) {
+      return namespaceByPrefix.get(prefix);
     }
   }
 }
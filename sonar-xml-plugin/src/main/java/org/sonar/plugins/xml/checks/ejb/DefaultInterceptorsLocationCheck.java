@@ -18,22 +18,22 @@ package org.sonar.plugins.xml.checks.ejb;
 
 import javax.xml.xpath.XPathExpression;
 import org.sonar.check.Rule;
+import org.sonar.plugins.xml.checks.xpath.NavigatedXPathBasedCheck;
 import org.sonarsource.analyzer.commons.annotations.DeprecatedRuleKey;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
 
 @Rule(key = "S3281")
 @DeprecatedRuleKey(repositoryKey = "java", ruleKey = "S3281")
-public class DefaultInterceptorsLocationCheck extends SimpleXPathBasedCheck {
+public class DefaultInterceptorsLocationCheck extends NavigatedXPathBasedCheck {
 
-  private XPathExpression defaultInterceptorClassesExpression = getXPathExpression("ejb-jar/assembly-descriptor/interceptor-binding[ejb-name=\"*\"]/interceptor-class");
+  private XPathExpression defaultInterceptorClassesExpression = getNamespaceUnawareXPathExpression("ejb-jar/assembly-descriptor/interceptor-binding[ejb-name=\"*\"]/interceptor-class");
 
   @Override
   public void scanFile(XmlFile file) {
     if ("ejb-jar.xml".equalsIgnoreCase(file.getInputFile().filename())) {
       return;
     }
-    evaluateAsList(defaultInterceptorClassesExpression, file.getNamespaceUnawareDocument())
+    evaluateAsList(defaultInterceptorClassesExpression, namespaceUnawareDocument(file))
       .forEach(node -> reportIssue(node, "Move this default interceptor to \"ejb-jar.xml\""));
   }
 }
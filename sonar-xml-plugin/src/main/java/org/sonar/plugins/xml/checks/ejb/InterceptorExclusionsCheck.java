@@ -18,21 +18,23 @@ package org.sonar.plugins.xml.checks.ejb;
 
 import javax.xml.xpath.XPathExpression;
 import org.sonar.check.Rule;
+import org.sonar.plugins.xml.checks.AppliesTo;
+import org.sonar.plugins.xml.checks.xpath.NavigatedXPathBasedCheck;
 import org.sonarsource.analyzer.commons.annotations.DeprecatedRuleKey;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
 import org.w3c.dom.Node;
 
 @Rule(key = "S3282")
 @DeprecatedRuleKey(repositoryKey = "java", ruleKey = "S3282")
-public class InterceptorExclusionsCheck extends SimpleXPathBasedCheck {
+@AppliesTo(rootElements = "ejb-jar")
+public class InterceptorExclusionsCheck extends NavigatedXPathBasedCheck {
 
-  private XPathExpression notDefaultInterceptorBindingsExpression = getXPathExpression("ejb-jar/assembly-descriptor/interceptor-binding[ejb-name!=\"*\"]");
-  private XPathExpression exclusionsExpression = getXPathExpression("*[self::exclude-default-interceptors[text()=\"true\"] or self::exclude-class-interceptors[text()=\"true\"]]");
+  private XPathExpression notDefaultInterceptorBindingsExpression = getNamespaceUnawareXPathExpression("ejb-jar/assembly-descriptor/interceptor-binding[ejb-name!=\"*\"]");
+  private XPathExpression exclusionsExpression = getNamespaceUnawareXPathExpression("*[self::exclude-default-interceptors[text()=\"true\"] or self::exclude-class-interceptors[text()=\"true\"]]");
 
   @Override
   public void scanFile(XmlFile xmlFile) {
-    evaluateAsList(notDefaultInterceptorBindingsExpression, xmlFile.getNamespaceUnawareDocument()).forEach(this::checkExclusions);
+    evaluateAsList(notDefaultInterceptorBindingsExpression, namespaceUnawareDocument(xmlFile)).forEach(this::checkExclusions);
   }
 
   private void checkExclusions(Node interceptorBinding) {
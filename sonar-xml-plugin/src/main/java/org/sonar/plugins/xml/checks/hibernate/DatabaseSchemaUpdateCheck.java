@@ -18,21 +18,21 @@ package org.sonar.plugins.xml.checks.hibernate;
 
 import javax.xml.xpath.XPathExpression;
 import org.sonar.check.Rule;
+import org.sonar.plugins.xml.checks.xpath.NavigatedXPathBasedCheck;
 import org.sonarsource.analyzer.commons.annotations.DeprecatedRuleKey;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 @Rule(key = "S3822")
 @DeprecatedRuleKey(repositoryKey = "java", ruleKey = "S3822")
-public class DatabaseSchemaUpdateCheck extends SimpleXPathBasedCheck {
+public class DatabaseSchemaUpdateCheck extends NavigatedXPathBasedCheck {
 
-  private XPathExpression hibernateHbm2ddlAutoProperty = getXPathExpression("//property[@name='hibernate.hbm2ddl.auto']");
+  private XPathExpression hibernateHbm2ddlAutoProperty = getNamespaceUnawareXPathExpression("//property[@name='hibernate.hbm2ddl.auto']");
 
   @Override
   public void scanFile(XmlFile file) {
-    evaluateAsList(hibernateHbm2ddlAutoProperty, file.getNamespaceUnawareDocument()).forEach(this::checkProperty);
+    evaluateAsList(hibernateHbm2ddlAutoProperty, namespaceUnawareDocument(file)).forEach(this::checkProperty);
   }
 
   private void checkProperty(Node property) {
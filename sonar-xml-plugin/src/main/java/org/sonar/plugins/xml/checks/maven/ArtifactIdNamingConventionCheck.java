@@ -17,18 +17,18 @@
 package org.sonar.plugins.xml.checks.maven;
 
 import java.util.regex.Pattern;
-import javax.xml.xpath.XPathExpression;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
+import org.sonar.plugins.xml.checks.AppliesTo;
 import org.sonarsource.analyzer.commons.annotations.DeprecatedRuleKey;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
+import org.w3c.dom.Element;
 
 @Rule(key = ArtifactIdNamingConventionCheck.KEY)
 @DeprecatedRuleKey(repositoryKey = "java", ruleKey = ArtifactIdNamingConventionCheck.KEY)
-public class ArtifactIdNamingConventionCheck extends SimpleXPathBasedCheck {
+@AppliesTo(fileNames = "pom.xml")
+public class ArtifactIdNamingConventionCheck extends SonarXmlCheck {
 
   public static final String KEY = "S3420";
   private static final String DEFAULT_REGEX = "[a-z][a-z-0-9]+";
@@ -39,7 +39,6 @@ public class ArtifactIdNamingConventionCheck extends SimpleXPathBasedCheck {
     defaultValue = "" + DEFAULT_REGEX)
   public String regex = DEFAULT_REGEX;
 
-  private XPathExpression artifactIdExpression = getXPathExpression("project/artifactId");
   private Pattern pattern = null;
 
   @Override
@@ -47,11 +46,10 @@ public class ArtifactIdNamingConventionCheck extends SimpleXPathBasedCheck {
     if (!"pom.xml".equalsIgnoreCase(file.getInputFile().filename())) {
       return;
     }
-    NodeList artifactIds = evaluate(artifactIdExpression, file.getNamespaceUnawareDocument());
-    if (artifactIds == null || artifactIds.getLength() != 1) {
+    Element artifactId = PomModel.of(file).uniqueProjectChild("artifactId");
+    if (artifactId == null) {
       return;
     }
-    Node artifactId = artifactIds.item(0);
     if (!getPattern().matcher(artifactId.getTextContent()).matches()) {
       reportIssue(artifactId, "Update this \"artifactId\" to match the provided regular expression: '" + regex + "'");
     }
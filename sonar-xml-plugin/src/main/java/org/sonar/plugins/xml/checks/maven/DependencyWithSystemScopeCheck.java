@@ -17,21 +17,17 @@
 package org.sonar.plugins.xml.checks.maven;
 
 import java.util.Collections;
-import java.util.Optional;
-import javax.xml.xpath.XPathExpression;
 import org.sonar.check.Rule;
+import org.sonar.plugins.xml.checks.AppliesTo;
 import org.sonarsource.analyzer.commons.annotations.DeprecatedRuleKey;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
+import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 @Rule(key = "S3422")
 @DeprecatedRuleKey(repositoryKey = "java", ruleKey = "S3422")
-public class DependencyWithSystemScopeCheck extends SimpleXPathBasedCheck {
-
-  private XPathExpression dependencyExpression = getXPathExpression("//dependencies/dependency");
+@AppliesTo(fileNames = "pom.xml")
+public class DependencyWithSystemScopeCheck extends SonarXmlCheck {
 
   @Override
   public void scanFile(XmlFile xmlFile) {
@@ -39,33 +35,23 @@ public class DependencyWithSystemScopeCheck extends SimpleXPathBasedCheck {
       return;
     }
 
-    evaluateAsList(dependencyExpression, xmlFile.getNamespaceUnawareDocument())
-      .forEach(dependency -> checkDependency((Element) dependency));
+    PomModel.of(xmlFile).dependencies().forEach(this::checkDependency);
   }
 
-  private void checkDependency(Element dependency) {
-    Optional<Node> scope = getElementByName("scope", dependency);
-    if (!scope.isPresent() || !"system".equalsIgnoreCase(scope.get().getTextContent())) {
+  private void checkDependency(PomModel.Dependency dependency) {
+    Element scope = dependency.scope();
+    if (scope == null || !"system".equalsIgnoreCase(scope.getTextContent())) {
       return;
     }
 
-    Optional<Node> systemPathOptional = getElementByName("systemPath", dependency);
-    if (systemPathOptional.isPresent()) {
+    Element systemPath = dependency.systemPath();
+    if (systemPath != null) {
       reportIssue(
-        XmlFile.nodeLocation(scope.get()),
+        XmlFile.nodeLocation(scope),
         "Update this scope and remove the \"systemPath\".",
-        Collections.singletonList(new Secondary(systemPathOptional.get(), "Remove this")));
+        Collections.singletonList(new Secondary(systemPath, "Remove this")));
     } else {
-      reportIssue(scope.get(), "Update this scope.");
+      reportIssue(scope, "Update this scope.");
     }
   }
-
-  private static Optional<Node> getElementByName(String name, Element nestingElement) {
-    NodeList nodeList = nestingElement.getElementsByTagName(name);
-    if (nodeList.getLength() > 0) {
-      return Optional.of(nodeList.item(0));
-    }
-
-    return Optional.empty();
-  }
 }
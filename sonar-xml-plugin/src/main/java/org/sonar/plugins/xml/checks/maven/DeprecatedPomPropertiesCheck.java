@@ -16,44 +16,39 @@
  */
 package org.sonar.plugins.xml.checks.maven;
 
-import javax.annotation.Nullable;
-import javax.xml.xpath.XPathExpression;
 import org.sonar.check.Rule;
+import org.sonar.plugins.xml.checks.AppliesTo;
 import org.sonarsource.analyzer.commons.annotations.DeprecatedRuleKey;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
-import org.w3c.dom.Node;
+import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
+import org.w3c.dom.Text;
 
 @Rule(key = "S3421")
 @DeprecatedRuleKey(repositoryKey = "java", ruleKey = "S3421")
-public class DeprecatedPomPropertiesCheck extends SimpleXPathBasedCheck {
+@AppliesTo(fileNames = "pom.xml")
+public class DeprecatedPomPropertiesCheck extends SonarXmlCheck {
   private static final String POM_PROPERTY_PREFIX = "${pom.";
   private static final String POM_PROPERTY_SUFFIX = "}";
-  private XPathExpression textsExpression = getXPathExpression("//*[text()]");
 
   @Override
   public void scanFile(XmlFile file) {
     if (!"pom.xml".equalsIgnoreCase(file.getInputFile().filename())) {
       return;
     }
-    evaluateAsList(textsExpression, file.getDocument()).forEach(this::checkText);
+    PomModel.of(file).texts().forEach(this::checkText);
   }
 
-  private void checkText(Node textNode) {
-    XmlFile.children(textNode).stream()
-      .filter(node -> node.getNodeType() == Node.TEXT_NODE)
-      .forEach(node -> {
-        String text = node.getNodeValue();
-        while (contains(text, POM_PROPERTY_PREFIX)) {
-          String property = extractPropertyName(text);
-          reportIssue(node, "Replace \"pom." + property + "\" with \"project." + property + "\".");
-          text = skipFirstProperty(text);
-        }
-      });
+  private void checkText(Text node) {
+    String text = node.getNodeValue();
+    while (contains(text, POM_PROPERTY_PREFIX)) {
+      String property = extractPropertyName(text);
+      reportIssue(node, "Replace \"pom." + property + "\" with \"project." + property + "\".");
+      text = skipFirstProperty(text);
+    }
   }
 
-  private static boolean contains(@Nullable String text, String searchedValue) {
-    if (text == null || text.trim().isEmpty()) {
+  private static boolean contains(String text, String searchedValue) {
+    if (text.trim().isEmpty()) {
       return false;
     }
     return text.contains(searchedValue);
@@ -16,35 +16,27 @@
  */
 package org.sonar.plugins.xml.checks.maven;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Objects;
 import javax.annotation.CheckForNull;
-import javax.xml.xpath.XPathExpression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
+import org.sonar.plugins.xml.checks.AppliesTo;
 import org.sonar.plugins.xml.checks.maven.helpers.MavenDependencyMatcher;
 import org.sonarsource.analyzer.commons.annotations.DeprecatedRuleKey;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
+import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
 
 @Rule(key = DisallowedDependenciesCheck.KEY)
 @DeprecatedRuleKey(repositoryKey = "java", ruleKey = DisallowedDependenciesCheck.KEY)
-public class DisallowedDependenciesCheck extends SimpleXPathBasedCheck {
+@AppliesTo(fileNames = "pom.xml")
+public class DisallowedDependenciesCheck extends SonarXmlCheck {
 
   private static final Logger LOG = LoggerFactory.getLogger(DisallowedDependenciesCheck.class);
 
   public static final String KEY = "S3417";
 
-  private final XPathExpression dependencyExpression = getXPathExpression("//dependencies/dependency");
-  private final XPathExpression propertiesExpression = getXPathExpression("//properties");
-  private final Pattern propertyPlaceholderPattern = Pattern.compile("\\$\\{(?<property>[^}]++)}");
-
   @RuleProperty(
     key = "dependencyName",
     description = "Pattern describing forbidden dependencies group and artifact ids. E.G. '``*:.*log4j``' or '``x.y:*``'")
@@ -61,49 +53,15 @@ public class DisallowedDependenciesCheck extends SimpleXPathBasedCheck {
 
   @Override
   public void scanFile(XmlFile xmlFile) {
-    if (!"pom.xml".equalsIgnoreCase(xmlFile.getInputFile().filename())) {
-      return;
-    }
-    MavenDependencyMatcher matcher = getMatcher();
-    if (matcher == null) {
+    if (!"pom.xml".equalsIgnoreCase(xmlFile.getInputFile().filename()) || getMatcher() == null) {
       return;
     }
-    Map<String, String> propertiesMap = new HashMap<>();
-
-    evaluateAsList(propertiesExpression, xmlFile.getNamespaceUnawareDocument())
-            .forEach(properties -> XmlFile.children(properties).stream()
-                    .filter(node -> node.getNodeType() == Node.ELEMENT_NODE)
-                    .forEach(property -> propertiesMap.put(property.getNodeName(), property.getTextContent())));
-
-    evaluateAsList(dependencyExpression, xmlFile.getNamespaceUnawareDocument()).forEach(dependency -> {
-      String groupId = getChildElementText("groupId", dependency);
-      String artifactId = getChildElementText("artifactId", dependency);
-      String dependencyVersion = resolveDependencyVersion(propertiesMap, dependency);
-
-      if (matcher.matches(groupId, artifactId, dependencyVersion)) {
-        reportIssue(dependency, "Remove this forbidden dependency.");
-      }
-    });
-  }
-
-  private String resolveDependencyVersion(Map<String, String> propertiesMap, Node dependency) {
-    String dependencyVersion = getChildElementText("version", dependency);
-
-    Matcher placeholderMatcher = propertyPlaceholderPattern.matcher(dependencyVersion);
-    if (placeholderMatcher.matches()) {
-      dependencyVersion = propertiesMap.getOrDefault(placeholderMatcher.group("property"), "");
-    }
-    return dependencyVersion;
-  }
-
-  private static String getChildElementText(String childElementName, Node parent) {
-    for (Node node : XmlFile.children(parent)) {
-      if (node.getNodeType() == Node.ELEMENT_NODE && ((Element) node).getTagName().equals(childElementName)) {
-        return node.getTextContent();
+    MavenDependencyMatcher matcher = Objects.requireNonNull(getMatcher());
+    for (PomModel.Dependency dependency : PomModel.of(xmlFile).dependencies()) {
+      if (matcher.matches(dependency.groupId(), dependency.artifactId(), dependency.resolvedVersion())) {
+        reportIssue(dependency.element(), "Remove this forbidden dependency.");
       }
     }
-
-    return "";
   }
 
   private MavenDependencyMatcher getMatcher() {
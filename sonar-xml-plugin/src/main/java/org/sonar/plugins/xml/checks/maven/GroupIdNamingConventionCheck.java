@@ -17,18 +17,18 @@
 package org.sonar.plugins.xml.checks.maven;
 
 import java.util.regex.Pattern;
-import javax.xml.xpath.XPathExpression;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
+import org.sonar.plugins.xml.checks.AppliesTo;
 import org.sonarsource.analyzer.commons.annotations.DeprecatedRuleKey;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
+import org.w3c.dom.Element;
 
 @Rule(key = GroupIdNamingConventionCheck.KEY)
 @DeprecatedRuleKey(repositoryKey = "java", ruleKey = GroupIdNamingConventionCheck.KEY)
-public class GroupIdNamingConventionCheck extends SimpleXPathBasedCheck {
+@AppliesTo(fileNames = "pom.xml")
+public class GroupIdNamingConventionCheck extends SonarXmlCheck {
 
   public static final String KEY = "S3419";
 
@@ -40,7 +40,6 @@ public class GroupIdNamingConventionCheck extends SimpleXPathBasedCheck {
     defaultValue = "" + DEFAULT_REGEX)
   public String regex = DEFAULT_REGEX;
 
-  private XPathExpression groupIdExpression = getXPathExpression("project/groupId");
   private Pattern pattern = null;
 
   @Override
@@ -48,11 +47,10 @@ public class GroupIdNamingConventionCheck extends SimpleXPathBasedCheck {
     if (!"pom.xml".equalsIgnoreCase(file.getInputFile().filename())) {
       return;
     }
-    NodeList groupIds = evaluate(groupIdExpression, file.getNamespaceUnawareDocument());
-    if (groupIds == null || groupIds.getLength() != 1) {
+    Element groupId = PomModel.of(file).uniqueProjectChild("groupId");
+    if (groupId == null) {
       return;
     }
-    Node groupId = groupIds.item(0);
     if (!getPattern().matcher(groupId.getTextContent()).matches()) {
       reportIssue(groupId, "Update this \"groupId\" to match the provided regular expression: '" + regex + "'");
     }
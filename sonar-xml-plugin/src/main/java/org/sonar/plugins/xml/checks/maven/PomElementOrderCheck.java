@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import org.sonar.check.Rule;
+import org.sonar.plugins.xml.checks.AppliesTo;
 import org.sonarsource.analyzer.commons.annotations.DeprecatedRuleKey;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
 import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheck;
@@ -31,6 +32,7 @@ import org.w3c.dom.Node;
 
 @Rule(key = "S3423")
 @DeprecatedRuleKey(repositoryKey = "java", ruleKey = "S3423")
+@AppliesTo(fileNames = "pom.xml")
 public class PomElementOrderCheck extends SonarXmlCheck {
 
   private static final Comparator<Node> LINE_COMPARATOR = Comparator.comparingInt(n -> XmlFile.nodeLocation(n).getStartLine());
@@ -72,19 +74,17 @@ public class PomElementOrderCheck extends SonarXmlCheck {
       return;
     }
 
-    checkPositions(xmlFile.getDocument().getDocumentElement());
+    PomModel pom = PomModel.of(xmlFile);
+    checkPositions(pom.project(), pom.topLevelElements());
   }
 
-  private static Optional<Element> getChildElementByName(String name, List<Node> children) {
+  private static Optional<Element> getChildElementByName(String name, List<Element> children) {
     return children.stream()
-      .filter(child -> child.getNodeType() == Node.ELEMENT_NODE)
-      .map(Element.class::cast)
       .filter(element -> element.getTagName().equals(name))
       .findFirst();
   }
 
-  private void checkPositions(Element project) {
-    List<Node> children = XmlFile.children(project);
+  private void checkPositions(Element project, List<Element> children) {
     List<Node> expectedOrder = REQUIRED_ORDER.stream()
       .map(elementName -> getChildElementByName(elementName, children))
       .filter(Optional::isPresent)
@@ -0,0 +1,272 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.checks.maven;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.plugins.xml.tree.DocumentViews;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.Text;
+
+/**
+ * Elements of a pom file the Maven checks are interested in, extracted in a single walk of its document and shared by
+ * all the checks, instead of each of them querying the document.
+ * <p>
+ * Names are matched as the namespace-unaware evaluation of the XPath expressions the checks used to run: ignoring the
+ * prefixes, so that {@code <m:project>} is a {@code project}, except for the {@code properties} elements, which
+ * {@code //properties} only selected without prefix. The children of the dependencies are matched by their qualified
+ * name, as the checks looked them up in the DOM: the coordinates and the scope of {@code <m:dependency>} are only found
+ * without prefix.
+ */
+final class PomModel {
+
+  private static final String USER_DATA_KEY = PomModel.class.getName();
+  private static final Pattern PROPERTY_PLACEHOLDER = Pattern.compile("\\$\\{(?<property>[^}]++)}");
+
+  private final Element project;
+  private final List<Element> topLevelElements = new ArrayList<>();
+  private final Map<String, String> properties = new HashMap<>();
+  private final List<Dependency> dependencies = new ArrayList<>();
+  private final List<Text> texts = new ArrayList<>();
+
+  /**
+   * Dependency declared in a {@code dependencies} element, anywhere in the pom.
+   */
+  static final class Dependency {
+    private final Element element;
+    private final String groupId;
+    private final String artifactId;
+    private final String version;
+    @Nullable
+    private final Element scope;
+    @Nullable
+    private final Element systemPath;
+    private String resolvedVersion;
+
+    private Dependency(Element element) {
+      this.element = element;
+      this.groupId = childElementText("groupId", element);
+      this.artifactId = childElementText("artifactId", element);
+      this.version = childElementText("version", element);
+      this.scope = firstDescendant("scope", element);
+      this.systemPath = firstDescendant("systemPath", element);
+      this.resolvedVersion = version;
+    }
+
+    Element element() {
+      return element;
+    }
+
+    /**
+     * @return the text of the {@code groupId} child element, empty if there is none
+     */
+    String groupId() {
+      return groupId;
+    }
+
+    String artifactId() {
+      return artifactId;
+    }
+
+    String version() {
+      return version;
+    }
+
+    /**
+     * @return the version, or the value of the property it consists of, empty if the property is not declared
+     */
+    String resolvedVersion() {
+      return resolvedVersion;
+    }
+
+    /**
+     * @return the first {@code scope} element within the dependency
+     */
+    @CheckForNull
+    Element scope() {
+      return scope;
+    }
+
+    @CheckForNull
+    Element systemPath() {
+      return systemPath;
+    }
+  }
+
+  private PomModel(Document document) {
+    project = document.getDocumentElement();
+    List<Element> propertiesElements = new ArrayList<>();
+    Node node = project;
+    while (node != null) {
+      if (node.getNodeType() == Node.ELEMENT_NODE) {
+        visitElement((Element) node, propertiesElements);
+      }
+      node = next(node);
+    }
+
+    for (Element propertiesElement : propertiesElements) {
+      for (Node property = propertiesElement.getFirstChild(); property != null; property = property.getNextSibling()) {
+        if (property.getNodeType() == Node.ELEMENT_NODE) {
+          properties.put(property.getNodeName(), property.getTextContent());
+        }
+      }
+    }
+    for (Dependency dependency : dependencies) {
+      Matcher placeholder = PROPERTY_PLACEHOLDER.matcher(dependency.version);
+      if (placeholder.matches()) {
+        dependency.resolvedVersion = properties.getOrDefault(placeholder.group("property"), "");
+      }
+    }
+  }
+
+  /**
+   * @return the model of the pom, computed on first use
+   */
+  static PomModel of(XmlFile file) {
+    Document document = DocumentViews.namespaceUnawareView(file);
+    PomModel model = (PomModel) document.getUserData(USER_DATA_KEY);
+    if (model == null) {
+      model = new PomModel(document);
+      document.setUserData(USER_DATA_KEY, model, null);
+    }
+    return model;
+  }
+
+  private void visitElement(Element element, List<Element> propertiesElements) {
+    Node parent = element.getParentNode();
+    if (parent == project) {
+      topLevelElements.add(element);
+    }
+    if ("properties".equals(element.getTagName())) {
+      propertiesElements.add(element);
+    } else if (hasName(element, "dependency") && parent.getNodeType() == Node.ELEMENT_NODE && hasName((Element) parent, "dependencies")) {
+      dependencies.add(new Dependency(element));
+    }
+    for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() == Node.TEXT_NODE && !child.getNodeValue().trim().isEmpty()) {
+        texts.add((Text) child);
+      }
+    }
+  }
+
+  /**
+   * @return the node following the given one in document order, within the document element
+   */
+  @CheckForNull
+  private Node next(Node node) {
+    Node firstChild = node.getFirstChild();
+    if (firstChild != null) {
+      return firstChild;
+    }
+    for (Node current = node; current != project; current = current.getParentNode()) {
+      Node nextSibling = current.getNextSibling();
+      if (nextSibling != null) {
+        return nextSibling;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the document element
+   */
+  Element project() {
+    return project;
+  }
+
+  /**
+   * @return the child elements of the document element, in document order
+   */
+  List<Element> topLevelElements() {
+    return Collections.unmodifiableList(topLevelElements);
+  }
+
+  /**
+   * @return the child element of {@code project} of the given name, null if the document element is not {@code project}
+   * or if it has no or several such children
+   */
+  @CheckForNull
+  Element uniqueProjectChild(String name) {
+    if (!hasName(project, "project")) {
+      return null;
+    }
+    Element found = null;
+    for (Element element : topLevelElements) {
+      if (hasName(element, name)) {
+        if (found != null) {
+          return null;
+        }
+        found = element;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * @return the properties declared in all the {@code properties} elements, the last declaration of a property winning
+   */
+  Map<String, String> properties() {
+    return Collections.unmodifiableMap(properties);
+  }
+
+  List<Dependency> dependencies() {
+    return Collections.unmodifiableList(dependencies);
+  }
+
+  /**
+   * @return the non-blank text nodes of the elements, element by element in document order
+   */
+  List<Text> texts() {
+    return Collections.unmodifiableList(texts);
+  }
+
+  private static String childElementText(String childElementName, Element parent) {
+    for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+      if (node.getNodeType() == Node.ELEMENT_NODE && ((Element) node).getTagName().equals(childElementName)) {
+        return node.getTextContent();
+      }
+    }
+    return "";
+  }
+
+  @CheckForNull
+  private static Element firstDescendant(String name, Element element) {
+    NodeList descendants = element.getElementsByTagName(name);
+    return descendants.getLength() > 0 ? (Element) descendants.item(0) : null;
+  }
+
+  /**
+   * @return true if the name of the element, without its prefix, is the given one
+   */
+  private static boolean hasName(Element element, String name) {
+    String tagName = element.getTagName();
+    int localNameStart = tagName.indexOf(':') + 1;
+    return tagName.length() - localNameStart == name.length() && tagName.startsWith(name, localNameStart);
+  }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.checks.security;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Finds whether a text contains one of a set of credential words, ignoring the case, in a single pass over the text.
+ * <p>
+ * The words are compiled into an Aho-Corasick automaton whose failure transitions are resolved, so that each character
+ * of the text is a single transition. ASCII characters are lowercased on the fly, without copying the text, and the
+ * texts containing other characters are lowercased with {@link Locale#ROOT} as a whole, as the words are.
+ * The verdicts on names are cached, names repeating a lot among the files.
+ */
+final class CredentialWordMatcher {
+
+  private static final int MAX_CACHED_NAMES = 4096;
+  private static final int ASCII_LIMIT = 128;
+
+  // symbol of each ASCII character of the words, -1 for the characters not in any word
+  private final int[] asciiSymbols = new int[ASCII_LIMIT];
+  private final Map<Character, Integer> otherSymbols = new HashMap<>();
+  private final int symbolCount;
+  // next state of each state and symbol, at index state * symbolCount + symbol
+  private final int[] transitions;
+  // whether a word ends at each state
+  private final boolean[] matching;
+  private final Map<String, Boolean> verdictsByName = new HashMap<>();
+
+  private CredentialWordMatcher(Set<String> words) {
+    Arrays.fill(asciiSymbols, -1);
+    int symbols = 0;
+    for (String word : words) {
+      for (int i = 0; i < word.length(); i++) {
+        char c = word.charAt(i);
+        if (symbol(c) == -1) {
+          if (c < ASCII_LIMIT) {
+            asciiSymbols[c] = symbols;
+          } else {
+            otherSymbols.put(c, symbols);
+          }
+          symbols++;
+        }
+      }
+    }
+    symbolCount = symbols;
+
+    // trie of the words, -1 for the missing transitions
+    List<int[]> trie = new ArrayList<>();
+    List<Boolean> ends = new ArrayList<>();
+    trie.add(newState());
+    ends.add(false);
+    for (String word : words) {
+      int state = 0;
+      for (int i = 0; i < word.length(); i++) {
+        int symbol = symbol(word.charAt(i));
+        if (trie.get(state)[symbol] == -1) {
+          trie.get(state)[symbol] = trie.size();
+          trie.add(newState());
+          ends.add(false);
+        }
+        state = trie.get(state)[symbol];
+      }
+      ends.set(state, true);
+    }
+
+    int stateCount = trie.size();
+    transitions = new int[stateCount * symbolCount];
+    matching = new boolean[stateCount];
+    int[] failures = new int[stateCount];
+    // states are completed in breadth-first order, so that the failure state of each state is completed before it
+    Queue<Integer> pending = new ArrayDeque<>();
+    pending.add(0);
+    while (!pending.isEmpty()) {
+      int state = pending.remove();
+      int failure = failures[state];
+      matching[state] = ends.get(state) || matching[failure];
+      for (int symbol = 0; symbol < symbolCount; symbol++) {
+        int child = trie.get(state)[symbol];
+        int fallback = state == 0 ? 0 : transitions[failure * symbolCount + symbol];
+        if (child == -1) {
+          transitions[state * symbolCount + symbol] = fallback;
+        } else {
+          transitions[state * symbolCount + symbol] = child;
+          failures[child] = fallback;
+          pending.add(child);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param commaSeparatedWords the words, surrounding white spaces and empty words being ignored
+   */
+  static CredentialWordMatcher of(String commaSeparatedWords) {
+    Set<String> words = new LinkedHashSet<>();
+    for (String word : commaSeparatedWords.split(",")) {
+      String trimmed = word.trim();
+      if (!trimmed.isEmpty()) {
+        words.add(trimmed.toLowerCase(Locale.ROOT));
+      }
+    }
+    return new CredentialWordMatcher(words);
+  }
+
+  /**
+   * Same as {@link #matches(String)}, the verdict being cached.
+   */
+  boolean matchesName(String name) {
+    Boolean verdict = verdictsByName.get(name);
+    if (verdict == null) {
+      verdict = matches(name);
+      if (verdictsByName.size() < MAX_CACHED_NAMES) {
+        verdictsByName.put(name, verdict);
+      }
+    }
+    return verdict;
+  }
+
+  /**
+   * @return true if the text, lowercased, contains one of the words
+   */
+  boolean matches(String text) {
+    int state = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c >= ASCII_LIMIT) {
+        // lowercasing some characters changes the length of the text, the ASCII prefix is not affected
+        return matchesLowerCase(text.toLowerCase(Locale.ROOT));
+      }
+      if (c >= 'A' && c <= 'Z') {
+        c = (char) (c + ('a' - 'A'));
+      }
+      state = next(state, c);
+      if (matching[state]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean matchesLowerCase(String text) {
+    int state = 0;
+    for (int i = 0; i < text.length(); i++) {
+      state = next(state, text.charAt(i));
+      if (matching[state]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private int next(int state, char c) {
+    int symbol = symbol(c);
+    return symbol == -1 ? 0 : transitions[state * symbolCount + symbol];
+  }
+
+  private int symbol(char c) {
+    if (c < ASCII_LIMIT) {
+      return asciiSymbols[c];
+    }
+    return otherSymbols.getOrDefault(c, -1);
+  }
+
+  private int[] newState() {
+    int[] state = new int[symbolCount];
+    Arrays.fill(state, -1);
+    return state;
+  }
+
+}
@@ -16,44 +16,50 @@
  */
 package org.sonar.plugins.xml.checks.security;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import javax.annotation.Nullable;
 import javax.xml.xpath.XPathExpression;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 import org.sonar.plugins.xml.Xml;
+import org.sonar.plugins.xml.checks.xpath.NavigatedXPathBasedCheck;
+import org.sonar.plugins.xml.checks.xpath.NavigatedXPathExpression;
+import org.sonar.plugins.xml.tree.DocumentViews;
+import org.sonar.plugins.xml.visitors.DomTraversal;
+import org.sonar.plugins.xml.visitors.DomVisitor;
 import org.sonarsource.analyzer.commons.appsec.SecretClassifier;
 import org.sonarsource.analyzer.commons.xml.XPathBuilder;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 @Rule(key = "S2068")
-public class HardcodedCredentialsCheck extends SimpleXPathBasedCheck {
+public class HardcodedCredentialsCheck extends NavigatedXPathBasedCheck implements DomVisitor {
 
   private static final String VALUE = "value";
 
   private static final XPathExpression WEB_CONFIG_CREDENTIALS_PATH = XPathBuilder
     .forExpression("/configuration/system.web/authentication[@mode=\"Forms\"]/forms/credentials[@passwordFormat=\"Clear\"]/user/@password[string-length(.) > 0]").build();
 
-  private static final XPathExpression WEB_CONFIG_APP_SETTINGS_ADD_PATH =
-    XPathBuilder.forExpression("//appSettings/add").build();
-
   private static final Pattern VALID_WEB_CONFIG_CREDENTIAL_VALUES = Pattern.compile("^__.*__$");
 
   private static final String DEFAULT_CREDENTIAL_WORDS = "password,passwd,pwd,passphrase";
   private static final String ISSUE_MESSAGE = "\"%s\" detected here, make sure this is not a hard-coded credential.";
 
+  private final XPathExpression webConfigAppSettingsAddExpression = getXPathExpression("//appSettings/add");
+
   @RuleProperty(
     key = "credentialWords",
     description = "Comma separated list of words identifying potential credentials",
@@ -63,17 +69,69 @@ public class HardcodedCredentialsCheck extends SimpleXPathBasedCheck {
   /**
    * Can not be pre-computed as it depends of the parameter
    */
-  private Set<String> cleanedCredentialWords = null;
-
-  private Set<String> credentialWordsSet() {
-    if (cleanedCredentialWords == null) {
-      cleanedCredentialWords = Stream.of(credentialWords.split(","))
-        .map(String::trim)
-        .filter(word -> !word.isEmpty())
-        .map(word -> word.toLowerCase(Locale.ROOT))
-        .collect(Collectors.toSet());
+  private CredentialWordMatcher credentialWordMatcher = null;
+
+  private CredentialWordMatcher credentialWordMatcher() {
+    if (credentialWordMatcher == null) {
+      credentialWordMatcher = CredentialWordMatcher.of(credentialWords);
     }
-    return cleanedCredentialWords;
+    return credentialWordMatcher;
+  }
+
+  private final Map<String, List<SpecialCase>> specialCasesByRootElement = new HashMap<>();
+
+  public HardcodedCredentialsCheck() {
+    // FileZilla3
+    addSpecialCase(SpecialCase.of("FileZilla3",
+      "/FileZilla3/Servers/Server/Pass"
+        + "|/FileZilla3/RecentServers/Server/Pass",
+      HardcodedCredentialsCheck::getTextValueSafe,
+      false));
+    // SonarQube
+    addSpecialCase(SpecialCase.of("SonarQubeAnalysisProperties",
+      "/SonarQubeAnalysisProperties/Property[@Name='sonar.login']",
+      HardcodedCredentialsCheck::getTextValueSafe,
+      false));
+    addSpecialCase(SpecialCase.of("project",
+      "project/properties/sonar.login",
+      HardcodedCredentialsCheck::getTextValueSafe,
+      false));
+    // Spring Framework
+    addSpecialCase(SpecialCase.of("beans",
+      "/beans/bean/property/list/bean["
+        + "@class='org.springframework.social.facebook.connect.FacebookConnectionFactory'"
+        + " or @class='org.springframework.social.github.connect.GitHubConnectionFactory'"
+        + " or @class='org.springframework.social.google.connect.GoogleConnectionFactory'"
+        + " or @class='org.springframework.social.linkedin.connect.LinkedinConnectionFactory'"
+        + " or @class='org.springframework.social.twitter.connect.TwitterConnectionFactory'"
+        + "]/constructor-arg[2]",
+      node -> getAttributeSafe(node, VALUE),
+      false));
+    addSpecialCase(SpecialCase.ofNamespace("http://www.springframework.org/schema/beans", "beans",
+      XPathBuilder.forExpression("/b:beans/f:config"
+        + "|/b:beans/gh:config"
+        + "|/b:beans/gg:config"
+        + "|/b:beans/l:config"
+        + "|/b:beans/t:config")
+        .withNamespace("b", "http://www.springframework.org/schema/beans")
+        .withNamespace("f", "http://www.springframework.org/schema/social/facebook")
+        .withNamespace("gh", "http://www.springframework.org/schema/social/github")
+        .withNamespace("gg", "http://www.springframework.org/schema/social/google")
+        .withNamespace("l", "http://www.springframework.org/schema/social/linkedin")
+        .withNamespace("t", "http://www.springframework.org/schema/social/twitter")
+        .build(),
+      node -> getAttributeSafe(node, "app-secret"),
+      true));
+    // Teiid
+    addSpecialCase(SpecialCase.of("security-domain",
+      "/security-domain/authentication/login-module/module-option["
+        + "@name='consumer-key' "
+        + "or @name='consumer-secret'"
+        + "or @name='access-key'"
+        + "or @name='access-secret'"
+        + "]",
+      node -> getAttributeSafe(node, VALUE),
+      false));
   }
 
   @Override
@@ -82,23 +140,24 @@ public class HardcodedCredentialsCheck extends SimpleXPathBasedCheck {
       evaluateAsList(WEB_CONFIG_CREDENTIALS_PATH, file.getDocument()).stream()
         .filter(passwordAttrNode -> !isValidWebConfigCredential(passwordAttrNode.getNodeValue()))
         .forEach(this::reportIssue);
-      evaluateAsList(WEB_CONFIG_APP_SETTINGS_ADD_PATH, file.getDocument()).stream()
+      evaluateAsList(webConfigAppSettingsAddExpression, file.getDocument()).stream()
         .filter(this::isAddWithPassword)
         .forEach(node -> reportIssue(node, "Review the hard-coded credential, which may be sensitive."));
     } else {
-      checkElements(file.getDocument());
+      DomTraversal.visit(file, this);
       checkSpecialCases(file);
     }
   }
 
-  private void checkElements(Node element) {
-    checkNode(element);
-    checkAttributes(element, credentialWordsSet(), true);
+  @Override
+  public Set<NodeKind> nodeKinds() {
+    return EnumSet.of(NodeKind.ELEMENT);
+  }
 
-    NodeList children = element.getChildNodes();
-    for (int i = 0; i < children.getLength(); i++) {
-      checkElements(children.item(i));
-    }
+  @Override
+  public void enterElement(Element element) {
+    checkNode(element);
+    checkAttributes(element, credentialWordMatcher(), true);
   }
 
   private void checkNode(Node node) {
@@ -122,7 +181,7 @@ public class HardcodedCredentialsCheck extends SimpleXPathBasedCheck {
     checkCredential(node, childNode.getTextContent());
   }
 
-  private void checkAttributes(Node node, Set<String> credentialWords, boolean reportOnAttribute) {
+  private void checkAttributes(Node node, CredentialWordMatcher credentialWords, boolean reportOnAttribute) {
     if (!node.hasAttributes()) {
       return;
     }
@@ -136,13 +195,12 @@ public class HardcodedCredentialsCheck extends SimpleXPathBasedCheck {
     }
   }
 
-  private static boolean isCredentialNode(Node node, Set<String> credentialWords) {
+  private static boolean isCredentialNode(Node node, CredentialWordMatcher credentialWords) {
     String localName = node.getLocalName();
     if (localName == null) {
       return false;
     }
-    String lowerName = localName.toLowerCase(Locale.ROOT);
-    return credentialWords.stream().anyMatch(lowerName::contains) &&
+    return credentialWords.matchesName(localName) &&
       !"android:password".equalsIgnoreCase(node.getNodeName());
   }
 
@@ -150,7 +208,7 @@ public class HardcodedCredentialsCheck extends SimpleXPathBasedCheck {
     if (isValidCredential(candidate)) {
       return;
     }
-    if (isCredentialNode(node, credentialWordsSet())) {
+    if (isCredentialNode(node, credentialWordMatcher())) {
       reportIssue(node);
     }
   }
@@ -167,73 +225,48 @@ public class HardcodedCredentialsCheck extends SimpleXPathBasedCheck {
   /** Detects nodes with 'key="password"' and 'value' attributes. */
   private boolean isAddWithPassword(Node node) {
     NamedNodeMap attributes = node.getAttributes();
-    Optional<String> keyValueLowerCase =
-      Optional.ofNullable(attributes.getNamedItem("key"))
-        .map(Node::getNodeValue)
-        .map(String::toLowerCase);
-
-    boolean keyIsCredentialWord = keyValueLowerCase.map(key -> credentialWordsSet().stream().anyMatch(key::contains)).orElse(false);
+    boolean keyIsCredentialWord = Optional.ofNullable(attributes.getNamedItem("key"))
+      .map(Node::getNodeValue)
+      .map(credentialWordMatcher()::matches)
+      .orElse(false);
     Node valueNode = attributes.getNamedItem(VALUE);
     return keyIsCredentialWord && valueNode != null && !isValidCredential(valueNode.getNodeValue());
   }
 
   private void checkSpecialCases(XmlFile file) {
-    specialCases.forEach(specialCase -> specialCase.accept(file));
+    Element root = file.getNamespaceAwareDocument().getDocumentElement();
+    if (root == null) {
+      return;
+    }
+    for (SpecialCase specialCase : specialCasesByRootElement.getOrDefault(root.getLocalName(), Collections.emptyList())) {
+      if (specialCase.appliesTo(root)) {
+        checkSpecialCase(specialCase, file);
+      }
+    }
+  }
+
+  private void checkSpecialCase(SpecialCase specialCase, XmlFile file) {
+    Document document = specialCase.namespace != null ? file.getNamespaceAwareDocument() : DocumentViews.namespaceUnawareDocument(file);
+    for (Node node : evaluateAsList(specialCase.xpathExpression, document)) {
+      specialCase.credentialGetter.apply(node).ifPresent(credentialNode -> {
+        if (!isValidCredential(credentialNode.getNodeValue())) {
+          reportIssue(specialCase.reportOnAttribute ? credentialNode : node, "Make sure this is not a hard-coded credential.");
+        }
+      });
+    }
   }
 
   private void reportIssue(Node node) {
     reportIssue(node, String.format(ISSUE_MESSAGE, node.getLocalName()));
   }
 
-  private final List<SpecialCase> specialCases = Arrays.asList(
-    // FileZilla3
-    new SpecialCase(
-      "/FileZilla3/Servers/Server/Pass"
-        + "|/FileZilla3/RecentServers/Server/Pass",
-      HardcodedCredentialsCheck::getTextValueSafe,
-      false),
-    // SonarQube
-    new SpecialCase(
-      "/SonarQubeAnalysisProperties/Property[@Name='sonar.login']"
-        + "|project/properties/sonar.login",
-      HardcodedCredentialsCheck::getTextValueSafe,
-      false),
-    // Spring Framework
-    new SpecialCase(
-      "/beans/bean/property/list/bean["
-        + "@class='org.springframework.social.facebook.connect.FacebookConnectionFactory'"
-        + " or @class='org.springframework.social.github.connect.GitHubConnectionFactory'"
-        + " or @class='org.springframework.social.google.connect.GoogleConnectionFactory'"
-        + " or @class='org.springframework.social.linkedin.connect.LinkedinConnectionFactory'"
-        + " or @class='org.springframework.social.twitter.connect.TwitterConnectionFactory'"
-        + "]/constructor-arg[2]",
-      node -> getAttributeSafe(node, VALUE),
-      false),
-    new SpecialCase(
-      XPathBuilder.forExpression("/b:beans/f:config"
-        + "|/b:beans/gh:config"
-        + "|/b:beans/gg:config"
-        + "|/b:beans/l:config"
-        + "|/b:beans/t:config")
-        .withNamespace("b", "http://www.springframework.org/schema/beans")
-        .withNamespace("f", "http://www.springframework.org/schema/social/facebook")
-        .withNamespace("gh", "http://www.springframework.org/schema/social/github")
-        .withNamespace("gg", "http://www.springframework.org/schema/social/google")
-        .withNamespace("l", "http://www.springframework.org/schema/social/linkedin")
-        .withNamespace("t", "http://www.springframework.org/schema/social/twitter")
-        .build(),
-      node -> getAttributeSafe(node, "app-secret"),
-      true),
-    // Teiid
-    new SpecialCase(
-      "/security-domain/authentication/login-module/module-option["
-        + "@name='consumer-key' "
-        + "or @name='consumer-secret'"
-        + "or @name='access-key'"
-        + "or @name='access-secret'"
-        + "]",
-      node -> getAttributeSafe(node, VALUE),
-      false));
+  /**
+   * Adds credentials stored in a specific format of file. It is only evaluated on the files whose root element matches.
+   * The special cases are not configurable: supporting a new format means adding it in the constructor.
+   */
+  private void addSpecialCase(SpecialCase specialCase) {
+    specialCasesByRootElement.computeIfAbsent(specialCase.rootElement, k -> new ArrayList<>()).add(specialCase);
+  }
 
   private static Optional<Node> getTextValueSafe(Node node) {
     return Optional.ofNullable(node.getFirstChild());
@@ -243,35 +276,55 @@ public class HardcodedCredentialsCheck extends SimpleXPathBasedCheck {
     return node.hasAttributes() ? Optional.ofNullable(node.getAttributes().getNamedItem(attributeName)) : Optional.empty();
   }
 
-  private class SpecialCase implements Consumer<XmlFile> {
+  /**
+   * Credentials stored in a specific format of file, identified by its root element, and selected by an XPath expression.
+   * The expressions are not thread-safe: each instance of the check needs its own special cases.
+   */
+  private static final class SpecialCase {
+    private final String rootElement;
+    @Nullable
+    private final String namespace;
     private final XPathExpression xpathExpression;
     private final Function<Node, Optional<Node>> credentialGetter;
-    private final boolean usesNamespaces;
     private final boolean reportOnAttribute;
 
-    private SpecialCase(String xPathExpression, Function<Node, Optional<Node>> credentialGetter, boolean reportOnAttribute) {
-      this.xpathExpression = getXPathExpression(xPathExpression);
-      this.usesNamespaces = false;
+    private SpecialCase(String rootElement, @Nullable String namespace, XPathExpression xpathExpression,
+      Function<Node, Optional<Node>> credentialGetter, boolean reportOnAttribute) {
+      this.rootElement = rootElement;
+      this.namespace = namespace;
+      this.xpathExpression = xpathExpression;
       this.credentialGetter = credentialGetter;
       this.reportOnAttribute = reportOnAttribute;
     }
 
-    private SpecialCase(XPathExpression xPathExpression, Function<Node, Optional<Node>> credentialGetter, boolean reportOnAttribute) {
-      this.xpathExpression = xPathExpression;
-      this.usesNamespaces = true;
-      this.credentialGetter = credentialGetter;
-      this.reportOnAttribute = reportOnAttribute;
+    /**
+     * @param rootElement name of the root element, without prefix
+     * @param xPathExpression expression evaluated on the namespace-unaware document
+     * @param credentialGetter credential of each node selected by the expression
+     * @param reportOnAttribute whether the issue is reported on the credential rather than on the selected node
+     */
+    private static SpecialCase of(String rootElement, String xPathExpression, Function<Node, Optional<Node>> credentialGetter,
+      boolean reportOnAttribute) {
+      XPathExpression expression = NavigatedXPathExpression.of(xPathExpression, XPathBuilder.forExpression(xPathExpression).build());
+      return new SpecialCase(rootElement, null, expression, credentialGetter, reportOnAttribute);
     }
 
-    @Override
-    public void accept(XmlFile file) {
-      for (Node node : evaluateAsList(xpathExpression, usesNamespaces ? file.getNamespaceAwareDocument() : file.getNamespaceUnawareDocument())) {
-        credentialGetter.apply(node).ifPresent(credentialNode -> {
-          if (!isValidCredential(credentialNode.getNodeValue())) {
-            reportIssue(reportOnAttribute ? credentialNode : node, "Make sure this is not a hard-coded credential.");
-          }
-        });
-      }
+    /**
+     * @param namespace namespace URI of the root element
+     * @param rootElement local name of the root element
+     * @param xPathExpression expression evaluated on the namespace-aware document
+     * @param credentialGetter credential of each node selected by the expression
+     * @param reportOnAttribute whether the issue is reported on the credential rather than on the selected node
+     */
+    private static SpecialCase ofNamespace(String namespace, String rootElement, XPathExpression xPathExpression,
+      Function<Node, Optional<Node>> credentialGetter, boolean reportOnAttribute) {
+      return new SpecialCase(rootElement, namespace, xPathExpression, credentialGetter, reportOnAttribute);
+    }
+
+    private boolean appliesTo(Element root) {
+      // as the evaluation on the namespace-unaware document, the root element is only matched by its local name when no
+      // namespace is given: <beans:beans> is a "beans" root
+      return rootElement.equals(root.getLocalName()) && (namespace == null || namespace.equals(root.getNamespaceURI()));
     }
   }
 
@@ -16,12 +16,15 @@
  */
 package org.sonar.plugins.xml.checks.security.android;
 
+import org.sonar.plugins.xml.checks.AppliesTo;
+import org.sonar.plugins.xml.checks.xpath.NavigatedXPathBasedCheck;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
 
+import static org.sonar.plugins.xml.checks.security.android.Utils.ANDROID_MANIFEST_FILENAME;
 import static org.sonar.plugins.xml.checks.security.android.Utils.isAndroidManifestFile;
 
-public abstract class AbstractAndroidManifestCheck extends SimpleXPathBasedCheck {
+@AppliesTo(fileNames = ANDROID_MANIFEST_FILENAME)
+public abstract class AbstractAndroidManifestCheck extends NavigatedXPathBasedCheck {
 
   @Override
   public final void scanFile(XmlFile file) {
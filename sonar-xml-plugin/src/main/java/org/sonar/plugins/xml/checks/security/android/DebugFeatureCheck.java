@@ -19,15 +19,18 @@ package org.sonar.plugins.xml.checks.security.android;
 import javax.xml.xpath.XPathExpression;
 import org.sonar.check.Rule;
 import org.sonar.plugins.xml.Xml;
+import org.sonar.plugins.xml.checks.AppliesTo;
+import org.sonar.plugins.xml.checks.xpath.NavigatedXPathBasedCheck;
 import org.sonarsource.analyzer.commons.xml.XPathBuilder;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
 
+import static org.sonar.plugins.xml.checks.security.android.Utils.ANDROID_MANIFEST_FILENAME;
 import static org.sonar.plugins.xml.checks.security.android.Utils.ANDROID_MANIFEST_XMLNS;
 import static org.sonar.plugins.xml.checks.security.android.Utils.isAndroidManifestFile;
 
 @Rule(key = "S4507")
-public class DebugFeatureCheck extends SimpleXPathBasedCheck {
+@AppliesTo(fileNames = {ANDROID_MANIFEST_FILENAME, "web.config", "machine.config"})
+public class DebugFeatureCheck extends NavigatedXPathBasedCheck {
 
   private static final String MESSAGE = "Make sure this debug feature is deactivated before delivering the code in production.";
   private final XPathExpression debuggableXPath = XPathBuilder.forExpression("/manifest/application/@n1:debuggable[.='true']")
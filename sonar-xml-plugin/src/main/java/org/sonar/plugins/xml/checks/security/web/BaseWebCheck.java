@@ -17,13 +17,15 @@
 package org.sonar.plugins.xml.checks.security.web;
 
 import org.sonar.plugins.xml.Xml;
+import org.sonar.plugins.xml.checks.AppliesTo;
+import org.sonar.plugins.xml.checks.xpath.NavigatedXPathBasedCheck;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
 
 /**
  * Base class for checks targeting Java's web.xml and .NET web.config files.
  */
-public class BaseWebCheck extends SimpleXPathBasedCheck {
+@AppliesTo(fileNames = {"web.xml", "web.config", "machine.config"})
+public class BaseWebCheck extends NavigatedXPathBasedCheck {
   protected static final String WEB_XML_ROOT = "web-app";
 
   @Override
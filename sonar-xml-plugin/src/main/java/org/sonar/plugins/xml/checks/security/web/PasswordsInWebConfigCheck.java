@@ -17,7 +17,6 @@
 package org.sonar.plugins.xml.checks.security.web;
 
 import org.sonar.check.Rule;
-import org.sonarsource.analyzer.commons.xml.XPathBuilder;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
 import org.w3c.dom.Node;
 
@@ -28,9 +27,7 @@ import java.util.stream.Stream;
 @Rule(key = "S5344")
 public class PasswordsInWebConfigCheck extends BaseWebCheck {
 
-  private final XPathExpression credentialsExpression = XPathBuilder
-    .forExpression("//credentials")
-    .build();
+  private final XPathExpression credentialsExpression = getXPathExpression("//credentials");
 
   @Override
   protected void scanWebConfig(XmlFile file) {
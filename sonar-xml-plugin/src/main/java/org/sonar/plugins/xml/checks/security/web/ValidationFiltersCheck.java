@@ -28,15 +28,15 @@ import org.w3c.dom.Node;
 @Rule(key = "S3355")
 @DeprecatedRuleKey(repositoryKey = "java", ruleKey = "S3355")
 public class ValidationFiltersCheck extends BaseWebCheck {
-  private XPathExpression filterNamesFromFilterExpression = getXPathExpression(WEB_XML_ROOT + "/filter/filter-name");
-  private XPathExpression filterNamesFromFilterMappingExpression = getXPathExpression(WEB_XML_ROOT + "/filter-mapping/filter-name");
+  private XPathExpression filterNamesFromFilterExpression = getNamespaceUnawareXPathExpression(WEB_XML_ROOT + "/filter/filter-name");
+  private XPathExpression filterNamesFromFilterMappingExpression = getNamespaceUnawareXPathExpression(WEB_XML_ROOT + "/filter-mapping/filter-name");
 
   @Override
   public void scanWebXml(XmlFile file) {
     Set<String> filtersInMapping = new HashSet<>();
-    evaluateAsList(filterNamesFromFilterMappingExpression, file.getNamespaceUnawareDocument())
+    evaluateAsList(filterNamesFromFilterMappingExpression, namespaceUnawareDocument(file))
       .forEach(node -> getStringValue(node).ifPresent(filtersInMapping::add));
-    evaluateAsList(filterNamesFromFilterExpression, file.getNamespaceUnawareDocument())
+    evaluateAsList(filterNamesFromFilterExpression, namespaceUnawareDocument(file))
       .forEach(node -> {
         Optional<String> filterName = getStringValue(node);
         if (filterName.isPresent() && !filtersInMapping.contains(filterName.get())) {
@@ -19,25 +19,27 @@ package org.sonar.plugins.xml.checks.spring;
 import java.util.stream.IntStream;
 import javax.xml.xpath.XPathExpression;
 import org.sonar.check.Rule;
+import org.sonar.plugins.xml.checks.AppliesTo;
+import org.sonar.plugins.xml.checks.xpath.NavigatedXPathBasedCheck;
 import org.sonarsource.analyzer.commons.annotations.DeprecatedRuleKey;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
 @Rule(key = "S3439")
 @DeprecatedRuleKey(repositoryKey = "java", ruleKey = "S3439")
-public class DefaultMessageListenerContainerCheck extends SimpleXPathBasedCheck {
+@AppliesTo(rootElements = "beans")
+public class DefaultMessageListenerContainerCheck extends NavigatedXPathBasedCheck {
 
-  private XPathExpression defaultMessageListenerContainerBeanExpression = getXPathExpression(
+  private XPathExpression defaultMessageListenerContainerBeanExpression = getNamespaceUnawareXPathExpression(
     "beans/bean[@class='org.springframework.jms.listener.DefaultMessageListenerContainer']");
-  private XPathExpression acceptMessageWhileStoppingPropertyExpression = getXPathExpression("property[@name='acceptMessagesWhileStopping']");
-  private XPathExpression sessionTransactedPropertyExpression = getXPathExpression("property[@name='sessionTransacted']");
-  private XPathExpression valueExpression = getXPathExpression("value[text()='true']");
+  private XPathExpression acceptMessageWhileStoppingPropertyExpression = getNamespaceUnawareXPathExpression("property[@name='acceptMessagesWhileStopping']");
+  private XPathExpression sessionTransactedPropertyExpression = getNamespaceUnawareXPathExpression("property[@name='sessionTransacted']");
+  private XPathExpression valueExpression = getNamespaceUnawareXPathExpression("value[text()='true']");
 
   @Override
   public void scanFile(XmlFile xmlFile) {
-    evaluateAsList(defaultMessageListenerContainerBeanExpression, xmlFile.getNamespaceUnawareDocument()).forEach(bean -> {
+    evaluateAsList(defaultMessageListenerContainerBeanExpression, namespaceUnawareDocument(xmlFile)).forEach(bean -> {
       if (!hasAcceptMessagePropertyEnabled(bean) && hasSessionTransactedDisabled(bean)) {
         reportIssue(bean, "Enable \"acceptMessagesWhileStopping\".");
       }
@@ -20,24 +20,26 @@ import java.util.stream.IntStream;
 
 import javax.xml.xpath.XPathExpression;
 import org.sonar.check.Rule;
+import org.sonar.plugins.xml.checks.AppliesTo;
+import org.sonar.plugins.xml.checks.xpath.NavigatedXPathBasedCheck;
 import org.sonarsource.analyzer.commons.annotations.DeprecatedRuleKey;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
 
 @Rule(key = "S3438")
 @DeprecatedRuleKey(repositoryKey = "java", ruleKey = "S3438")
-public class SingleConnectionFactoryCheck extends SimpleXPathBasedCheck {
+@AppliesTo(rootElements = "beans")
+public class SingleConnectionFactoryCheck extends NavigatedXPathBasedCheck {
 
-  private XPathExpression singleConnectionFactoryBeansExpression = getXPathExpression("beans/bean[@class='org.springframework.jms.connection.SingleConnectionFactory']");
-  private XPathExpression reconnectOnExceptionPropertyExpression = getXPathExpression("property[@name='reconnectOnException']");
-  private XPathExpression valueExpression = getXPathExpression("value[text()='true']");
+  private XPathExpression singleConnectionFactoryBeansExpression = getNamespaceUnawareXPathExpression("beans/bean[@class='org.springframework.jms.connection.SingleConnectionFactory']");
+  private XPathExpression reconnectOnExceptionPropertyExpression = getNamespaceUnawareXPathExpression("property[@name='reconnectOnException']");
+  private XPathExpression valueExpression = getNamespaceUnawareXPathExpression("value[text()='true']");
 
   @Override
   public void scanFile(XmlFile file) {
-    evaluateAsList(singleConnectionFactoryBeansExpression, file.getNamespaceUnawareDocument()).forEach(bean -> {
+    evaluateAsList(singleConnectionFactoryBeansExpression, namespaceUnawareDocument(file)).forEach(bean -> {
       if (!hasAttributeValue(bean, "p:reconnectOnException") && !hasPropertyAsChild(bean, reconnectOnExceptionPropertyExpression)) {
         reportIssue(bean, "Add a \"reconnectOnException\" property, set to \"true\"");
       }
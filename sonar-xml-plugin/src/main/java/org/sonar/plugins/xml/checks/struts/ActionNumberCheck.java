@@ -21,14 +21,16 @@ import java.util.stream.Collectors;
 import javax.xml.xpath.XPathExpression;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
+import org.sonar.plugins.xml.checks.AppliesTo;
+import org.sonar.plugins.xml.checks.xpath.NavigatedXPathBasedCheck;
 import org.sonarsource.analyzer.commons.annotations.DeprecatedRuleKey;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
 import org.w3c.dom.Node;
 
 @Rule(key = "S3373")
 @DeprecatedRuleKey(repositoryKey = "java", ruleKey = "S3373")
-public class ActionNumberCheck extends SimpleXPathBasedCheck {
+@AppliesTo(rootElements = "struts-config")
+public class ActionNumberCheck extends NavigatedXPathBasedCheck {
 
   private static final int DEFAULT_MAXIMUM_NUMBER_FORWARDS = 4;
 
@@ -38,12 +40,12 @@ public class ActionNumberCheck extends SimpleXPathBasedCheck {
     defaultValue = "" + DEFAULT_MAXIMUM_NUMBER_FORWARDS)
   public int maximumForwards = DEFAULT_MAXIMUM_NUMBER_FORWARDS;
 
-  private XPathExpression actionsExpression = getXPathExpression("struts-config/action-mappings/action");
-  private XPathExpression forwardsFromActionExpression = getXPathExpression("forward");
+  private XPathExpression actionsExpression = getNamespaceUnawareXPathExpression("struts-config/action-mappings/action");
+  private XPathExpression forwardsFromActionExpression = getNamespaceUnawareXPathExpression("forward");
 
   @Override
   public void scanFile(XmlFile xmlFile) {
-    evaluateAsList(actionsExpression, xmlFile.getNamespaceUnawareDocument())
+    evaluateAsList(actionsExpression, namespaceUnawareDocument(xmlFile))
       .forEach(this::checkAction);
   }
 
@@ -23,21 +23,23 @@ import java.util.Map;
 import javax.annotation.CheckForNull;
 import javax.xml.xpath.XPathExpression;
 import org.sonar.check.Rule;
+import org.sonar.plugins.xml.checks.AppliesTo;
+import org.sonar.plugins.xml.checks.xpath.NavigatedXPathBasedCheck;
 import org.sonarsource.analyzer.commons.annotations.DeprecatedRuleKey;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
-import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
 import org.w3c.dom.Node;
 
 @Rule(key = "S3374")
 @DeprecatedRuleKey(repositoryKey = "java", ruleKey = "S3374")
-public class FormNameDuplicationCheck extends SimpleXPathBasedCheck {
+@AppliesTo(rootElements = "form-validation")
+public class FormNameDuplicationCheck extends NavigatedXPathBasedCheck {
 
-  private XPathExpression formsetsExpression = getXPathExpression("form-validation/formset");
-  private XPathExpression formsExpression = getXPathExpression("form");
+  private XPathExpression formsetsExpression = getNamespaceUnawareXPathExpression("form-validation/formset");
+  private XPathExpression formsExpression = getNamespaceUnawareXPathExpression("form");
 
   @Override
   public void scanFile(XmlFile xmlFile) {
-    evaluateAsList(formsetsExpression, xmlFile.getNamespaceUnawareDocument())
+    evaluateAsList(formsetsExpression, namespaceUnawareDocument(xmlFile))
       .forEach(this::checkIfDuplicate);
   }
 
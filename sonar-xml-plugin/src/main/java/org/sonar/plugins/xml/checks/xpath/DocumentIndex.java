@@ -0,0 +1,91 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.checks.xpath;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Elements of a document by local name, and elements having text, collected in document order by a single walk of
+ * the document on first use. The index is attached to the document, to be shared by all the rules querying it.
+ */
+final class DocumentIndex {
+
+  private static final String USER_DATA_KEY = DocumentIndex.class.getName();
+
+  private final Map<String, List<Element>> elementsByName = new HashMap<>();
+  private final List<Element> elementsWithText = new ArrayList<>();
+
+  private DocumentIndex(Document document) {
+    Node node = document.getFirstChild();
+    while (node != null) {
+      if (node.getNodeType() == Node.ELEMENT_NODE) {
+        index((Element) node);
+      }
+      node = XPathNavigator.nextInDocumentOrder(node, document);
+    }
+  }
+
+  static DocumentIndex of(Document document) {
+    DocumentIndex index = (DocumentIndex) document.getUserData(USER_DATA_KEY);
+    if (index == null) {
+      index = new DocumentIndex(document);
+      document.setUserData(USER_DATA_KEY, index, null);
+    }
+    return index;
+  }
+
+  /**
+   * @return the elements with the given name, ignoring their prefix, in document order
+   */
+  List<Element> elements(String localName) {
+    return elementsByName.getOrDefault(localName, List.of());
+  }
+
+  /**
+   * @return the elements having a text or CDATA child, in document order
+   */
+  List<Element> elementsWithText() {
+    return elementsWithText;
+  }
+
+  private void index(Element element) {
+    elementsByName.computeIfAbsent(localName(element), name -> new ArrayList<>()).add(element);
+    for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+      short type = child.getNodeType();
+      if (type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE) {
+        elementsWithText.add(element);
+        break;
+      }
+    }
+  }
+
+  private static String localName(Element element) {
+    String localName = element.getLocalName();
+    if (localName != null) {
+      return localName;
+    }
+    String tagName = element.getTagName();
+    return tagName.substring(tagName.indexOf(':') + 1);
+  }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.checks.xpath;
+
+import javax.xml.xpath.XPathExpression;
+import org.sonar.plugins.xml.tree.DocumentViews;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.sonarsource.analyzer.commons.xml.checks.SimpleXPathBasedCheck;
+import org.w3c.dom.Document;
+
+/**
+ * Check based on XPath expressions which are, when simple enough, evaluated by navigating the DOM instead of
+ * being interpreted by JAXP.
+ * <p>
+ * Expressions meant for the namespace-unaware document are compiled by {@link #getNamespaceUnawareXPathExpression(String)},
+ * and evaluated on {@link #namespaceUnawareDocument(XmlFile)}: when all of them can be navigated, they are answered by
+ * the namespace-aware document, and the file is not parsed a second time for this check.
+ *
+ * @see XPathNavigator
+ */
+public abstract class NavigatedXPathBasedCheck extends SimpleXPathBasedCheck {
+
+  private boolean namespaceUnawareExpressionsNavigated = true;
+
+  @Override
+  public XPathExpression getXPathExpression(String expression) {
+    return NavigatedXPathExpression.of(expression, super.getXPathExpression(expression));
+  }
+
+  /**
+   * Compiles an expression matching names as in a namespace-unaware document, to be evaluated on
+   * {@link #namespaceUnawareDocument(XmlFile)} and on its nodes.
+   */
+  public XPathExpression getNamespaceUnawareXPathExpression(String expression) {
+    XPathExpression jaxpExpression = super.getXPathExpression(expression);
+    XPathExpression xPathExpression = NavigatedXPathExpression.namespaceUnaware(expression, jaxpExpression);
+    if (xPathExpression == jaxpExpression) {
+      namespaceUnawareExpressionsNavigated = false;
+    }
+    return xPathExpression;
+  }
+
+  /**
+   * @return the document to evaluate the expressions of {@link #getNamespaceUnawareXPathExpression(String)} on: the
+   * namespace-aware document when all of them are navigated, the namespace-unaware document otherwise
+   */
+  protected Document namespaceUnawareDocument(XmlFile file) {
+    return namespaceUnawareExpressionsNavigated ? DocumentViews.namespaceUnawareView(file) : DocumentViews.namespaceUnawareDocument(file);
+  }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.checks.xpath;
+
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import org.sonar.plugins.xml.tree.DocumentViews;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+/**
+ * XPath expression evaluated by an {@link XPathNavigator} when selecting nodes from a document or an element, and by
+ * the JAXP expression compiled from the same source otherwise.
+ * <p>
+ * When the {@value #VERIFY_PROPERTY} system property is set to true, both evaluations are done and compared, and
+ * any difference fails the evaluation.
+ * <p>
+ * A {@link #namespaceUnaware(String, XPathExpression)} expression selects the nodes it would select in the
+ * namespace-unaware document also when evaluated on the namespace-aware one, as a {@link DocumentViews} view. It is
+ * then evaluated by JAXP on the namespace-unaware document when it can not be navigated.
+ */
+public final class NavigatedXPathExpression implements XPathExpression {
+
+  public static final String VERIFY_PROPERTY = "sonar.xml.xpath.verify";
+
+  private final String expression;
+  private final XPathNavigator navigator;
+  private final XPathExpression jaxpExpression;
+  private final boolean verify;
+  private final boolean namespaceUnaware;
+
+  NavigatedXPathExpression(String expression, XPathNavigator navigator, XPathExpression jaxpExpression, boolean verify, boolean namespaceUnaware) {
+    this.expression = expression;
+    this.navigator = navigator;
+    this.jaxpExpression = jaxpExpression;
+    this.verify = verify;
+    this.namespaceUnaware = namespaceUnaware;
+  }
+
+  /**
+   * @return an expression evaluated by navigation if the source is part of the subset supported by {@link XPathNavigator},
+   * the given JAXP expression otherwise
+   */
+  public static XPathExpression of(String expression, XPathExpression jaxpExpression) {
+    XPathNavigator navigator = XPathNavigator.compile(expression);
+    if (navigator == null) {
+      return jaxpExpression;
+    }
+    return new NavigatedXPathExpression(expression, navigator, jaxpExpression, verifying(), false);
+  }
+
+  /**
+   * @return an expression matching names as in a namespace-unaware document, evaluated by navigation if the source is
+   * part of the subset supported by {@link XPathNavigator}, the given JAXP expression otherwise
+   */
+  public static XPathExpression namespaceUnaware(String expression, XPathExpression jaxpExpression) {
+    XPathNavigator navigator = XPathNavigator.compile(expression);
+    if (navigator == null) {
+      return jaxpExpression;
+    }
+    return new NavigatedXPathExpression(expression, navigator.namespaceUnaware(), jaxpExpression, verifying(), true);
+  }
+
+  /**
+   * @return true if the evaluations by navigation have to be compared with the JAXP ones
+   */
+  public static boolean verifying() {
+    return Boolean.getBoolean(VERIFY_PROPERTY);
+  }
+
+  @Override
+  public Object evaluate(Object item, QName returnType) throws XPathExpressionException {
+    boolean navigable = XPathConstants.NODESET.equals(returnType) || XPathConstants.BOOLEAN.equals(returnType);
+    if (!navigable || !(item instanceof Node context) || !XPathNavigator.supportsContext(context)) {
+      return jaxpExpression.evaluate(jaxpItem(item), returnType);
+    }
+    List<Node> nodes = navigator.select(context);
+    if (verify) {
+      if (isView(context)) {
+        List<Node> counterparts = nodes.stream().map(DocumentViews::counterpart).toList();
+        verify(expression, counterparts, (NodeList) jaxpExpression.evaluate(DocumentViews.counterpart(context), XPathConstants.NODESET));
+      } else {
+        verify(expression, nodes, (NodeList) jaxpExpression.evaluate(context, XPathConstants.NODESET));
+      }
+    }
+    return XPathConstants.NODESET.equals(returnType) ? new SelectedNodes(nodes) : !nodes.isEmpty();
+  }
+
+  @Override
+  public String evaluate(Object item) throws XPathExpressionException {
+    return jaxpExpression.evaluate(jaxpItem(item));
+  }
+
+  /**
+   * @return the item to evaluate the JAXP expression on: its counterpart in the namespace-unaware document for a node of a view
+   */
+  private Object jaxpItem(Object item) {
+    return item instanceof Node node && isView(node) ? DocumentViews.counterpart(node) : item;
+  }
+
+  private boolean isView(Node node) {
+    return namespaceUnaware && DocumentViews.isNamespaceAware(node);
+  }
+
+  @Override
+  public Object evaluate(InputSource source, QName returnType) throws XPathExpressionException {
+    return jaxpExpression.evaluate(source, returnType);
+  }
+
+  @Override
+  public String evaluate(InputSource source) throws XPathExpressionException {
+    return jaxpExpression.evaluate(source);
+  }
+
+  /**
+   * @throws IllegalStateException if the nodes selected by navigation are not the ones selected by JAXP, in the same order
+   */
+  public static void verify(String expression, List<Node> nodes, NodeList expected) {
+    boolean identical = nodes.size() == expected.getLength();
+    for (int i = 0; identical && i < nodes.size(); i++) {
+      identical = nodes.get(i) == expected.item(i);
+    }
+    if (!identical) {
+      throw new IllegalStateException(String.format("Navigation selected %d nodes instead of the %d selected by JAXP for the XPath expression [%s]",
+        nodes.size(), expected.getLength(), expression));
+    }
+  }
+
+  private static final class SelectedNodes implements NodeList {
+    private final List<Node> nodes;
+
+    private SelectedNodes(List<Node> nodes) {
+      this.nodes = nodes;
+    }
+
+    @CheckForNull
+    @Override
+    public Node item(int index) {
+      return index >= 0 && index < nodes.size() ? nodes.get(index) : null;
+    }
+
+    @Override
+    public int getLength() {
+      return nodes.size();
+    }
+  }
+
+}
@@ -0,0 +1,499 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.checks.xpath;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Evaluation of simple XPath location paths by direct navigation in the DOM, without interpretation.
+ * <p>
+ * The supported subset is made of absolute, relative, or starting with {@code //}, location paths of child steps,
+ * which are element names without prefix or {@code *}, optionally followed by a last {@code @name} step.
+ * Steps can have predicates testing the existence of an attribute, of a child element or of a text node, or
+ * comparing its value to a literal with {@code =} or {@code !=}:
+ * <pre>
+ *   /manifest/uses-permission
+ *   beans/bean[@class='org.springframework.jms.connection.SingleConnectionFactory']
+ *   //dependencies/dependency
+ *   ejb-jar/assembly-descriptor/interceptor-binding[ejb-name="*"]/interceptor-class
+ *   value[text()='true']
+ * </pre>
+ * Names are matched as JAXP does: in a namespace-aware document, only nodes without namespace match; in a
+ * namespace-unaware document, the prefix of the nodes is ignored, except for the single step {@code //name}
+ * expressions, which only match nodes without prefix. A {@link #namespaceUnaware()} navigator matches names as in
+ * a namespace-unaware document whatever the document, to query the namespace-aware one in place of the other.
+ */
+public final class XPathNavigator {
+
+  private final boolean absolute;
+  private final boolean anyDepth;
+  private final List<Step> steps;
+  @Nullable
+  private final String attributeName;
+  // names are matched by their qualified name, even in a namespace-aware document
+  private final boolean qualifiedNames;
+
+  private XPathNavigator(boolean absolute, boolean anyDepth, List<Step> steps, @Nullable String attributeName, boolean qualifiedNames) {
+    this.absolute = absolute;
+    this.anyDepth = anyDepth;
+    this.steps = steps;
+    this.attributeName = attributeName;
+    this.qualifiedNames = qualifiedNames;
+  }
+
+  /**
+   * @return the navigator evaluating the expression, null if the expression is not part of the supported subset
+   */
+  @CheckForNull
+  public static XPathNavigator compile(String expression) {
+    return new Parser(expression).parse();
+  }
+
+  /**
+   * @return a navigator selecting, in a namespace-aware document, the nodes which this one selects in the namespace-unaware
+   * document of the same file
+   */
+  public XPathNavigator namespaceUnaware() {
+    return qualifiedNames ? this : new XPathNavigator(absolute, anyDepth, steps, attributeName, true);
+  }
+
+  /**
+   * @return true if the expression can be evaluated on the given context node, which must be a document or an element
+   */
+  public static boolean supportsContext(Node context) {
+    short type = context.getNodeType();
+    return type == Node.DOCUMENT_NODE || type == Node.ELEMENT_NODE;
+  }
+
+  /**
+   * @return the nodes selected by the expression from the given context node, in document order
+   */
+  public List<Node> select(Node context) {
+    Node start = absolute || anyDepth ? ownerDocument(context) : context;
+    List<Node> elements = anyDepth ? selectAtAnyDepth(start) : selectChildren(start);
+    if (attributeName == null) {
+      return elements;
+    }
+    List<Node> attributes = new ArrayList<>();
+    for (Node element : elements) {
+      attributes.addAll(attributes((Element) element, attributeName, qualifiedNames));
+    }
+    return attributes;
+  }
+
+  /**
+   * Streaming evaluation, for a traversal of the document: tests a single element, as if the expression was evaluated
+   * from the document, without looking at the following elements.
+   *
+   * @return the element, or its attributes selected by the expression, when it is matched by the expression
+   */
+  public List<Node> selectOn(Element element) {
+    if (!matchesFrom(element, steps.size() - 1)) {
+      return List.of();
+    }
+    return attributeName == null ? List.of(element) : new ArrayList<>(attributes(element, attributeName, qualifiedNames));
+  }
+
+  /**
+   * @return the name of the elements which can be matched by the last step, null when any element can be
+   */
+  @CheckForNull
+  public String lastElementName() {
+    return steps.get(steps.size() - 1).name;
+  }
+
+  private List<Node> selectChildren(Node start) {
+    List<Node> current = List.of(start);
+    for (Step step : steps) {
+      List<Node> next = new ArrayList<>();
+      for (Node node : current) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+          if (child.getNodeType() == Node.ELEMENT_NODE && step.matches((Element) child, qualifiedNames)) {
+            next.add(child);
+          }
+        }
+      }
+      current = next;
+    }
+    return current;
+  }
+
+  /**
+   * Tests the elements of the document which can match the last step, in document order, against the steps from the
+   * last one to the first one, matched by the element and its ancestors. These candidates are looked up in the
+   * {@link DocumentIndex} when the last step has a name or tests the text, all the elements are tested otherwise.
+   */
+  private List<Node> selectAtAnyDepth(Node document) {
+    Step lastStep = steps.get(steps.size() - 1);
+    List<Element> candidates = null;
+    if (lastStep.name != null) {
+      candidates = DocumentIndex.of((Document) document).elements(lastStep.name);
+    } else if (lastStep.testsText()) {
+      candidates = DocumentIndex.of((Document) document).elementsWithText();
+    }
+    List<Node> selected = new ArrayList<>();
+    if (candidates != null) {
+      for (Element candidate : candidates) {
+        if (matchesFrom(candidate, steps.size() - 1)) {
+          selected.add(candidate);
+        }
+      }
+      return selected;
+    }
+    Node node = document.getFirstChild();
+    while (node != null) {
+      if (node.getNodeType() == Node.ELEMENT_NODE && matchesFrom((Element) node, steps.size() - 1)) {
+        selected.add(node);
+      }
+      node = nextInDocumentOrder(node, document);
+    }
+    return selected;
+  }
+
+  /**
+   * @return true if the element and its ancestors match the steps up to the given one, the first step being matched
+   * by the root element unless the steps can start at any depth
+   */
+  private boolean matchesFrom(Element element, int stepIndex) {
+    if (!steps.get(stepIndex).matches(element, qualifiedNames)) {
+      return false;
+    }
+    Node parent = element.getParentNode();
+    if (stepIndex == 0) {
+      return anyDepth || parent.getNodeType() == Node.DOCUMENT_NODE;
+    }
+    return parent.getNodeType() == Node.ELEMENT_NODE && matchesFrom((Element) parent, stepIndex - 1);
+  }
+
+  @CheckForNull
+  static Node nextInDocumentOrder(Node node, Node root) {
+    Node firstChild = node.getFirstChild();
+    if (firstChild != null) {
+      return firstChild;
+    }
+    for (Node current = node; current != root; current = current.getParentNode()) {
+      Node nextSibling = current.getNextSibling();
+      if (nextSibling != null) {
+        return nextSibling;
+      }
+    }
+    return null;
+  }
+
+  private static Node ownerDocument(Node node) {
+    return node.getNodeType() == Node.DOCUMENT_NODE ? node : node.getOwnerDocument();
+  }
+
+  private static boolean hasName(Node node, String name, boolean ignoredPrefix, boolean qualifiedNames) {
+    String localName = node.getLocalName();
+    if (localName != null && !qualifiedNames) {
+      return node.getNamespaceURI() == null && localName.equals(name);
+    }
+    String nodeName = node.getNodeName();
+    if (!ignoredPrefix) {
+      return nodeName.equals(name);
+    }
+    int colon = nodeName.indexOf(':');
+    return nodeName.length() - colon - 1 == name.length() && nodeName.startsWith(name, colon + 1);
+  }
+
+  /**
+   * @return the attributes with the given name, there can be several of them in a namespace-unaware document
+   */
+  private static List<Attr> attributes(Element element, String name, boolean qualifiedNames) {
+    if (!element.hasAttributes()) {
+      return List.of();
+    }
+    List<Attr> matching = new ArrayList<>(1);
+    NamedNodeMap attributes = element.getAttributes();
+    for (int i = 0; i < attributes.getLength(); i++) {
+      Attr attribute = (Attr) attributes.item(i);
+      if (!isNamespaceDeclaration(attribute) && hasName(attribute, name, true, qualifiedNames)) {
+        matching.add(attribute);
+      }
+    }
+    return matching;
+  }
+
+  private static boolean isNamespaceDeclaration(Attr attribute) {
+    String name = attribute.getName();
+    return "xmlns".equals(name) || name.startsWith("xmlns:");
+  }
+
+  private static final class Step {
+    @Nullable
+    private final String name;
+    private final List<Predicate> predicates;
+    private boolean ignoredPrefix = true;
+
+    private Step(@Nullable String name, List<Predicate> predicates) {
+      this.name = name;
+      this.predicates = predicates;
+    }
+
+    /**
+     * @return true if only elements having a text node can match this step
+     */
+    private boolean testsText() {
+      return predicates.stream().anyMatch(predicate -> predicate.operand == Operand.TEXT);
+    }
+
+    private boolean matches(Element element, boolean qualifiedNames) {
+      if (name != null && !hasName(element, name, ignoredPrefix, qualifiedNames)) {
+        return false;
+      }
+      for (Predicate predicate : predicates) {
+        if (!predicate.test(element, qualifiedNames)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private enum Operand {
+    ATTRIBUTE,
+    CHILD,
+    TEXT
+  }
+
+  /**
+   * Existence of an attribute, a child element or a text node, with a given value, or a different one, if any.
+   */
+  private static final class Predicate {
+    private final Operand operand;
+    @Nullable
+    private final String name;
+    @Nullable
+    private final String value;
+    private final boolean different;
+
+    private Predicate(Operand operand, @Nullable String name, @Nullable String value, boolean different) {
+      this.operand = operand;
+      this.name = name;
+      this.value = value;
+      this.different = different;
+    }
+
+    private boolean test(Element element, boolean qualifiedNames) {
+      return switch (operand) {
+        case ATTRIBUTE -> testAttribute(element, qualifiedNames);
+        case CHILD -> testChildren(element, qualifiedNames);
+        case TEXT -> testTexts(element);
+      };
+    }
+
+    private boolean testAttribute(Element element, boolean qualifiedNames) {
+      for (Attr attribute : attributes(element, Objects.requireNonNull(name), qualifiedNames)) {
+        if (hasValue(attribute.getValue())) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private boolean testChildren(Element element, boolean qualifiedNames) {
+      for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+        if (child.getNodeType() == Node.ELEMENT_NODE && hasName(child, Objects.requireNonNull(name), true, qualifiedNames)
+          && hasValue(child.getTextContent())) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Adjacent text and CDATA nodes of the DOM are a single text node for XPath.
+     */
+    private boolean testTexts(Element element) {
+      StringBuilder text = null;
+      for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+        short type = child.getNodeType();
+        if (type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE) {
+          text = text == null ? new StringBuilder(child.getNodeValue()) : text.append(child.getNodeValue());
+        } else if (text != null) {
+          if (hasValue(text.toString())) {
+            return true;
+          }
+          text = null;
+        }
+      }
+      return text != null && hasValue(text.toString());
+    }
+
+    private boolean hasValue(String actual) {
+      return value == null || value.equals(actual) != different;
+    }
+  }
+
+  /**
+   * Parser of the supported subset, giving up on anything else.
+   */
+  private static final class Parser {
+    private final String expression;
+    private int position = 0;
+
+    private Parser(String expression) {
+      this.expression = expression;
+    }
+
+    @CheckForNull
+    private XPathNavigator parse() {
+      boolean anyDepth = consume("//");
+      boolean absolute = !anyDepth && consume("/");
+      List<Step> steps = new ArrayList<>();
+      String attributeName = null;
+      do {
+        if (consume("@")) {
+          attributeName = name();
+          if (attributeName == null || steps.isEmpty() || position < expression.length()) {
+            return null;
+          }
+          break;
+        }
+        Step step = step();
+        if (step == null) {
+          return null;
+        }
+        steps.add(step);
+      } while (consume("/"));
+      if (position < expression.length() || steps.isEmpty()) {
+        return null;
+      }
+      if (anyDepth && steps.size() == 1 && attributeName == null) {
+        // JAXP optimizes this case, whatever the predicates, comparing the whole name of the nodes in a namespace-unaware document
+        steps.get(0).ignoredPrefix = false;
+      }
+      return new XPathNavigator(absolute, anyDepth, steps, attributeName, false);
+    }
+
+    @CheckForNull
+    private Step step() {
+      String name = null;
+      if (!consume("*")) {
+        name = name();
+        if (name == null) {
+          return null;
+        }
+      }
+      List<Predicate> predicates = new ArrayList<>();
+      while (consume("[")) {
+        Predicate predicate = predicate();
+        if (predicate == null || !consume("]")) {
+          return null;
+        }
+        predicates.add(predicate);
+      }
+      return new Step(name, predicates);
+    }
+
+    @CheckForNull
+    private Predicate predicate() {
+      skipSpaces();
+      Operand operand;
+      String name = null;
+      if (consume("text()")) {
+        operand = Operand.TEXT;
+      } else {
+        operand = consume("@") ? Operand.ATTRIBUTE : Operand.CHILD;
+        name = name();
+        if (name == null) {
+          return null;
+        }
+      }
+      skipSpaces();
+      String value = null;
+      boolean different = consume("!=");
+      if (different || consume("=")) {
+        skipSpaces();
+        value = literal();
+        if (value == null) {
+          return null;
+        }
+        skipSpaces();
+      }
+      return new Predicate(operand, name, value, different);
+    }
+
+    @CheckForNull
+    private String literal() {
+      if (position >= expression.length()) {
+        return null;
+      }
+      char quote = expression.charAt(position);
+      if (quote != '\'' && quote != '"') {
+        return null;
+      }
+      int end = expression.indexOf(quote, position + 1);
+      if (end < 0) {
+        return null;
+      }
+      String literal = expression.substring(position + 1, end);
+      position = end + 1;
+      return literal;
+    }
+
+    /**
+     * @return the name without prefix at the current position, null if there is none or if it is followed by
+     * something making it something else than a name test, such as a function call or an axis
+     */
+    @CheckForNull
+    private String name() {
+      int start = position;
+      while (position < expression.length() && isNameChar(expression.charAt(position), position == start)) {
+        position++;
+      }
+      if (position == start || (position < expression.length() && "(:".indexOf(expression.charAt(position)) >= 0)) {
+        return null;
+      }
+      String name = expression.substring(start, position);
+      return isOperatorName(name) ? null : name;
+    }
+
+    private static boolean isNameChar(char c, boolean first) {
+      return Character.isLetter(c) || c == '_' || (!first && (Character.isDigit(c) || c == '-' || c == '.'));
+    }
+
+    private static boolean isOperatorName(String name) {
+      return "and".equals(name) || "or".equals(name) || "div".equals(name) || "mod".equals(name);
+    }
+
+    private boolean consume(String token) {
+      if (expression.startsWith(token, position)) {
+        position += token.length();
+        return true;
+      }
+      return false;
+    }
+
+    private void skipSpaces() {
+      while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) {
+        position++;
+      }
+    }
+  }
+
+}
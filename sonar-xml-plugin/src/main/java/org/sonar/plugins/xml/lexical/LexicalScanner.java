@@ -0,0 +1,246 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.lexical;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+
+/**
+ * Single scan of the characters of a file, notifying all the subscribed {@link LexicalVisitor}s.
+ * <p>
+ * The characters are either the content of a parsed file, see {@link #scan(CharSequence)}, or the ones read from a
+ * file analyzed in streaming mode, see {@link #scanning(Reader)}: rules only needing the characters of the files then
+ * cost a single linear scan per file in total, on all the files. As for a {@link org.sonar.plugins.xml.visitors.DomTraversal},
+ * the sensor shares the scanner of a parsed file, using {@link #shareDuring(XmlFile, Runnable)}, while the rules are
+ * executed.
+ */
+public final class LexicalScanner {
+
+  private static final ThreadLocal<LexicalScanner> SHARED = new ThreadLocal<>();
+  private static final char BYTE_ORDER_MARK = '\uFEFF';
+  private static final int NONE = -1;
+
+  private final FailureHandler failureHandler;
+  private final List<Subscription> subscriptions = new ArrayList<>();
+  @Nullable
+  private XmlFile sharedFile = null;
+
+  private long offset = 0L;
+  private int line = 1;
+  private int column = 0;
+  private int trimmedLength = 0;
+  private int tabsStart = NONE;
+  private boolean afterCarriageReturn = false;
+
+  /**
+   * Called when a visitor fails. The failing visitor is not notified anymore for the rest of the file,
+   * and the scan is interrupted if the handler throws.
+   */
+  @FunctionalInterface
+  public interface FailureHandler {
+    void onFailure(LexicalVisitor visitor, RuntimeException e);
+  }
+
+  @FunctionalInterface
+  private interface PositionEvent {
+    void accept(LexicalVisitor visitor, int line, int first, int second);
+  }
+
+  public LexicalScanner(FailureHandler failureHandler) {
+    this.failureHandler = failureHandler;
+  }
+
+  /**
+   * Visits the characters of the given file: within the scan shared for this file on the current thread if there
+   * is one, immediately otherwise.
+   */
+  public static void visit(XmlFile xmlFile, LexicalVisitor visitor) {
+    LexicalScanner shared = SHARED.get();
+    if (shared != null && shared.sharedFile == xmlFile) {
+      shared.subscribe(visitor);
+    } else {
+      new LexicalScanner((failingVisitor, e) -> {
+        throw e;
+      }).subscribe(visitor).scan(xmlFile.getContents());
+    }
+  }
+
+  public LexicalScanner subscribe(LexicalVisitor visitor) {
+    subscriptions.add(new Subscription(visitor));
+    return this;
+  }
+
+  /**
+   * Runs the given action with this scanner shared on the current thread, for the given file.
+   */
+  public void shareDuring(XmlFile xmlFile, Runnable action) {
+    LexicalScanner previous = SHARED.get();
+    SHARED.set(this);
+    sharedFile = xmlFile;
+    try {
+      action.run();
+    } finally {
+      sharedFile = null;
+      if (previous == null) {
+        SHARED.remove();
+      } else {
+        SHARED.set(previous);
+      }
+    }
+  }
+
+  /**
+   * Scans all the characters of a file.
+   */
+  public void scan(CharSequence content) {
+    if (!subscriptions.isEmpty()) {
+      for (int i = 0; i < content.length(); i++) {
+        accept(content.charAt(i));
+      }
+      end();
+    }
+  }
+
+  /**
+   * @return a reader scanning the characters of the given one while they are read, {@link #end()} having to be called
+   * once the file has been read
+   */
+  public Reader scanning(Reader reader) {
+    return new ScanningReader(reader);
+  }
+
+  /**
+   * Notifies the end of the file, once all its characters have been scanned.
+   */
+  public void end() {
+    endLine();
+    notifyVisitors(LexicalVisitor::endFile);
+  }
+
+  private void accept(char c) {
+    if (offset++ == 0 && c == BYTE_ORDER_MARK) {
+      notifyVisitors(LexicalVisitor::visitByteOrderMark);
+      return;
+    }
+    if (c == '\n' && afterCarriageReturn) {
+      // second character of a "\r\n" line terminator
+      afterCarriageReturn = false;
+      return;
+    }
+    afterCarriageReturn = c == '\r';
+    if (c == '\n' || c == '\r') {
+      endLine();
+      line++;
+      column = 0;
+      trimmedLength = 0;
+      return;
+    }
+    if (c != '\t') {
+      endTabs();
+    } else if (tabsStart == NONE) {
+      tabsStart = column;
+    }
+    column++;
+    if (!isWhitespace(c)) {
+      trimmedLength = column;
+    }
+  }
+
+  private void endLine() {
+    endTabs();
+    notifyVisitors(LexicalVisitor::visitLine, line, column, trimmedLength);
+  }
+
+  private void endTabs() {
+    if (tabsStart != NONE) {
+      notifyVisitors(LexicalVisitor::visitTabs, line, tabsStart, column);
+      tabsStart = NONE;
+    }
+  }
+
+  // same definition of white space as \s in a regular expression, line terminators excluded
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\u000B' || c == '\f';
+  }
+
+  private void notifyVisitors(PositionEvent event, int eventLine, int first, int second) {
+    for (Subscription subscription : subscriptions) {
+      if (!subscription.failed) {
+        try {
+          event.accept(subscription.visitor, eventLine, first, second);
+        } catch (RuntimeException e) {
+          onFailure(subscription, e);
+        }
+      }
+    }
+  }
+
+  private void notifyVisitors(Consumer<LexicalVisitor> event) {
+    for (Subscription subscription : subscriptions) {
+      if (!subscription.failed) {
+        try {
+          event.accept(subscription.visitor);
+        } catch (RuntimeException e) {
+          onFailure(subscription, e);
+        }
+      }
+    }
+  }
+
+  private void onFailure(Subscription subscription, RuntimeException e) {
+    subscription.failed = true;
+    failureHandler.onFailure(subscription.visitor, e);
+  }
+
+  private static final class Subscription {
+    private final LexicalVisitor visitor;
+    private boolean failed = false;
+
+    private Subscription(LexicalVisitor visitor) {
+      this.visitor = visitor;
+    }
+  }
+
+  private final class ScanningReader extends Reader {
+
+    private final Reader reader;
+
+    private ScanningReader(Reader reader) {
+      this.reader = reader;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+      int read = reader.read(buffer, offset, length);
+      for (int i = 0; i < read; i++) {
+        accept(buffer[offset + i]);
+      }
+      return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+      reader.close();
+    }
+  }
+
+}
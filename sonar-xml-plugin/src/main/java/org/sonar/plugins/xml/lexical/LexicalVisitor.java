@@ -0,0 +1,49 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.lexical;
+
+/**
+ * Visitor of the characters of a file, driven by a {@link LexicalScanner} while the characters are read.
+ * <p>
+ * Lines are numbered from 1 and columns from 0, as in {@link org.sonarsource.analyzer.commons.xml.XmlTextRange}, a
+ * byte order mark not being part of the first line. Events are notified in the order of the characters.
+ */
+public interface LexicalVisitor {
+
+  /**
+   * Called when the file starts with a byte order mark.
+   */
+  default void visitByteOrderMark() {
+  }
+
+  /**
+   * @param length of the line, line terminator excluded
+   * @param trimmedLength of the line without its trailing white spaces
+   */
+  default void visitLine(int line, int length, int trimmedLength) {
+  }
+
+  /**
+   * Run of consecutive tab characters.
+   */
+  default void visitTabs(int line, int startColumn, int endColumn) {
+  }
+
+  default void endFile() {
+  }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.streaming;
+
+import java.util.List;
+import org.sonarsource.analyzer.commons.xml.XmlTextRange;
+
+/**
+ * Start tag of an element, {@code <foo a="b">} or {@code <foo a="b"/>}.
+ */
+public final class StartTag {
+
+  private final String name;
+  private final XmlTextRange nameLocation;
+  private final List<Attribute> attributes;
+  private final XmlTextRange location;
+  private final boolean selfClosing;
+
+  StartTag(String name, XmlTextRange nameLocation, List<Attribute> attributes, XmlTextRange location, boolean selfClosing) {
+    this.name = name;
+    this.nameLocation = nameLocation;
+    this.attributes = attributes;
+    this.location = location;
+    this.selfClosing = selfClosing;
+  }
+
+  /**
+   * @return the qualified name of the element
+   */
+  public String name() {
+    return name;
+  }
+
+  public XmlTextRange nameLocation() {
+    return nameLocation;
+  }
+
+  public List<Attribute> attributes() {
+    return attributes;
+  }
+
+  /**
+   * @return location of the whole tag, from {@code <} to {@code >}
+   */
+  public XmlTextRange location() {
+    return location;
+  }
+
+  public boolean isSelfClosing() {
+    return selfClosing;
+  }
+
+  public static final class Attribute {
+
+    private final String name;
+    private final XmlTextRange nameLocation;
+    private final String value;
+    private final XmlTextRange valueLocation;
+
+    Attribute(String name, XmlTextRange nameLocation, String value, XmlTextRange valueLocation) {
+      this.name = name;
+      this.nameLocation = nameLocation;
+      this.value = value;
+      this.valueLocation = valueLocation;
+    }
+
+    public String name() {
+      return name;
+    }
+
+    public XmlTextRange nameLocation() {
+      return nameLocation;
+    }
+
+    /**
+     * @return the raw value, without the quotes and with its references unresolved
+     */
+    public String value() {
+      return value;
+    }
+
+    /**
+     * @return location of the value, quotes included
+     */
+    public XmlTextRange valueLocation() {
+      return valueLocation;
+    }
+  }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.streaming;
+
+import org.sonarsource.analyzer.commons.xml.PrologElement;
+import org.sonarsource.analyzer.commons.xml.XmlTextRange;
+
+/**
+ * Visitor of the tokens of a file, driven by a {@link XmlTokenizer} while the file is read.
+ * Tokens are visited in document order.
+ */
+public interface TokenVisitor {
+
+  default void visitProlog(PrologElement prolog) {
+  }
+
+  default void visitStartTag(StartTag startTag) {
+  }
+
+  /**
+   * @param location from {@code </} to {@code >}
+   */
+  default void visitEndTag(XmlTextRange location) {
+  }
+
+  /**
+   * Characters of a text or of a CDATA section, delivered in segments never spanning several lines.
+   * The given sequence is only valid during the call.
+   */
+  default void visitCharacters(XmlTextRange location, CharSequence characters) {
+  }
+
+  /**
+   * Called once the content of the CDATA section has been delivered.
+   *
+   * @param startLocation of {@code <![CDATA[}
+   * @param endLocation of {@code ]]>}
+   */
+  default void visitCdata(XmlTextRange startLocation, XmlTextRange endLocation) {
+  }
+
+  /**
+   * @param content text between {@code <!--} and {@code -->}
+   */
+  default void visitComment(XmlTextRange location, String content) {
+  }
+
+  default void visitDocumentType(XmlTextRange location) {
+  }
+
+  /**
+   * Processing instructions other than the prolog.
+   */
+  default void visitProcessingInstruction(XmlTextRange location) {
+  }
+
+  default void endDocument() {
+  }
+
+}
@@ -0,0 +1,469 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.streaming;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import org.codehaus.stax2.LocationInfo;
+import org.codehaus.stax2.XMLStreamReader2;
+import org.sonarsource.analyzer.commons.xml.ParseException;
+import org.sonarsource.analyzer.commons.xml.PrologElement;
+import org.sonarsource.analyzer.commons.xml.PrologElement.PrologAttribute;
+import org.sonarsource.analyzer.commons.xml.SafeStaxParserFactory;
+import org.sonarsource.analyzer.commons.xml.XmlTextRange;
+
+/**
+ * Reads a file as a stream of tokens, notifying the visitors of each token without keeping the content of the file in memory.
+ * <p>
+ * The file is read once, by the same StAX parser as {@link org.sonarsource.analyzer.commons.xml.XmlFile}, which checks
+ * that it is well-formed and delimits the tokens. Only the characters of the tokens not yet visited are kept, to compute
+ * the locations of their parts the same way as in {@link org.sonarsource.analyzer.commons.xml.XmlFile}.
+ */
+public final class XmlTokenizer {
+
+  private static final int BUFFER_SIZE = 8192;
+  // characters delivered at once, within a single line
+  private static final int MAX_SEGMENT_LENGTH = 4096;
+  private static final String CDATA_START = "<![CDATA[";
+  private static final String CDATA_END = "]]>";
+
+  private final SourceWindow source;
+  private final List<TokenVisitor> visitors;
+  private final boolean[] failed;
+  private final FailureHandler failureHandler;
+  private final StringBuilder segment = new StringBuilder();
+  private int segmentLine = 1;
+  private int segmentColumn = 0;
+  private long offset = 0;
+  private int line = 1;
+  private int column = 0;
+  private boolean afterCarriageReturn = false;
+  @Nullable
+  private XmlTextRange cdataStartLocation = null;
+
+  /**
+   * Called when a visitor fails. The failing visitor is not notified anymore for the rest of the file,
+   * and the tokenization is interrupted if the handler throws.
+   */
+  @FunctionalInterface
+  public interface FailureHandler {
+    void onFailure(TokenVisitor visitor, RuntimeException e);
+  }
+
+  public XmlTokenizer(Reader reader, List<TokenVisitor> visitors, FailureHandler failureHandler) {
+    this.source = new SourceWindow(reader);
+    this.visitors = visitors;
+    this.failed = new boolean[visitors.size()];
+    this.failureHandler = failureHandler;
+  }
+
+  /**
+   * Visits the tokens of the file. The end of the document is only visited if the file is well-formed.
+   *
+   * @throws ParseException if the file is not well-formed
+   */
+  public void tokenize() throws IOException {
+    long parserStart = source.skipBeforeDeclaration();
+    // the characters before the declaration are not part of the document
+    skip((int) parserStart);
+    try {
+      XMLStreamReader2 reader = (XMLStreamReader2) SafeStaxParserFactory.createXMLInputFactory().createXMLStreamReader(source);
+      try {
+        while (true) {
+          visitEvent(reader, parserStart);
+          if (!reader.hasNext()) {
+            break;
+          }
+          reader.next();
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      throw new ParseException(e);
+    }
+    deliverCharacters();
+    notifyVisitors(TokenVisitor::endDocument);
+  }
+
+  private void visitEvent(XMLStreamReader2 reader, long parserStart) throws XMLStreamException {
+    LocationInfo locationInfo = reader.getLocationInfo();
+    // the ending offset is read first, as it makes the parser read the whole token and fail if it is not well-formed
+    long end = parserStart + locationInfo.getEndingCharOffset();
+    long start = parserStart + locationInfo.getStartingCharOffset();
+    // characters between the tokens, as white spaces outside of the root element
+    readCharacters(start);
+    int eventType = reader.getEventType();
+    if (!isCharacters(eventType)) {
+      deliverCharacters();
+    }
+    switch (eventType) {
+      case XMLStreamConstants.START_DOCUMENT -> readDeclaration(end);
+      case XMLStreamConstants.START_ELEMENT -> readStartTag(end);
+      case XMLStreamConstants.END_ELEMENT -> {
+        // the end of an empty element is its start tag
+        if (end > offset) {
+          XmlTextRange location = readUntil(end);
+          notifyVisitors(visitor -> visitor.visitEndTag(location));
+        }
+      }
+      case XMLStreamConstants.CDATA -> readCdata(end);
+      case XMLStreamConstants.COMMENT -> {
+        String content = source.text(start + 4, end - 3);
+        XmlTextRange location = readUntil(end);
+        notifyVisitors(visitor -> visitor.visitComment(location, content));
+      }
+      case XMLStreamConstants.DTD -> {
+        XmlTextRange location = readUntil(end);
+        notifyVisitors(visitor -> visitor.visitDocumentType(location));
+      }
+      case XMLStreamConstants.PROCESSING_INSTRUCTION -> {
+        XmlTextRange location = readUntil(end);
+        notifyVisitors(visitor -> visitor.visitProcessingInstruction(location));
+      }
+      // characters, white spaces, entity references and the end of the document
+      default -> readCharacters(end);
+    }
+    source.release(offset);
+  }
+
+  private static boolean isCharacters(int eventType) {
+    return eventType == XMLStreamConstants.CHARACTERS
+      || eventType == XMLStreamConstants.SPACE
+      || eventType == XMLStreamConstants.ENTITY_REFERENCE
+      || eventType == XMLStreamConstants.CDATA
+      || eventType == XMLStreamConstants.END_DOCUMENT;
+  }
+
+  /**
+   * The XML declaration, when present, is the only token of the start of the document, after a possible byte order mark.
+   */
+  private void readDeclaration(long end) {
+    if (end == offset) {
+      return;
+    }
+    while (offset < end && source.charAt(offset) != '<') {
+      readCharacters(offset + 1);
+    }
+    deliverCharacters();
+    if (offset == end) {
+      return;
+    }
+    int startLine = line;
+    int startColumn = column;
+    skip("<?xml".length());
+    XmlTextRange startLocation = rangeFrom(startLine, startColumn);
+    List<PrologAttribute> attributes = new ArrayList<>();
+    for (StartTag.Attribute attribute : readAttributes(end)) {
+      attributes.add(new PrologAttribute(attribute.name(), attribute.nameLocation(), attribute.value(), attribute.valueLocation()));
+    }
+    XmlTextRange endLocation = readUntil(end);
+    PrologElement prolog = new PrologElement(attributes, startLocation, endLocation);
+    notifyVisitors(visitor -> visitor.visitProlog(prolog));
+  }
+
+  private void readStartTag(long end) {
+    int startLine = line;
+    int startColumn = column;
+    skip(1);
+    int nameLine = line;
+    int nameColumn = column;
+    String name = readName(end);
+    XmlTextRange nameLocation = rangeFrom(nameLine, nameColumn);
+    List<StartTag.Attribute> attributes = readAttributes(end);
+    boolean selfClosing = source.charAt(offset) == '/';
+    skip((int) (end - offset));
+    StartTag startTag = new StartTag(name, nameLocation, attributes, rangeFrom(startLine, startColumn), selfClosing);
+    notifyVisitors(visitor -> visitor.visitStartTag(startTag));
+  }
+
+  /**
+   * Reads the attributes of a tag, up to its closing {@code >}, {@code />} or {@code ?>}.
+   */
+  private List<StartTag.Attribute> readAttributes(long end) {
+    List<StartTag.Attribute> attributes = new ArrayList<>();
+    skipWhitespaces(end);
+    while (offset < end && !isTagEnd(source.charAt(offset))) {
+      int nameLine = line;
+      int nameColumn = column;
+      String name = readName(end);
+      skipWhitespaces(end);
+      // as in the tree, the location of the name extends up to the equal sign
+      XmlTextRange nameLocation = rangeFrom(nameLine, nameColumn);
+      skip(1);
+      skipWhitespaces(end);
+      char quote = source.charAt(offset);
+      int valueLine = line;
+      int valueColumn = column;
+      skip(1);
+      long valueStart = offset;
+      while (offset < end && source.charAt(offset) != quote) {
+        next();
+      }
+      String value = source.text(valueStart, offset);
+      skip(1);
+      attributes.add(new StartTag.Attribute(name, nameLocation, value, rangeFrom(valueLine, valueColumn)));
+      skipWhitespaces(end);
+    }
+    return attributes;
+  }
+
+  private static boolean isTagEnd(char c) {
+    return c == '>' || c == '/' || c == '?';
+  }
+
+  /**
+   * A CDATA section can be split into several tokens by the parser, the first one starting with {@code <![CDATA[} and the
+   * last one ending with {@code ]]>}.
+   */
+  private void readCdata(long end) {
+    if (source.startsWith(offset, CDATA_START)) {
+      deliverCharacters();
+      int startLine = line;
+      int startColumn = column;
+      skip(CDATA_START.length());
+      cdataStartLocation = rangeFrom(startLine, startColumn);
+    }
+    boolean lastToken = source.startsWith(end - CDATA_END.length(), CDATA_END);
+    if (!lastToken) {
+      readCharacters(end);
+      return;
+    }
+    readCharacters(end - CDATA_END.length());
+    deliverCharacters();
+    XmlTextRange startLocation = cdataStartLocation;
+    XmlTextRange endLocation = readUntil(end);
+    cdataStartLocation = null;
+    notifyVisitors(visitor -> visitor.visitCdata(startLocation, endLocation));
+  }
+
+  /**
+   * Reads characters up to the given offset. They are delivered line by line, once a line break, another token or the
+   * maximum length of a segment is reached, whatever the tokens the parser splits them into.
+   */
+  private void readCharacters(long end) {
+    while (offset < end) {
+      char c = source.charAt(offset);
+      if (c == '\n' || c == '\r') {
+        deliverCharacters();
+      } else {
+        if (segment.length() == MAX_SEGMENT_LENGTH) {
+          deliverCharacters();
+        }
+        if (segment.length() == 0) {
+          segmentLine = line;
+          segmentColumn = column;
+        }
+        segment.append(c);
+      }
+      next();
+    }
+  }
+
+  private void deliverCharacters() {
+    if (segment.length() > 0) {
+      XmlTextRange location = rangeFrom(segmentLine, segmentColumn);
+      notifyVisitors(visitor -> visitor.visitCharacters(location, segment));
+      segment.setLength(0);
+    }
+  }
+
+  private String readName(long end) {
+    long start = offset;
+    while (offset < end && !isWhitespace(source.charAt(offset)) && source.charAt(offset) != '=' && !isTagEnd(source.charAt(offset))) {
+      next();
+    }
+    return source.text(start, offset);
+  }
+
+  private void skipWhitespaces(long end) {
+    while (offset < end && isWhitespace(source.charAt(offset))) {
+      next();
+    }
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+  }
+
+  /**
+   * @return the location from the current offset up to the given one
+   */
+  private XmlTextRange readUntil(long end) {
+    int startLine = line;
+    int startColumn = column;
+    skip((int) (end - offset));
+    return rangeFrom(startLine, startColumn);
+  }
+
+  private XmlTextRange rangeFrom(int startLine, int startColumn) {
+    return new XmlTextRange(startLine, startColumn, line, column);
+  }
+
+  private void skip(int count) {
+    for (int i = 0; i < count; i++) {
+      next();
+    }
+  }
+
+  /**
+   * Consumes the next character, a line break being either "\n", "\r\n" or "\r".
+   */
+  private void next() {
+    char c = source.charAt(offset);
+    offset++;
+    if (c == '\r' || (c == '\n' && !afterCarriageReturn)) {
+      line++;
+      column = 0;
+    } else if (c != '\n') {
+      column++;
+    }
+    afterCarriageReturn = c == '\r';
+  }
+
+  private void notifyVisitors(Consumer<TokenVisitor> event) {
+    for (int i = 0; i < visitors.size(); i++) {
+      if (!failed[i]) {
+        TokenVisitor visitor = visitors.get(i);
+        try {
+          event.accept(visitor);
+        } catch (RuntimeException e) {
+          failed[i] = true;
+          failureHandler.onFailure(visitor, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reader given to the parser, keeping the characters it reads until they are released. Offsets are counted from the
+   * start of the file, the parser possibly starting later.
+   */
+  private static final class SourceWindow extends Reader {
+
+    private final Reader reader;
+    private char[] chars = new char[BUFFER_SIZE];
+    // offset of the first kept character
+    private long start = 0;
+    private int length = 0;
+    // offset of the next character given to the parser
+    private long served = 0;
+    private long released = 0;
+    private boolean endOfStream = false;
+
+    private SourceWindow(Reader reader) {
+      this.reader = reader;
+    }
+
+    /**
+     * As in {@link org.sonarsource.analyzer.commons.xml.XmlFile}, the characters before the XML declaration are not
+     * given to the parser. The declaration is only looked for before the first element, in the first characters of the file.
+     *
+     * @return the offset of the first character given to the parser
+     */
+    long skipBeforeDeclaration() throws IOException {
+      while (length < BUFFER_SIZE && fill()) {
+        // read the first characters
+      }
+      for (int i = 0; i + 1 < length; i++) {
+        if (startsWith(i, "<?xml")) {
+          served = i;
+          break;
+        } else if (chars[i] == '<' && chars[i + 1] != '?' && chars[i + 1] != '!') {
+          break;
+        }
+      }
+      return served;
+    }
+
+    @Override
+    public int read(char[] buffer, int off, int len) throws IOException {
+      if (served == start + length && !fill()) {
+        return -1;
+      }
+      int count = (int) Math.min(len, start + length - served);
+      System.arraycopy(chars, (int) (served - start), buffer, off, count);
+      served += count;
+      return count;
+    }
+
+    /**
+     * @return false if no character could be read, the end of the file being reached
+     */
+    private boolean fill() throws IOException {
+      if (endOfStream) {
+        return false;
+      }
+      if (length == chars.length) {
+        int releasedCount = (int) (released - start);
+        System.arraycopy(chars, releasedCount, chars, 0, length - releasedCount);
+        length -= releasedCount;
+        start = released;
+        if (length == chars.length) {
+          chars = Arrays.copyOf(chars, 2 * chars.length);
+        }
+      }
+      int read = reader.read(chars, length, chars.length - length);
+      if (read < 0) {
+        endOfStream = true;
+        return false;
+      }
+      length += read;
+      return true;
+    }
+
+    char charAt(long offset) {
+      return chars[(int) (offset - start)];
+    }
+
+    boolean startsWith(long offset, String text) {
+      if (offset < start || offset + text.length() > start + length) {
+        return false;
+      }
+      for (int i = 0; i < text.length(); i++) {
+        if (charAt(offset + i) != text.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    String text(long from, long to) {
+      return new String(chars, (int) (from - start), (int) (to - from));
+    }
+
+    /**
+     * The characters before the given offset are not needed anymore.
+     */
+    void release(long offset) {
+      released = offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+      reader.close();
+    }
+  }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.telemetry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Wall time and allocated memory spent by an analysis, per phase, per rule and per file.
+ * Measures can be recorded concurrently by several analysis workers.
+ */
+public final class AnalysisTelemetry {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AnalysisTelemetry.class);
+
+  public static final String REPORT_FILE_NAME = "xml-performance-report.json";
+
+  private static final AnalysisTelemetry DISABLED = new AnalysisTelemetry(false);
+
+  // Number of the slowest rules and files listed in the logs, and of the slowest files listed in the report
+  private static final int LOGGED_ENTRIES = 10;
+  private static final int REPORTED_FILES = 100;
+
+  public enum Phase {
+    PARSING,
+    METRICS,
+    HIGHLIGHTING,
+    RULES;
+
+    private String key() {
+      return name().toLowerCase(Locale.ROOT);
+    }
+  }
+
+  private final boolean enabled;
+  private final Map<Phase, Measure> phases = new EnumMap<>(Phase.class);
+  private final Map<String, Measure> rules = new ConcurrentHashMap<>();
+  private final Queue<FileMeasure> files = new ConcurrentLinkedQueue<>();
+
+  private AnalysisTelemetry(boolean enabled) {
+    this.enabled = enabled;
+    for (Phase phase : Phase.values()) {
+      phases.put(phase, new Measure());
+    }
+  }
+
+  public static AnalysisTelemetry create(boolean enabled) {
+    return enabled ? new AnalysisTelemetry(true) : DISABLED;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Starts measuring on the current thread. Nothing is measured when disabled.
+   */
+  public Sample start() {
+    return enabled ? Sample.start() : Sample.NONE;
+  }
+
+  public void record(Phase phase, Sample sample) {
+    record(phase, sample.elapsedNanos(), sample.allocatedBytes());
+  }
+
+  public void record(Phase phase, long nanos, long allocatedBytes) {
+    if (enabled) {
+      phases.get(phase).add(nanos, allocatedBytes);
+    }
+  }
+
+  /**
+   * Records time spent executing a rule, which is also accounted to the {@link Phase#RULES} phase.
+   */
+  public void recordRule(String ruleKey, long nanos, long allocatedBytes) {
+    if (enabled) {
+      rules.computeIfAbsent(ruleKey, key -> new Measure()).add(nanos, allocatedBytes);
+      record(Phase.RULES, nanos, allocatedBytes);
+    }
+  }
+
+  public void recordFile(String file, long nanos, long allocatedBytes) {
+    if (enabled) {
+      files.add(new FileMeasure(file, nanos, allocatedBytes));
+    }
+  }
+
+  public void logSummary() {
+    LOG.info("XML analysis performance of {} files:{}", files.size(), allocationNote());
+    phases.forEach((phase, measure) -> LOG.info("  {}: {}", phase.key(), measure));
+    LOG.info("Slowest XML rules:");
+    slowestRules().stream().limit(LOGGED_ENTRIES).forEach(rule -> LOG.info("  {}: {}", rule.getKey(), rule.getValue()));
+    LOG.info("Slowest XML files:");
+    slowestFiles(LOGGED_ENTRIES).forEach(file -> LOG.info("  {}: {}", file.file, file.measure));
+  }
+
+  public void writeReport(Path workDir) {
+    Path report = workDir.resolve(REPORT_FILE_NAME);
+    try {
+      Files.writeString(report, toJson(), StandardCharsets.UTF_8);
+      LOG.info("XML analysis performance report written to {}", report);
+    } catch (IOException e) {
+      LOG.warn("Unable to write the XML analysis performance report to {}", report, e);
+    }
+  }
+
+  String toJson() {
+    StringBuilder json = new StringBuilder();
+    json.append("{\n  \"files\": ").append(files.size())
+      .append(",\n  \"allocatedBytesMeasured\": ").append(ThreadAllocation.isMeasured())
+      .append(",\n  \"phases\": {");
+    String separator = "\n";
+    for (Map.Entry<Phase, Measure> phase : phases.entrySet()) {
+      json.append(separator).append("    ").append(quote(phase.getKey().key())).append(": ");
+      phase.getValue().appendJson(json);
+      separator = ",\n";
+    }
+    json.append("\n  },\n  \"rules\": {");
+    separator = "\n";
+    for (Map.Entry<String, Measure> rule : slowestRules()) {
+      json.append(separator).append("    ").append(quote(rule.getKey())).append(": ");
+      rule.getValue().appendJson(json);
+      separator = ",\n";
+    }
+    json.append("\n  },\n  \"slowestFiles\": [");
+    separator = "\n";
+    for (FileMeasure file : slowestFiles(REPORTED_FILES)) {
+      json.append(separator).append("    {\"file\": ").append(quote(file.file)).append(", \"measure\": ");
+      file.measure.appendJson(json);
+      json.append("}");
+      separator = ",\n";
+    }
+    return json.append("\n  ]\n}\n").toString();
+  }
+
+  private static String allocationNote() {
+    return ThreadAllocation.isMeasured() ? "" : " (allocated memory is not measured by this JVM)";
+  }
+
+  private List<Map.Entry<String, Measure>> slowestRules() {
+    List<Map.Entry<String, Measure>> sortedRules = new ArrayList<>(rules.entrySet());
+    sortedRules.sort(Comparator.comparing((Map.Entry<String, Measure> rule) -> rule.getValue().nanos.sum()).reversed()
+      .thenComparing(Map.Entry::getKey));
+    return sortedRules;
+  }
+
+  private List<FileMeasure> slowestFiles(int limit) {
+    return files.stream()
+      .sorted(Comparator.comparing((FileMeasure file) -> file.measure.nanos.sum()).reversed().thenComparing(file -> file.file))
+      .limit(limit)
+      .toList();
+  }
+
+  private static String quote(String value) {
+    StringBuilder quoted = new StringBuilder("\"");
+    for (char c : value.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        quoted.append('\\').append(c);
+      } else if (c < 0x20) {
+        quoted.append(String.format("\\u%04x", (int) c));
+      } else {
+        quoted.append(c);
+      }
+    }
+    return quoted.append('"').toString();
+  }
+
+  private static final class Measure {
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    private Measure() {
+    }
+
+    private Measure(long nanos, long allocatedBytes) {
+      add(nanos, allocatedBytes);
+    }
+
+    private void add(long nanos, long allocatedBytes) {
+      this.nanos.add(nanos);
+      this.allocatedBytes.add(allocatedBytes);
+    }
+
+    private void appendJson(StringBuilder json) {
+      json.append("{\"timeMs\": ").append(nanos.sum() / 1_000_000)
+        .append(", \"allocatedBytes\": ").append(allocatedBytes.sum()).append("}");
+    }
+
+    @Override
+    public String toString() {
+      return (nanos.sum() / 1_000_000) + " ms, " + allocatedBytes.sum() + " allocated bytes";
+    }
+  }
+
+  private static final class FileMeasure {
+    private final String file;
+    private final Measure measure;
+
+    private FileMeasure(String file, long nanos, long allocatedBytes) {
+      this.file = file;
+      this.measure = new Measure(nanos, allocatedBytes);
+    }
+  }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.telemetry;
+
+/**
+ * Wall time and memory allocated by the current thread since the sample was started.
+ */
+public final class Sample {
+
+  static final Sample NONE = new Sample(0L, 0L);
+
+  private final long startNanos;
+  private final long startAllocatedBytes;
+
+  private Sample(long startNanos, long startAllocatedBytes) {
+    this.startNanos = startNanos;
+    this.startAllocatedBytes = startAllocatedBytes;
+  }
+
+  static Sample start() {
+    return new Sample(System.nanoTime(), ThreadAllocation.allocatedBytes());
+  }
+
+  public long elapsedNanos() {
+    return this == NONE ? 0L : (System.nanoTime() - startNanos);
+  }
+
+  public long allocatedBytes() {
+    return this == NONE ? 0L : (ThreadAllocation.allocatedBytes() - startAllocatedBytes);
+  }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.telemetry;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import javax.annotation.CheckForNull;
+
+/**
+ * Measure of the memory allocated by the current thread, when supported by the JVM.
+ */
+public final class ThreadAllocation {
+
+  @CheckForNull
+  private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = threadMXBean();
+
+  private ThreadAllocation() {
+    // utility class, forbidden constructor
+  }
+
+  public static boolean isMeasured() {
+    return THREAD_MX_BEAN != null;
+  }
+
+  /**
+   * @return the number of bytes allocated so far by the current thread, or 0 when not measured
+   */
+  public static long allocatedBytes() {
+    return THREAD_MX_BEAN == null ? 0L : THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+  }
+
+  @CheckForNull
+  private static com.sun.management.ThreadMXBean threadMXBean() {
+    try {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean allocationBean
+        && allocationBean.isThreadAllocatedMemorySupported()
+        && allocationBean.isThreadAllocatedMemoryEnabled()) {
+        return allocationBean;
+      }
+    } catch (LinkageError | RuntimeException e) {
+      // the management API is not available
+    }
+    return null;
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.tree;
+
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Documents of a file answering the namespace-aware and the namespace-unaware queries.
+ * <p>
+ * The namespace-unaware document of a file is the result of a second parsing of the file. Queries matching the names
+ * of the nodes by their qualified name, as they are in a namespace-unaware document, can be answered by the
+ * namespace-aware document instead: {@link #namespaceUnawareView(XmlFile)} provides it for such queries, and the file
+ * is then parsed once, unless {@link #namespaceUnawareDocument(XmlFile)} is also requested for it.
+ */
+public final class DocumentViews {
+
+  private static final String USER_DATA_KEY = DocumentViews.class.getName();
+
+  private final XmlFile file;
+  private boolean viewed = false;
+  private boolean namespaceUnawareDocumentUsed = false;
+
+  private DocumentViews(XmlFile file) {
+    this.file = file;
+  }
+
+  private static DocumentViews of(XmlFile file) {
+    Document document = file.getNamespaceAwareDocument();
+    DocumentViews views = (DocumentViews) document.getUserData(USER_DATA_KEY);
+    if (views == null) {
+      views = new DocumentViews(file);
+      document.setUserData(USER_DATA_KEY, views, null);
+    }
+    return views;
+  }
+
+  /**
+   * @return the namespace-unaware document of the file, parsed on first use
+   */
+  public static Document namespaceUnawareDocument(XmlFile file) {
+    of(file).namespaceUnawareDocumentUsed = true;
+    return file.getNamespaceUnawareDocument();
+  }
+
+  /**
+   * @return the namespace-aware document of the file, to be queried by matching qualified names in place of the
+   * namespace-unaware one
+   */
+  public static Document namespaceUnawareView(XmlFile file) {
+    of(file).viewed = true;
+    return file.getNamespaceAwareDocument();
+  }
+
+  /**
+   * @return true if namespace-unaware queries have been answered on the file without parsing it a second time
+   */
+  public static boolean isDoubleParseAvoided(XmlFile file) {
+    DocumentViews views = (DocumentViews) file.getNamespaceAwareDocument().getUserData(USER_DATA_KEY);
+    return views != null && views.viewed && !views.namespaceUnawareDocumentUsed;
+  }
+
+  /**
+   * @return true if the node belongs to a namespace-aware document
+   */
+  public static boolean isNamespaceAware(Node node) {
+    Node element = node.getNodeType() == Node.DOCUMENT_NODE ? ((Document) node).getDocumentElement() : node;
+    return element != null && element.getLocalName() != null;
+  }
+
+  /**
+   * Maps a node of a {@link #namespaceUnawareView(XmlFile)} to the namespace-unaware document, for the queries which
+   * can not be answered by the view. The namespace-unaware document is parsed if it is not yet.
+   *
+   * @return the document, the element or the attribute of the namespace-unaware document at the place of the given one
+   * @throws IllegalStateException if the node is not part of a view, or is of another kind
+   */
+  public static Node counterpart(Node node) {
+    Document document = node.getNodeType() == Node.DOCUMENT_NODE ? (Document) node : node.getOwnerDocument();
+    DocumentViews views = (DocumentViews) document.getUserData(USER_DATA_KEY);
+    if (views == null || !views.viewed) {
+      throw new IllegalStateException("The node " + node.getNodeName() + " is not part of a namespace-unaware view of a document");
+    }
+    Document namespaceUnawareDocument = namespaceUnawareDocument(views.file);
+    return switch (node.getNodeType()) {
+      case Node.DOCUMENT_NODE -> namespaceUnawareDocument;
+      case Node.ELEMENT_NODE -> ElementLocations.of(namespaceUnawareDocument).element(ElementLocations.of(document).id((Element) node));
+      case Node.ATTRIBUTE_NODE -> {
+        Attr attribute = (Attr) node;
+        Element element = (Element) counterpart(attribute.getOwnerElement());
+        yield element.getAttributeNode(attribute.getName());
+      }
+      default -> throw new IllegalStateException("No counterpart in the namespace-unaware document for the node " + node.getNodeName());
+    };
+  }
+
+}
@@ -0,0 +1,273 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.tree;
+
+import javax.annotation.CheckForNull;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.sonarsource.analyzer.commons.xml.XmlTextRange;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Locations of the elements of a document, and of their attributes, packed in primitive arrays.
+ * <p>
+ * The locations are read once from the user data of the nodes, on first use, and the store is attached to the
+ * document to be shared by all the visitors of the file. Elements are identified by their index in document order,
+ * see {@link #id(Element)}, and their attributes by an index following the order of {@link Element#getAttributes()}.
+ * Positions are packed as in {@link Positions}: the accessors do not allocate, {@link XmlTextRange} being only built
+ * to report an issue.
+ * <p>
+ * The store is a copy: the locations stay attached to the nodes, where {@link XmlFile} and the rules not using this
+ * store read them, so the heap retained by a file grows by the size of the arrays. It trades this memory for the time
+ * of the lookups in the user data of the nodes made by the visitors walking all the elements.
+ */
+public final class ElementLocations {
+
+  public static final int NONE = -1;
+
+  private static final String USER_DATA_KEY = ElementLocations.class.getName();
+
+  private final Element[] keys;
+  private final int[] keyIds;
+  private final int mask;
+  private final Element[] elements;
+
+  // start tag
+  private final long[] starts;
+  private final long[] nameEnds;
+  private final long[] startTagEnds;
+  // end tag, the start tag for an empty element
+  private final long[] endTagStarts;
+  private final long[] ends;
+  // attributes of the element i are the ones from firstAttributes[i] to firstAttributes[i + 1], excluded
+  private final int[] firstAttributes;
+  private final long[] attributeNameStarts;
+  private final long[] attributeNameEnds;
+  private final long[] attributeValueStarts;
+  private final long[] attributeValueEnds;
+
+  private ElementLocations(Document document) {
+    int elementCount = 0;
+    int attributeCount = 0;
+    for (Node node = firstElement(document); node != null; node = nextElement(node, document)) {
+      elementCount++;
+      attributeCount += node.getAttributes().getLength();
+    }
+
+    int capacity = Integer.highestOneBit(Math.max(elementCount, 1) * 2 - 1) << 1;
+    keys = new Element[capacity];
+    keyIds = new int[capacity];
+    mask = capacity - 1;
+    elements = new Element[elementCount];
+    starts = new long[elementCount];
+    nameEnds = new long[elementCount];
+    startTagEnds = new long[elementCount];
+    endTagStarts = new long[elementCount];
+    ends = new long[elementCount];
+    firstAttributes = new int[elementCount + 1];
+    attributeNameStarts = new long[attributeCount];
+    attributeNameEnds = new long[attributeCount];
+    attributeValueStarts = new long[attributeCount];
+    attributeValueEnds = new long[attributeCount];
+
+    int id = 0;
+    int attribute = 0;
+    for (Node node = firstElement(document); node != null; node = nextElement(node, document)) {
+      Element element = (Element) node;
+      put(element, id);
+      elements[id] = element;
+      XmlTextRange startLocation = XmlFile.startLocation(element);
+      XmlTextRange endLocation = XmlFile.endLocation(element);
+      starts[id] = Positions.start(startLocation);
+      startTagEnds[id] = Positions.end(startLocation);
+      nameEnds[id] = Positions.end(XmlFile.nameLocation(element));
+      endTagStarts[id] = Positions.start(endLocation);
+      ends[id] = Positions.end(endLocation);
+
+      firstAttributes[id] = attribute;
+      NamedNodeMap attributes = element.getAttributes();
+      for (int i = 0; i < attributes.getLength(); i++) {
+        Attr attr = (Attr) attributes.item(i);
+        XmlTextRange nameLocation = XmlFile.attributeNameLocation(attr);
+        XmlTextRange valueLocation = XmlFile.attributeValueLocation(attr);
+        attributeNameStarts[attribute] = Positions.start(nameLocation);
+        attributeNameEnds[attribute] = Positions.end(nameLocation);
+        attributeValueStarts[attribute] = Positions.start(valueLocation);
+        attributeValueEnds[attribute] = Positions.end(valueLocation);
+        attribute++;
+      }
+      id++;
+    }
+    firstAttributes[id] = attribute;
+  }
+
+  /**
+   * @return the locations of the elements of the document, computed on first use
+   */
+  public static ElementLocations of(Document document) {
+    ElementLocations locations = (ElementLocations) document.getUserData(USER_DATA_KEY);
+    if (locations == null) {
+      locations = new ElementLocations(document);
+      document.setUserData(USER_DATA_KEY, locations, null);
+    }
+    return locations;
+  }
+
+  public int size() {
+    return starts.length;
+  }
+
+  /**
+   * @return the index of the element in document order, {@link #NONE} if it is not an element of the document
+   */
+  public int id(Element element) {
+    for (int slot = slot(element); keys[slot] != null; slot = (slot + 1) & mask) {
+      if (keys[slot] == element) {
+        return keyIds[slot];
+      }
+    }
+    return NONE;
+  }
+
+  public Element element(int id) {
+    return elements[id];
+  }
+
+  /**
+   * @return the start of the start tag
+   */
+  public long start(int element) {
+    return starts[element];
+  }
+
+  public long nameEnd(int element) {
+    return nameEnds[element];
+  }
+
+  public long startTagEnd(int element) {
+    return startTagEnds[element];
+  }
+
+  /**
+   * @return the start of the end tag, or of the start tag for an empty element
+   */
+  public long endTagStart(int element) {
+    return endTagStarts[element];
+  }
+
+  /**
+   * @return the end of the end tag, or of the start tag for an empty element
+   */
+  public long end(int element) {
+    return ends[element];
+  }
+
+  /**
+   * @return true for an element written {@code <foo ... />}
+   */
+  public boolean isSelfClosing(int element) {
+    return ends[element] == startTagEnds[element];
+  }
+
+  public int firstAttribute(int element) {
+    return firstAttributes[element];
+  }
+
+  /**
+   * @return the index following the last attribute of the element
+   */
+  public int attributesEnd(int element) {
+    return firstAttributes[element + 1];
+  }
+
+  public long attributeNameStart(int attribute) {
+    return attributeNameStarts[attribute];
+  }
+
+  public long attributeNameEnd(int attribute) {
+    return attributeNameEnds[attribute];
+  }
+
+  public long attributeValueStart(int attribute) {
+    return attributeValueStarts[attribute];
+  }
+
+  public long attributeValueEnd(int attribute) {
+    return attributeValueEnds[attribute];
+  }
+
+  public XmlTextRange startLocation(int element) {
+    return Positions.range(starts[element], startTagEnds[element]);
+  }
+
+  public XmlTextRange endLocation(int element) {
+    return Positions.range(endTagStarts[element], ends[element]);
+  }
+
+  private void put(Element element, int id) {
+    int slot = slot(element);
+    while (keys[slot] != null) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = element;
+    keyIds[slot] = id;
+  }
+
+  private int slot(Element element) {
+    // spreads the identity hash code over the low bits used as index
+    int hash = System.identityHashCode(element) * 0x9E3779B9;
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  @CheckForNull
+  private static Node firstElement(Document document) {
+    return document.getDocumentElement();
+  }
+
+  /**
+   * @return the element following the given one in document order, null after the last one
+   */
+  @CheckForNull
+  private static Node nextElement(Node element, Node document) {
+    Node child = firstChildElement(element);
+    if (child != null) {
+      return child;
+    }
+    for (Node node = element; node != document; node = node.getParentNode()) {
+      for (Node sibling = node.getNextSibling(); sibling != null; sibling = sibling.getNextSibling()) {
+        if (sibling.getNodeType() == Node.ELEMENT_NODE) {
+          return sibling;
+        }
+      }
+    }
+    return null;
+  }
+
+  @CheckForNull
+  private static Node firstChildElement(Node node) {
+    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() == Node.ELEMENT_NODE) {
+        return child;
+      }
+    }
+    return null;
+  }
+
+}
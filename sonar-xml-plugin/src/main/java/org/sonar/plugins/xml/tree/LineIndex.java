@@ -0,0 +1,165 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.tree;
+
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.w3c.dom.Document;
+
+/**
+ * Offsets of the starts of the lines of a text, computed once.
+ * <p>
+ * Lines are numbered from 1, as in {@link org.sonarsource.analyzer.commons.xml.XmlTextRange}, and separated by
+ * {@code \n}, {@code \r\n} or {@code \r}. Columns are offsets within a line. The accessors do not allocate, the lines
+ * not being extracted from the text.
+ */
+public final class LineIndex {
+
+  private static final String USER_DATA_KEY = LineIndex.class.getName();
+
+  private final String text;
+  // start of the line i + 1, followed by the length of the text
+  private final int[] lineStarts;
+
+  private LineIndex(String text) {
+    this.text = text;
+    int lineCount = 1;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '\n' || (c == '\r' && !isFollowedByNewline(text, i))) {
+        lineCount++;
+      }
+    }
+    lineStarts = new int[lineCount + 1];
+    int line = 1;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '\n' || (c == '\r' && !isFollowedByNewline(text, i))) {
+        lineStarts[line] = i + 1;
+        line++;
+      }
+    }
+    lineStarts[lineCount] = text.length();
+  }
+
+  /**
+   * @return the index of the lines of the contents of the file, computed on first use
+   */
+  public static LineIndex of(XmlFile file) {
+    Document document = file.getNamespaceAwareDocument();
+    LineIndex index = (LineIndex) document.getUserData(USER_DATA_KEY);
+    if (index == null) {
+      index = new LineIndex(file.getContents());
+      document.setUserData(USER_DATA_KEY, index, null);
+    }
+    return index;
+  }
+
+  public static LineIndex of(String text) {
+    return new LineIndex(text);
+  }
+
+  private static boolean isFollowedByNewline(String text, int index) {
+    return index + 1 < text.length() && text.charAt(index + 1) == '\n';
+  }
+
+  public String text() {
+    return text;
+  }
+
+  public int lineCount() {
+    return lineStarts.length - 1;
+  }
+
+  /**
+   * @return the offset in the text of the first character of the line
+   */
+  public int lineStart(int line) {
+    return lineStarts[line - 1];
+  }
+
+  /**
+   * @return the offset in the text following the last character of the line, line terminator excluded
+   */
+  public int lineEnd(int line) {
+    int end = lineStarts[line];
+    if (line == lineCount()) {
+      return end;
+    }
+    if (text.charAt(end - 1) == '\n') {
+      end--;
+    }
+    if (end > lineStarts[line - 1] && text.charAt(end - 1) == '\r') {
+      end--;
+    }
+    return end;
+  }
+
+  public int lineLength(int line) {
+    return lineEnd(line) - lineStart(line);
+  }
+
+  /**
+   * @return the length of the line without its trailing white spaces, as matched by {@code \s} in a regular expression
+   */
+  public int trimmedLineLength(int line) {
+    int start = lineStart(line);
+    int end = lineEnd(line);
+    while (end > start && isWhitespace(text.charAt(end - 1))) {
+      end--;
+    }
+    return end - start;
+  }
+
+  /**
+   * @return true if the line contains only characters removed by {@link String#trim()}
+   */
+  public boolean isBlank(int line) {
+    int end = lineEnd(line);
+    for (int i = lineStart(line); i < end; i++) {
+      if (text.charAt(i) > ' ') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public char charAt(int line, int column) {
+    return text.charAt(lineStart(line) + column);
+  }
+
+  /**
+   * @return the line of the character at the given offset in the text
+   */
+  public int line(int offset) {
+    int low = 0;
+    int high = lineCount() - 1;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (lineStarts[middle] <= offset) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low + 1;
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\u000B' || c == '\f' || c == '\r' || c == '\n';
+  }
+
+}
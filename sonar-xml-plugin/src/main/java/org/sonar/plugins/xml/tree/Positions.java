@@ -0,0 +1,55 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.tree;
+
+import org.sonarsource.analyzer.commons.xml.XmlTextRange;
+
+/**
+ * Positions in a file packed in a long: the line in the high 32 bits, the column in the low ones, so that positions
+ * compare as longs in the order of the file.
+ */
+public final class Positions {
+
+  private Positions() {
+    // utility class, forbidden constructor
+  }
+
+  public static long position(int line, int column) {
+    return ((long) line << 32) | column;
+  }
+
+  public static int line(long position) {
+    return (int) (position >>> 32);
+  }
+
+  public static int column(long position) {
+    return (int) position;
+  }
+
+  public static XmlTextRange range(long start, long end) {
+    return new XmlTextRange(line(start), column(start), line(end), column(end));
+  }
+
+  public static long start(XmlTextRange range) {
+    return position(range.getStartLine(), range.getStartColumn());
+  }
+
+  public static long end(XmlTextRange range) {
+    return position(range.getEndLine(), range.getEndColumn());
+  }
+
+}
@@ -0,0 +1,348 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.visitors;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.plugins.xml.telemetry.ThreadAllocation;
+import org.sonar.plugins.xml.tree.DocumentViews;
+import org.sonar.plugins.xml.visitors.DomVisitor.NodeKind;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.w3c.dom.Attr;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+/**
+ * Single depth-first traversal of the DOM of a file, notifying all the subscribed visitors.
+ * <p>
+ * The sensor creates one traversal per file and shares it, using {@link #shareDuring(Runnable)}, while the rules are
+ * executed: rules calling {@link #visit(XmlFile, DomVisitor)} then subscribe to it instead of walking the tree
+ * themselves, and are notified once the sensor runs the traversal.
+ * <p>
+ * Visitors are grouped by the document they visit: each of the namespace-aware and namespace-unaware documents is
+ * walked once, only if some visitor subscribed to it. Visitors interested in some elements only, see
+ * {@link DomVisitor#elementNames()}, are looked up by the local name of each element instead of being notified of all.
+ * Visitors supporting a {@link DomVisitor#namespaceUnawareView()} are notified of the namespace-aware document, so that
+ * the namespace-unaware one is not parsed when none of the visitors requires it.
+ */
+public final class DomTraversal {
+
+  private static final ThreadLocal<DomTraversal> SHARED = new ThreadLocal<>();
+
+  private final XmlFile xmlFile;
+  private final FailureHandler failureHandler;
+  private final List<Subscription> subscriptions = new ArrayList<>();
+  private final Pass namespaceAwarePass = new Pass();
+  private final Pass namespaceUnawarePass = new Pass();
+  private boolean measured = false;
+  @Nullable
+  private AtomicReference<Object> notifiedVisitor = null;
+  private boolean namespaceUnawareViewed = false;
+
+  /**
+   * Called when a visitor fails. The failing visitor is not notified anymore for the rest of the traversal,
+   * and the traversal is interrupted if the handler throws.
+   */
+  @FunctionalInterface
+  public interface FailureHandler {
+    void onFailure(DomVisitor visitor, RuntimeException e);
+  }
+
+  /**
+   * Measure of the time spent, and the memory allocated, by a visitor during the traversal.
+   */
+  @FunctionalInterface
+  public interface MeasureConsumer {
+    void accept(DomVisitor visitor, long nanos, long allocatedBytes);
+  }
+
+  public DomTraversal(XmlFile xmlFile, FailureHandler failureHandler) {
+    this.xmlFile = xmlFile;
+    this.failureHandler = failureHandler;
+  }
+
+  /**
+   * Visits the document of the given file: within the traversal shared for this file on the current thread if there
+   * is one, immediately otherwise.
+   */
+  public static void visit(XmlFile xmlFile, DomVisitor visitor) {
+    DomTraversal shared = SHARED.get();
+    if (shared != null && shared.xmlFile == xmlFile) {
+      shared.subscribe(visitor);
+    } else {
+      DomTraversal traversal = new DomTraversal(xmlFile, (failingVisitor, e) -> {
+        throw e;
+      });
+      traversal.subscribe(visitor);
+      traversal.run();
+    }
+  }
+
+  public DomTraversal subscribe(DomVisitor visitor) {
+    Subscription subscription = new Subscription(visitor);
+    subscriptions.add(subscription);
+    if (visitor.namespaceAware()) {
+      namespaceAwarePass.add(subscription);
+    } else if (visitor.namespaceUnawareView()) {
+      namespaceUnawareViewed = true;
+      namespaceAwarePass.add(subscription);
+    } else {
+      namespaceUnawarePass.add(subscription);
+    }
+    return this;
+  }
+
+  /**
+   * Measures the time spent, and the memory allocated, by each visitor. This has a cost on every notification.
+   */
+  public DomTraversal measured() {
+    this.measured = true;
+    return this;
+  }
+
+  /**
+   * Keeps the visitor being notified in the given reference, so that another thread can tell which one is running.
+   */
+  public DomTraversal tracked(AtomicReference<Object> notifiedVisitor) {
+    this.notifiedVisitor = notifiedVisitor;
+    return this;
+  }
+
+  /**
+   * Provides the measures of each visitor, once the traversal has run. Nothing is provided when not {@link #measured()}.
+   */
+  public void forEachMeasure(MeasureConsumer consumer) {
+    if (measured) {
+      subscriptions.forEach(subscription -> consumer.accept(subscription.visitor, subscription.nanos, subscription.allocatedBytes));
+    }
+  }
+
+  /**
+   * Runs the given action with this traversal shared on the current thread.
+   */
+  public void shareDuring(Runnable action) {
+    DomTraversal previous = SHARED.get();
+    SHARED.set(this);
+    try {
+      action.run();
+    } finally {
+      if (previous == null) {
+        SHARED.remove();
+      } else {
+        SHARED.set(previous);
+      }
+    }
+  }
+
+  public void run() {
+    if (!namespaceAwarePass.subscriptions.isEmpty()) {
+      namespaceAwarePass.run(namespaceUnawareViewed ? DocumentViews.namespaceUnawareView(xmlFile) : xmlFile.getNamespaceAwareDocument());
+    }
+    if (!namespaceUnawarePass.subscriptions.isEmpty()) {
+      namespaceUnawarePass.run(DocumentViews.namespaceUnawareDocument(xmlFile));
+    }
+  }
+
+  private <T extends Node> void notify(Subscription subscription, BiConsumer<DomVisitor, T> event, T node) {
+    if (subscription.failed) {
+      return;
+    }
+    if (notifiedVisitor != null) {
+      notifiedVisitor.setRelease(subscription.visitor);
+    }
+    if (measured) {
+      long startNanos = System.nanoTime();
+      long startAllocatedBytes = ThreadAllocation.allocatedBytes();
+      try {
+        deliver(subscription, event, node);
+      } finally {
+        subscription.nanos += System.nanoTime() - startNanos;
+        subscription.allocatedBytes += ThreadAllocation.allocatedBytes() - startAllocatedBytes;
+      }
+    } else {
+      deliver(subscription, event, node);
+    }
+  }
+
+  private <T extends Node> void deliver(Subscription subscription, BiConsumer<DomVisitor, T> event, T node) {
+    try {
+      event.accept(subscription.visitor, node);
+    } catch (RuntimeException e) {
+      subscription.failed = true;
+      failureHandler.onFailure(subscription.visitor, e);
+    }
+  }
+
+  /**
+   * @return the name of the element without its prefix, also in a namespace-unaware document
+   */
+  private static String localName(Element element) {
+    String localName = element.getLocalName();
+    if (localName != null) {
+      return localName;
+    }
+    String tagName = element.getTagName();
+    return tagName.substring(tagName.indexOf(':') + 1);
+  }
+
+  /**
+   * Walk of one of the documents of the file, for the visitors subscribed to it.
+   */
+  private final class Pass {
+
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private final List<List<Subscription>> subscriptionsByKind = new ArrayList<>();
+    private final Map<String, List<Subscription>> elementSubscriptionsByName = new HashMap<>();
+
+    private Pass() {
+      for (int i = 0; i < NodeKind.values().length; i++) {
+        subscriptionsByKind.add(new ArrayList<>());
+      }
+    }
+
+    private void add(Subscription subscription) {
+      subscriptions.add(subscription);
+      DomVisitor visitor = subscription.visitor;
+      Set<String> elementNames = visitor.elementNames();
+      for (NodeKind kind : visitor.nodeKinds()) {
+        if (kind == NodeKind.ELEMENT && elementNames != null) {
+          elementNames.forEach(name -> elementSubscriptionsByName.computeIfAbsent(name, k -> new ArrayList<>()).add(subscription));
+        } else {
+          subscriptionsByKind.get(kind.ordinal()).add(subscription);
+        }
+      }
+    }
+
+    private void run(Document document) {
+      for (Subscription subscription : subscriptions) {
+        DomTraversal.this.notify(subscription, DomVisitor::startDocument, document);
+      }
+
+      Node node = document.getFirstChild();
+      while (node != null) {
+        enter(node);
+        Node firstChild = node.getFirstChild();
+        if (firstChild != null) {
+          node = firstChild;
+        } else {
+          node = leaveUntilNextSibling(node, document);
+        }
+      }
+
+      for (Subscription subscription : subscriptions) {
+        DomTraversal.this.notify(subscription, DomVisitor::endDocument, document);
+      }
+    }
+
+    /**
+     * Leaves the given node and its ancestors, until one of them has a next sibling.
+     *
+     * @return the next sibling, or null when reaching the document
+     */
+    @CheckForNull
+    private Node leaveUntilNextSibling(Node node, Document document) {
+      Node current = node;
+      while (current != document) {
+        if (current.getNodeType() == Node.ELEMENT_NODE) {
+          dispatchElement(DomVisitor::leaveElement, (Element) current);
+        }
+        Node nextSibling = current.getNextSibling();
+        if (nextSibling != null) {
+          return nextSibling;
+        }
+        current = current.getParentNode();
+      }
+      return null;
+    }
+
+    private void enter(Node node) {
+      switch (node.getNodeType()) {
+        case Node.ELEMENT_NODE:
+          dispatchElement(DomVisitor::enterElement, (Element) node);
+          visitAttributes((Element) node);
+          break;
+        case Node.TEXT_NODE:
+          dispatch(NodeKind.TEXT, DomVisitor::visitText, (Text) node);
+          break;
+        case Node.CDATA_SECTION_NODE:
+          dispatch(NodeKind.CDATA, DomVisitor::visitCdata, (CDATASection) node);
+          break;
+        case Node.COMMENT_NODE:
+          dispatch(NodeKind.COMMENT, DomVisitor::visitComment, (Comment) node);
+          break;
+        case Node.DOCUMENT_TYPE_NODE:
+          dispatch(NodeKind.DOCUMENT_TYPE, DomVisitor::visitDocumentType, (DocumentType) node);
+          break;
+        default:
+          break;
+      }
+    }
+
+    private void visitAttributes(Element element) {
+      if (subscriptionsByKind.get(NodeKind.ATTRIBUTE.ordinal()).isEmpty() || !element.hasAttributes()) {
+        return;
+      }
+      NamedNodeMap attributes = element.getAttributes();
+      for (int i = 0; i < attributes.getLength(); i++) {
+        dispatch(NodeKind.ATTRIBUTE, DomVisitor::visitAttribute, (Attr) attributes.item(i));
+      }
+    }
+
+    private void dispatchElement(BiConsumer<DomVisitor, Element> event, Element element) {
+      dispatch(NodeKind.ELEMENT, event, element);
+      if (!elementSubscriptionsByName.isEmpty()) {
+        List<Subscription> named = elementSubscriptionsByName.get(localName(element));
+        if (named != null) {
+          for (Subscription subscription : named) {
+            DomTraversal.this.notify(subscription, event, element);
+          }
+        }
+      }
+    }
+
+    private <T extends Node> void dispatch(NodeKind kind, BiConsumer<DomVisitor, T> event, T node) {
+      for (Subscription subscription : subscriptionsByKind.get(kind.ordinal())) {
+        DomTraversal.this.notify(subscription, event, node);
+      }
+    }
+  }
+
+  private static final class Subscription {
+    private final DomVisitor visitor;
+    private boolean failed = false;
+    private long nanos = 0L;
+    private long allocatedBytes = 0L;
+
+    private Subscription(DomVisitor visitor) {
+      this.visitor = visitor;
+    }
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.visitors;
+
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.w3c.dom.Attr;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.Text;
+
+/**
+ * Visitor of the DOM of a file, namespace-aware unless stated otherwise, driven by a {@link DomTraversal}.
+ * Nodes are visited in document order, attributes of an element right after entering it.
+ */
+public interface DomVisitor {
+
+  enum NodeKind {
+    ELEMENT,
+    ATTRIBUTE,
+    TEXT,
+    CDATA,
+    COMMENT,
+    DOCUMENT_TYPE
+  }
+
+  /**
+   * Kinds of nodes this visitor is notified of. Start and end of the document are always notified.
+   */
+  Set<NodeKind> nodeKinds();
+
+  /**
+   * Whether the namespace-aware document of the file is visited, or the namespace-unaware one.
+   */
+  default boolean namespaceAware() {
+    return true;
+  }
+
+  /**
+   * Whether a visitor which is not {@link #namespaceAware()} matches the names of the nodes by their qualified name,
+   * as they are in the namespace-unaware document: it is then notified of the nodes of the namespace-aware document,
+   * which is a view answering its queries, and the file is not parsed a second time for it.
+   *
+   * @see org.sonar.plugins.xml.tree.DocumentViews
+   */
+  default boolean namespaceUnawareView() {
+    return false;
+  }
+
+  /**
+   * Local names of the elements this visitor is notified of, when entering and leaving them. All of them when null.
+   */
+  @CheckForNull
+  default Set<String> elementNames() {
+    return null;
+  }
+
+  default void startDocument(Document document) {
+  }
+
+  default void enterElement(Element element) {
+  }
+
+  default void leaveElement(Element element) {
+  }
+
+  default void visitAttribute(Attr attribute) {
+  }
+
+  default void visitText(Text text) {
+  }
+
+  default void visitCdata(CDATASection cdata) {
+  }
+
+  default void visitComment(Comment comment) {
+  }
+
+  default void visitDocumentType(DocumentType documentType) {
+  }
+
+  default void endDocument(Document document) {
+  }
+
+}
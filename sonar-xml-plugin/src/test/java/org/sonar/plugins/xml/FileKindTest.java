@@ -0,0 +1,88 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml;
+
+import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
+import org.junit.jupiter.api.Test;
+import org.sonar.plugins.xml.checks.AppliesTo;
+import org.sonar.plugins.xml.checks.TabCharacterCheck;
+import org.sonar.plugins.xml.checks.maven.PomElementOrderCheck;
+import org.sonar.plugins.xml.checks.security.android.AndroidClearTextCheck;
+import org.sonar.plugins.xml.checks.spring.SingleConnectionFactoryCheck;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileKindTest {
+
+  @Test
+  void checks_without_applicability_apply_to_all_files() throws Exception {
+    FileKind fileKind = fileKind("foo.xml", "<a/>");
+
+    assertThat(FileKind.applicabilityOf(new TabCharacterCheck())).isNull();
+    assertThat(fileKind.matches(null)).isTrue();
+  }
+
+  @Test
+  void file_names_are_matched_ignoring_case() throws Exception {
+    AppliesTo pom = FileKind.applicabilityOf(new PomElementOrderCheck());
+
+    assertThat(fileKind("POM.xml", "<project/>").matches(pom)).isTrue();
+    assertThat(fileKind("pom2.xml", "<project/>").matches(pom)).isFalse();
+  }
+
+  @Test
+  void applicability_is_inherited() throws Exception {
+    AppliesTo androidManifest = FileKind.applicabilityOf(new AndroidClearTextCheck());
+
+    assertThat(fileKind("AndroidManifest.xml", "<manifest/>").matches(androidManifest)).isTrue();
+    assertThat(fileKind("pom.xml", "<manifest/>").matches(androidManifest)).isFalse();
+  }
+
+  @Test
+  void root_elements_are_matched_ignoring_prefix() throws Exception {
+    AppliesTo springBeans = FileKind.applicabilityOf(new SingleConnectionFactoryCheck());
+
+    assertThat(fileKind("context.xml", "<beans/>").matches(springBeans)).isTrue();
+    assertThat(fileKind("context.xml", "<b:beans xmlns:b=\"http://www.springframework.org/schema/beans\"/>").matches(springBeans)).isTrue();
+    assertThat(fileKind("context.xml", "<project><beans/></project>").matches(springBeans)).isFalse();
+  }
+
+  @Test
+  void namespaces_are_matched() throws Exception {
+    AppliesTo appliesTo = NamespacedCheck.class.getAnnotation(AppliesTo.class);
+
+    assertThat(fileKind("a.xml", "<a xmlns=\"urn:a\"/>").matches(appliesTo)).isTrue();
+    assertThat(fileKind("a.xml", "<x:a xmlns:x=\"urn:a\"/>").matches(appliesTo)).isTrue();
+    assertThat(fileKind("a.xml", "<a xmlns=\"urn:b\"/>").matches(appliesTo)).isFalse();
+    assertThat(fileKind("a.xml", "<a/>").matches(appliesTo)).isFalse();
+  }
+
+  @AppliesTo(namespaces = "urn:a")
+  private static class NamespacedCheck {
+  }
+
+  private static FileKind fileKind(String filename, String content) throws Exception {
+    return FileKind.of(XmlFile.create(TestInputFileBuilder.create("module", filename)
+      .setContents(content)
+      .setCharset(UTF_8)
+      .setLanguage(Xml.KEY)
+      .build()));
+  }
+
+}
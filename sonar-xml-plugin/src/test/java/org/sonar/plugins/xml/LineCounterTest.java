@@ -21,12 +21,16 @@ import com.sonarsource.scanner.engine.sensor.test.fixtures.SensorContextTester;
 import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.measures.CoreMetrics;
+import org.sonar.plugins.xml.streaming.XmlTokenizer;
 import org.sonarsource.analyzer.commons.xml.ParseException;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
 
@@ -69,6 +73,18 @@ class LineCounterTest {
     int expectedNcloc = metrics.get(CoreMetrics.NCLOC_DATA_KEY).size();
     assertThat(context.measure(inputFile.key(), CoreMetrics.NCLOC).value()).isEqualTo(expectedNcloc);
     assertThat(context.measure(inputFile.key(), CoreMetrics.COMMENT_LINES).value()).isEqualTo(commentLinesNumber);
+
+    // same metrics in streaming mode
+    SensorContextTester streamingContext = SensorContextTester.create(moduleBaseDir);
+    var streamingFileLinesContext = new FileLinesContextTester();
+    try (Reader reader = new InputStreamReader(inputFile.inputStream(), inputFile.charset())) {
+      new XmlTokenizer(reader, List.of(LineCounter.tokenVisitor(streamingContext, streamingFileLinesContext, inputFile)), (visitor, e) -> {
+        throw e;
+      }).tokenize();
+    }
+    assertThat(new Gson().toJson(streamingFileLinesContext.metrics(inputFile))).isEqualTo(linesMetrics);
+    assertThat(streamingContext.measure(inputFile.key(), CoreMetrics.NCLOC).value()).isEqualTo(expectedNcloc);
+    assertThat(streamingContext.measure(inputFile.key(), CoreMetrics.COMMENT_LINES).value()).isEqualTo(commentLinesNumber);
   }
 
   private InputFile createInputFile(Path moduleBaseDir, String name) {
@@ -0,0 +1,113 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml;
+
+import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.plugins.xml.ParsePipeline.ParsedFile;
+import org.sonarsource.analyzer.commons.xml.ParseException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+class ParsePipelineTest {
+
+  @Test
+  void files_are_provided_in_order() throws Exception {
+    List<InputFile> inputFiles = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      inputFiles.add(inputFile("file" + i + ".xml", "<root" + i + "/>"));
+    }
+
+    List<String> rootNames = new ArrayList<>();
+    try (ParsePipeline pipeline = new ParsePipeline(inputFiles, 2, 1_000, Long.MAX_VALUE).start()) {
+      ParsedFile parsedFile;
+      while ((parsedFile = pipeline.next()) != null) {
+        rootNames.add(parsedFile.xmlFile().getDocument().getDocumentElement().getTagName());
+      }
+    }
+
+    assertThat(rootNames).containsExactly("root0", "root1", "root2", "root3", "root4", "root5", "root6", "root7", "root8", "root9");
+  }
+
+  @Test
+  void files_larger_than_the_memory_cap_are_provided() throws Exception {
+    List<InputFile> inputFiles = List.of(
+      inputFile("big1.xml", "<root>" + "a".repeat(100) + "</root>"),
+      inputFile("big2.xml", "<root>" + "b".repeat(100) + "</root>"));
+
+    try (ParsePipeline pipeline = new ParsePipeline(inputFiles, 10, 10, Long.MAX_VALUE).start()) {
+      assertThat(pipeline.next().inputFile().filename()).isEqualTo("big1.xml");
+      assertThat(pipeline.next().inputFile().filename()).isEqualTo("big2.xml");
+      assertThat(pipeline.next()).isNull();
+    }
+  }
+
+  @Test
+  void parsing_failures_are_provided() throws Exception {
+    List<InputFile> inputFiles = List.of(inputFile("invalid.xml", "<root>"), inputFile("valid.xml", "<root/>"));
+
+    try (ParsePipeline pipeline = new ParsePipeline(inputFiles, 1, 1_000, Long.MAX_VALUE).start()) {
+      ParsedFile invalid = pipeline.next();
+      assertThat(invalid.inputFile().filename()).isEqualTo("invalid.xml");
+      assertThrows(ParseException.class, invalid::xmlFile);
+      assertThat(pipeline.next().xmlFile()).isNotNull();
+      assertThat(pipeline.next()).isNull();
+    }
+  }
+
+  @Test
+  void closing_stops_the_production() throws Exception {
+    List<InputFile> inputFiles = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      inputFiles.add(inputFile("file" + i + ".xml", "<root/>"));
+    }
+
+    ParsePipeline pipeline = new ParsePipeline(inputFiles, 1, 1_000, Long.MAX_VALUE).start();
+    assertThat(pipeline.next()).isNotNull();
+    pipeline.close();
+
+    assertThat(pipeline.next()).isNull();
+  }
+
+  @Test
+  void size_of_the_files_is_not_looked_up_when_streaming_is_disabled() {
+    InputFile inputFile = spy(inputFile("file.xml", "<root/>"));
+
+    assertThat(ParsedFile.parse(inputFile, Long.MAX_VALUE).isStreamed()).isFalse();
+    verify(inputFile, never()).uri();
+
+    ParsedFile.parse(inputFile, 1L);
+    verify(inputFile).uri();
+  }
+
+  private static InputFile inputFile(String filename, String content) {
+    return TestInputFileBuilder.create("module", filename)
+      .setContents(content)
+      .setCharset(UTF_8)
+      .setLanguage(Xml.KEY)
+      .build();
+  }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml;
+
+import com.sonarsource.scanner.engine.sensor.test.fixtures.SensorContextTester;
+import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.measure.Measure;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class RuleWatchdogTest {
+
+  private final SensorContextTester context = SensorContextTester.create(new File("."));
+  private final InputFile inputFile = TestInputFileBuilder.create("module", "file.xml").setContents("<a/>").build();
+  private final FileLinesContext fileLinesContext = mock(FileLinesContext.class);
+  private final FileLinesContextFactory fileLinesContextFactory = file -> fileLinesContext;
+
+  @Test
+  void disabled_watchdog_runs_on_the_calling_thread() throws Exception {
+    AtomicReference<Thread> thread = new AtomicReference<>();
+    try (RuleWatchdog watchdog = new RuleWatchdog(0)) {
+      assertThat(watchdog.isEnabled()).isFalse();
+      assertThat(watchdog.run(context, fileLinesContextFactory, (ruleContext, ruleFactory) -> thread.set(Thread.currentThread()))).isTrue();
+      assertThat(thread.get()).isSameAs(Thread.currentThread());
+    }
+  }
+
+  @Test
+  void task_within_budget_saves_its_results() throws Exception {
+    AtomicReference<Thread> thread = new AtomicReference<>();
+    AtomicReference<Measure<Integer>> savedByTheTask = new AtomicReference<>();
+    try (RuleWatchdog watchdog = new RuleWatchdog(10_000)) {
+      boolean completed = watchdog.run(context, fileLinesContextFactory, (ruleContext, ruleFactory) -> {
+        saveNcloc(ruleContext);
+        ruleFactory.createFor(inputFile).save();
+        thread.set(Thread.currentThread());
+        savedByTheTask.set(context.measure(inputFile.key(), CoreMetrics.NCLOC));
+      });
+
+      assertThat(completed).isTrue();
+      // results are only saved once the task completes
+      assertThat(savedByTheTask.get()).isNull();
+      assertThat(thread.get()).isNotSameAs(Thread.currentThread());
+      assertThat(context.measure(inputFile.key(), CoreMetrics.NCLOC).value()).isEqualTo(42);
+      verify(fileLinesContext).save();
+    }
+  }
+
+  @Test
+  void task_exceeding_its_budget_is_abandoned() throws Exception {
+    CountDownLatch saved = new CountDownLatch(1);
+    try (RuleWatchdog watchdog = new RuleWatchdog(10)) {
+      boolean completed = watchdog.run(context, fileLinesContextFactory, (ruleContext, ruleFactory) -> {
+        saveNcloc(ruleContext);
+        while (!Thread.currentThread().isInterrupted()) {
+          // simulates a rule which never completes
+        }
+        ruleFactory.createFor(inputFile).save();
+        saved.countDown();
+      });
+      assertThat(completed).isFalse();
+      assertThat(saved.await(10, TimeUnit.SECONDS)).isTrue();
+      // results saved by the abandoned rules, before or after the budget is exceeded, are dropped
+      assertThat(context.measure(inputFile.key(), CoreMetrics.NCLOC)).isNull();
+      verify(fileLinesContext, never()).save();
+
+      // next files are analyzed on a new thread
+      assertThat(watchdog.run(context, fileLinesContextFactory, (ruleContext, ruleFactory) -> {
+      })).isTrue();
+    }
+  }
+
+  @Test
+  void failure_of_the_task_is_propagated() throws Exception {
+    try (RuleWatchdog watchdog = new RuleWatchdog(10_000)) {
+      assertThatThrownBy(() -> watchdog.run(context, fileLinesContextFactory, (ruleContext, ruleFactory) -> {
+        saveNcloc(ruleContext);
+        throw new IllegalArgumentException("failure");
+      })).isInstanceOf(IllegalArgumentException.class).hasMessage("failure");
+      // as on the calling thread, results saved before the failure are kept
+      assertThat(context.measure(inputFile.key(), CoreMetrics.NCLOC).value()).isEqualTo(42);
+    }
+  }
+
+  @Test
+  void failure_of_a_save_does_not_prevent_the_others() throws Exception {
+    try (RuleWatchdog watchdog = new RuleWatchdog(10_000)) {
+      assertThat(watchdog.run(context, fileLinesContextFactory, (ruleContext, ruleFactory) -> {
+        // a measure on no component can not be saved
+        ruleContext.<Integer>newMeasure().forMetric(CoreMetrics.NCLOC).withValue(1).save();
+        saveNcloc(ruleContext);
+      })).isTrue();
+      assertThat(context.measure(inputFile.key(), CoreMetrics.NCLOC).value()).isEqualTo(42);
+    }
+  }
+
+  private void saveNcloc(SensorContext ruleContext) {
+    ruleContext.<Integer>newMeasure().on(inputFile).forMetric(CoreMetrics.NCLOC).withValue(42).save();
+  }
+
+}
@@ -20,16 +20,20 @@ import com.sonarsource.scanner.engine.sensor.test.fixtures.SensorContextTester;
 import com.sonarsource.scanner.engine.sensor.test.fixtures.TestFileSystem;
 import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
 import java.io.BufferedWriter;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 import java.util.stream.Collectors;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.highlighting.TypeOfText;
+import org.sonar.plugins.xml.streaming.XmlTokenizer;
 import org.sonar.scanner.plugin.api.impl.fs.DefaultFileSystem;
 import org.sonar.scanner.plugin.api.impl.fs.DefaultInputFile;
 import org.sonarsource.analyzer.commons.xml.XmlFile;
@@ -44,11 +48,13 @@ class XmlHighlightingTest {
 
   private TestFileSystem fileSystem;
   private SensorContextTester context;
+  private SensorContextTester streamingContext;
   private XmlFile xmlFile;
 
   @BeforeEach
   void setUp() {
     context = SensorContextTester.create(tmpFolder.getRoot());
+    streamingContext = SensorContextTester.create(tmpFolder.getRoot());
     fileSystem = context.fileSystem();
   }
 
@@ -396,6 +402,12 @@ class XmlHighlightingTest {
     fileSystem.add(inputFile);
     xmlFile = XmlFile.create(inputFile);
     XmlHighlighting.highlight(context, xmlFile);
+    // the file is also highlighted in streaming mode, expecting the same highlighting
+    try (Reader reader = new InputStreamReader(inputFile.inputStream(), inputFile.charset())) {
+      new XmlTokenizer(reader, List.of(XmlHighlighting.tokenVisitor(streamingContext, inputFile)), (visitor, e) -> {
+        throw e;
+      }).tokenize();
+    }
   }
 
   private void assertHighlighting(int startColumn, int endColumn, TypeOfText code) {
@@ -407,5 +419,7 @@ class XmlHighlightingTest {
     assertThat(context.highlightingTypeAt(componentKey, startLine, startColumn)).contains(code);
     // last char is not included
     assertThat(context.highlightingTypeAt(componentKey, endLine, endColumn - 1)).contains(code);
+    assertThat(streamingContext.highlightingTypeAt(componentKey, startLine, startColumn)).contains(code);
+    assertThat(streamingContext.highlightingTypeAt(componentKey, endLine, endColumn - 1)).contains(code);
   }
 }
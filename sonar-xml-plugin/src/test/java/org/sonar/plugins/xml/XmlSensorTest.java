@@ -21,14 +21,18 @@ import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
 import com.sonarsource.scanner.engine.sensor.test.fixtures.TestSonarRuntime;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.IntStream;
@@ -43,9 +47,12 @@ import org.sonar.api.SonarQubeSide;
 import org.sonar.api.SonarRuntime;
 import org.sonar.api.batch.fs.InputFile.Type;
 import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
 import org.sonar.api.batch.rule.ActiveRules;
 import org.sonar.api.batch.rule.CheckFactory;
 import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.batch.sensor.cache.ReadCache;
+import org.sonar.api.batch.sensor.cache.WriteCache;
 import org.sonar.api.batch.sensor.highlighting.TypeOfText;
 import org.sonar.api.batch.sensor.issue.Issue;
 import org.sonar.api.measures.CoreMetrics;
@@ -55,6 +62,9 @@ import org.sonar.api.rule.RuleKey;
 import org.sonar.api.testfixtures.log.LogTesterJUnit5;
 import org.sonar.api.utils.Version;
 import org.sonar.plugins.xml.checks.TabCharacterCheck;
+import org.sonar.plugins.xml.checks.maven.ArtifactIdNamingConventionCheck;
+import org.sonar.plugins.xml.checks.maven.GroupIdNamingConventionCheck;
+import org.sonar.plugins.xml.checks.xpath.NavigatedXPathExpression;
 import org.sonar.scanner.plugin.api.impl.fs.DefaultFileSystem;
 import org.sonar.scanner.plugin.api.impl.fs.DefaultInputFile;
 import org.sonar.scanner.plugin.api.impl.fs.FileMetadata;
@@ -106,6 +116,254 @@ class XmlSensorTest {
     assertThat(timeBigFile).isLessThan((long) Math.floor(2.5 * timeSmallFile));
   }
 
+  @Test
+  void test_parallel_analysis() throws Exception {
+    init(SQ_LTS_RUNTIME, true);
+    DefaultInputFile pom = createInputFile("src/pom.xml");
+    DefaultInputFile tabs = createInputFile("src/tabsEverywhere.xml");
+    fs.add(pom);
+    fs.add(tabs);
+    fs.add(createInputFile("src/wrong-ampersand.xhtml"));
+    fs.add(createInputFile("src/pom_with_chars_before_prolog_and_missing_new_line.xml"));
+    context.settings().setProperty(XmlPlugin.ANALYSIS_THREADS_KEY, 3);
+
+    sensor.execute(context);
+
+    assertThat(context.allIssues()).extracting("ruleKey")
+      .containsExactlyInAnyOrder(NEW_LINE_RULE_KEY, NEW_LINE_RULE_KEY, TAB_CHARACTER_RULE_KEY, PARSING_ERROR_RULE_KEY);
+    assertThat(context.measure(pom.key(), CoreMetrics.NCLOC).value()).isEqualTo(16);
+    assertThat(context.measure(tabs.key(), CoreMetrics.NCLOC)).isNotNull();
+    assertThat(context.highlightingTypeAt(pom.key(), 4, 9)).containsOnly(TypeOfText.KEYWORD);
+    assertThat(logTester.logs(Level.INFO)).contains("Analyzing 4 files using 3 threads");
+  }
+
+  @Test
+  void test_performance_measures() throws Exception {
+    init();
+    fs.add(createInputFile("src/pom.xml"));
+    fs.add(createInputFile("src/tabsEverywhere.xml"));
+    context.settings().setProperty(XmlPlugin.PERFORMANCE_MEASURE_KEY, true);
+
+    sensor.execute(context);
+
+    assertThat(logTester.logs(Level.INFO)).contains("Slowest XML rules:", "Slowest XML files:");
+    assertThat(logTester.logs(Level.INFO)).anyMatch(log -> log.startsWith("XML analysis performance of 2 files:"));
+    assertThat(logTester.logs(Level.INFO)).anyMatch(log -> log.startsWith("  xml:S2321: "));
+    assertThat(logTester.logs(Level.INFO)).anyMatch(log -> log.startsWith("  src/tabsEverywhere.xml: "));
+    Path report = fs.workDir().toPath().resolve("xml-performance-report.json");
+    assertThat(report).exists();
+    assertThat(Files.readString(report)).contains("\"files\": 2", "\"parsing\": {\"timeMs\": ", "\"xml:S2321\": ", "\"xml:S105\": ",
+      "{\"file\": \"src/pom.xml\"");
+  }
+
+  @Test
+  void performance_is_not_measured_by_default() throws Exception {
+    init();
+    fs.add(createInputFile("src/pom.xml"));
+
+    sensor.execute(context);
+
+    assertThat(logTester.logs(Level.INFO)).doesNotContain("Slowest XML rules:");
+    assertThat(fs.workDir().toPath().resolve("xml-performance-report.json")).doesNotExist();
+  }
+
+  @Test
+  void test_analysis_with_prefetching() throws Exception {
+    init(SQ_LTS_RUNTIME, true);
+    DefaultInputFile pom = createInputFile("src/pom.xml");
+    fs.add(pom);
+    fs.add(createInputFile("src/tabsEverywhere.xml"));
+    fs.add(createInputFile("src/wrong-ampersand.xhtml"));
+    context.settings().setProperty(XmlPlugin.ANALYSIS_PREFETCH_KEY, 1);
+
+    sensor.execute(context);
+
+    assertThat(context.allIssues()).extracting("ruleKey")
+      .containsExactlyInAnyOrder(NEW_LINE_RULE_KEY, TAB_CHARACTER_RULE_KEY, PARSING_ERROR_RULE_KEY);
+    assertThat(context.measure(pom.key(), CoreMetrics.NCLOC).value()).isEqualTo(16);
+    assertLog("Unable to analyse file .*wrong-ampersand.*", true);
+  }
+
+  @Test
+  void test_parallel_analysis_cancellation() throws Exception {
+    init();
+    fs.add(createInputFile("src/pom.xml"));
+    fs.add(createInputFile("src/tabsEverywhere.xml"));
+    context.settings().setProperty(XmlPlugin.ANALYSIS_THREADS_KEY, 2);
+
+    context.setCancelled(true);
+    sensor.execute(context);
+
+    assertThat(context.allIssues()).isEmpty();
+  }
+
+  @Test
+  void test_invalid_number_of_threads() throws Exception {
+    init();
+    fs.add(createInputFile("src/pom.xml"));
+    context.settings().setProperty(XmlPlugin.ANALYSIS_THREADS_KEY, 0);
+
+    sensor.execute(context);
+
+    assertThat(context.allIssues()).extracting("ruleKey").containsOnly(NEW_LINE_RULE_KEY);
+    assertThat(logTester.logs(Level.WARN)).contains("Invalid value 0 for property \"sonar.xml.analysis.threads\", the analysis will use a single thread.");
+  }
+
+  @Test
+  void checks_are_only_executed_on_applicable_files() throws Exception {
+    File moduleBaseDir = new File("src/test/resources");
+    context = SensorContextTester.create(moduleBaseDir);
+    fs = new DefaultFileSystem(moduleBaseDir);
+    fs.setWorkDir(Files.createTempDirectory(temporaryFolder, ""));
+    ActiveRules activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder().setRuleKey(NEW_LINE_RULE_KEY).build())
+      .addRule(new NewActiveRule.Builder().setRuleKey(RuleKey.of(Xml.REPOSITORY_KEY, "S3423")).build())
+      .build();
+    sensor = new XmlSensor(SQ_LTS_RUNTIME, fs, new CheckFactory(activeRules), mockFileLinesContextFactory());
+    fs.add(createInputFile("src/pom.xml"));
+    fs.add(createInputFile("src/tabsEverywhere.xml"));
+
+    sensor.execute(context);
+
+    assertThat(logTester.logs(Level.DEBUG)).contains("1 out of 4 check invocations skipped, the checks not being applicable to the kind of the files");
+  }
+
+  @Test
+  void namespace_unaware_queries_are_answered_without_parsing_the_files_again() throws Exception {
+    File moduleBaseDir = new File("src/test/resources");
+    context = SensorContextTester.create(moduleBaseDir);
+    fs = new DefaultFileSystem(moduleBaseDir);
+    fs.setWorkDir(Files.createTempDirectory(temporaryFolder, ""));
+    ActiveRules activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder().setRuleKey(RuleKey.of(Xml.REPOSITORY_KEY, GroupIdNamingConventionCheck.KEY)).build())
+      .addRule(new NewActiveRule.Builder().setRuleKey(RuleKey.of(Xml.REPOSITORY_KEY, ArtifactIdNamingConventionCheck.KEY)).build())
+      .build();
+    // the verification of the navigation evaluates the expressions on the namespace-unaware document as well
+    String verify = System.clearProperty(NavigatedXPathExpression.VERIFY_PROPERTY);
+    try {
+      sensor = new XmlSensor(SQ_LTS_RUNTIME, fs, new CheckFactory(activeRules), mockFileLinesContextFactory());
+    } finally {
+      if (verify != null) {
+        System.setProperty(NavigatedXPathExpression.VERIFY_PROPERTY, verify);
+      }
+    }
+    fs.add(createInputFile("src/pom.xml"));
+    fs.add(createInputFile("src/tabsEverywhere.xml"));
+
+    sensor.execute(context);
+
+    assertThat(logTester.logs(Level.DEBUG))
+      .contains("1 double parses avoided, the namespace-unaware queries of the rules being answered by the namespace-aware document");
+  }
+
+  @Test
+  void unchanged_files_are_replayed_from_the_cache() throws Exception {
+    init(SQ_LTS_RUNTIME, true);
+    DefaultInputFile pom = createInputFile("src/pom.xml");
+    fs.add(pom);
+    fs.add(createInputFile("src/tabsEverywhere.xml"));
+    fs.add(createInputFile("src/wrong-ampersand.xhtml"));
+    MapCache firstCache = analyzeWithCache(new MapCache());
+    List<String> firstIssues = issues();
+    assertThat(firstCache.entries).hasSize(2);
+    assertThat(logTester.logs(Level.INFO)).contains("XML analysis cache: 0 hits, 3 misses");
+
+    logTester.clear();
+    context = SensorContextTester.create(new File("src/test/resources"));
+    MapCache secondCache = analyzeWithCache(firstCache);
+
+    assertThat(logTester.logs(Level.INFO)).contains("XML analysis cache: 2 hits, 1 misses");
+    assertThat(issues()).containsExactlyInAnyOrderElementsOf(firstIssues);
+    assertThat(secondCache.entries).isEqualTo(firstCache.entries);
+    assertThat(context.measure(pom.key(), CoreMetrics.NCLOC).value()).isEqualTo(16);
+    assertThat(context.measure(pom.key(), CoreMetrics.COMMENT_LINES).value()).isZero();
+    assertThat(context.highlightingTypeAt(pom.key(), 4, 9)).containsOnly(TypeOfText.KEYWORD);
+  }
+
+  @Test
+  void cache_is_not_used_when_rules_change() throws Exception {
+    init();
+    fs.add(createInputFile("src/pom.xml"));
+    MapCache firstCache = analyzeWithCache(new MapCache());
+
+    init(SQ_LTS_RUNTIME, true);
+    fs.add(createInputFile("src/pom.xml"));
+    analyzeWithCache(firstCache);
+
+    assertThat(logTester.logs(Level.INFO)).contains("XML analysis cache: 0 hits, 1 misses");
+    assertThat(issues()).hasSize(1);
+  }
+
+  @Test
+  void cache_is_not_used_when_streaming_threshold_changes() throws Exception {
+    init();
+    fs.add(createInputFile("src/pom.xml"));
+    MapCache firstCache = analyzeWithCache(new MapCache());
+
+    logTester.clear();
+    init();
+    fs.add(createInputFile("src/pom.xml"));
+    context.settings().setProperty(XmlPlugin.STREAMING_THRESHOLD_KEY, 1);
+    analyzeWithCache(firstCache);
+
+    assertThat(logTester.logs(Level.INFO)).contains("XML analysis cache: 0 hits, 1 misses");
+  }
+
+  private MapCache analyzeWithCache(MapCache previousCache) {
+    MapCache nextCache = new MapCache(previousCache);
+    context.setCacheEnabled(true);
+    context.setPreviousCache(previousCache);
+    context.setNextCache(nextCache);
+    sensor.execute(context);
+    return nextCache;
+  }
+
+  private List<String> issues() {
+    return context.allIssues().stream()
+      .map(issue -> issue.ruleKey() + " " + issue.primaryLocation().inputComponent() + " " + issue.primaryLocation().textRange()
+        + " " + issue.primaryLocation().message() + " " + issue.flows().size())
+      .toList();
+  }
+
+  private static final class MapCache implements ReadCache, WriteCache {
+
+    private final Map<String, byte[]> previous;
+    private final Map<String, byte[]> entries = new HashMap<>();
+
+    MapCache() {
+      this.previous = Map.of();
+    }
+
+    MapCache(MapCache previous) {
+      this.previous = previous.entries;
+    }
+
+    @Override
+    public InputStream read(String key) {
+      return new ByteArrayInputStream(entries.get(key));
+    }
+
+    @Override
+    public boolean contains(String key) {
+      return entries.containsKey(key);
+    }
+
+    @Override
+    public void write(String key, InputStream data) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void write(String key, byte[] data) {
+      entries.put(key, data);
+    }
+
+    @Override
+    public void copyFromPrevious(String key) {
+      entries.put(key, previous.get(key));
+    }
+  }
+
   @Test
   void test_analysis_cancellation() throws Exception {
     init();
@@ -441,6 +699,121 @@ class XmlSensorTest {
     assertThat(context.measure(componentKey, CoreMetrics.NCLOC).value()).isEqualTo(2);
   }
 
+  @Test
+  void large_files_are_analyzed_in_streaming_mode() throws Exception {
+    String content = "<?xml version=\"1.0\"?>\n<root>\n  <!-- TODO remove -->\n"
+      + "  <tag attr=\"value\">text</tag>\n".repeat(100)
+      + "\t<tag/>\n</root>\n";
+    InputFile inputFile = initStreaming(content, RuleKey.of(Xml.REPOSITORY_KEY, "S1135"), TAB_CHARACTER_RULE_KEY, NEW_LINE_RULE_KEY);
+
+    sensor.execute(context);
+
+    assertThat(context.allIssues()).extracting(issue -> issue.ruleKey().rule() + ":" + issue.primaryLocation().textRange().start().line())
+      .containsExactlyInAnyOrder("S1135:3", "S105:104");
+    assertThat(context.measure(inputFile.key(), CoreMetrics.NCLOC).value()).isEqualTo(104);
+    assertThat(context.measure(inputFile.key(), CoreMetrics.COMMENT_LINES).value()).isEqualTo(1);
+    assertThat(context.highlightingTypeAt(inputFile.key(), 4, 7)).containsOnly(TypeOfText.CONSTANT);
+    assertThat(logTester.logs(Level.INFO))
+      .contains("File large.xml is analyzed in streaming mode, being larger than the threshold set by \"sonar.xml.streaming.threshold\": "
+        + "1 rules are skipped");
+    assertThat(logTester.logs(Level.DEBUG)).contains("Rules skipped on large.xml: [S2321]");
+  }
+
+  @Test
+  void large_files_not_well_formed_are_reported_as_parsing_errors() throws Exception {
+    InputFile inputFile = initStreaming("<root>\n  <!-- TODO remove -->\n" + "  <tag>text</tag>\n".repeat(100), PARSING_ERROR_RULE_KEY,
+      RuleKey.of(Xml.REPOSITORY_KEY, "S1135"));
+
+    sensor.execute(context);
+
+    // the issues raised before reaching the error are not reported
+    assertThat(context.allIssues()).extracting("ruleKey").containsExactly(PARSING_ERROR_RULE_KEY);
+    assertThat(context.measure(inputFile.key(), CoreMetrics.NCLOC)).isNull();
+    assertLog("Unable to analyse file .*large.xml;", true);
+  }
+
+  @Test
+  void files_exceeding_the_time_budget_of_the_rules_are_aborted() throws Exception {
+    init();
+    InputFile slow = createInputFile(Files.createTempDirectory(temporaryFolder, ""), "slow.xml", "<root>\n" + "\t<a/>\n".repeat(8000) + "</root>");
+    fs.add(slow);
+    InputFile tabsEverywhere = createInputFile("src/tabsEverywhere.xml");
+    fs.add(tabsEverywhere);
+    ActiveRules activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder().setRuleKey(TAB_CHARACTER_RULE_KEY).build())
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(Xml.REPOSITORY_KEY, "quadratic"))
+        .setTemplateRuleKey("XPathCheck")
+        .setParam("expression", "//*[count(//*) > 1]")
+        .setParam("filePattern", "**/slow.xml")
+        .build())
+      .build();
+    sensor = new XmlSensor(SQ_LTS_RUNTIME, fs, new CheckFactory(activeRules), mockFileLinesContextFactory());
+    context.settings().setProperty(XmlPlugin.RULE_TIMEOUT_KEY, 500);
+
+    sensor.execute(context);
+
+    // the other files are still analyzed
+    assertThat(context.allIssues())
+      .filteredOn(issue -> issue.primaryLocation().inputComponent().equals(tabsEverywhere))
+      .extracting(issue -> issue.ruleKey().rule())
+      .containsExactly(TabCharacterCheck.RULE_KEY);
+    assertThat(context.allIssues()).extracting(issue -> issue.ruleKey().rule()).doesNotContain("quadratic");
+    assertThat(context.allAnalysisErrors()).extracting(error -> error.inputFile().filename() + ": " + error.message())
+      .containsExactly("slow.xml: Rules exceeded their time budget of 500 ms on this file, whose analysis has been aborted "
+        + "while running rule xml:quadratic");
+    assertLog("Rules exceeded their time budget of 500 ms on .*slow.xml, whose analysis has been aborted while running rule xml:quadratic, "
+      + "the analysis goes on", true);
+  }
+
+  @Test
+  void xpath_rules_are_evaluated_along_the_other_rules() throws Exception {
+    init();
+    fs.add(createInputFile(Files.createTempDirectory(temporaryFolder, ""), "file.xml", "<root>\n<a id=\"1\"/>\n<a id=\"2\"><b/></a>\n</root>"));
+    ActiveRules activeRules = new ActiveRulesBuilder()
+      .addRule(xpathRule("b", "//b"))
+      .addRule(xpathRule("second", "/root/a[@id='2']"))
+      .addRule(xpathRule("ids", "root/a/@id"))
+      .addRule(xpathRule("count", "count(//a) > 1"))
+      .build();
+    sensor = new XmlSensor(SQ_LTS_RUNTIME, fs, new CheckFactory(activeRules), mockFileLinesContextFactory());
+
+    sensor.execute(context);
+
+    assertThat(context.allIssues())
+      .extracting(issue -> {
+        TextRange textRange = issue.primaryLocation().textRange();
+        return issue.ruleKey().rule() + ":" + (textRange == null ? "file" : textRange.start().line());
+      })
+      .containsExactlyInAnyOrder("b:3", "second:3", "ids:2", "ids:3", "count:file");
+  }
+
+  private static NewActiveRule xpathRule(String key, String expression) {
+    return new NewActiveRule.Builder()
+      .setRuleKey(RuleKey.of(Xml.REPOSITORY_KEY, key))
+      .setTemplateRuleKey("XPathCheck")
+      .setParam("expression", expression)
+      .build();
+  }
+
+  private InputFile initStreaming(String content, RuleKey... ruleKeys) throws Exception {
+    Path moduleBaseDir = Files.createTempDirectory(temporaryFolder, "");
+    Files.writeString(moduleBaseDir.resolve("large.xml"), content);
+    context = SensorContextTester.create(moduleBaseDir);
+    context.settings().setProperty(XmlPlugin.STREAMING_THRESHOLD_KEY, 1);
+    fs = new DefaultFileSystem(moduleBaseDir);
+    fs.setWorkDir(Files.createTempDirectory(temporaryFolder, ""));
+    DefaultInputFile inputFile = createInputFile(moduleBaseDir, "large.xml", StandardCharsets.UTF_8);
+    fs.add(inputFile);
+
+    ActiveRulesBuilder activeRules = new ActiveRulesBuilder();
+    for (RuleKey ruleKey : ruleKeys) {
+      activeRules.addRule(new NewActiveRule.Builder().setRuleKey(ruleKey).build());
+    }
+    sensor = new XmlSensor(SQ_LTS_RUNTIME, fs, new CheckFactory(activeRules.build()), mockFileLinesContextFactory());
+    return inputFile;
+  }
+
   private static FileLinesContextFactory mockFileLinesContextFactory() {
     FileLinesContextFactory fileLinesContextFactory = mock(FileLinesContextFactory.class);
     FileLinesContext fileLinesContext = mock(FileLinesContext.class);
@@ -483,6 +856,11 @@ class XmlSensorTest {
     return createInputFile(Paths.get("src/test/resources"), filename, StandardCharsets.UTF_8);
   }
 
+  private static DefaultInputFile createInputFile(Path moduleBaseDir, String filename, String content) throws Exception {
+    Files.writeString(moduleBaseDir.resolve(filename), content);
+    return createInputFile(moduleBaseDir, filename, StandardCharsets.UTF_8);
+  }
+
   private static DefaultInputFile createInputFile(Path moduleBaseDir, String filename, Charset charset) throws Exception {
     DefaultInputFile inputFile = TestInputFileBuilder.create("modulekey", filename)
       .setModuleBaseDir(moduleBaseDir)
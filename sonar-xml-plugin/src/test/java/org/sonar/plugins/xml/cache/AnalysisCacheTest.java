@@ -0,0 +1,54 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.cache;
+
+import com.sonarsource.scanner.engine.sensor.test.fixtures.SensorContextTester;
+import java.io.File;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.rule.CheckFactory;
+import org.sonar.api.batch.rule.Checks;
+import org.sonar.scanner.plugin.api.impl.rule.ActiveRulesBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnalysisCacheTest {
+
+  private final Checks<Object> checks = new CheckFactory(new ActiveRulesBuilder().build()).create("xml");
+
+  @Test
+  void cache_is_disabled_when_the_plugin_version_is_unknown() {
+    SensorContextTester context = SensorContextTester.create(new File("."));
+    context.setCacheEnabled(true);
+
+    assertThat(AnalysisCache.create(context, checks, "1.0").isEnabled()).isTrue();
+    assertThat(AnalysisCache.create(context, checks, null).isEnabled()).isFalse();
+  }
+
+  @Test
+  void cache_is_disabled_when_the_sensor_cache_is() {
+    SensorContextTester context = SensorContextTester.create(new File("."));
+    context.setCacheEnabled(false);
+
+    assertThat(AnalysisCache.create(context, checks, "1.0").isEnabled()).isFalse();
+  }
+
+  @Test
+  void plugin_version_is_generated_by_the_build() {
+    assertThat(AnalysisCache.pluginVersion()).isNotBlank().doesNotStartWith("${");
+  }
+
+}
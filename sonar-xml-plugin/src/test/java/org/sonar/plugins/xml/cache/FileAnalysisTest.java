@@ -0,0 +1,159 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.cache;
+
+import com.sonarsource.scanner.engine.sensor.test.fixtures.SensorContextTester;
+import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.highlighting.TypeOfText;
+import org.sonar.api.batch.sensor.issue.Issue;
+import org.sonar.api.batch.sensor.issue.IssueLocation;
+import org.sonar.api.batch.sensor.issue.NewIssue;
+import org.sonar.api.measures.CoreMetrics;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.rule.RuleKey;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FileAnalysisTest {
+
+  private static final RuleKey RULE_KEY = RuleKey.of("xml", "S1");
+
+  private final InputFile inputFile = TestInputFileBuilder.create("module", "file.xml")
+    .setContents("<a>\n  <b/>\n  <c/>\n</a>\n")
+    .setCharset(UTF_8)
+    .build();
+
+  @Test
+  void recorded_results_are_replayed() throws Exception {
+    SensorContextTester context = SensorContextTester.create(new File("."));
+    FileAnalysis analysis = new FileAnalysis();
+    SensorContext recordingContext = AnalysisRecorder.record(context, inputFile, analysis);
+    FileLinesContext fileLinesContext = mock(FileLinesContext.class);
+    FileLinesContextFactory recordingFactory = AnalysisRecorder.record(fileLinesContextFactory(fileLinesContext), inputFile, analysis);
+
+    saveResults(recordingContext, recordingFactory);
+
+    assertThat(analysis.isCacheable()).isTrue();
+    assertThat(context.allIssues()).hasSize(2);
+
+    SensorContextTester replayContext = SensorContextTester.create(new File("."));
+    FileLinesContext replayedFileLinesContext = mock(FileLinesContext.class);
+    FileAnalysis deserialized = FileAnalysis.deserialize(new ByteArrayInputStream(analysis.serialize()));
+    deserialized.replay(replayContext, fileLinesContextFactory(replayedFileLinesContext), inputFile);
+
+    assertThat(issues(replayContext)).containsExactlyElementsOf(issues(context));
+    assertThat(replayContext.measure(inputFile.key(), CoreMetrics.NCLOC).value()).isEqualTo(4);
+    assertThat(replayContext.highlightingTypeAt(inputFile.key(), 1, 1)).containsOnly(TypeOfText.KEYWORD);
+    assertThat(replayContext.highlightingTypeAt(inputFile.key(), 2, 3)).containsOnly(TypeOfText.COMMENT);
+    verify(replayedFileLinesContext).setIntValue(CoreMetrics.NCLOC_DATA_KEY, 2, 1);
+    verify(replayedFileLinesContext).save();
+  }
+
+  @Test
+  void results_which_cannot_be_replayed_are_not_cacheable() {
+    SensorContextTester context = SensorContextTester.create(new File("."));
+    FileAnalysis analysis = new FileAnalysis();
+    SensorContext recordingContext = AnalysisRecorder.record(context, inputFile, analysis);
+
+    recordingContext.newAnalysisError().onFile(inputFile).message("error").save();
+
+    assertThat(analysis.isCacheable()).isFalse();
+    assertThat(context.allAnalysisErrors()).hasSize(1);
+  }
+
+  @Test
+  void issues_on_other_files_are_not_cacheable() {
+    SensorContextTester context = SensorContextTester.create(new File("."));
+    FileAnalysis analysis = new FileAnalysis();
+    InputFile otherFile = TestInputFileBuilder.create("module", "other.xml").setContents("<a/>").build();
+
+    NewIssue issue = AnalysisRecorder.record(context, inputFile, analysis).newIssue().forRule(RULE_KEY);
+    issue.at(issue.newLocation().on(otherFile).message("message")).save();
+
+    assertThat(analysis.isCacheable()).isFalse();
+    assertThat(context.allIssues()).hasSize(1);
+  }
+
+  @Test
+  void measures_not_saved_by_the_sensor_are_not_cacheable() {
+    SensorContextTester context = SensorContextTester.create(new File("."));
+    FileAnalysis analysis = new FileAnalysis();
+
+    AnalysisRecorder.record(context, inputFile, analysis).<Integer>newMeasure().forMetric(CoreMetrics.LINES).withValue(4).on(inputFile).save();
+
+    assertThat(analysis.isCacheable()).isFalse();
+    assertThat(context.measure(inputFile.key(), CoreMetrics.LINES).value()).isEqualTo(4);
+  }
+
+  @Test
+  void other_format_is_not_deserialized() throws Exception {
+    assertThat(FileAnalysis.deserialize(new ByteArrayInputStream(new byte[] {0, 0, 0, 0}))).isNull();
+  }
+
+  private void saveResults(SensorContext context, FileLinesContextFactory fileLinesContextFactory) {
+    NewIssue issue = context.newIssue().forRule(RULE_KEY).gap(2.0);
+    issue
+      .at(issue.newLocation().on(inputFile).at(inputFile.newRange(2, 2, 2, 6)).message("primary"))
+      .addLocation(issue.newLocation().on(inputFile).at(inputFile.newRange(3, 2, 3, 6)).message("secondary"))
+      .addFlow(List.of(issue.newLocation().on(inputFile).at(inputFile.newRange(1, 0, 1, 3))))
+      .save();
+    NewIssue fileIssue = context.newIssue().forRule(RULE_KEY);
+    fileIssue.at(fileIssue.newLocation().on(inputFile).message("on file")).save();
+
+    context.<Integer>newMeasure().forMetric(CoreMetrics.NCLOC).withValue(4).on(inputFile).save();
+    FileLinesContext fileLinesContext = fileLinesContextFactory.createFor(inputFile);
+    fileLinesContext.setIntValue(CoreMetrics.NCLOC_DATA_KEY, 2, 1);
+    fileLinesContext.save();
+    context.newHighlighting().onFile(inputFile)
+      .highlight(1, 0, 1, 3, TypeOfText.KEYWORD)
+      .highlight(inputFile.newRange(2, 2, 2, 6), TypeOfText.COMMENT)
+      .save();
+  }
+
+  private static FileLinesContextFactory fileLinesContextFactory(FileLinesContext fileLinesContext) {
+    FileLinesContextFactory factory = mock(FileLinesContextFactory.class);
+    when(factory.createFor(any(InputFile.class))).thenReturn(fileLinesContext);
+    return factory;
+  }
+
+  private static List<String> issues(SensorContextTester context) {
+    return context.allIssues().stream().map(FileAnalysisTest::toString).toList();
+  }
+
+  private static String toString(Issue issue) {
+    StringBuilder result = new StringBuilder(issue.ruleKey() + " " + issue.gap() + " " + toString(issue.primaryLocation()));
+    issue.flows().forEach(flow -> flow.locations().forEach(location -> result.append(" | ").append(toString(location))));
+    return result.toString();
+  }
+
+  private static String toString(IssueLocation location) {
+    return location.inputComponent() + " " + location.textRange() + " " + location.message();
+  }
+
+}
@@ -16,11 +16,27 @@
  */
 package org.sonar.plugins.xml.checks;
 
+import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.plugins.xml.streaming.XmlTokenizer;
 import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheckVerifier;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 class CharBeforePrologCheckTest {
 
+  private static final File BASE_DIR = new File("src/test/resources/checks/CharBeforePrologCheck");
+
   @Test
   void test() {
     CharBeforePrologCheck check = new CharBeforePrologCheck();
@@ -29,4 +45,35 @@ class CharBeforePrologCheckTest {
     SonarXmlCheckVerifier.verifyNoIssue("ok.xml", check);
     SonarXmlCheckVerifier.verifyNoIssue("ok_without_prolog.xml", check);
   }
+
+  @Test
+  void streaming_mode_raises_the_same_issues() throws Exception {
+    assertThat(streamedIssues("nok.xml")).containsExactly("4:4-4:9");
+    assertThat(streamedIssues("ok.xml")).isEmpty();
+    assertThat(streamedIssues("ok_without_prolog.xml")).isEmpty();
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"declaration_in_comment.xml", "declaration_in_cdata.xml"})
+  void declaration_in_the_content_is_not_a_prolog(String fileName) throws Exception {
+    assertThat(streamedIssues(fileName)).isEmpty();
+  }
+
+  private static List<String> streamedIssues(String fileName) throws Exception {
+    InputFile inputFile = TestInputFileBuilder.create("modulekey", fileName)
+      .setModuleBaseDir(BASE_DIR.toPath())
+      .setCharset(StandardCharsets.UTF_8)
+      .initMetadata(Files.readString(BASE_DIR.toPath().resolve(fileName)))
+      .build();
+    List<String> issues = new ArrayList<>();
+    CharBeforePrologCheck check = new CharBeforePrologCheck();
+    check.startStreaming(inputFile, (location, message) -> issues.add(
+      location.getStartLine() + ":" + location.getStartColumn() + "-" + location.getEndLine() + ":" + location.getEndColumn()));
+    try (Reader reader = new InputStreamReader(inputFile.inputStream(), inputFile.charset())) {
+      new XmlTokenizer(reader, List.of(check), (visitor, e) -> {
+        throw e;
+      }).tokenize();
+    }
+    return issues;
+  }
 }
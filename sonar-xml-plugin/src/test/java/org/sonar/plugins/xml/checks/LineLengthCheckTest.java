@@ -16,9 +16,26 @@
  */
 package org.sonar.plugins.xml.checks;
 
+import com.sonarsource.scanner.engine.sensor.test.fixtures.SensorContextTester;
+import com.sonarsource.scanner.engine.sensor.test.fixtures.TestInputFileBuilder;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.jupiter.api.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.plugins.xml.lexical.LexicalScanner;
+import org.sonar.plugins.xml.streaming.XmlTokenizer;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
 import org.sonarsource.analyzer.commons.xml.checks.SonarXmlCheckVerifier;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 class LineLengthCheckTest {
 
   @Test
@@ -32,4 +49,40 @@ class LineLengthCheckTest {
     check.setMaximumLineLength(140);
     SonarXmlCheckVerifier.verifyIssues("LineLengthCheckCustom.xml", check);
   }
+
+  @Test
+  void streaming_mode_raises_the_same_issues() throws Exception {
+    File baseDir = new File("src/test/resources/checks/LineLengthCheck");
+    InputFile inputFile = TestInputFileBuilder.create("modulekey", "LineLengthCheck.xml")
+      .setModuleBaseDir(baseDir.toPath())
+      .setCharset(StandardCharsets.UTF_8)
+      .initMetadata(Files.readString(baseDir.toPath().resolve("LineLengthCheck.xml")))
+      .build();
+    SensorContextTester context = SensorContextTester.create(baseDir);
+    new LineLengthCheck().scanFile(context, RuleKey.of("xml", LineLengthCheck.RULE_KEY), XmlFile.create(inputFile));
+    List<String> expected = context.allIssues().stream()
+      .map(issue -> location(issue.primaryLocation().textRange()))
+      .toList();
+
+    List<String> streamed = new ArrayList<>();
+    LineLengthCheck check = new LineLengthCheck();
+    check.startStreaming(inputFile, (location, message) -> streamed.add(
+      location.getStartLine() + ":" + location.getStartColumn() + "-" + location.getEndLine() + ":" + location.getEndColumn()));
+    LexicalScanner scanner = new LexicalScanner((visitor, e) -> {
+      throw e;
+    }).subscribe(check);
+    try (Reader reader = scanner.scanning(new InputStreamReader(inputFile.inputStream(), inputFile.charset()))) {
+      new XmlTokenizer(reader, List.of(check), (visitor, e) -> {
+        throw e;
+      }).tokenize();
+    }
+    scanner.end();
+
+    assertThat(expected).isNotEmpty();
+    assertThat(streamed).containsExactlyElementsOf(expected);
+  }
+
+  private static String location(TextRange range) {
+    return range.start().line() + ":" + range.start().lineOffset() + "-" + range.end().line() + ":" + range.end().lineOffset();
+  }
 }
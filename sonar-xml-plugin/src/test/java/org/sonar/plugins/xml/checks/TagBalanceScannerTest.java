@@ -0,0 +1,90 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.checks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TagBalanceScannerTest {
+
+  private static final String[] FRAGMENTS = {
+    "<a>", "</a>", "<b/>", "<b>", "</b>", "text", "<a attr='>'>", "<![CDATA[<x>]]>", "<?pi x?>", "<a", "attr=\"1\">",
+    "&amp;", "<!DOCTYPE a>", "<?xml version='1.0'?>", "<!-- <c> -->", "<c x=\"</c>\">", "a < b", "\uFEFF<a/>", "", " ",
+  };
+
+  @Test
+  void suffixes_with_balanced_tags_are_candidates() {
+    assertThat(candidates("<a>", "<b/>", "</a>")).containsExactly(true, false, false);
+    assertThat(candidates("<a>", "<b>", "</b>", "</a>")).containsExactly(true, false, false, false);
+    assertThat(candidates("<a>", "</b>", "<b/>")).containsExactly(false, false, true);
+    assertThat(candidates("<a/>", "text", " <b/>")).containsExactly(true, false, true);
+  }
+
+  @Test
+  void suffixes_starting_within_markup_are_candidates() {
+    assertThat(candidates("<a attr='", "<b>'/>")).containsExactly(true, true);
+    assertThat(candidates("<![CDATA[", "<b>]]>")).containsExactly(true, true);
+  }
+
+  @Test
+  void unmodeled_markup_keeps_all_the_suffixes() {
+    assertThat(candidates("<!DOCTYPE a>", "<a>", "text")).containsExactly(true, true, true);
+    assertThat(candidates("<a>", "<b")).containsExactly(true, true);
+  }
+
+  @Test
+  void rejected_suffixes_are_not_parseable() {
+    Random random = new Random(42);
+    for (int block = 0; block < 3000; block++) {
+      String[] comments = new String[1 + random.nextInt(6)];
+      for (int i = 0; i < comments.length; i++) {
+        comments[i] = FRAGMENTS[random.nextInt(FRAGMENTS.length)] + FRAGMENTS[random.nextInt(FRAGMENTS.length)];
+      }
+      String text = String.join("\n", comments);
+      int[] starts = starts(comments);
+      boolean[] candidates = TagBalanceScanner.candidates(text, starts);
+      for (int i = 0; i < comments.length; i++) {
+        if (!candidates[i]) {
+          String suffix = text.substring(starts[i]);
+          assertThat(CommentedOutCodeCheck.isParseableXml(suffix, StandardCharsets.UTF_8)).as(suffix).isFalse();
+        }
+      }
+    }
+  }
+
+  private static List<Boolean> candidates(String... comments) {
+    List<Boolean> result = new ArrayList<>();
+    for (boolean candidate : TagBalanceScanner.candidates(String.join("\n", comments), starts(comments))) {
+      result.add(candidate);
+    }
+    return result;
+  }
+
+  private static int[] starts(String[] comments) {
+    int[] starts = new int[comments.length];
+    for (int i = 1; i < comments.length; i++) {
+      starts[i] = starts[i - 1] + comments[i - 1].length() + 1;
+    }
+    return starts;
+  }
+
+}
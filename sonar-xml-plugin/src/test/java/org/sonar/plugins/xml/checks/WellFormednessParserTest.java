@@ -0,0 +1,78 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.checks;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.sonarsource.analyzer.commons.xml.SafeDomParserFactory;
+import org.xml.sax.SAXException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WellFormednessParserTest {
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+    "<a/>",
+    "<a><b x=\"1\">text</b></a>",
+    "<a/>\n<b/>",
+    "<a>",
+    "<a></b>",
+    "not xml",
+    "",
+    "<x:a xmlns:y=\"urn:y\"><x:b/></x:a>",
+    "<!DOCTYPE a [<!ENTITY e SYSTEM \"file:///etc/passwd\">]><a>&e;</a>",
+    "<a>&undeclared;</a>",
+    "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><a>é</a>",
+  })
+  void verdicts_are_the_ones_of_the_dom_parser(String content) throws Exception {
+    String expected = domError(content);
+
+    assertThat(error(content)).isEqualTo(expected);
+    // the parser of the thread is reused, whatever the previous verdict
+    assertThat(error(content)).isEqualTo(expected);
+    // each thread has its own parser
+    assertThat(CompletableFuture.supplyAsync(() -> error(content)).get()).isEqualTo(expected);
+  }
+
+  private static String error(String content) {
+    try (InputStream stream = stream(content)) {
+      WellFormednessParser.parse(stream);
+      return null;
+    } catch (Exception e) {
+      return e.getMessage();
+    }
+  }
+
+  private static String domError(String content) throws Exception {
+    try (InputStream stream = stream(content)) {
+      SafeDomParserFactory.createDocumentBuilder(false).parse(stream);
+      return null;
+    } catch (SAXException e) {
+      return e.getMessage();
+    }
+  }
+
+  private static InputStream stream(String content) {
+    return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
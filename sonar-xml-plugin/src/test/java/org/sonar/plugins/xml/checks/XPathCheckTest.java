@@ -76,6 +76,32 @@ class XPathCheckTest {
     SonarXmlCheckVerifier.verifyIssues("with_out_of_parent_namespace.xml", getCheck("//other:template"));
   }
 
+  @Test
+  void expression_is_compiled_for_each_binding_of_its_prefixes() {
+    XPathCheck check = getCheck("//x:template");
+    SonarXmlCheckVerifier.verifyIssues("with_namespaces.xml", check);
+    SonarXmlCheckVerifier.verifyIssues("with_other_namespace_for_prefix.xml", check);
+    SonarXmlCheckVerifier.verifyIssues("with_namespaces.xml", check);
+  }
+
+  @Test
+  void changing_the_parameters_discards_the_compiled_ones() {
+    XPathCheck check = getCheck("//x:template");
+    SonarXmlCheckVerifier.verifyIssues("with_namespaces.xml", check);
+
+    check.setExpression("//b");
+    SonarXmlCheckVerifier.verifyIssues("simple.xml", check);
+
+    check.setFilePattern("**/FOOBAR/*.xml");
+    SonarXmlCheckVerifier.verifyNoIssue("simple.xml", check);
+  }
+
+  @Test
+  void unbound_prefix_fails_the_compilation() {
+    XPathCheck check = getCheck("//unbound:template");
+    assertThrows(IllegalStateException.class, () -> SonarXmlCheckVerifier.verifyNoIssue("with_namespaces.xml", check));
+  }
+
   @Test
   void test_with_namespace_uri() {
     XPathCheck check = getCheck("//*[namespace-uri()='sap.ui.core.mvc']");
@@ -26,4 +26,9 @@ class DependencyWithSystemScopeCheckTest {
     SonarXmlCheckVerifier.verifyIssues("pom.xml", check);
     SonarXmlCheckVerifier.verifyNoIssue("../irrelevant.xml", check);
   }
+
+  @Test
+  void children_of_dependencies_are_matched_without_prefix() {
+    SonarXmlCheckVerifier.verifyIssues("prefixed/pom.xml", new DependencyWithSystemScopeCheck());
+  }
 }
@@ -45,6 +45,12 @@ class DisallowedDependenciesCheckTest {
     SonarXmlCheckVerifier.verifyIssues("noVersion/pom.xml", check);
   }
 
+  @Test
+  void children_of_dependencies_are_matched_without_prefix() {
+    check.dependencyName = "*:log4j";
+    SonarXmlCheckVerifier.verifyIssues("prefixed/pom.xml", check);
+  }
+
   @ParameterizedTest
   @CsvSource({
           "1.2.*,regexVersion/pom.xml",
@@ -0,0 +1,164 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.checks.maven;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PomModelTest {
+
+  private static final String POM = """
+    <project xmlns="http://maven.apache.org/POM/4.0.0">
+      <groupId>org.example</groupId>
+      <artifactId>example</artifactId>
+      <properties>
+        <lib.version>1.0</lib.version>
+      </properties>
+      <dependencies>
+        <dependency>
+          <groupId>org.lib</groupId>
+          <artifactId>lib</artifactId>
+          <version>${lib.version}</version>
+          <scope>system</scope>
+          <systemPath>/lib.jar</systemPath>
+        </dependency>
+        <dependency>
+          <artifactId>other</artifactId>
+          <version>${undeclared}</version>
+        </dependency>
+      </dependencies>
+      <profiles>
+        <profile>
+          <properties>
+            <lib.version>2.0</lib.version>
+          </properties>
+        </profile>
+      </profiles>
+    </project>
+    """;
+
+  @Test
+  void coordinates_are_unique_children_of_the_project() {
+    PomModel model = PomModel.of(XmlFile.create(POM));
+
+    assertThat(model.uniqueProjectChild("groupId").getTextContent()).isEqualTo("org.example");
+    assertThat(model.uniqueProjectChild("artifactId").getTextContent()).isEqualTo("example");
+    assertThat(model.uniqueProjectChild("version")).isNull();
+    assertThat(model.topLevelElements()).extracting(Element::getTagName)
+      .containsExactly("groupId", "artifactId", "properties", "dependencies", "profiles");
+
+    PomModel duplicated = PomModel.of(XmlFile.create("<project><groupId>a</groupId><groupId>b</groupId></project>"));
+    assertThat(duplicated.uniqueProjectChild("groupId")).isNull();
+    PomModel otherRoot = PomModel.of(XmlFile.create("<other><groupId>a</groupId></other>"));
+    assertThat(otherRoot.uniqueProjectChild("groupId")).isNull();
+    assertThat(otherRoot.topLevelElements()).hasSize(1);
+  }
+
+  @Test
+  void properties_of_all_the_properties_elements() {
+    PomModel model = PomModel.of(XmlFile.create(POM));
+
+    assertThat(model.properties()).containsExactly(Map.entry("lib.version", "2.0"));
+  }
+
+  @Test
+  void dependencies_with_resolved_versions() {
+    List<PomModel.Dependency> dependencies = PomModel.of(XmlFile.create(POM)).dependencies();
+
+    assertThat(dependencies).hasSize(2);
+    PomModel.Dependency lib = dependencies.get(0);
+    assertThat(lib.groupId()).isEqualTo("org.lib");
+    assertThat(lib.artifactId()).isEqualTo("lib");
+    assertThat(lib.version()).isEqualTo("${lib.version}");
+    assertThat(lib.resolvedVersion()).isEqualTo("2.0");
+    assertThat(lib.scope().getTextContent()).isEqualTo("system");
+    assertThat(lib.systemPath().getTextContent()).isEqualTo("/lib.jar");
+    assertThat(XmlFile.nodeLocation(lib.element()).getStartLine()).isEqualTo(8);
+
+    PomModel.Dependency other = dependencies.get(1);
+    assertThat(other.groupId()).isEmpty();
+    assertThat(other.resolvedVersion()).isEmpty();
+    assertThat(other.scope()).isNull();
+    assertThat(other.systemPath()).isNull();
+  }
+
+  @Test
+  void prefixes_are_ignored_except_for_properties_and_the_children_of_dependencies() {
+    PomModel model = PomModel.of(XmlFile.create("""
+      <m:project xmlns:m="http://maven.apache.org/POM/4.0.0">
+        <m:groupId>org.example</m:groupId>
+        <m:artifactId>example</m:artifactId>
+        <m:properties>
+          <m:lib.version>1.0</m:lib.version>
+        </m:properties>
+        <m:dependencies>
+          <m:dependency>
+            <m:groupId>org.lib</m:groupId>
+            <m:artifactId>lib</m:artifactId>
+            <m:version>${lib.version}</m:version>
+            <m:scope>system</m:scope>
+            <m:systemPath>/lib.jar</m:systemPath>
+          </m:dependency>
+          <m:dependency>
+            <groupId>org.other</groupId>
+            <scope>system</scope>
+          </m:dependency>
+        </m:dependencies>
+      </m:project>
+      """));
+
+    assertThat(model.uniqueProjectChild("groupId").getTextContent()).isEqualTo("org.example");
+    assertThat(model.uniqueProjectChild("artifactId").getTextContent()).isEqualTo("example");
+    assertThat(model.properties()).isEmpty();
+    assertThat(model.dependencies()).hasSize(2);
+    PomModel.Dependency lib = model.dependencies().get(0);
+    assertThat(lib.groupId()).isEmpty();
+    assertThat(lib.artifactId()).isEmpty();
+    assertThat(lib.version()).isEmpty();
+    assertThat(lib.scope()).isNull();
+    assertThat(lib.systemPath()).isNull();
+    PomModel.Dependency other = model.dependencies().get(1);
+    assertThat(other.groupId()).isEqualTo("org.other");
+    assertThat(other.scope().getTextContent()).isEqualTo("system");
+
+    PomModel otherRoot = PomModel.of(XmlFile.create("<m:projects xmlns:m=\"urn:m\"><m:groupId>a</m:groupId></m:projects>"));
+    assertThat(otherRoot.uniqueProjectChild("groupId")).isNull();
+  }
+
+  @Test
+  void texts_element_by_element() {
+    PomModel model = PomModel.of(XmlFile.create("<project><a>1<b>2</b>3</a><c>  </c><![CDATA[4]]></project>"));
+
+    assertThat(model.texts()).extracting(Node::getNodeValue).containsExactly("1", "3", "2");
+    assertThat(model.texts()).allMatch(Text.class::isInstance);
+  }
+
+  @Test
+  void model_is_computed_once_per_file() {
+    XmlFile file = XmlFile.create(POM);
+
+    assertThat(PomModel.of(file)).isSameAs(PomModel.of(file));
+  }
+
+}
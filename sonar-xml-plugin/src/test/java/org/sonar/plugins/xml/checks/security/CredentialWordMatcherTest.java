@@ -0,0 +1,96 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.checks.security;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CredentialWordMatcherTest {
+
+  @Test
+  void words_are_found_ignoring_the_case() {
+    CredentialWordMatcher matcher = CredentialWordMatcher.of("password,passwd,pwd,passphrase");
+
+    assertThat(matcher.matches("dbPassword")).isTrue();
+    assertThat(matcher.matches("PWD")).isTrue();
+    assertThat(matcher.matches("user_passwd_hash")).isTrue();
+    assertThat(matcher.matches("passPhrase")).isTrue();
+    assertThat(matcher.matches("pass")).isFalse();
+    assertThat(matcher.matches("username")).isFalse();
+    assertThat(matcher.matches("")).isFalse();
+  }
+
+  @Test
+  void overlapping_words_are_found() {
+    CredentialWordMatcher matcher = CredentialWordMatcher.of("abcd,bc,cde");
+
+    assertThat(matcher.matches("xabce")).isTrue();
+    assertThat(matcher.matches("abcx")).isTrue();
+    assertThat(matcher.matches("acdxcd")).isFalse();
+    assertThat(matcher.matches("abxcde")).isTrue();
+  }
+
+  @Test
+  void empty_words_are_ignored() {
+    CredentialWordMatcher matcher = CredentialWordMatcher.of(" , ,,");
+
+    assertThat(matcher.matches("password")).isFalse();
+    assertThat(matcher.matches("")).isFalse();
+  }
+
+  @Test
+  void non_ascii_texts_are_lowercased_as_the_words() {
+    CredentialWordMatcher matcher = CredentialWordMatcher.of("Mot-De-Passe,KENNWORT,şifre");
+
+    assertThat(matcher.matches("ÉMOT-DE-PASSE")).isTrue();
+    assertThat(matcher.matches("Kennwortß")).isTrue();
+    assertThat(matcher.matches("ŞIFRE")).isTrue();
+    assertThat(matcher.matches("İkennwor")).isFalse();
+  }
+
+  @Test
+  void verdicts_on_names_are_the_ones_on_texts() {
+    CredentialWordMatcher matcher = CredentialWordMatcher.of("pwd");
+
+    assertThat(matcher.matchesName("dbPwd")).isTrue();
+    assertThat(matcher.matchesName("dbPwd")).isTrue();
+    assertThat(matcher.matchesName("user")).isFalse();
+    assertThat(matcher.matchesName("user")).isFalse();
+  }
+
+  @Test
+  void verdicts_are_the_ones_of_a_naive_search() {
+    List<String> words = List.of("password", "pass", "sword", "pwd", "ıd", "sσ");
+    CredentialWordMatcher matcher = CredentialWordMatcher.of(String.join(",", words));
+    char[] alphabet = "pPaAsSwWoOrRdDiIİıΣσß_".toCharArray();
+    Random random = new Random(42);
+    for (int i = 0; i < 20_000; i++) {
+      char[] text = new char[random.nextInt(12)];
+      for (int j = 0; j < text.length; j++) {
+        text[j] = alphabet[random.nextInt(alphabet.length)];
+      }
+      String candidate = new String(text);
+      String lowerCase = candidate.toLowerCase(Locale.ROOT);
+      assertThat(matcher.matches(candidate)).as(candidate).isEqualTo(words.stream().anyMatch(lowerCase::contains));
+    }
+  }
+
+}
@@ -65,6 +65,7 @@ class HardcodedCredentialsCheckTest {
     "spring-social-github-beans.xml",
     "spring-social-google-beans.xml",
     "spring-social-linkedin-beans.xml",
+    "spring-social-prefixed-beans.xml",
     "spring-social-twitter-beans.xml",
     "teiid-standalone.xml"
   })
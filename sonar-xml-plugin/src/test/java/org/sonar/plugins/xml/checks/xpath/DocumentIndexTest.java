@@ -0,0 +1,55 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.checks.xpath;
+
+import org.junit.jupiter.api.Test;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DocumentIndexTest {
+
+  private static final XmlFile XML_FILE = XmlFile.create("""
+    <a xmlns:x="urn:x">
+      <b>text</b>
+      <x:b><c><![CDATA[data]]></c></x:b>
+      <b><!-- comment --></b>
+    </a>""");
+
+  @Test
+  void elements_are_indexed_by_local_name_in_document_order() {
+    for (Document document : new Document[] {XML_FILE.getNamespaceAwareDocument(), XML_FILE.getNamespaceUnawareDocument()}) {
+      DocumentIndex index = DocumentIndex.of(document);
+
+      assertThat(index.elements("b")).extracting(Element::getTagName).containsExactly("b", "x:b", "b");
+      assertThat(index.elements("a")).containsExactly(document.getDocumentElement());
+      assertThat(index.elements("x:b")).isEmpty();
+      assertThat(index.elementsWithText()).extracting(Element::getTagName).containsExactly("a", "b", "c");
+    }
+  }
+
+  @Test
+  void index_is_built_once_per_document() {
+    Document document = XmlFile.create("<a/>").getDocument();
+
+    assertThat(DocumentIndex.of(document)).isSameAs(DocumentIndex.of(document));
+    assertThat(DocumentIndex.of(XmlFile.create("<a/>").getDocument())).isNotSameAs(DocumentIndex.of(document));
+  }
+
+}
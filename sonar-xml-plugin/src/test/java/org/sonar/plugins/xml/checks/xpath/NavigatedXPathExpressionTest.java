@@ -0,0 +1,102 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.checks.xpath;
+
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import org.junit.jupiter.api.Test;
+import org.sonar.plugins.xml.tree.DocumentViews;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NavigatedXPathExpressionTest {
+
+  private static final XPath XPATH = XPathFactory.newInstance().newXPath();
+  private static final Document DOCUMENT = XmlFile.create("<a><b id='1'/><b/><c/></a>").getDocument();
+
+  @Test
+  void simple_expressions_are_evaluated_by_navigation() throws XPathExpressionException {
+    XPathExpression expression = NavigatedXPathExpression.of("a/b", XPATH.compile("a/b"));
+    assertThat(expression).isInstanceOf(NavigatedXPathExpression.class);
+
+    NodeList nodes = (NodeList) expression.evaluate(DOCUMENT, XPathConstants.NODESET);
+    assertThat(nodes.getLength()).isEqualTo(2);
+    assertThat(nodes.item(0)).isSameAs(DOCUMENT.getDocumentElement().getFirstChild());
+    assertThat(nodes.item(2)).isNull();
+    assertThat(expression.evaluate(DOCUMENT, XPathConstants.BOOLEAN)).isEqualTo(true);
+    assertThat(NavigatedXPathExpression.of("a/d", XPATH.compile("a/d")).evaluate(DOCUMENT, XPathConstants.BOOLEAN)).isEqualTo(false);
+  }
+
+  @Test
+  void other_evaluations_are_done_by_jaxp() throws XPathExpressionException {
+    XPathExpression jaxpExpression = XPATH.compile("count(a/b)");
+    assertThat(NavigatedXPathExpression.of("count(a/b)", jaxpExpression)).isSameAs(jaxpExpression);
+
+    XPathExpression expression = NavigatedXPathExpression.of("a/b/@id", XPATH.compile("a/b/@id"));
+    assertThat(expression.evaluate(DOCUMENT)).isEqualTo("1");
+    assertThat(expression.evaluate(DOCUMENT, XPathConstants.STRING)).isEqualTo("1");
+    // an attribute is not a supported context
+    NodeList nodes = (NodeList) NavigatedXPathExpression.of("b", XPATH.compile("b"))
+      .evaluate(DOCUMENT.getDocumentElement().getFirstChild().getAttributes().item(0), XPathConstants.NODESET);
+    assertThat(nodes.getLength()).isZero();
+  }
+
+  @Test
+  void differences_with_jaxp_are_reported_when_verifying() throws XPathExpressionException {
+    XPathNavigator navigator = XPathNavigator.compile("a/b");
+    XPathExpression verified = new NavigatedXPathExpression("a/b", navigator, XPATH.compile("a/b"), true, false);
+    assertThat(((NodeList) verified.evaluate(DOCUMENT, XPathConstants.NODESET)).getLength()).isEqualTo(2);
+
+    XPathExpression different = new NavigatedXPathExpression("a/b", navigator, XPATH.compile("a/*"), true, false);
+    IllegalStateException e = assertThrows(IllegalStateException.class, () -> different.evaluate(DOCUMENT, XPathConstants.NODESET));
+    assertThat(e).hasMessage("Navigation selected 2 nodes instead of the 3 selected by JAXP for the XPath expression [a/b]");
+    assertThrows(IllegalStateException.class, () -> different.evaluate(DOCUMENT, XPathConstants.BOOLEAN));
+
+    XPathExpression notVerified = new NavigatedXPathExpression("a/b", navigator, XPATH.compile("a/*"), false, false);
+    assertThat(((NodeList) notVerified.evaluate(DOCUMENT, XPathConstants.NODESET)).getLength()).isEqualTo(2);
+  }
+
+  @Test
+  void namespace_unaware_expressions_select_in_the_view_what_they_select_in_the_namespace_unaware_document() throws XPathExpressionException {
+    XmlFile file = XmlFile.create("<a xmlns='urn:a' xmlns:p='urn:p'><b id='1'/><p:b p:id='2'/><c/></a>");
+    Document view = DocumentViews.namespaceUnawareView(file);
+
+    XPathExpression namespaceAware = NavigatedXPathExpression.of("a/b", XPATH.compile("a/b"));
+    assertThat(((NodeList) namespaceAware.evaluate(view, XPathConstants.NODESET)).getLength()).isZero();
+
+    XPathNavigator navigator = XPathNavigator.compile("a/b").namespaceUnaware();
+    XPathExpression expression = new NavigatedXPathExpression("a/b", navigator, XPATH.compile("a/b"), true, true);
+    NodeList nodes = (NodeList) expression.evaluate(view, XPathConstants.NODESET);
+    assertThat(nodes.getLength()).isEqualTo(2);
+    assertThat(nodes.item(0).getOwnerDocument()).isSameAs(view);
+    assertThat(expression.evaluate(view.getDocumentElement(), XPathConstants.BOOLEAN)).isEqualTo(false);
+
+    XPathExpression relative = NavigatedXPathExpression.namespaceUnaware("b/@id", XPATH.compile("b/@id"));
+    assertThat(((NodeList) relative.evaluate(view.getDocumentElement(), XPathConstants.NODESET)).getLength()).isEqualTo(2);
+    // not navigated, evaluated by JAXP on the namespace-unaware document
+    assertThat(relative.evaluate(view.getDocumentElement(), XPathConstants.STRING)).isEqualTo("1");
+    assertThat(DocumentViews.isDoubleParseAvoided(file)).isFalse();
+  }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.checks.xpath;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class XPathNavigatorTest {
+
+  private static final XmlFile XML_FILE = XmlFile.create("""
+    <x:project xmlns:x="urn:x" xmlns:y="urn:y">
+      <groupId>g1</groupId>
+      <x:groupId y:attr="1">g2</x:groupId>
+      <dependencies>
+        <dependency scope="system"><artifactId>a1</artifactId></dependency>
+        <dependency scope="test" y:scope="system"><artifactId>a<!-- c -->2</artifactId></dependency>
+        <dependencies>
+          <dependency xmlns:scope="urn:scope"><artifactId>nested</artifactId><![CDATA[ cdata ]]>text</dependency>
+        </dependencies>
+      </dependencies>
+      <dependency><dependencies><dependency/></dependencies></dependency>
+      <value>true</value>
+      <value><!-- c -->true</value>
+      <value>tr<![CDATA[ue]]></value>
+    </x:project>""");
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+    "project",
+    "/project",
+    "//groupId",
+    "project/groupId",
+    "/project/*",
+    "*/groupId[@attr]",
+    "project/groupId[@attr='1']",
+    "project/groupId[@attr!='1']",
+    "project/dependencies/dependency",
+    "//dependencies/dependency",
+    "//dependencies/dependency[@scope='system']",
+    "//dependencies/dependency[@scope != 'system']",
+    "//dependency[artifactId]",
+    "//dependency[artifactId=\"a2\"]",
+    "//dependency[artifactId!='a1']",
+    "//dependency[text()]",
+    "//dependency[text()=' cdata text']",
+    "//*[text()='true']",
+    "//*[text()!='true']",
+    "//value[text()='tr']",
+    "//dependency/@scope",
+    "//dependency[@scope]",
+    "project/dependencies/dependency/artifactId",
+    "//*/*/*/*/dependency",
+    "project/dependencies/dependency[@scope][artifactId]",
+  })
+  void selects_the_same_nodes_as_jaxp(String expression) throws XPathExpressionException {
+    assertSameNodesAsJaxp(XML_FILE, expression);
+  }
+
+  @ParameterizedTest
+  @CsvSource(delimiter = '|', quoteCharacter = '"', value = {
+    "<r xmlns:x='u'><x:a id='1'/><a id='3'/></r> | //a",
+    "<r xmlns:x='u'><x:a id='1'/><a id='3'/></r> | //a[@id]",
+    "<r xmlns:x='u'><x:a id='1'/><a id='3'/></r> | //a/@id",
+    "<r xmlns:x='u'><x:a><b/></x:a></r> | //a[b]",
+    "<r xmlns:x='u'><x:a><b/></x:a></r> | //a/b",
+  })
+  void selects_the_same_prefixed_elements_as_jaxp(String xml, String expression) throws XPathExpressionException {
+    assertSameNodesAsJaxp(XmlFile.create(xml), expression);
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+    "",
+    "/",
+    "x:project",
+    "project//groupId",
+    "./project",
+    "project/../project",
+    "project/text()",
+    "project/node()",
+    "count(project)",
+    "project | other",
+    "project[1]",
+    "project[@a and @b]",
+    "project[@a='1' or @b]",
+    "project[@x:a]",
+    "project[@a=concat('a', 'b')]",
+    "project[@a='unterminated]",
+    "project[@a]extra",
+    "child::project",
+    "project/@*",
+    "//@attr",
+    "project/@a/b",
+  })
+  void unsupported_expressions_are_not_compiled(String expression) {
+    assertThat(XPathNavigator.compile(expression)).isNull();
+  }
+
+  private static void assertSameNodesAsJaxp(XmlFile xmlFile, String expression) throws XPathExpressionException {
+    XPathNavigator navigator = XPathNavigator.compile(expression);
+    assertThat(navigator).isNotNull();
+
+    for (Document document : List.of(xmlFile.getNamespaceUnawareDocument(), xmlFile.getNamespaceAwareDocument())) {
+      List<Node> expected = jaxp(expression, document);
+      assertThat(navigator.select(document)).containsExactlyElementsOf(expected);
+      assertThat(selectOnEachElement(navigator, document)).containsExactlyElementsOf(expected);
+      Node root = document.getDocumentElement();
+      assertThat(navigator.select(root)).containsExactlyElementsOf(jaxp(expression, root));
+    }
+  }
+
+  /**
+   * Streaming evaluation, as done along a traversal of the document.
+   */
+  private static List<Node> selectOnEachElement(XPathNavigator navigator, Node node) {
+    List<Node> selected = new ArrayList<>();
+    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+      if (child.getNodeType() == Node.ELEMENT_NODE) {
+        selected.addAll(navigator.selectOn((Element) child));
+        selected.addAll(selectOnEachElement(navigator, child));
+      }
+    }
+    return selected;
+  }
+
+  private static List<Node> jaxp(String expression, Node context) throws XPathExpressionException {
+    NodeList nodeList = (NodeList) XPathFactory.newInstance().newXPath().compile(expression).evaluate(context, XPathConstants.NODESET);
+    List<Node> nodes = new ArrayList<>();
+    for (int i = 0; i < nodeList.getLength(); i++) {
+      nodes.add(nodeList.item(i));
+    }
+    return nodes;
+  }
+
+}
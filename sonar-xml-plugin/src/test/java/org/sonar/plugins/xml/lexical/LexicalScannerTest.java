@@ -0,0 +1,146 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.lexical;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LexicalScannerTest {
+
+  @Test
+  void lines_and_tabs() {
+    assertThat(events("a \t\n\t\tb\r\nc\u000B\f\r\rd\t"))
+      .containsExactly("tabs 1:2-3", "line 1:3:1", "tabs 2:0-2", "line 2:3:3", "line 3:3:1", "line 4:0:0", "tabs 5:1-2", "line 5:2:1", "end");
+    assertThat(events("")).containsExactly("line 1:0:0", "end");
+    assertThat(events("a\n")).containsExactly("line 1:1:1", "line 2:0:0", "end");
+  }
+
+  @Test
+  void byte_order_mark_is_not_part_of_the_first_line() {
+    assertThat(events("\uFEFF<?xml version=\"1.0\"?>"))
+      .containsExactly("bom", "line 1:21:21", "end");
+    assertThat(events("a\uFEFF")).containsExactly("line 1:2:2", "end");
+  }
+
+  @Test
+  void characters_read_from_a_reader_are_scanned() throws IOException {
+    List<String> events = new ArrayList<>();
+    LexicalScanner scanner = new LexicalScanner((visitor, e) -> {
+      throw e;
+    }).subscribe(new Recorder(events));
+    char[] buffer = new char[3];
+    try (Reader reader = scanner.scanning(new StringReader("<?xml \r\n\t\t\t\t\r\n"))) {
+      while (reader.read(buffer, 0, buffer.length) != -1) {
+        // read the characters in chunks
+      }
+    }
+    scanner.end();
+
+    assertThat(events).containsExactly("line 1:6:5", "tabs 2:0-4", "line 2:4:0", "line 3:0:0", "end");
+  }
+
+  @Test
+  void failing_visitor_is_not_notified_anymore() {
+    List<String> events = new ArrayList<>();
+    List<LexicalVisitor> failingVisitors = new ArrayList<>();
+    LexicalVisitor failing = new LexicalVisitor() {
+      @Override
+      public void visitLine(int line, int length, int trimmedLength) {
+        throw new IllegalStateException("failure");
+      }
+    };
+    new LexicalScanner((visitor, e) -> failingVisitors.add(visitor))
+      .subscribe(failing)
+      .subscribe(new Recorder(events))
+      .scan("a\nb");
+
+    assertThat(failingVisitors).containsExactly(failing);
+    assertThat(events).containsExactly("line 1:1:1", "line 2:1:1", "end");
+
+    LexicalScanner scanner = new LexicalScanner((visitor, e) -> {
+      throw e;
+    }).subscribe(failing);
+    assertThrows(IllegalStateException.class, () -> scanner.scan("a"));
+  }
+
+  @Test
+  void shared_scanner_is_used_for_its_file_only() {
+    XmlFile file = XmlFile.create("<a/>");
+    XmlFile otherFile = XmlFile.create("<b/>");
+    List<String> sharedEvents = new ArrayList<>();
+    List<String> otherEvents = new ArrayList<>();
+    LexicalScanner scanner = new LexicalScanner((visitor, e) -> {
+      throw e;
+    });
+
+    scanner.shareDuring(file, () -> {
+      LexicalScanner.visit(file, new Recorder(sharedEvents));
+      LexicalScanner.visit(otherFile, new Recorder(otherEvents));
+    });
+    assertThat(sharedEvents).isEmpty();
+    assertThat(otherEvents).containsExactly("line 1:4:4", "end");
+
+    scanner.scan(file.getContents());
+    assertThat(sharedEvents).containsExactly("line 1:4:4", "end");
+  }
+
+  private static List<String> events(String content) {
+    List<String> events = new ArrayList<>();
+    new LexicalScanner((visitor, e) -> {
+      throw e;
+    }).subscribe(new Recorder(events)).scan(content);
+    return events;
+  }
+
+  private static final class Recorder implements LexicalVisitor {
+
+    private final List<String> events;
+
+    private Recorder(List<String> events) {
+      this.events = events;
+    }
+
+    @Override
+    public void visitByteOrderMark() {
+      events.add("bom");
+    }
+
+    @Override
+    public void visitLine(int line, int length, int trimmedLength) {
+      events.add("line " + line + ":" + length + ":" + trimmedLength);
+    }
+
+    @Override
+    public void visitTabs(int line, int startColumn, int endColumn) {
+      events.add("tabs " + line + ":" + startColumn + "-" + endColumn);
+    }
+
+    @Override
+    public void endFile() {
+      events.add("end");
+    }
+  }
+
+}
@@ -0,0 +1,223 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.streaming;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.sonarsource.analyzer.commons.xml.ParseException;
+import org.sonarsource.analyzer.commons.xml.PrologElement;
+import org.sonarsource.analyzer.commons.xml.XmlTextRange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class XmlTokenizerTest {
+
+  @Test
+  void tokens_are_visited_in_document_order() throws Exception {
+    RecordingVisitor visitor = tokenize("""
+      <?xml version="1.0"?>
+      <!DOCTYPE a [<!ENTITY e "<>">]>
+      <!-- c1 -->
+      <?target data?>
+      <a x="1" y='2'><b/>text<![CDATA[<data>]]></a>""");
+
+    assertThat(visitor.events).containsExactly(
+      "prolog 1:0-1:5 version=1:14-1:19 1:19-1:21",
+      "doctype 2:0-2:31",
+      "comment 3:0-3:11  c1 ",
+      "pi 4:0-4:15",
+      "start a 5:0-5:15 x=1 y=2",
+      "start b/ 5:15-5:19",
+      "characters 5:19-5:23 text",
+      "characters 5:32-5:38 <data>",
+      "cdata 5:23-5:32 5:38-5:41",
+      "end 5:41-5:45",
+      "endDocument");
+  }
+
+  @Test
+  void characters_are_delivered_line_by_line() throws Exception {
+    RecordingVisitor visitor = tokenize("<a>line1\r\nline2\rline3\n\n</a>");
+
+    assertThat(visitor.events).containsExactly(
+      "start a 1:0-1:3",
+      "characters 1:3-1:8 line1",
+      "characters 2:0-2:5 line2",
+      "characters 3:0-3:5 line3",
+      "end 5:0-5:4",
+      "endDocument");
+  }
+
+  @Test
+  void long_characters_are_delivered_in_segments() throws Exception {
+    RecordingVisitor visitor = tokenize("<a>" + "x".repeat(5000) + "</a>");
+
+    assertThat(visitor.events).contains(
+      "characters 1:3-1:4099 " + "x".repeat(4096),
+      "characters 1:4099-1:5003 " + "x".repeat(904));
+  }
+
+  @Test
+  void multiline_tags_are_located() throws Exception {
+    RecordingVisitor visitor = tokenize("<a\n  x\n  =\n  \"1\"\n>\n</a\n>");
+
+    assertThat(visitor.events).containsExactly(
+      "start a 1:0-5:1 x=1",
+      "end 6:0-7:1",
+      "endDocument");
+  }
+
+  @Test
+  void cdata_sections_split_by_the_parser_are_visited_once() throws Exception {
+    RecordingVisitor visitor = tokenize("<a><![CDATA[" + "x".repeat(10000) + "]]></a>");
+
+    assertThat(visitor.events).startsWith("start a 1:0-1:3")
+      .endsWith("cdata 1:3-1:12 1:10012-1:10015", "end 1:10015-1:10019", "endDocument")
+      .filteredOn(event -> event.startsWith("cdata"))
+      .hasSize(1);
+    assertThat(visitor.events).filteredOn(event -> event.startsWith("characters"))
+      .extracting(event -> event.substring(event.lastIndexOf(' ') + 1))
+      .containsExactly("x".repeat(4096), "x".repeat(4096), "x".repeat(1808));
+  }
+
+  @Test
+  void characters_before_the_prolog_are_skipped() throws Exception {
+    RecordingVisitor visitor = tokenize("\uFEFF\n<!-- c -->  <?xml version=\"1.0\"?><a/>");
+
+    assertThat(visitor.events).containsExactly(
+      "prolog 2:12-2:17 version=2:26-2:31 2:31-2:33",
+      "start a/ 2:33-2:37",
+      "endDocument");
+  }
+
+  @Test
+  void file_not_well_formed_is_not_tokenized() {
+    RecordingVisitor visitor = new RecordingVisitor();
+    XmlTokenizer tokenizer = new XmlTokenizer(new StringReader("<a><b x=\"1\"></a>"), List.of(visitor), (failingVisitor, e) -> {
+      throw e;
+    });
+
+    assertThrows(ParseException.class, tokenizer::tokenize);
+    assertThat(visitor.events).containsExactly("start a 1:0-1:3", "start b 1:3-1:12 x=1");
+  }
+
+  @Test
+  void failing_visitor_is_not_notified_anymore() throws Exception {
+    List<TokenVisitor> failures = new ArrayList<>();
+    RecordingVisitor failing = new RecordingVisitor() {
+      @Override
+      public void visitStartTag(StartTag startTag) {
+        super.visitStartTag(startTag);
+        throw new IllegalStateException("failure");
+      }
+    };
+    RecordingVisitor working = new RecordingVisitor();
+
+    new XmlTokenizer(new StringReader("<a><b/></a>"), List.of(failing, working), (visitor, e) -> failures.add(visitor)).tokenize();
+
+    assertThat(failures).containsExactly(failing);
+    assertThat(failing.events).containsExactly("start a 1:0-1:3");
+    assertThat(working.events).containsExactly("start a 1:0-1:3", "start b/ 1:3-1:7", "end 1:7-1:11", "endDocument");
+  }
+
+  @Test
+  void failure_is_propagated_by_the_handler() {
+    RecordingVisitor failing = new RecordingVisitor() {
+      @Override
+      public void endDocument() {
+        throw new IllegalStateException("failure");
+      }
+    };
+    XmlTokenizer tokenizer = new XmlTokenizer(new StringReader("<a/>"), List.of(failing), (visitor, e) -> {
+      throw e;
+    });
+
+    assertThrows(IllegalStateException.class, tokenizer::tokenize);
+  }
+
+  private static RecordingVisitor tokenize(String content) throws IOException {
+    RecordingVisitor visitor = new RecordingVisitor();
+    new XmlTokenizer(new StringReader(content), List.of(visitor), (failingVisitor, e) -> {
+      throw e;
+    }).tokenize();
+    return visitor;
+  }
+
+  private static String location(XmlTextRange range) {
+    return range.getStartLine() + ":" + range.getStartColumn() + "-" + range.getEndLine() + ":" + range.getEndColumn();
+  }
+
+  private static class RecordingVisitor implements TokenVisitor {
+
+    final List<String> events = new ArrayList<>();
+
+    @Override
+    public void visitProlog(PrologElement prolog) {
+      StringBuilder event = new StringBuilder("prolog " + location(prolog.getPrologStartLocation()));
+      prolog.getAttributes().forEach(attribute -> event.append(" ").append(attribute.getName())
+        .append("=").append(location(attribute.getValueLocation())));
+      events.add(event.append(" ").append(location(prolog.getPrologEndLocation())).toString());
+    }
+
+    @Override
+    public void visitStartTag(StartTag startTag) {
+      StringBuilder event = new StringBuilder("start " + startTag.name() + (startTag.isSelfClosing() ? "/ " : " ") + location(startTag.location()));
+      startTag.attributes().forEach(attribute -> event.append(" ").append(attribute.name()).append("=").append(attribute.value()));
+      events.add(event.toString());
+    }
+
+    @Override
+    public void visitEndTag(XmlTextRange location) {
+      events.add("end " + location(location));
+    }
+
+    @Override
+    public void visitCharacters(XmlTextRange location, CharSequence characters) {
+      events.add("characters " + location(location) + " " + characters);
+    }
+
+    @Override
+    public void visitCdata(XmlTextRange startLocation, XmlTextRange endLocation) {
+      events.add("cdata " + location(startLocation) + " " + location(endLocation));
+    }
+
+    @Override
+    public void visitComment(XmlTextRange location, String content) {
+      events.add("comment " + location(location) + " " + content);
+    }
+
+    @Override
+    public void visitDocumentType(XmlTextRange location) {
+      events.add("doctype " + location(location));
+    }
+
+    @Override
+    public void visitProcessingInstruction(XmlTextRange location) {
+      events.add("pi " + location(location));
+    }
+
+    @Override
+    public void endDocument() {
+      events.add("endDocument");
+    }
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.telemetry;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.event.Level;
+import org.sonar.api.testfixtures.log.LogTesterJUnit5;
+import org.sonar.plugins.xml.telemetry.AnalysisTelemetry.Phase;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnalysisTelemetryTest {
+
+  @RegisterExtension
+  public LogTesterJUnit5 logTester = new LogTesterJUnit5().setLevel(Level.INFO);
+
+  @TempDir
+  Path workDir;
+
+  @Test
+  void measures_are_aggregated() {
+    AnalysisTelemetry telemetry = AnalysisTelemetry.create(true);
+    telemetry.record(Phase.PARSING, 3_000_000, 100);
+    telemetry.record(Phase.PARSING, 2_000_000, 50);
+    telemetry.recordRule("xml:S1", 1_000_000, 10);
+    telemetry.recordRule("xml:S2", 5_000_000, 20);
+    telemetry.recordRule("xml:S1", 1_000_000, 10);
+    telemetry.recordFile("a.xml", 1_000_000, 1);
+    telemetry.recordFile("dir/\"b\".xml", 9_000_000, 2);
+
+    assertThat(telemetry.toJson()).isEqualTo("""
+      {
+        "files": 2,
+        "allocatedBytesMeasured": %s,
+        "phases": {
+          "parsing": {"timeMs": 5, "allocatedBytes": 150},
+          "metrics": {"timeMs": 0, "allocatedBytes": 0},
+          "highlighting": {"timeMs": 0, "allocatedBytes": 0},
+          "rules": {"timeMs": 7, "allocatedBytes": 40}
+        },
+        "rules": {
+          "xml:S2": {"timeMs": 5, "allocatedBytes": 20},
+          "xml:S1": {"timeMs": 2, "allocatedBytes": 20}
+        },
+        "slowestFiles": [
+          {"file": "dir/\\"b\\".xml", "measure": {"timeMs": 9, "allocatedBytes": 2}},
+          {"file": "a.xml", "measure": {"timeMs": 1, "allocatedBytes": 1}}
+        ]
+      }
+      """.formatted(ThreadAllocation.isMeasured()));
+  }
+
+  @Test
+  void summary_is_logged_and_report_is_written() throws Exception {
+    AnalysisTelemetry telemetry = AnalysisTelemetry.create(true);
+    telemetry.recordRule("xml:S1", 2_000_000, 10);
+    telemetry.recordFile("a.xml", 3_000_000, 20);
+
+    telemetry.logSummary();
+    telemetry.writeReport(workDir);
+
+    assertThat(logTester.logs(Level.INFO)).contains(
+      "  rules: 2 ms, 10 allocated bytes",
+      "Slowest XML rules:",
+      "  xml:S1: 2 ms, 10 allocated bytes",
+      "Slowest XML files:",
+      "  a.xml: 3 ms, 20 allocated bytes");
+    assertThat(Files.readString(workDir.resolve(AnalysisTelemetry.REPORT_FILE_NAME))).isEqualTo(telemetry.toJson());
+  }
+
+  @Test
+  void report_writing_failure_is_logged() {
+    AnalysisTelemetry.create(true).writeReport(workDir.resolve("missing"));
+
+    assertThat(logTester.logs(Level.WARN)).anyMatch(log -> log.startsWith("Unable to write the XML analysis performance report to "));
+  }
+
+  @Test
+  void nothing_is_measured_when_disabled() {
+    AnalysisTelemetry telemetry = AnalysisTelemetry.create(false);
+    Sample sample = telemetry.start();
+    telemetry.recordRule("xml:S1", 2_000_000, 10);
+    telemetry.recordFile("a.xml", 3_000_000, 20);
+
+    assertThat(telemetry.isEnabled()).isFalse();
+    assertThat(sample.elapsedNanos()).isZero();
+    assertThat(sample.allocatedBytes()).isZero();
+    assertThat(telemetry.toJson()).contains("\"files\": 0", "\"rules\": {\n  }");
+  }
+
+  @Test
+  void samples_measure_the_current_thread() {
+    Sample sample = AnalysisTelemetry.create(true).start();
+    byte[][] allocated = new byte[100][];
+    for (int i = 0; i < allocated.length; i++) {
+      allocated[i] = new byte[1_000];
+    }
+
+    assertThat(allocated[99]).hasSize(1_000);
+    assertThat(sample.elapsedNanos()).isPositive();
+    if (ThreadAllocation.isMeasured()) {
+      assertThat(sample.allocatedBytes()).isGreaterThanOrEqualTo(100_000);
+    }
+  }
+
+}
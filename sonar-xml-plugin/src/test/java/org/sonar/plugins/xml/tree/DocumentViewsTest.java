@@ -0,0 +1,84 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.tree;
+
+import org.junit.jupiter.api.Test;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DocumentViewsTest {
+
+  private static final String CONTENT = "<a xmlns:p='urn:p'><b/><p:c p:id='1'/></a>";
+
+  @Test
+  void view_is_the_namespace_aware_document() {
+    XmlFile file = XmlFile.create(CONTENT);
+    assertThat(DocumentViews.isDoubleParseAvoided(file)).isFalse();
+
+    assertThat(DocumentViews.namespaceUnawareView(file)).isSameAs(file.getNamespaceAwareDocument());
+    assertThat(DocumentViews.isDoubleParseAvoided(file)).isTrue();
+
+    assertThat(DocumentViews.namespaceUnawareDocument(file)).isSameAs(file.getNamespaceUnawareDocument());
+    assertThat(DocumentViews.isDoubleParseAvoided(file)).isFalse();
+  }
+
+  @Test
+  void documents_are_namespace_aware_or_not() {
+    XmlFile file = XmlFile.create(CONTENT);
+    Document namespaceAware = file.getNamespaceAwareDocument();
+    Document namespaceUnaware = file.getNamespaceUnawareDocument();
+
+    assertThat(DocumentViews.isNamespaceAware(namespaceAware)).isTrue();
+    assertThat(DocumentViews.isNamespaceAware(namespaceAware.getDocumentElement().getFirstChild())).isTrue();
+    assertThat(DocumentViews.isNamespaceAware(namespaceUnaware)).isFalse();
+    assertThat(DocumentViews.isNamespaceAware(namespaceUnaware.getDocumentElement())).isFalse();
+  }
+
+  @Test
+  void counterparts_in_the_namespace_unaware_document() {
+    XmlFile file = XmlFile.create(CONTENT);
+    Document view = DocumentViews.namespaceUnawareView(file);
+    Element c = (Element) view.getDocumentElement().getLastChild();
+    Attr id = (Attr) c.getAttributes().item(0);
+
+    Document namespaceUnaware = (Document) DocumentViews.counterpart(view);
+    assertThat(namespaceUnaware).isSameAs(file.getNamespaceUnawareDocument());
+    Node counterpart = DocumentViews.counterpart(c);
+    assertThat(counterpart).isSameAs(namespaceUnaware.getDocumentElement().getLastChild());
+    assertThat(counterpart.getNodeName()).isEqualTo("p:c");
+    assertThat(DocumentViews.counterpart(id)).isSameAs(((Element) counterpart).getAttributeNode("p:id"));
+    // the namespace-unaware document has been parsed for the counterparts
+    assertThat(DocumentViews.isDoubleParseAvoided(file)).isFalse();
+
+    Node text = view.createTextNode("text");
+    assertThrows(IllegalStateException.class, () -> DocumentViews.counterpart(text));
+  }
+
+  @Test
+  void no_counterpart_outside_of_a_view() {
+    Document document = XmlFile.create(CONTENT).getDocument();
+    IllegalStateException e = assertThrows(IllegalStateException.class, () -> DocumentViews.counterpart(document));
+    assertThat(e).hasMessage("The node #document is not part of a namespace-unaware view of a document");
+  }
+
+}
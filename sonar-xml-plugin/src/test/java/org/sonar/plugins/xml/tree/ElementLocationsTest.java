@@ -0,0 +1,98 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.tree;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.sonarsource.analyzer.commons.xml.XmlTextRange;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.NodeList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ElementLocationsTest {
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+    "<a/>",
+    "<?xml version=\"1.0\"?>\n<!-- c1 -->\n<a x=\"1\" y='2'><b/>text<![CDATA[<data>]]></a>\n<!-- c2 -->",
+    "<a>\n  <b attr = \"1\"\n     other=\"2\">\n    text\n  </b>\r\n  <c><!-- comment --><d><e/></d></c>\r</a>",
+    "<x:a xmlns:x=\"urn:x\" xmlns=\"urn:default\"><x:b x:attr=\"1\"/>\n\n\n<c/></x:a>",
+  })
+  void locations_are_the_ones_of_the_dom(String content) {
+    Document document = XmlFile.create(content).getDocument();
+    ElementLocations locations = ElementLocations.of(document);
+    NodeList elements = document.getElementsByTagName("*");
+
+    assertThat(locations.size()).isEqualTo(elements.getLength());
+    for (int i = 0; i < elements.getLength(); i++) {
+      Element element = (Element) elements.item(i);
+      assertThat(locations.id(element)).isEqualTo(i);
+      assertThat(locations.startLocation(i)).usingRecursiveComparison().isEqualTo(XmlFile.startLocation(element));
+      assertThat(locations.endLocation(i)).usingRecursiveComparison().isEqualTo(XmlFile.endLocation(element));
+      XmlTextRange nameLocation = XmlFile.nameLocation(element);
+      assertThat(locations.nameEnd(i)).isEqualTo(Positions.position(nameLocation.getEndLine(), nameLocation.getEndColumn()));
+
+      NamedNodeMap attributes = element.getAttributes();
+      assertThat(locations.attributesEnd(i) - locations.firstAttribute(i)).isEqualTo(attributes.getLength());
+      for (int j = 0; j < attributes.getLength(); j++) {
+        int attribute = locations.firstAttribute(i) + j;
+        XmlTextRange valueLocation = XmlFile.attributeValueLocation((Attr) attributes.item(j));
+        assertThat(Positions.range(locations.attributeValueStart(attribute), locations.attributeValueEnd(attribute)))
+          .usingRecursiveComparison().isEqualTo(valueLocation);
+        XmlTextRange nameRange = XmlFile.attributeNameLocation((Attr) attributes.item(j));
+        assertThat(Positions.range(locations.attributeNameStart(attribute), locations.attributeNameEnd(attribute)))
+          .usingRecursiveComparison().isEqualTo(nameRange);
+      }
+    }
+  }
+
+  @Test
+  void self_closing_elements() {
+    Document document = XmlFile.create("<a><b/><c></c><d>\n</d></a>").getDocument();
+    ElementLocations locations = ElementLocations.of(document);
+
+    assertThat(locations.isSelfClosing(0)).isFalse();
+    assertThat(locations.isSelfClosing(1)).isTrue();
+    assertThat(locations.isSelfClosing(2)).isFalse();
+    assertThat(locations.isSelfClosing(3)).isFalse();
+    assertThat(Positions.line(locations.endTagStart(3))).isEqualTo(2);
+  }
+
+  @Test
+  void store_is_shared_by_the_visitors_of_the_document() {
+    XmlFile xmlFile = XmlFile.create("<a><b/></a>");
+    Document document = xmlFile.getDocument();
+
+    assertThat(ElementLocations.of(document)).isSameAs(ElementLocations.of(document));
+    assertThat(ElementLocations.of(xmlFile.getNamespaceUnawareDocument())).isNotSameAs(ElementLocations.of(document));
+  }
+
+  @Test
+  void unknown_element() {
+    Document document = XmlFile.create("<a><b/></a>").getDocument();
+    Element other = XmlFile.create("<a/>").getDocument().getDocumentElement();
+
+    assertThat(ElementLocations.of(document).id(other)).isEqualTo(ElementLocations.NONE);
+  }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.tree;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LineIndexTest {
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+    "",
+    "a",
+    "\n",
+    "\r\n\r\n",
+    "\n\r",
+    "\r\r\n\n",
+    "a \t\nb\r\nc\u000B\f\rd",
+    "<a>\n  <b/>  \r\n\t\t<c/>\r</a>\n",
+  })
+  void lines_are_the_ones_of_a_split(String text) {
+    String[] expected = text.split("(\r)?\n|\r", -1);
+    LineIndex lines = LineIndex.of(text);
+
+    assertThat(lines.lineCount()).isEqualTo(expected.length);
+    for (int line = 1; line <= lines.lineCount(); line++) {
+      String expectedLine = expected[line - 1];
+      assertThat(text.substring(lines.lineStart(line), lines.lineEnd(line))).isEqualTo(expectedLine);
+      assertThat(lines.lineLength(line)).isEqualTo(expectedLine.length());
+      assertThat(lines.trimmedLineLength(line)).isEqualTo(expectedLine.replaceAll("\\s+$", "").length());
+      assertThat(lines.isBlank(line)).isEqualTo(expectedLine.trim().isEmpty());
+      for (int column = 0; column < expectedLine.length(); column++) {
+        assertThat(lines.charAt(line, column)).isEqualTo(expectedLine.charAt(column));
+      }
+      for (int offset = lines.lineStart(line); offset <= lines.lineEnd(line); offset++) {
+        assertThat(lines.line(offset)).isEqualTo(line);
+      }
+    }
+  }
+
+  @Test
+  void index_of_a_file_is_shared() {
+    XmlFile file = XmlFile.create("<a>\n</a>");
+    LineIndex lines = LineIndex.of(file);
+
+    assertThat(LineIndex.of(file)).isSameAs(lines);
+    assertThat(lines.text()).isSameAs(file.getContents());
+    assertThat(lines.lineCount()).isEqualTo(2);
+  }
+
+}
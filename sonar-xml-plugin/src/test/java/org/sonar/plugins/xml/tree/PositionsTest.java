@@ -0,0 +1,40 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.tree;
+
+import org.junit.jupiter.api.Test;
+import org.sonarsource.analyzer.commons.xml.XmlTextRange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PositionsTest {
+
+  @Test
+  void positions_are_packed() {
+    long position = Positions.position(123_456, 789);
+    assertThat(Positions.line(position)).isEqualTo(123_456);
+    assertThat(Positions.column(position)).isEqualTo(789);
+    assertThat(Positions.position(2, 0)).isGreaterThan(Positions.position(1, 1_000_000));
+  }
+
+  @Test
+  void ranges_are_unpacked() {
+    XmlTextRange range = new XmlTextRange(1, 2, 3, 4);
+    assertThat(Positions.range(Positions.start(range), Positions.end(range))).usingRecursiveComparison().isEqualTo(range);
+  }
+
+}
@@ -0,0 +1,300 @@
+/*
+ * SonarQube XML Plugin
+ * Copyright (C) SonarSource Sàrl
+ * mailto:info AT sonarsource DOT com
+ *
+ * You can redistribute and/or modify this program under the terms of
+ * the Sonar Source-Available License Version 1, as published by SonarSource Sàrl.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the Sonar Source-Available License for more details.
+ *
+ * You should have received a copy of the Sonar Source-Available License
+ * along with this program; if not, see https://sonarsource.com/license/ssal/
+ */
+package org.sonar.plugins.xml.visitors;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.sonarsource.analyzer.commons.xml.XmlFile;
+import org.w3c.dom.Attr;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.Text;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DomTraversalTest {
+
+  private static final String XML = """
+    <!DOCTYPE a>
+    <!-- c1 -->
+    <a x="1" y="2"><b><c/>text</b><![CDATA[data]]><d/></a>""";
+
+  @Test
+  void nodes_are_visited_in_document_order() {
+    RecordingVisitor visitor = new RecordingVisitor(EnumSet.allOf(DomVisitor.NodeKind.class));
+    DomTraversal.visit(XmlFile.create(XML), visitor);
+
+    assertThat(visitor.events).containsExactly(
+      "startDocument",
+      "doctype a",
+      "comment  c1 ",
+      "enter a", "attribute x", "attribute y",
+      "enter b",
+      "enter c", "leave c",
+      "text text",
+      "leave b",
+      "cdata data",
+      "enter d", "leave d",
+      "leave a",
+      "endDocument");
+  }
+
+  @Test
+  void visitors_are_only_notified_of_subscribed_kinds() {
+    RecordingVisitor visitor = new RecordingVisitor(EnumSet.of(DomVisitor.NodeKind.COMMENT));
+    DomTraversal.visit(XmlFile.create(XML), visitor);
+
+    assertThat(visitor.events).containsExactly("startDocument", "comment  c1 ", "endDocument");
+  }
+
+  @Test
+  void shared_traversal_notifies_all_visitors_once_run() {
+    XmlFile xmlFile = XmlFile.create(XML);
+    RecordingVisitor first = new RecordingVisitor(EnumSet.of(DomVisitor.NodeKind.ELEMENT));
+    RecordingVisitor second = new RecordingVisitor(EnumSet.of(DomVisitor.NodeKind.CDATA));
+    RecordingVisitor other = new RecordingVisitor(EnumSet.of(DomVisitor.NodeKind.CDATA));
+
+    DomTraversal traversal = new DomTraversal(xmlFile, (visitor, e) -> {
+      throw e;
+    });
+    traversal.shareDuring(() -> {
+      DomTraversal.visit(xmlFile, first);
+      DomTraversal.visit(xmlFile, second);
+      // another file is not part of the shared traversal
+      DomTraversal.visit(XmlFile.create("<a><![CDATA[other]]></a>"), other);
+    });
+
+    assertThat(first.events).isEmpty();
+    assertThat(second.events).isEmpty();
+    assertThat(other.events).containsExactly("startDocument", "cdata other", "endDocument");
+
+    traversal.run();
+
+    assertThat(first.events).containsExactly("startDocument", "enter a", "enter b", "enter c", "leave c", "leave b", "enter d", "leave d", "leave a",
+      "endDocument");
+    assertThat(second.events).containsExactly("startDocument", "cdata data", "endDocument");
+  }
+
+  @Test
+  void visitors_are_only_notified_of_the_elements_with_their_names() {
+    RecordingVisitor visitor = new RecordingVisitor(EnumSet.of(DomVisitor.NodeKind.ELEMENT, DomVisitor.NodeKind.CDATA)) {
+      @Override
+      public Set<String> elementNames() {
+        return Set.of("b", "d");
+      }
+    };
+    RecordingVisitor other = new RecordingVisitor(EnumSet.of(DomVisitor.NodeKind.ELEMENT));
+
+    new DomTraversal(XmlFile.create(XML), (failingVisitor, e) -> {
+      throw e;
+    }).subscribe(visitor).subscribe(other).run();
+
+    assertThat(visitor.events).containsExactly("startDocument", "enter b", "leave b", "cdata data", "enter d", "leave d", "endDocument");
+    assertThat(other.events).containsExactly("startDocument", "enter a", "enter b", "enter c", "leave c", "leave b", "enter d", "leave d", "leave a",
+      "endDocument");
+  }
+
+  @Test
+  void visitors_of_each_document_are_notified_in_their_own_pass() {
+    XmlFile xmlFile = XmlFile.create("<a xmlns:x=\"ns\"><x:b/><b/></a>");
+    RecordingVisitor namespaceAware = new RecordingVisitor(EnumSet.of(DomVisitor.NodeKind.ELEMENT)) {
+      @Override
+      public Set<String> elementNames() {
+        return Set.of("b");
+      }
+
+      @Override
+      public void enterElement(Element element) {
+        events.add("enter " + element.getTagName() + " " + element.getNamespaceURI());
+      }
+    };
+    RecordingVisitor namespaceUnaware = new RecordingVisitor(EnumSet.of(DomVisitor.NodeKind.ELEMENT)) {
+      @Override
+      public boolean namespaceAware() {
+        return false;
+      }
+
+      @Override
+      public Set<String> elementNames() {
+        return Set.of("b");
+      }
+
+      @Override
+      public void enterElement(Element element) {
+        events.add("enter " + element.getTagName() + " " + element.getNamespaceURI());
+      }
+
+      @Override
+      public void startDocument(Document document) {
+        events.add("startDocument " + (document == xmlFile.getNamespaceUnawareDocument()));
+      }
+    };
+
+    new DomTraversal(xmlFile, (failingVisitor, e) -> {
+      throw e;
+    }).subscribe(namespaceUnaware).subscribe(namespaceAware).run();
+
+    assertThat(namespaceAware.events).containsExactly("startDocument", "enter x:b ns", "leave x:b", "enter b null", "leave b", "endDocument");
+    assertThat(namespaceUnaware.events)
+      .containsExactly("startDocument true", "enter x:b null", "leave x:b", "enter b null", "leave b", "endDocument");
+  }
+
+  @Test
+  void failing_visitor_is_not_notified_anymore() {
+    List<DomVisitor> failures = new ArrayList<>();
+    RecordingVisitor failing = new RecordingVisitor(EnumSet.of(DomVisitor.NodeKind.ELEMENT)) {
+      @Override
+      public void enterElement(Element element) {
+        super.enterElement(element);
+        throw new IllegalStateException("failure");
+      }
+    };
+    RecordingVisitor working = new RecordingVisitor(EnumSet.of(DomVisitor.NodeKind.ELEMENT));
+
+    new DomTraversal(XmlFile.create("<a><b/></a>"), (visitor, e) -> failures.add(visitor))
+      .subscribe(failing)
+      .subscribe(working)
+      .run();
+
+    assertThat(failures).containsExactly(failing);
+    assertThat(failing.events).containsExactly("startDocument", "enter a");
+    assertThat(working.events).containsExactly("startDocument", "enter a", "enter b", "leave b", "leave a", "endDocument");
+  }
+
+  @Test
+  void failure_is_propagated_when_not_shared() {
+    XmlFile xmlFile = XmlFile.create("<a/>");
+    RecordingVisitor failing = new RecordingVisitor(EnumSet.of(DomVisitor.NodeKind.ELEMENT)) {
+      @Override
+      public void leaveElement(Element element) {
+        throw new IllegalStateException("failure");
+      }
+    };
+
+    assertThrows(IllegalStateException.class, () -> DomTraversal.visit(xmlFile, failing));
+  }
+
+  @Test
+  void visitors_are_measured_on_demand() {
+    RecordingVisitor visitor = new RecordingVisitor(EnumSet.allOf(DomVisitor.NodeKind.class));
+    List<DomVisitor> measured = new ArrayList<>();
+    List<Long> nanos = new ArrayList<>();
+
+    DomTraversal traversal = new DomTraversal(XmlFile.create(XML), (failingVisitor, e) -> {
+      throw e;
+    }).subscribe(visitor);
+    traversal.run();
+    traversal.forEachMeasure((measuredVisitor, time, allocatedBytes) -> measured.add(measuredVisitor));
+    assertThat(measured).isEmpty();
+
+    traversal = new DomTraversal(XmlFile.create(XML), (failingVisitor, e) -> {
+      throw e;
+    }).subscribe(visitor).measured();
+    traversal.run();
+    traversal.forEachMeasure((measuredVisitor, time, allocatedBytes) -> {
+      measured.add(measuredVisitor);
+      nanos.add(time);
+    });
+    assertThat(measured).containsExactly(visitor);
+    assertThat(nanos.get(0)).isPositive();
+  }
+
+  @Test
+  void notified_visitor_is_tracked_on_demand() {
+    RecordingVisitor visitor = new RecordingVisitor(EnumSet.of(DomVisitor.NodeKind.ELEMENT));
+    AtomicReference<Object> notified = new AtomicReference<>();
+
+    new DomTraversal(XmlFile.create(XML), (failingVisitor, e) -> {
+      throw e;
+    }).subscribe(visitor).run();
+    assertThat(notified.get()).isNull();
+
+    new DomTraversal(XmlFile.create(XML), (failingVisitor, e) -> {
+      throw e;
+    }).subscribe(visitor).tracked(notified).run();
+    assertThat(notified.get()).isSameAs(visitor);
+  }
+
+  private static class RecordingVisitor implements DomVisitor {
+
+    private final Set<NodeKind> nodeKinds;
+    final List<String> events = new ArrayList<>();
+
+    RecordingVisitor(Set<NodeKind> nodeKinds) {
+      this.nodeKinds = nodeKinds;
+    }
+
+    @Override
+    public Set<NodeKind> nodeKinds() {
+      return nodeKinds;
+    }
+
+    @Override
+    public void startDocument(Document document) {
+      events.add("startDocument");
+    }
+
+    @Override
+    public void enterElement(Element element) {
+      events.add("enter " + element.getTagName());
+    }
+
+    @Override
+    public void leaveElement(Element element) {
+      events.add("leave " + element.getTagName());
+    }
+
+    @Override
+    public void visitAttribute(Attr attribute) {
+      events.add("attribute " + attribute.getName());
+    }
+
+    @Override
+    public void visitText(Text text) {
+      events.add("text " + text.getData());
+    }
+
+    @Override
+    public void visitCdata(CDATASection cdata) {
+      events.add("cdata " + cdata.getData());
+    }
+
+    @Override
+    public void visitComment(Comment comment) {
+      events.add("comment " + comment.getData());
+    }
+
+    @Override
+    public void visitDocumentType(DocumentType documentType) {
+      events.add("doctype " + documentType.getName());
+    }
+
+    @Override
+    public void endDocument(Document document) {
+      events.add("endDocument");
+    }
+  }
+
+}